@@ -0,0 +1,163 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.benchmark;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.openjdk.jmh.annotations.*;
+import org.yuanheng.cookjson.CookJsonParser;
+import org.yuanheng.cookjson.CookJsonProvider;
+import org.yuanheng.cookjson.IndexedJsonParser;
+import org.yuanheng.cookjson.UTF8TextJsonParser;
+
+/**
+ * Compares the parsers for data that is already in memory.
+ *
+ * @author	Heng Yuan
+ */
+@OutputTimeUnit (TimeUnit.MILLISECONDS)
+@State (value = Scope.Benchmark)
+@Fork (value = 1)
+@Warmup (iterations = 5)
+@BenchmarkMode (Mode.AverageTime)
+@Measurement(iterations = 20)
+public class JsonParserByteArrayBenchmark
+{
+	private byte[] m_bytes;
+	private JsonReaderFactory m_readerFactory;
+	private JsonReaderFactory m_lazyReaderFactory;
+
+	@Setup
+	public void setup () throws IOException
+	{
+		String jsonFile = "../tests/data/large.json";
+		File file = new File (jsonFile.replace ('/', File.separatorChar));
+		byte[] buf = new byte[4096];
+		ByteArrayOutputStream os = new ByteArrayOutputStream ();
+		InputStream is = new FileInputStream (file);
+		int len;
+		while ((len = is.read (buf)) > 0)
+		{
+			os.write (buf, 0, len);
+		}
+		is.close ();
+		os.close ();
+		m_bytes = os.toByteArray ();
+
+		CookJsonProvider provider = new CookJsonProvider ();
+		m_readerFactory = provider.createReaderFactory (new HashMap<String, Object> ());
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		config.put (CookJsonProvider.LAZY_VALUES, "true");
+		m_lazyReaderFactory = provider.createReaderFactory (config);
+	}
+
+	private void perfTest (JsonParser p)
+	{
+		try
+		{
+			for (;;)
+			{
+				p.next ();
+			}
+		}
+		catch (NoSuchElementException ex)
+		{
+		}
+	}
+
+	/**
+	 * Skips over every element of the root array.
+	 */
+	private int skipTest (CookJsonParser p)
+	{
+		int count = 0;
+		p.next ();
+		while (p.next () != Event.END_ARRAY)
+		{
+			p.skipChildren ();
+			++count;
+		}
+		return count;
+	}
+
+	/**
+	 * Reads the whole document and accesses a single member.
+	 */
+	private int readTest (JsonReaderFactory factory)
+	{
+		JsonReader reader = factory.createReader (new ByteArrayInputStream (m_bytes));
+		JsonArray array = reader.readArray ();
+		reader.close ();
+		JsonObject obj = array.getJsonObject (array.size () - 1);
+		return obj.getInt ("int");
+	}
+
+	@Benchmark
+	public void testCookJson ()
+	{
+		JsonParser p = new UTF8TextJsonParser (m_bytes);
+		perfTest (p);
+		p.close ();
+	}
+
+	@Benchmark
+	public void testCookJsonIndexed ()
+	{
+		JsonParser p = new IndexedJsonParser (m_bytes);
+		perfTest (p);
+		p.close ();
+	}
+
+	@Benchmark
+	public int testCookJsonSkip ()
+	{
+		CookJsonParser p = new UTF8TextJsonParser (m_bytes);
+		int count = skipTest (p);
+		p.close ();
+		return count;
+	}
+
+	@Benchmark
+	public int testCookJsonIndexedSkip ()
+	{
+		CookJsonParser p = new IndexedJsonParser (m_bytes);
+		int count = skipTest (p);
+		p.close ();
+		return count;
+	}
+
+	@Benchmark
+	public int testCookJsonRead ()
+	{
+		return readTest (m_readerFactory);
+	}
+
+	@Benchmark
+	public int testCookJsonLazyRead ()
+	{
+		return readTest (m_lazyReaderFactory);
+	}
+}
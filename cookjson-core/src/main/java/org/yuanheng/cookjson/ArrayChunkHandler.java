@@ -0,0 +1,40 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import javax.json.JsonArray;
+
+/**
+ * Receives the elements of a root array read by {@link ParallelArrayReader}.
+ *
+ * @author	Heng Yuan
+ */
+public interface ArrayChunkHandler
+{
+	/**
+	 * Handles a chunk of consecutive elements of the root array.
+	 * <p>
+	 * This method is always called from the thread that called
+	 * {@link ParallelArrayReader#read(java.io.InputStream, ArrayChunkHandler)}.
+	 *
+	 * @param	chunk
+	 *			the chunk number, starting from 0.  Chunks numbers follow
+	 *			the order of the elements in the root array.
+	 * @param	values
+	 *			the elements in this chunk.
+	 */
+	public void handle (int chunk, JsonArray values);
+}
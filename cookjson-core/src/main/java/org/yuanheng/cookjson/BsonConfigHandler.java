@@ -15,12 +15,14 @@
  */
 package org.yuanheng.cookjson;
 
+import java.io.ByteArrayInputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.Map;
 
 import javax.json.JsonException;
 import javax.json.stream.JsonGenerator;
@@ -42,64 +44,66 @@ class BsonConfigHandler implements ConfigHandler
 	}
 
 	@Override
-	public CookJsonParser createParser (Map<String, ?> config, Reader reader)
+	public CookJsonParser createParser (FactorySettings settings, Reader reader)
 	{
 		throw new JsonException ("Cannot create a BSON parser from a Reader.");
 	}
 
 	@Override
-	public CookJsonParser createParser (Map<String, ?> config, InputStream is)
+	public CookJsonParser createParser (FactorySettings settings, InputStream is)
 	{
 		BsonParser p = new BsonParser (is);
+		p.setRootAsArray (settings.rootAsArray);
+		p.setBinaryFormat (settings.binaryFormat);
+		return p;
+	}
 
-		boolean rootAsArray = false;
-		Object obj = config.get (CookJsonProvider.ROOT_AS_ARRAY);
-		if (obj != null)
-			rootAsArray = "true".equals (obj.toString ());
-		p.setRootAsArray (rootAsArray);
+	@Override
+	public CookJsonParser createParser (FactorySettings settings, InputStream is, Charset charset)
+	{
+		return createParser (settings, is);
+	}
 
-		int binaryFormat = BinaryFormat.BINARY_FORMAT_BASE64;
-		obj = config.get (CookJsonProvider.BINARY_FORMAT);
-		if (obj != null)
-		{
-			if (CookJsonProvider.BINARY_FORMAT_HEX.equals (obj.toString ()))
-			{
-				binaryFormat = BinaryFormat.BINARY_FORMAT_HEX;
-			}
-		}
-		p.setBinaryFormat (binaryFormat);
-		return p;
+	@Override
+	public CookJsonParser createParser (FactorySettings settings, FileChannel channel)
+	{
+		return createParser (settings, new MappedFileInputStream (channel));
 	}
 
 	@Override
-	public CookJsonParser createParser (Map<String, ?> config, InputStream is, Charset charset)
+	public CookJsonParser createParser (FactorySettings settings, byte[] buf, int offset, int length)
 	{
-		return createParser (config, is);
+		return createParser (settings, new ByteArrayInputStream (buf, offset, length));
 	}
 
 	@Override
-	public JsonGenerator createGenerator (Map<String, ?> config, Writer writer)
+	public CookJsonParser createParser (FactorySettings settings, ByteBuffer buffer)
+	{
+		int length = buffer.remaining ();
+		if (buffer.hasArray ())
+			return createParser (settings, buffer.array (), buffer.arrayOffset () + buffer.position (), length);
+		byte[] buf = new byte[length];
+		buffer.duplicate ().get (buf);
+		return createParser (settings, buf, 0, length);
+	}
+
+	@Override
+	public JsonGenerator createGenerator (FactorySettings settings, Writer writer)
 	{
 		throw new JsonException ("Cannot create a BSON generator from a Writer.");
 	}
 
 	@Override
-	public JsonGenerator createGenerator (Map<String, ?> config, OutputStream os)
+	public JsonGenerator createGenerator (FactorySettings settings, OutputStream os)
 	{
 		BsonGenerator g = new BsonGenerator (os);
-
-		boolean writeDouble = false;
-		Object obj = config.get (CookJsonProvider.USE_DOUBLE);
-		if (obj != null)
-			writeDouble = "true".equals (obj.toString ());
-		g.setUseDouble (writeDouble);
-
+		g.setUseDouble (settings.useDouble);
 		return g;
 	}
 
 	@Override
-	public JsonGenerator createGenerator (Map<String, ?> config, OutputStream os, Charset charset)
+	public JsonGenerator createGenerator (FactorySettings settings, OutputStream os, Charset charset)
 	{
-		return createGenerator (config, os);
+		return createGenerator (settings, os);
 	}
 }
@@ -22,7 +22,6 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Stack;
 
-import javax.json.stream.JsonParser;
 import javax.json.stream.JsonParser.Event;
 
 /**
@@ -52,7 +51,7 @@ public class BsonFixLength
 		}
 	}
 
-	private static void getOffsets (JsonParser p, ArrayList<Pair> pairs) throws IOException
+	private static void getOffsets (BsonParser p, ArrayList<Pair> pairs) throws IOException
 	{
 		long offset;
 		long start;
@@ -71,7 +70,7 @@ public class BsonFixLength
 				case START_OBJECT:
 					if (firstObject)
 					{
-						offset = p.getLocation ().getStreamOffset ();
+						offset = p.getStreamOffset ();
 						matches.push (offset);
 						firstObject = false;
 					}
@@ -81,13 +80,13 @@ public class BsonFixLength
 					if (justStarted)
 					{
 						justStarted = false;
-						offset = p.getLocation ().getStreamOffset ();
+						offset = p.getStreamOffset ();
 						matches.push (offset - 4);
 					}
 					break;
 				case END_ARRAY:
 				case END_OBJECT:
-					offset = p.getLocation ().getStreamOffset () + 1;
+					offset = p.getStreamOffset () + 1;
 					if (justStarted)
 					{
 						start = offset - 5;
@@ -109,7 +108,7 @@ public class BsonFixLength
 						// we can only get here if we area dealing with
 						// array.
 						justStarted = false;
-						offset = p.getLocation ().getStreamOffset ();
+						offset = p.getStreamOffset ();
 						matches.push (offset - 4);
 					}
 					break;
@@ -140,7 +139,7 @@ public class BsonFixLength
 	public static void fix (File file) throws IOException
 	{
 		FileInputStream is = new FileInputStream (file);
-		JsonParser p = new BsonParser (is);
+		BsonParser p = new BsonParser (is);
 
 		ArrayList<Pair> pairs = new ArrayList<Pair> ();
 
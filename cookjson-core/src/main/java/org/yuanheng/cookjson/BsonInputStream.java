@@ -98,6 +98,44 @@ class BsonInputStream
 		m_readMax = 0;
 	}
 
+	/**
+	 * Skips bytes.  Bytes not in the buffer are skipped using the
+	 * underlying InputStream's skip ().
+	 *
+	 * @param	n
+	 *			the number of bytes to skip.
+	 * @throws	IOException
+	 *			in case of I/O error.
+	 */
+	public void skip (long n) throws IOException
+	{
+		m_location += n;
+
+		int buffered = m_readMax - m_readPos;
+		if (n <= buffered)
+		{
+			m_readPos += (int) n;
+			return;
+		}
+		n -= buffered;
+		m_readPos = 0;
+		m_readMax = 0;
+
+		InputStream is = m_is;
+		while (n > 0)
+		{
+			long skipped = is.skip (n);
+			if (skipped <= 0)
+			{
+				// skip () can return 0 before the end of the stream.
+				if (is.read () < 0)
+					throw new EOFException ();
+				skipped = 1;
+			}
+			n -= skipped;
+		}
+	}
+
 	public boolean readBoolean () throws IOException
 	{
 		if (m_readPos >= m_readMax)
@@ -132,6 +170,73 @@ class BsonInputStream
 		return Double.longBitsToDouble (readLong ());
 	}
 
+	/**
+	 * Reads the type and the name of the next array element if it is an
+	 * int32, an int64 or a double, and the whole element is in the buffer.
+	 * The value can then be read with {@link #getBufferedInt()} or
+	 * {@link #getBufferedLong()}.
+	 *
+	 * @return	the element type.  -1 if nothing was read.
+	 */
+	int readNumberElement ()
+	{
+		final byte[] buf = m_buffer;
+		final int max = m_readMax;
+		int pos = m_readPos;
+		if (pos >= max)
+			return -1;
+		int type = buf[pos];
+		int size;
+		if (type == BsonType.Integer)
+			size = 4;
+		else if (type == BsonType.Long || type == BsonType.Double)
+			size = 8;
+		else
+			return -1;
+		// skip the element name.
+		do
+		{
+			if (++pos >= max)
+				return -1;
+		}
+		while (buf[pos] != 0);
+		++pos;
+		if (pos + size > max)
+			return -1;
+		m_location += pos - m_readPos;
+		m_readPos = pos;
+		return type;
+	}
+
+	/**
+	 * Reads a little-endian int32 directly from the buffer.  It must be
+	 * known that the value is in the buffer.
+	 *
+	 * @return	the value.
+	 */
+	int getBufferedInt ()
+	{
+		final byte[] buf = m_buffer;
+		final int pos = m_readPos;
+		m_readPos = pos + 4;
+		m_location += 4;
+		return (buf[pos] & 0xff) |
+			   ((buf[pos + 1] & 0xff) << 8) |
+			   ((buf[pos + 2] & 0xff) << 16) |
+			   (buf[pos + 3] << 24);
+	}
+
+	/**
+	 * Reads a little-endian int64 directly from the buffer.  It must be
+	 * known that the value is in the buffer.
+	 *
+	 * @return	the value.
+	 */
+	long getBufferedLong ()
+	{
+		return ((long)getBufferedInt () & 0xffffffffL) | ((long)getBufferedInt () << 32);
+	}
+
 	public String readCString () throws IOException
 	{
 		byte[] strBuf = m_strBuffer;
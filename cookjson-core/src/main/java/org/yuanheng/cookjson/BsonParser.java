@@ -58,10 +58,22 @@ public class BsonParser implements CookJsonParser
 
 	private Event m_event;
 	private Object m_value;
+	/**
+	 * Numbers are stored unboxed.  m_fieldType tells if the number is
+	 * a double, an int or a long.
+	 */
+	private long m_long;
+	private double m_double;
 	private ArrayList<Boolean> m_states = new ArrayList<Boolean> ();
 	private int m_state = ParserState.INITIAL;
-	private JsonLocationImpl m_location = new JsonLocationImpl ();
+	/**
+	 * The stream offset of the current field.  The location object is
+	 * only created when it is asked for.
+	 */
+	private long m_offset;
 	private boolean m_inArray;
+	/** The length of the current array / document.  0 if unknown. */
+	private int m_length;
 
 	private boolean m_rootAsArray;
 	private int m_binaryFormat;
@@ -69,11 +81,6 @@ public class BsonParser implements CookJsonParser
 	public BsonParser (InputStream is)
 	{
 		m_is = new BsonInputStream (is);
-
-		// neither column number and line number are meaningful
-		// set them to unknown.
-		m_location.m_columnNumber = -1;
-		m_location.m_lineNumber = -1;
 	}
 
 	@Override
@@ -110,11 +117,11 @@ public class BsonParser implements CookJsonParser
 			}
 			case VALUE_NUMBER:
 			{
-				if (m_value instanceof Integer)
-					return new CookJsonInt ((Integer)m_value);
-				if (m_value instanceof Long)
-					return new CookJsonLong ((Long)m_value);
-				return new CookJsonDouble ((Double) m_value);
+				if (m_fieldType == BsonType.Double)
+					return new CookJsonDouble (m_double);
+				if (m_fieldType == BsonType.Integer)
+					return CookJsonInt.valueOf ((int) m_long);
+				return new CookJsonLong (m_long);
 			}
 			case VALUE_NULL:
 				return JsonValue.NULL;
@@ -129,7 +136,7 @@ public class BsonParser implements CookJsonParser
 
 	private void getField () throws IOException
 	{
-		m_location.m_streamOffset= m_is.getLocation ();
+		m_offset = m_is.getLocation ();
 		m_fieldType = m_is.read () & 0xff;
 		if (m_fieldType == 0)
 			m_fieldName = null;
@@ -163,7 +170,7 @@ public class BsonParser implements CookJsonParser
 				m_inArray = true;
 				m_state = ParserState.IN_ARRAY;
 				m_value = null;
-				m_is.readInt ();	// skip size;
+				m_length = m_is.readInt ();
 				// sets a temporary flag that indicates the object obtained
 				// was internally marked as Array.
 				return Event.START_ARRAY;
@@ -174,7 +181,7 @@ public class BsonParser implements CookJsonParser
 				m_inArray = false;
 				m_state = ParserState.IN_OBJECT;
 				m_value = null;
-				m_is.readInt ();	// skip size;
+				m_length = m_is.readInt ();
 				// sets a temporary flag that indicates the object obtained
 				// was internally marked as Array.
 				return Event.START_OBJECT;
@@ -185,17 +192,20 @@ public class BsonParser implements CookJsonParser
 				return Event.VALUE_NULL;
 			case BsonType.Double:
 				m_state = m_inArray ? ParserState.IN_ARRAY : ParserState.IN_OBJECT;
-				m_value = m_is.readDouble ();
+				m_value = null;
+				m_double = m_is.readDouble ();
 				return Event.VALUE_NUMBER;
 			case BsonType.Integer:
 				m_state = m_inArray ? ParserState.IN_ARRAY : ParserState.IN_OBJECT;
-				m_value = m_is.readInt ();
+				m_value = null;
+				m_long = m_is.readInt ();
 				return Event.VALUE_NUMBER;
 			case BsonType.DateTime:
 			case BsonType.TimeStamp:
 			case BsonType.Long:
 				m_state = m_inArray ? ParserState.IN_ARRAY : ParserState.IN_OBJECT;
-				m_value = m_is.readLong ();
+				m_value = null;
+				m_long = m_is.readLong ();
 				return Event.VALUE_NUMBER;
 			case BsonType.JavaScript:
 			case BsonType.Deprecated:
@@ -270,7 +280,8 @@ public class BsonParser implements CookJsonParser
 							m_inArray = m_states.get (m_states.size () - 1);
 							m_state = m_inArray ? ParserState.IN_ARRAY : ParserState.IN_OBJECT;
 						}
-						return Event.END_OBJECT;
+						m_event = Event.END_OBJECT;
+						return m_event;
 					}
 //					Debug.debug ("FIELD: " + m_field);
 					m_event = Event.KEY_NAME;
@@ -288,10 +299,105 @@ public class BsonParser implements CookJsonParser
 		}
 		catch (IOException ex)
 		{
-			throw new JsonParsingException (ex.getMessage (), ex, m_location);
+			throw new JsonParsingException (ex.getMessage (), ex, getLocation ());
 		}
 	}
 
+	@Override
+	public void skipChildren ()
+	{
+		if (m_event != Event.START_ARRAY && m_event != Event.START_OBJECT)
+			return;
+		// The length includes the length field itself and the terminating 0.
+		// BsonGenerator writes 0 for the length when the output is not fixed
+		// with BsonFixLength.  In that case, we have to go through the events.
+		if (m_length < 5)
+		{
+			int depth = 1;
+			while (depth > 0)
+			{
+				Event e = next ();
+				if (e == Event.START_ARRAY || e == Event.START_OBJECT)
+					++depth;
+				else if (e == Event.END_ARRAY || e == Event.END_OBJECT)
+					--depth;
+			}
+			return;
+		}
+		try
+		{
+			m_is.skip (m_length - 5);
+		}
+		catch (IOException ex)
+		{
+			throw new JsonParsingException (ex.getMessage (), ex, getLocation ());
+		}
+		// read the terminating 0.
+		next ();
+	}
+
+	/**
+	 * Reads the next array element directly from the input buffer if it
+	 * is a number that is entirely in the buffer.
+	 *
+	 * @return	true if a number was read.
+	 */
+	private boolean readBufferedNumber ()
+	{
+		long offset = m_is.getLocation ();
+		int type = m_is.readNumberElement ();
+		if (type < 0)
+			return false;
+		m_offset = offset;
+		m_fieldType = type;
+		m_value = null;
+		m_event = Event.VALUE_NUMBER;
+		if (type == BsonType.Integer)
+			m_long = m_is.getBufferedInt ();
+		else if (type == BsonType.Long)
+			m_long = m_is.getBufferedLong ();
+		else
+			m_double = Double.longBitsToDouble (m_is.getBufferedLong ());
+		return true;
+	}
+
+	private void checkArrayRead ()
+	{
+		if (m_state != ParserState.IN_ARRAY ||
+			(m_event != Event.START_ARRAY && m_event != Event.VALUE_NUMBER))
+			throw new IllegalStateException ();
+	}
+
+	@Override
+	public int readIntArray (int[] values, int offset, int length)
+	{
+		checkArrayRead ();
+		int count = 0;
+		while (count < length && (readBufferedNumber () || next () == Event.VALUE_NUMBER))
+			values[offset + count++] = getInt ();
+		return count;
+	}
+
+	@Override
+	public int readLongArray (long[] values, int offset, int length)
+	{
+		checkArrayRead ();
+		int count = 0;
+		while (count < length && (readBufferedNumber () || next () == Event.VALUE_NUMBER))
+			values[offset + count++] = getLong ();
+		return count;
+	}
+
+	@Override
+	public int readDoubleArray (double[] values, int offset, int length)
+	{
+		checkArrayRead ();
+		int count = 0;
+		while (count < length && (readBufferedNumber () || next () == Event.VALUE_NUMBER))
+			values[offset + count++] = getDouble ();
+		return count;
+	}
+
 	@Override
 	public String getString ()
 	{
@@ -311,9 +417,9 @@ public class BsonParser implements CookJsonParser
 			}
 			case VALUE_NUMBER:
 			{
-				if (m_value instanceof Double)
-					return DoubleUtils.toString (((Double) m_value).doubleValue ());
-				return m_value.toString ();
+				if (m_fieldType == BsonType.Double)
+					return DoubleUtils.toString (m_double);
+				return Long.toString (m_long);
 			}
 			default:
 				throw new IllegalStateException ();
@@ -343,7 +449,7 @@ public class BsonParser implements CookJsonParser
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw new IllegalStateException ();
-		return !(m_value instanceof Double);
+		return m_fieldType != BsonType.Double;
 	}
 
 	@Override
@@ -351,7 +457,9 @@ public class BsonParser implements CookJsonParser
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw new IllegalStateException ();
-		return ((Number)m_value).intValue ();
+		if (m_fieldType == BsonType.Double)
+			return (int) m_double;
+		return (int) m_long;
 	}
 
 	@Override
@@ -359,7 +467,9 @@ public class BsonParser implements CookJsonParser
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw new IllegalStateException ();
-		return ((Number)m_value).longValue ();
+		if (m_fieldType == BsonType.Double)
+			return (long) m_double;
+		return m_long;
 	}
 
 	@Override
@@ -367,17 +477,52 @@ public class BsonParser implements CookJsonParser
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw new IllegalStateException ();
-		if (m_value instanceof Integer)
-			return new BigDecimal ((Integer)m_value);
-		if (m_value instanceof Long)
-			return new BigDecimal ((Long)m_value);
-		return new BigDecimal ((Double)m_value);
+		if (m_fieldType == BsonType.Double)
+			return new BigDecimal (m_double);
+		return new BigDecimal (m_long);
+	}
+
+	@Override
+	public double getDouble ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw new IllegalStateException ();
+		if (m_fieldType == BsonType.Double)
+			return m_double;
+		return m_long;
+	}
+
+	@Override
+	public float getFloat ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw new IllegalStateException ();
+		if (m_fieldType == BsonType.Double)
+			return (float) m_double;
+		return m_long;
 	}
 
 	@Override
 	public JsonLocation getLocation ()
 	{
-		return m_location;
+		JsonLocationImpl location = new JsonLocationImpl ();
+		// neither column number and line number are meaningful
+		// set them to unknown.
+		location.m_columnNumber = -1;
+		location.m_lineNumber = -1;
+		location.m_streamOffset = m_offset;
+		return location;
+	}
+
+	/**
+	 * Gets the stream offset of the current field without creating a
+	 * {@link JsonLocation}.
+	 *
+	 * @return	the stream offset of the current field.
+	 */
+	long getStreamOffset ()
+	{
+		return m_offset;
 	}
 
 	@Override
@@ -390,7 +535,7 @@ public class BsonParser implements CookJsonParser
 		}
 		catch (IOException ex)
 		{
-			throw new JsonParsingException (ex.getMessage (), ex, m_location);
+			throw new JsonParsingException (ex.getMessage (), ex, getLocation ());
 		}
 	}
 
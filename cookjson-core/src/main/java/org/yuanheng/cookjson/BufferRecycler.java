@@ -0,0 +1,190 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded pool of byte and char buffers shared by the parsers and
+ * generators created from a single factory.
+ * <p>
+ * A parser or generator takes its buffers from the pool when it is
+ * created and hands them back on close ().  Each kind of buffer has a
+ * small fixed number of slots.  There is no locking.  A slot is emptied
+ * with getAndSet () and filled with compareAndSet (), and the search
+ * starts at a slot picked from the thread id, so that threads mostly
+ * work on different slots.  When the pool is empty, a new buffer is
+ * allocated.  When the pool is full, or the buffer is too large, the
+ * buffer is simply dropped.  Thus the retained memory is bounded by the
+ * number of slots times {@link #MAX_BUFFER_SIZE}.
+ *
+ * @author	Heng Yuan
+ */
+class BufferRecycler
+{
+	/** The read buffer of UTF8TextJsonParser. */
+	final static int BYTE_READ = 0;
+	/** The append buffer of UTF8TextJsonParser. */
+	final static int BYTE_APPEND = 1;
+	/** The output buffer of UTF8Writer. */
+	final static int BYTE_WRITE = 2;
+	private final static int BYTE_KINDS = 3;
+
+	/** The read buffer of TextJsonParser. */
+	final static int CHAR_READ = 0;
+	/** The append buffer of TextJsonParser. */
+	final static int CHAR_APPEND = 1;
+	/** The output buffer of TextJsonGenerator. */
+	final static int CHAR_WRITE = 2;
+	private final static int CHAR_KINDS = 3;
+
+	/** Default number of slots for each kind.  Must be a power of 2. */
+	final static int DEFAULT_SLOTS = 8;
+	/** Buffers larger than this are not kept. */
+	final static int MAX_BUFFER_SIZE = 65536 + 1;
+
+	private final AtomicReferenceArray<byte[]> m_bytes;
+	private final AtomicReferenceArray<char[]> m_chars;
+	private final int m_mask;
+
+	public BufferRecycler ()
+	{
+		this (DEFAULT_SLOTS);
+	}
+
+	/**
+	 * @param	slots
+	 *			number of slots for each kind of buffers.  Must be a power
+	 *			of 2.
+	 */
+	public BufferRecycler (int slots)
+	{
+		if (slots < 1 || (slots & (slots - 1)) != 0)
+			throw new IllegalArgumentException ("slots must be a power of 2.");
+		m_bytes = new AtomicReferenceArray<byte[]> (BYTE_KINDS * slots);
+		m_chars = new AtomicReferenceArray<char[]> (CHAR_KINDS * slots);
+		m_mask = slots - 1;
+	}
+
+	private int getStripe ()
+	{
+		return (int) Thread.currentThread ().getId () & m_mask;
+	}
+
+	/**
+	 * Gets a byte buffer.  The content of the buffer is undefined.
+	 *
+	 * @param	kind
+	 *			the kind of the buffer.
+	 * @param	minSize
+	 *			the minimum size of the buffer.
+	 * @return	a buffer that is at least minSize long.
+	 */
+	public byte[] allocBytes (int kind, int minSize)
+	{
+		if (minSize > MAX_BUFFER_SIZE)
+			return new byte[minSize];
+		final AtomicReferenceArray<byte[]> bytes = m_bytes;
+		final int base = kind * (m_mask + 1);
+		final int stripe = getStripe ();
+		for (int i = 0; i <= m_mask; ++i)
+		{
+			int slot = base + ((stripe + i) & m_mask);
+			byte[] buf = bytes.getAndSet (slot, null);
+			if (buf == null)
+				continue;
+			if (buf.length >= minSize)
+				return buf;
+			// too small, keep it for someone else.
+			bytes.compareAndSet (slot, null, buf);
+		}
+		return new byte[minSize];
+	}
+
+	/**
+	 * Hands a byte buffer back to the pool.
+	 *
+	 * @param	kind
+	 *			the kind of the buffer.
+	 * @param	buf
+	 *			the buffer.  It must not be used afterward.
+	 */
+	public void releaseBytes (int kind, byte[] buf)
+	{
+		if (buf.length > MAX_BUFFER_SIZE)
+			return;
+		final AtomicReferenceArray<byte[]> bytes = m_bytes;
+		final int base = kind * (m_mask + 1);
+		final int stripe = getStripe ();
+		for (int i = 0; i <= m_mask; ++i)
+		{
+			if (bytes.compareAndSet (base + ((stripe + i) & m_mask), null, buf))
+				return;
+		}
+	}
+
+	/**
+	 * Gets a char buffer.  The content of the buffer is undefined.
+	 *
+	 * @param	kind
+	 *			the kind of the buffer.
+	 * @param	minSize
+	 *			the minimum size of the buffer.
+	 * @return	a buffer that is at least minSize long.
+	 */
+	public char[] allocChars (int kind, int minSize)
+	{
+		if (minSize > MAX_BUFFER_SIZE)
+			return new char[minSize];
+		final AtomicReferenceArray<char[]> chars = m_chars;
+		final int base = kind * (m_mask + 1);
+		final int stripe = getStripe ();
+		for (int i = 0; i <= m_mask; ++i)
+		{
+			int slot = base + ((stripe + i) & m_mask);
+			char[] buf = chars.getAndSet (slot, null);
+			if (buf == null)
+				continue;
+			if (buf.length >= minSize)
+				return buf;
+			// too small, keep it for someone else.
+			chars.compareAndSet (slot, null, buf);
+		}
+		return new char[minSize];
+	}
+
+	/**
+	 * Hands a char buffer back to the pool.
+	 *
+	 * @param	kind
+	 *			the kind of the buffer.
+	 * @param	buf
+	 *			the buffer.  It must not be used afterward.
+	 */
+	public void releaseChars (int kind, char[] buf)
+	{
+		if (buf.length > MAX_BUFFER_SIZE)
+			return;
+		final AtomicReferenceArray<char[]> chars = m_chars;
+		final int base = kind * (m_mask + 1);
+		final int stripe = getStripe ();
+		for (int i = 0; i <= m_mask; ++i)
+		{
+			if (chars.compareAndSet (base + ((stripe + i) & m_mask), null, buf))
+				return;
+		}
+	}
+}
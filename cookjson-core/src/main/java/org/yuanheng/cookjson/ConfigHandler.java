@@ -19,25 +19,35 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Reader;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.Map;
 
 import javax.json.stream.JsonGenerator;
 
 /**
+ * Creates parsers and generators of a format with the settings of a
+ * factory.
+ *
  * @author	Heng Yuan
  */
 interface ConfigHandler
 {
-	public CookJsonParser createParser (Map<String, ?> config, Reader reader);
+	public CookJsonParser createParser (FactorySettings settings, Reader reader);
 
-	public CookJsonParser createParser (Map<String, ?> config, InputStream is);
+	public CookJsonParser createParser (FactorySettings settings, InputStream is);
 
-	public CookJsonParser createParser (Map<String, ?> config, InputStream is, Charset charset);
+	public CookJsonParser createParser (FactorySettings settings, InputStream is, Charset charset);
 
-	public JsonGenerator createGenerator (Map<String, ?> config, Writer writer);
+	public CookJsonParser createParser (FactorySettings settings, FileChannel channel);
 
-	public JsonGenerator createGenerator (Map<String, ?> config, OutputStream os);
+	public CookJsonParser createParser (FactorySettings settings, byte[] buf, int offset, int length);
 
-	public JsonGenerator createGenerator (Map<String, ?> config, OutputStream os, Charset charset);
+	public CookJsonParser createParser (FactorySettings settings, ByteBuffer buffer);
+
+	public JsonGenerator createGenerator (FactorySettings settings, Writer writer);
+
+	public JsonGenerator createGenerator (FactorySettings settings, OutputStream os);
+
+	public JsonGenerator createGenerator (FactorySettings settings, OutputStream os, Charset charset);
 }
@@ -61,4 +61,96 @@ public interface CookJsonParser extends javax.json.stream.JsonParser
      *			or the current value is not binary.
 	 */
 	public byte[] getBytes ();
+
+	/**
+	 * Returns a JSON number as a double.  The result is the same as
+	 * {@code getBigDecimal().doubleValue()}, but intermediate objects
+	 * are avoided whenever possible.
+	 *
+	 * @return	a double for a JSON number.
+	 * @throws	IllegalStateException
+	 *			if the current parser state is not {@code VALUE_NUMBER}
+	 */
+	public double getDouble ();
+
+	/**
+	 * Returns a JSON number as a float.  The result is the same as
+	 * {@code getBigDecimal().floatValue()}, but intermediate objects
+	 * are avoided whenever possible.
+	 *
+	 * @return	a float for a JSON number.
+	 * @throws	IllegalStateException
+	 *			if the current parser state is not {@code VALUE_NUMBER}
+	 */
+	public float getFloat ();
+
+	/**
+	 * If the current event is {@code START_ARRAY} or {@code START_OBJECT},
+	 * skips all the children and moves to the matching {@code END_ARRAY}
+	 * or {@code END_OBJECT} event.  Values in the skipped section are not
+	 * decoded or validated.  For other events, this method does nothing.
+	 */
+	public void skipChildren ();
+
+	/**
+	 * Reads the numbers of the current array into an int array.
+	 * <p>
+	 * This method can be called at {@code START_ARRAY}, or at
+	 * {@code VALUE_NUMBER} of an array element to continue after a
+	 * previous call filled the destination.  Numbers are read until
+	 * {@code length} values are read, the array ends, or a value that is
+	 * not a number is encountered.  Afterwards, the current event is the
+	 * event of the last element read, {@code END_ARRAY}, or the event of
+	 * the non-number value respectively.
+	 * <p>
+	 * Each number is converted as if by {@link #getInt()}.
+	 *
+	 * @param	values
+	 *			the destination array.
+	 * @param	offset
+	 *			the starting position in the destination.
+	 * @param	length
+	 *			the maximum number of values to read.
+	 * @return	the number of values read.
+	 * @throws	IllegalStateException
+	 *			if the current parser state is not {@code START_ARRAY} or
+	 *			{@code VALUE_NUMBER}.
+	 */
+	public int readIntArray (int[] values, int offset, int length);
+
+	/**
+	 * Reads the numbers of the current array into a long array.  See
+	 * {@link #readIntArray(int[], int, int)} for details.  Each number is
+	 * converted as if by {@link #getLong()}.
+	 *
+	 * @param	values
+	 *			the destination array.
+	 * @param	offset
+	 *			the starting position in the destination.
+	 * @param	length
+	 *			the maximum number of values to read.
+	 * @return	the number of values read.
+	 * @throws	IllegalStateException
+	 *			if the current parser state is not {@code START_ARRAY} or
+	 *			{@code VALUE_NUMBER}.
+	 */
+	public int readLongArray (long[] values, int offset, int length);
+
+	/**
+	 * Reads the numbers of the current array into a double array.  See
+	 * {@link #readIntArray(int[], int, int)} for details.  Each number is
+	 * converted as if by {@link #getDouble()}.
+	 *
+	 * @param	values
+	 *			the destination array.
+	 * @param	offset
+	 *			the starting position in the destination.
+	 * @param	length
+	 *			the maximum number of values to read.
+	 * @return	the number of values read.
+	 * @throws	IllegalStateException
+	 *			if the current parser state is not {@code START_ARRAY} or
+	 *			{@code VALUE_NUMBER}.
+	 */
+	public int readDoubleArray (double[] values, int offset, int length);
 }
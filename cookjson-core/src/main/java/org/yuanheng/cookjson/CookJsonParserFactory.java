@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.json.stream.JsonParserFactory;
+
+/**
+ * A JsonParserFactory with additional input sources.
+ *
+ * @author	Heng Yuan
+ */
+public interface CookJsonParserFactory extends JsonParserFactory
+{
+	/**
+	 * Creates a parser that reads the file through memory mapped windows.
+	 * <p>
+	 * The file is read from the current position of the channel.  The
+	 * data is copied from each window into the read buffer of the parser,
+	 * so this saves the read () system calls rather than the copying.
+	 * The channel is closed when the parser is closed.
+	 *
+	 * @param	channel
+	 *			the file channel.
+	 * @return	a parser for the file.
+	 */
+	public CookJsonParser createParser (FileChannel channel);
+
+	/**
+	 * Creates a parser for the data in a byte array.
+	 * <p>
+	 * UTF-8 JSON data is parsed directly from the array if there is a 0
+	 * byte right after the data.  Otherwise, it is read in chunks like a
+	 * stream.  The array should not be modified while the parser is in
+	 * use.
+	 *
+	 * @param	buf
+	 *			the byte array.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 * @return	a parser for the data.
+	 */
+	public CookJsonParser createParser (byte[] buf, int offset, int length);
+
+	/**
+	 * Creates a parser for the remaining data in a ByteBuffer.
+	 * <p>
+	 * For a heap buffer, this method works the same way as
+	 * {@link #createParser(byte[], int, int)} on the backing array.
+	 * The data of a direct or read-only buffer is copied once.  The
+	 * position of the buffer is not changed.
+	 *
+	 * @param	buffer
+	 *			the ByteBuffer.
+	 * @return	a parser for the data.
+	 */
+	public CookJsonParser createParser (ByteBuffer buffer);
+}
@@ -57,6 +57,46 @@ public class CookJsonProvider extends JsonProvider
 	public final static String BINARY_FORMAT_BASE64 = "base64";
 	/** Specifies Hexadecimal format */
 	public final static String BINARY_FORMAT_HEX = "hex";
+	/**
+	 * If the value is true, UTF-8 JSON data in byte arrays and ByteBuffers
+	 * is parsed with {@link IndexedJsonParser}, which first builds an index
+	 * of the structural characters.  It is ignored if comments or
+	 * multiple roots are allowed.
+	 */
+	public final static String STRUCTURAL_INDEX = "structuralIndex";
+	/**
+	 * If the value is true, the generator writes newline delimited JSON
+	 * (JSON Lines), one root value per line.  Pretty printing is ignored.
+	 */
+	public final static String LINE_DELIMITED = "lineDelimited";
+	/**
+	 * If the value is true, text parsers keep reading concatenated root
+	 * values after the first one.  {@code hasNext ()} returns false once
+	 * only white spaces are left.
+	 */
+	public final static String MULTIPLE_ROOTS = "multipleRoots";
+	/**
+	 * If the value is true, UTF-8 JSON data is parsed with
+	 * {@link IndexedJsonParser} in the lazy mode.  Readers and
+	 * {@code getValue ()} return views that decode a member only when it is
+	 * first accessed.  Since the views need the whole document in memory,
+	 * input streams and files are read fully into a byte array first,
+	 * which is sized from {@code InputStream.available ()} or the file
+	 * size.  Readers are parsed as usual.  It is ignored if comments or
+	 * multiple roots are allowed.
+	 *
+	 * @see IndexedJsonParser#setLazyValues(boolean)
+	 */
+	public final static String LAZY_VALUES = "lazyValues";
+	/**
+	 * If set, the text parsers and readers created by a factory share
+	 * string values up to the given length in bytes (or chars) when
+	 * building JsonValues, so that repeated values such as codes and enum
+	 * names are stored only once.  The value is the maximum length, or
+	 * {@code true} for the default of 32.  The shared values are kept in
+	 * a bounded table.
+	 */
+	public final static String STRING_VALUE_CACHE = "stringValueCache";
 
 	// ---- BSON options
 	/** If the value is true, stores BigDecimal / BigInteger as double. */
@@ -76,6 +116,19 @@ public class CookJsonProvider extends JsonProvider
 		return TextJsonConfigHandler.getJsonParser (is);
 	}
 
+	/**
+	 * Creates a parser for JSON text that is already in memory.  The
+	 * text is scanned directly rather than through a Reader.
+	 *
+	 * @param	json
+	 *			the JSON text.
+	 * @return	a JSON parser.
+	 */
+	public JsonParser createParser (String json)
+	{
+		return new TextJsonParser (json);
+	}
+
 	@Override
 	public JsonParserFactory createParserFactory (Map<String, ?> config)
 	{
@@ -112,6 +165,19 @@ public class CookJsonProvider extends JsonProvider
 		return new JsonReaderImpl (TextJsonConfigHandler.getJsonParser (is));
 	}
 
+	/**
+	 * Creates a JSON reader for JSON text that is already in memory.  The
+	 * text is scanned directly rather than through a Reader.
+	 *
+	 * @param	json
+	 *			the JSON text.
+	 * @return	a JSON reader.
+	 */
+	public JsonReader createReader (String json)
+	{
+		return new JsonReaderImpl (new TextJsonParser (json));
+	}
+
 	@Override
 	public JsonWriter createWriter (Writer writer)
 	{
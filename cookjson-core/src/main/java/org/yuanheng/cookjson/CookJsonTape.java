@@ -0,0 +1,422 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.math.BigDecimal;
+
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+
+import org.yuanheng.cookjson.value.*;
+
+/**
+ * A compact, read-only representation of a JSON document.
+ * <p>
+ * The document is stored in a single long array (the tape) and a byte
+ * array of strings, rather than a graph of HashMap, ArrayList and value
+ * objects.  Each entry of the tape has the type in the highest 8 bits,
+ * and a payload in the lower 56 bits.
+ * <ul>
+ * <li>'{' and '[' start an object and an array.  The payload contains the
+ *		number of values in the lower 24 bits of the upper half, and the
+ *		position of the matching end entry in the lower half.</li>
+ * <li>'}' and ']' end an object and an array.  The payload is the
+ *		position of the start entry in the lower half.  For an object,
+ *		the upper half contains the number of entries of its hash index,
+ *		which follows the end entry.</li>
+ * <li>'"' is a string (including key names), and 'b' is binary data.
+ *		The payload is the position in the string area, where the length
+ *		(as a variable length integer) is followed by the UTF-8 bytes.</li>
+ * <li>'i' is an integer that fits in the payload.</li>
+ * <li>'l' and 'd' are a long and a double stored in the next entry.</li>
+ * <li>'D' is a decimal number stored as text in the string area.</li>
+ * <li>'t', 'f' and 'n' are true, false and null.</li>
+ * </ul>
+ * The members of an object are stored as a key name entry followed by the
+ * value entries.  The entries of the same key name share the bytes in the
+ * string area.  If a key name appears more than once in an object, the
+ * earlier key name entries are changed to 'x', so that only the last
+ * value is seen, like the other JsonObject implementations.
+ * <p>
+ * An object with more than {@link #INDEX_MIN_COUNT} members is followed
+ * by an open addressing hash index of its key names, like
+ * {@link CookJsonShape}.  Each entry holds two slots, and each slot
+ * contains the position of the key name relative to the start entry, or
+ * 0 if the slot is empty.
+ * <p>
+ * {@link #getRoot()} returns a {@link javax.json.JsonObject} or
+ * {@link javax.json.JsonArray} view that navigates the tape directly.
+ * The views are small objects created on demand, and the values are
+ * decoded when they are accessed.
+ * <p>
+ * A tape is built with a {@link CookJsonTapeBuilder}.  It is immutable
+ * and can be shared among threads.
+ *
+ * @author	Heng Yuan
+ */
+public final class CookJsonTape
+{
+	final static int START_OBJECT = '{';
+	final static int END_OBJECT = '}';
+	final static int START_ARRAY = '[';
+	final static int END_ARRAY = ']';
+	final static int STRING = '"';
+	final static int BINARY = 'b';
+	final static int INTEGER = 'i';
+	final static int LONG = 'l';
+	final static int DOUBLE = 'd';
+	final static int DECIMAL = 'D';
+	final static int TRUE = 't';
+	final static int FALSE = 'f';
+	final static int NULL = 'n';
+	/** A key name shadowed by a later one of the same name. */
+	final static int SHADOWED_KEY = 'x';
+
+	final static int TYPE_SHIFT = 56;
+	final static long PAYLOAD_MASK = (1L << TYPE_SHIFT) - 1;
+	/** The largest count stored in a start entry. */
+	final static int MAX_COUNT = 0xffffff;
+	/** The smallest integer stored in the payload. */
+	final static long MIN_INTEGER = -(1L << (TYPE_SHIFT - 1));
+	/** The largest integer stored in the payload. */
+	final static long MAX_INTEGER = (1L << (TYPE_SHIFT - 1)) - 1;
+	/** Objects with more members than this have a hash index. */
+	final static int INDEX_MIN_COUNT = 8;
+	/** The largest number of entries of a hash index. */
+	final static int MAX_INDEX_SIZE = 0xffffff;
+
+	private final long[] m_tape;
+	private final byte[] m_strings;
+	private final int m_binaryFormat;
+
+	CookJsonTape (long[] tape, byte[] strings, int binaryFormat)
+	{
+		m_tape = tape;
+		m_strings = strings;
+		m_binaryFormat = binaryFormat;
+	}
+
+	/**
+	 * Gets the root array or object.
+	 *
+	 * @return	a read-only view of the root.
+	 */
+	public JsonStructure getRoot ()
+	{
+		return (JsonStructure) getValue (0);
+	}
+
+	/**
+	 * Gets the approximate heap usage of the tape in bytes.
+	 *
+	 * @return	the approximate heap usage in bytes.
+	 */
+	public long getMemorySize ()
+	{
+		// the object header and the array headers.
+		return 16 + 16 + 8L * m_tape.length + 16 + m_strings.length;
+	}
+
+	int getType (int pos)
+	{
+		return (int) (m_tape[pos] >>> TYPE_SHIFT);
+	}
+
+	long getPayload (int pos)
+	{
+		return m_tape[pos] & PAYLOAD_MASK;
+	}
+
+	/**
+	 * Gets the position of the end entry of an array or object.
+	 *
+	 * @param	pos
+	 *			the position of the start entry.
+	 * @return	the position of the end entry.
+	 */
+	int getEnd (int pos)
+	{
+		return (int) m_tape[pos];
+	}
+
+	/**
+	 * Gets the position after a value.
+	 *
+	 * @param	pos
+	 *			the position of the value.
+	 * @return	the position of the next value, the key name of the next
+	 *			member or the end of the parent.
+	 */
+	int skip (int pos)
+	{
+		switch (getType (pos))
+		{
+			case START_OBJECT:
+			{
+				int end = getEnd (pos);
+				return end + 1 + getIndexSize (end);
+			}
+			case START_ARRAY:
+				return getEnd (pos) + 1;
+			case LONG:
+			case DOUBLE:
+				return pos + 2;
+			default:
+				return pos + 1;
+		}
+	}
+
+	/**
+	 * Gets the number of values in an array or object.
+	 *
+	 * @param	pos
+	 *			the position of the start entry.
+	 * @return	the number of values.
+	 */
+	int getCount (int pos)
+	{
+		int count = (int) (getPayload (pos) >>> 32);
+		if (count < MAX_COUNT)
+			return count;
+		// too many values to be stored in the entry.
+		boolean isObject = getType (pos) == START_OBJECT;
+		count = 0;
+		for (int i = pos + 1, end = getEnd (pos); i < end; i = skip (i))
+		{
+			if (isObject && getType (i++) == SHADOWED_KEY)
+				continue;
+			++count;
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the number of entries of the hash index of an object.
+	 *
+	 * @param	end
+	 *			the position of the end entry of the object.
+	 * @return	the number of entries following the end entry.
+	 */
+	private int getIndexSize (int end)
+	{
+		return (int) (getPayload (end) >>> 32);
+	}
+
+	static int spread (int h)
+	{
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Finds the value of a member in an object.
+	 *
+	 * @param	pos
+	 *			the position of the start entry of the object.
+	 * @param	name
+	 *			the key name.
+	 * @return	the position of the value.  -1 if not found.
+	 */
+	int find (int pos, String name)
+	{
+		final int end = getEnd (pos);
+		final int indexSize = getIndexSize (end);
+		if (indexSize == 0)
+		{
+			for (int i = pos + 1; i < end; i = skip (i + 1))
+			{
+				if (getType (i) == STRING && equals (i, name))
+					return i + 1;
+			}
+			return -1;
+		}
+		final long[] tape = m_tape;
+		final int mask = indexSize * 2 - 1;
+		int slot = spread (name.hashCode ()) & mask;
+		for (;;)
+		{
+			long entry = tape[end + 1 + (slot >> 1)];
+			int offset = (int) ((slot & 1) == 0 ? entry : (entry >>> 32));
+			if (offset == 0)
+				return -1;
+			if (equals (pos + offset, name))
+				return pos + offset + 1;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Gets the length of a string in the string area.
+	 *
+	 * @param	offset
+	 *			the position of the string in the string area.
+	 * @return	the length of the string in bytes.
+	 */
+	private int getLength (int offset)
+	{
+		final byte[] strings = m_strings;
+		int length = 0;
+		int shift = 0;
+		for (;;)
+		{
+			int b = strings[offset++];
+			length |= (b & 0x7f) << shift;
+			if (b >= 0)
+				return length;
+			shift += 7;
+		}
+	}
+
+	/**
+	 * Gets the number of bytes used to store a length.
+	 *
+	 * @param	length
+	 *			the length of a string.
+	 * @return	the number of bytes of the variable length integer.
+	 */
+	static int getLengthSize (int length)
+	{
+		int size = 1;
+		while (length >= 0x80)
+		{
+			length >>>= 7;
+			++size;
+		}
+		return size;
+	}
+
+	String getString (int pos)
+	{
+		int offset = (int) getPayload (pos);
+		int length = getLength (offset);
+		return new String (m_strings, offset + getLengthSize (length), length, BOM.utf8);
+	}
+
+	byte[] getBytes (int pos)
+	{
+		int offset = (int) getPayload (pos);
+		int length = getLength (offset);
+		byte[] bytes = new byte[length];
+		System.arraycopy (m_strings, offset + getLengthSize (length), bytes, 0, length);
+		return bytes;
+	}
+
+	/**
+	 * Checks if the string at a position equals to a String without
+	 * decoding it.
+	 *
+	 * @param	pos
+	 *			the position of a string entry.
+	 * @param	str
+	 *			the String to compare.
+	 * @return	true if the two are the same.
+	 */
+	boolean equals (int pos, String str)
+	{
+		int offset = (int) getPayload (pos);
+		int length = getLength (offset);
+		offset += getLengthSize (length);
+		final byte[] strings = m_strings;
+		final int strLength = str.length ();
+		if (length < strLength)
+			return false;
+		// the ASCII characters are compared directly.
+		int i = 0;
+		for (; i < strLength; ++i)
+		{
+			char ch = str.charAt (i);
+			if (ch >= 0x80)
+				break;
+			if (strings[offset + i] != ch)
+				return false;
+		}
+		if (i == strLength)
+			return length == strLength;
+		return new String (strings, offset, length, BOM.utf8).equals (str);
+	}
+
+	long getLong (int pos)
+	{
+		switch (getType (pos))
+		{
+			case INTEGER:
+				// sign extend the payload.
+				return (m_tape[pos] << (64 - TYPE_SHIFT)) >> (64 - TYPE_SHIFT);
+			case LONG:
+				return m_tape[pos + 1];
+			default:
+				return getDecimal (pos).longValue ();
+		}
+	}
+
+	private BigDecimal getDecimal (int pos)
+	{
+		switch (getType (pos))
+		{
+			case INTEGER:
+			case LONG:
+				return BigDecimal.valueOf (getLong (pos));
+			case DOUBLE:
+				return BigDecimal.valueOf (Double.longBitsToDouble (m_tape[pos + 1]));
+			default:
+				return new BigDecimal (getString (pos));
+		}
+	}
+
+	/**
+	 * Decodes the value at a position.
+	 *
+	 * @param	pos
+	 *			the position of the value.
+	 * @return	the value.  Arrays and objects are views of the tape.
+	 */
+	JsonValue getValue (int pos)
+	{
+		switch (getType (pos))
+		{
+			case START_OBJECT:
+				return new TapeJsonObject (this, pos);
+			case START_ARRAY:
+				return new TapeJsonArray (this, pos);
+			case STRING:
+				return new CookJsonString (getString (pos));
+			case BINARY:
+			{
+				CookJsonBinary v = new CookJsonBinary (getBytes (pos));
+				v.setBinaryFormat (m_binaryFormat);
+				return v;
+			}
+			case INTEGER:
+			case LONG:
+			{
+				long v = getLong (pos);
+				if (v >= Integer.MIN_VALUE && v <= Integer.MAX_VALUE)
+					return CookJsonInt.valueOf ((int) v);
+				return new CookJsonLong (v);
+			}
+			case DOUBLE:
+				return new CookJsonDouble (Double.longBitsToDouble (m_tape[pos + 1]));
+			case DECIMAL:
+				return new CookJsonBigDecimal (getDecimal (pos));
+			case TRUE:
+				return JsonValue.TRUE;
+			case FALSE:
+				return JsonValue.FALSE;
+			case NULL:
+				return JsonValue.NULL;
+		}
+		throw new IllegalStateException ();
+	}
+}
@@ -0,0 +1,401 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * Builds {@link CookJsonTape} from the events of a {@link CookJsonParser}.
+ * <p>
+ * The work buffers are kept between the builds, and each tape gets
+ * arrays of the exact sizes.  A builder is not thread safe, but it can
+ * be used to build any number of tapes.
+ *
+ * @author	Heng Yuan
+ */
+public class CookJsonTapeBuilder
+{
+	private long[] m_tape = new long[256];
+	private int m_size;
+	private byte[] m_strings = new byte[1024];
+	private int m_stringSize;
+	/**
+	 * The positions of the key names in the string area.  The records
+	 * of a document usually share the same key names, so that each name
+	 * is only stored once.
+	 */
+	private final HashMap<String, Integer> m_keys = new HashMap<String, Integer> ();
+
+	/** The tape positions of the arrays and objects not yet ended. */
+	private int[] m_starts = new int[16];
+	/** The number of values in the arrays and objects not yet ended. */
+	private int[] m_counts = new int[16];
+	/** The first key name in m_names of the objects not yet ended. */
+	private int[] m_nameBases = new int[16];
+	private int m_depth;
+
+	/** The key names of the objects not yet ended. */
+	private String[] m_names = new String[16];
+	/** The tape positions of the key names in m_names. */
+	private int[] m_namePositions = new int[16];
+	private int m_nameCount;
+	/**
+	 * The hash index being built for an object.  Each slot contains the
+	 * position in m_names + 1, or 0 if the slot is empty.
+	 */
+	private int[] m_index = new int[16];
+
+	/**
+	 * Reads an array or object from a parser into a tape.
+	 * <p>
+	 * If the parser is at START_ARRAY or START_OBJECT, that array or object
+	 * is read.  If the parser has not been started, the root is read.  The
+	 * parser is left at the matching END_ARRAY or END_OBJECT.
+	 *
+	 * @param	p
+	 *			the parser.
+	 * @return	the tape.
+	 * @throws	IllegalStateException
+	 *			if the parser is not at the start of an array or object.
+	 */
+	public CookJsonTape build (CookJsonParser p)
+	{
+		Event e = p.getEvent ();
+		if (e == null)
+			e = p.next ();
+		if (e != Event.START_ARRAY && e != Event.START_OBJECT)
+			throw new IllegalStateException ();
+		m_size = 0;
+		m_stringSize = 0;
+		m_depth = 0;
+		m_nameCount = 0;
+		m_keys.clear ();
+		int binaryFormat = BinaryFormat.BINARY_FORMAT_BASE64;
+		if (p instanceof BsonParser)
+			binaryFormat = ((BsonParser) p).getBinaryFormat ();
+
+		for (;;)
+		{
+			switch (e)
+			{
+				case START_ARRAY:
+					addValue ();
+					push (CookJsonTape.START_ARRAY);
+					break;
+				case START_OBJECT:
+					addValue ();
+					push (CookJsonTape.START_OBJECT);
+					break;
+				case END_ARRAY:
+				case END_OBJECT:
+					pop (e == Event.END_ARRAY ? CookJsonTape.END_ARRAY : CookJsonTape.END_OBJECT);
+					if (m_depth == 0)
+						return new CookJsonTape (Arrays.copyOf (m_tape, m_size), Arrays.copyOf (m_strings, m_stringSize), binaryFormat);
+					break;
+				case KEY_NAME:
+					addKey (p.getString ());
+					break;
+				case VALUE_STRING:
+					addValue ();
+					if (p.isBinary ())
+						addBytes (p.getBytes ());
+					else
+						addString (CookJsonTape.STRING, p.getString ());
+					break;
+				case VALUE_NUMBER:
+					addValue ();
+					addNumber (p);
+					break;
+				case VALUE_TRUE:
+					addValue ();
+					add (CookJsonTape.TRUE, 0);
+					break;
+				case VALUE_FALSE:
+					addValue ();
+					add (CookJsonTape.FALSE, 0);
+					break;
+				case VALUE_NULL:
+					addValue ();
+					add (CookJsonTape.NULL, 0);
+					break;
+			}
+			e = p.next ();
+		}
+	}
+
+	private void add (int type, long payload)
+	{
+		if (m_size == m_tape.length)
+			m_tape = Arrays.copyOf (m_tape, m_size * 2);
+		m_tape[m_size++] = ((long) type << CookJsonTape.TYPE_SHIFT) | (payload & CookJsonTape.PAYLOAD_MASK);
+	}
+
+	private void addRaw (long value)
+	{
+		if (m_size == m_tape.length)
+			m_tape = Arrays.copyOf (m_tape, m_size * 2);
+		m_tape[m_size++] = value;
+	}
+
+	/**
+	 * Counts a value in the current array or object.
+	 */
+	private void addValue ()
+	{
+		if (m_depth > 0)
+			++m_counts[m_depth - 1];
+	}
+
+	private void push (int type)
+	{
+		if (m_depth == m_starts.length)
+		{
+			m_starts = Arrays.copyOf (m_starts, m_depth * 2);
+			m_counts = Arrays.copyOf (m_counts, m_depth * 2);
+			m_nameBases = Arrays.copyOf (m_nameBases, m_depth * 2);
+		}
+		m_starts[m_depth] = m_size;
+		m_counts[m_depth] = 0;
+		m_nameBases[m_depth] = m_nameCount;
+		++m_depth;
+		// the start entry is filled at the end.
+		add (type, 0);
+	}
+
+	private void pop (int type)
+	{
+		--m_depth;
+		int start = m_starts[m_depth];
+		int count = m_counts[m_depth];
+		if (type != CookJsonTape.END_OBJECT || count == 0)
+		{
+			m_tape[start] |= ((long) Math.min (count, CookJsonTape.MAX_COUNT) << 32) | m_size;
+			add (type, start);
+			return;
+		}
+
+		int base = m_nameBases[m_depth];
+		int slots = 4;
+		while (slots < count * 2)
+			slots <<= 1;
+		count -= indexKeys (base, count, slots);
+		m_nameCount = base;
+		int indexSize = 0;
+		if (count > CookJsonTape.INDEX_MIN_COUNT && (slots >> 1) <= CookJsonTape.MAX_INDEX_SIZE)
+			indexSize = slots >> 1;
+		m_tape[start] |= ((long) Math.min (count, CookJsonTape.MAX_COUNT) << 32) | m_size;
+		add (type, ((long) indexSize << 32) | start);
+
+		// each entry of the index contains two slots.
+		final int[] index = m_index;
+		for (int i = 0; i < slots && indexSize > 0; i += 2)
+		{
+			long low = index[i] == 0 ? 0 : m_namePositions[base + index[i] - 1] - start;
+			long high = index[i + 1] == 0 ? 0 : m_namePositions[base + index[i + 1] - 1] - start;
+			addRaw (low | (high << 32));
+		}
+	}
+
+	/**
+	 * Builds the hash index of the key names of an object in m_index.  A
+	 * key name that appears again later in the object is changed to
+	 * {@link CookJsonTape#SHADOWED_KEY}, so that the last value is used.
+	 *
+	 * @param	base
+	 *			the position of the first key name in m_names.
+	 * @param	count
+	 *			the number of key names.
+	 * @param	slots
+	 *			the number of slots of the index.  A power of 2.
+	 * @return	the number of shadowed key names.
+	 */
+	private int indexKeys (int base, int count, int slots)
+	{
+		if (m_index.length < slots)
+			m_index = new int[slots];
+		else
+			Arrays.fill (m_index, 0, slots, 0);
+		final int[] index = m_index;
+		final String[] names = m_names;
+		final int mask = slots - 1;
+		int shadowed = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			String name = names[base + i];
+			int slot = CookJsonTape.spread (name.hashCode ()) & mask;
+			for (;;)
+			{
+				int j = index[slot] - 1;
+				if (j < 0)
+				{
+					index[slot] = i + 1;
+					break;
+				}
+				if (names[base + j].equals (name))
+				{
+					int pos = m_namePositions[base + j];
+					m_tape[pos] = ((long) CookJsonTape.SHADOWED_KEY << CookJsonTape.TYPE_SHIFT) | (m_tape[pos] & CookJsonTape.PAYLOAD_MASK);
+					index[slot] = i + 1;
+					++shadowed;
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+		}
+		return shadowed;
+	}
+
+	private void addNumber (CookJsonParser p)
+	{
+		if (p.isIntegralNumber ())
+		{
+			long v = p.getLong ();
+			// a number that does not fit in a long is not the same as a
+			// double of it.
+			if ((double) v == p.getDouble ())
+			{
+				if (v >= CookJsonTape.MIN_INTEGER && v <= CookJsonTape.MAX_INTEGER)
+					add (CookJsonTape.INTEGER, v);
+				else
+				{
+					add (CookJsonTape.LONG, 0);
+					addRaw (v);
+				}
+				return;
+			}
+		}
+		else if (p instanceof BsonParser)
+		{
+			add (CookJsonTape.DOUBLE, 0);
+			addRaw (Double.doubleToRawLongBits (p.getDouble ()));
+			return;
+		}
+		addString (CookJsonTape.DECIMAL, p.getBigDecimal ().toString ());
+	}
+
+	private void ensureStrings (int size)
+	{
+		if (m_stringSize + size > m_strings.length)
+			m_strings = Arrays.copyOf (m_strings, Math.max (m_strings.length * 2, m_stringSize + size));
+	}
+
+	private void addLength (int length)
+	{
+		final byte[] strings = m_strings;
+		int pos = m_stringSize;
+		while (length >= 0x80)
+		{
+			strings[pos++] = (byte) (length | 0x80);
+			length >>>= 7;
+		}
+		strings[pos++] = (byte) length;
+		m_stringSize = pos;
+	}
+
+	private void addBytes (byte[] bytes)
+	{
+		ensureStrings (5 + bytes.length);
+		add (CookJsonTape.BINARY, m_stringSize);
+		addLength (bytes.length);
+		System.arraycopy (bytes, 0, m_strings, m_stringSize, bytes.length);
+		m_stringSize += bytes.length;
+	}
+
+	private void addKey (String name)
+	{
+		if (m_nameCount == m_names.length)
+		{
+			m_names = Arrays.copyOf (m_names, m_nameCount * 2);
+			m_namePositions = Arrays.copyOf (m_namePositions, m_nameCount * 2);
+		}
+		m_names[m_nameCount] = name;
+		m_namePositions[m_nameCount] = m_size;
+		++m_nameCount;
+
+		Integer offset = m_keys.get (name);
+		if (offset != null)
+		{
+			add (CookJsonTape.STRING, offset);
+			return;
+		}
+		m_keys.put (name, m_stringSize);
+		addString (CookJsonTape.STRING, name);
+	}
+
+	/**
+	 * Encodes a String in UTF-8 into the string area.  An unpaired
+	 * surrogate is encoded as '?', like {@link String#getBytes(java.nio.charset.Charset)}.
+	 */
+	private void addString (int type, String str)
+	{
+		final int strLength = str.length ();
+		int length = 0;
+		for (int i = 0; i < strLength; ++i)
+		{
+			char ch = str.charAt (i);
+			if (ch < 0x80)
+				++length;
+			else if (ch < 0x800)
+				length += 2;
+			else if (Character.isHighSurrogate (ch) && i + 1 < strLength && Character.isLowSurrogate (str.charAt (i + 1)))
+			{
+				length += 4;
+				++i;
+			}
+			else if (ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE)
+				++length;
+			else
+				length += 3;
+		}
+		ensureStrings (5 + length);
+		add (type, m_stringSize);
+		addLength (length);
+
+		final byte[] strings = m_strings;
+		int pos = m_stringSize;
+		for (int i = 0; i < strLength; ++i)
+		{
+			char ch = str.charAt (i);
+			if (ch < 0x80)
+				strings[pos++] = (byte) ch;
+			else if (ch < 0x800)
+			{
+				strings[pos++] = (byte) (0xc0 | (ch >> 6));
+				strings[pos++] = (byte) (0x80 | (ch & 0x3f));
+			}
+			else if (Character.isHighSurrogate (ch) && i + 1 < strLength && Character.isLowSurrogate (str.charAt (i + 1)))
+			{
+				int cp = Character.toCodePoint (ch, str.charAt (++i));
+				strings[pos++] = (byte) (0xf0 | (cp >> 18));
+				strings[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+				strings[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+				strings[pos++] = (byte) (0x80 | (cp & 0x3f));
+			}
+			else if (ch >= Character.MIN_SURROGATE && ch <= Character.MAX_SURROGATE)
+				strings[pos++] = '?';
+			else
+			{
+				strings[pos++] = (byte) (0xe0 | (ch >> 12));
+				strings[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+				strings[pos++] = (byte) (0x80 | (ch & 0x3f));
+			}
+		}
+		m_stringSize = pos;
+	}
+}
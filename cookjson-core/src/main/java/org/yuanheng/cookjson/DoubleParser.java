@@ -0,0 +1,498 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.math.BigInteger;
+
+/**
+ * Converts JSON number tokens to double and float values without creating
+ * an intermediate String or BigDecimal.
+ * <p>
+ * The token is first scanned into a 64-bit decimal significand and a
+ * decimal exponent.  If both are small enough to be exactly represented
+ * in a double, the value is computed with a single multiplication or
+ * division (Clinger's fast path).  Otherwise, the Eisel-Lemire algorithm
+ * is used.  In the rare cases where neither produces a correctly rounded
+ * result, NaN is returned and the caller should fall back to
+ * Double.parseDouble () or Float.parseFloat ().
+ * <p>
+ * The algorithm is described in
+ * 	Lemire, Daniel. "Number Parsing at a Gigabyte per Second."
+ * 	Software: Practice and Experience 51.8 (2021): 1700-1727.
+ * <p>
+ * The code here closely follows the implementation in Go's strconv package.
+ *
+ * @author	Heng Yuan
+ */
+class DoubleParser
+{
+	private final static int MIN_EXP10 = -348;
+	private final static int MAX_EXP10 = 347;
+	/** Max number of significant digits that fit in an unsigned 64-bit value. */
+	private final static int MAX_DIGITS = 19;
+	/** Exponents larger than this are all out of range anyways. */
+	private final static int EXP_LIMIT = 100000;
+
+	/**
+	 * The 128-bit approximations of 10^q, normalized such that the most
+	 * significant bit is set.  HI contains the upper 64 bits.
+	 */
+	private final static long[] POW10_HI = new long[MAX_EXP10 - MIN_EXP10 + 1];
+	private final static long[] POW10_LO = new long[MAX_EXP10 - MIN_EXP10 + 1];
+
+	private final static double[] EXACT_POW10 =
+	{
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	static
+	{
+		// Generate the table the same way as fast_float's table generation
+		// script.  Positive powers are truncated and negative powers are
+		// rounded up.
+		final BigInteger five = BigInteger.valueOf (5);
+		for (int q = MIN_EXP10; q <= MAX_EXP10; ++q)
+		{
+			BigInteger c;
+			if (q >= 0)
+			{
+				BigInteger power5 = five.pow (q);
+				int bits = power5.bitLength ();
+				if (bits <= 128)
+					c = power5.shiftLeft (128 - bits);
+				else
+					c = power5.shiftRight (bits - 128);
+			}
+			else
+			{
+				BigInteger power5 = five.pow (-q);
+				// 5^-q is not a power of 2, so 2^(z - 1) < 5^-q < 2^z
+				int z = power5.bitLength ();
+				if (q >= -27)
+				{
+					c = BigInteger.ONE.shiftLeft (z + 127).divide (power5).add (BigInteger.ONE);
+				}
+				else
+				{
+					c = BigInteger.ONE.shiftLeft (2 * z + 128).divide (power5).add (BigInteger.ONE);
+					int bits = c.bitLength ();
+					if (bits > 128)
+						c = c.shiftRight (bits - 128);
+				}
+			}
+			POW10_HI[q - MIN_EXP10] = c.shiftRight (64).longValue ();
+			POW10_LO[q - MIN_EXP10] = c.longValue ();
+		}
+	}
+
+	/** The unsigned decimal significand. */
+	private long m_mantissa;
+	/** The decimal exponent. */
+	private int m_exp10;
+	private boolean m_negative;
+	/** Non-zero digits were dropped from the significand. */
+	private boolean m_truncated;
+
+	/**
+	 * Scans a number token that has already been validated by the parser.
+	 *
+	 * @param	buf
+	 *			the buffer containing the token.
+	 * @param	start
+	 *			the starting position.
+	 * @param	len
+	 *			the length of the token.
+	 */
+	public void scan (byte[] buf, int start, int len)
+	{
+		final int end = start + len;
+		int pos = start;
+		long mantissa = 0;
+		int digits = 0;
+		int exp10 = 0;
+		boolean truncated = false;
+
+		final boolean negative = buf[pos] == '-';
+		if (negative)
+			++pos;
+
+		for (; pos < end; ++pos)
+		{
+			int d = buf[pos] - '0';
+			if (d < 0 || d > 9)
+				break;
+			if (digits < MAX_DIGITS)
+			{
+				mantissa = mantissa * 10 + d;
+				if (mantissa != 0)
+					++digits;
+			}
+			else
+			{
+				++exp10;
+				if (d != 0)
+					truncated = true;
+			}
+		}
+		if (pos < end && buf[pos] == '.')
+		{
+			for (++pos; pos < end; ++pos)
+			{
+				int d = buf[pos] - '0';
+				if (d < 0 || d > 9)
+					break;
+				if (digits < MAX_DIGITS)
+				{
+					mantissa = mantissa * 10 + d;
+					if (mantissa != 0)
+						++digits;
+					--exp10;
+				}
+				else if (d != 0)
+					truncated = true;
+			}
+		}
+		if (pos < end)
+		{
+			// exponent
+			++pos;
+			boolean negativeExp = false;
+			if (buf[pos] == '-')
+			{
+				negativeExp = true;
+				++pos;
+			}
+			else if (buf[pos] == '+')
+				++pos;
+			int exp = 0;
+			for (; pos < end; ++pos)
+			{
+				if (exp < EXP_LIMIT)
+					exp = exp * 10 + (buf[pos] - '0');
+			}
+			exp10 += negativeExp ? -exp : exp;
+		}
+
+		m_mantissa = mantissa;
+		m_exp10 = exp10;
+		m_negative = negative;
+		m_truncated = truncated;
+	}
+
+	/**
+	 * Scans a number token that has already been validated by the parser.
+	 *
+	 * @param	buf
+	 *			the buffer containing the token.
+	 * @param	start
+	 *			the starting position.
+	 * @param	len
+	 *			the length of the token.
+	 */
+	public void scan (char[] buf, int start, int len)
+	{
+		final int end = start + len;
+		int pos = start;
+		long mantissa = 0;
+		int digits = 0;
+		int exp10 = 0;
+		boolean truncated = false;
+
+		final boolean negative = buf[pos] == '-';
+		if (negative)
+			++pos;
+
+		for (; pos < end; ++pos)
+		{
+			int d = buf[pos] - '0';
+			if (d < 0 || d > 9)
+				break;
+			if (digits < MAX_DIGITS)
+			{
+				mantissa = mantissa * 10 + d;
+				if (mantissa != 0)
+					++digits;
+			}
+			else
+			{
+				++exp10;
+				if (d != 0)
+					truncated = true;
+			}
+		}
+		if (pos < end && buf[pos] == '.')
+		{
+			for (++pos; pos < end; ++pos)
+			{
+				int d = buf[pos] - '0';
+				if (d < 0 || d > 9)
+					break;
+				if (digits < MAX_DIGITS)
+				{
+					mantissa = mantissa * 10 + d;
+					if (mantissa != 0)
+						++digits;
+					--exp10;
+				}
+				else if (d != 0)
+					truncated = true;
+			}
+		}
+		if (pos < end)
+		{
+			// exponent
+			++pos;
+			boolean negativeExp = false;
+			if (buf[pos] == '-')
+			{
+				negativeExp = true;
+				++pos;
+			}
+			else if (buf[pos] == '+')
+				++pos;
+			int exp = 0;
+			for (; pos < end; ++pos)
+			{
+				if (exp < EXP_LIMIT)
+					exp = exp * 10 + (buf[pos] - '0');
+			}
+			exp10 += negativeExp ? -exp : exp;
+		}
+
+		m_mantissa = mantissa;
+		m_exp10 = exp10;
+		m_negative = negative;
+		m_truncated = truncated;
+	}
+
+	/**
+	 * Converts the scanned number to double.
+	 *
+	 * @return	the correctly rounded double value, or NaN if the value
+	 *			cannot be computed quickly.
+	 */
+	public double toDouble ()
+	{
+		final long mantissa = m_mantissa;
+		final int exp10 = m_exp10;
+		if (!m_truncated)
+		{
+			// Clinger's fast path.  Both the mantissa and the power of 10
+			// are exact, so a single operation gives the correct rounding.
+			if (mantissa >= 0 && mantissa <= (1L << 53) &&
+				exp10 >= -22 && exp10 <= 22)
+			{
+				double d = mantissa;
+				if (exp10 < 0)
+					d /= EXACT_POW10[-exp10];
+				else
+					d *= EXACT_POW10[exp10];
+				return m_negative ? -d : d;
+			}
+			return eiselLemire64 (mantissa, exp10, m_negative);
+		}
+		// The actual value lies between mantissa and mantissa + 1.
+		double d = eiselLemire64 (mantissa, exp10, m_negative);
+		if (d != eiselLemire64 (mantissa + 1, exp10, m_negative))
+			return Double.NaN;
+		return d;
+	}
+
+	/**
+	 * Converts the scanned number to float.
+	 *
+	 * @return	the correctly rounded float value, or NaN if the value
+	 *			cannot be computed quickly.
+	 */
+	public float toFloat ()
+	{
+		final long mantissa = m_mantissa;
+		final int exp10 = m_exp10;
+		float f = eiselLemire32 (mantissa, exp10, m_negative);
+		if (m_truncated && f != eiselLemire32 (mantissa + 1, exp10, m_negative))
+			return Float.NaN;
+		return f;
+	}
+
+	/**
+	 * Computes the upper 64 bits of the unsigned 128-bit product.
+	 */
+	static long multiplyHigh (long a, long b)
+	{
+		final long mask = 0xffffffffL;
+		long aLo = a & mask;
+		long aHi = a >>> 32;
+		long bLo = b & mask;
+		long bHi = b >>> 32;
+		long loLo = aLo * bLo;
+		long hiLo = aHi * bLo;
+		long loHi = aLo * bHi;
+		long hiHi = aHi * bHi;
+		long cross = (loLo >>> 32) + (hiLo & mask) + loHi;
+		return hiHi + (hiLo >>> 32) + (cross >>> 32);
+	}
+
+	/**
+	 * Unsigned comparison.
+	 */
+	private static boolean lessThan (long a, long b)
+	{
+		return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE);
+	}
+
+	/**
+	 * Computes mantissa * 10^exp10 as a double using the Eisel-Lemire
+	 * algorithm.
+	 *
+	 * @param	mantissa
+	 *			an unsigned 64-bit significand.
+	 * @param	exp10
+	 *			the decimal exponent.
+	 * @param	negative
+	 *			the sign of the number.
+	 * @return	the correctly rounded double value, or NaN if the result
+	 *			could not be determined.
+	 */
+	static double eiselLemire64 (long mantissa, int exp10, boolean negative)
+	{
+		if (mantissa == 0)
+			return negative ? -0.0 : 0.0;
+		if (exp10 < MIN_EXP10 || exp10 > MAX_EXP10)
+			return Double.NaN;
+
+		// normalization
+		int clz = Long.numberOfLeadingZeros (mantissa);
+		mantissa <<= clz;
+		long retExp2 = ((217706 * exp10) >> 16) + 64 + 1023 - clz;
+
+		// multiplication
+		final int index = exp10 - MIN_EXP10;
+		long xHi = multiplyHigh (mantissa, POW10_HI[index]);
+		long xLo = mantissa * POW10_HI[index];
+
+		// wider approximation
+		if ((xHi & 0x1ff) == 0x1ff && lessThan (xLo + mantissa, mantissa))
+		{
+			long yHi = multiplyHigh (mantissa, POW10_LO[index]);
+			long yLo = mantissa * POW10_LO[index];
+			long mergedHi = xHi;
+			long mergedLo = xLo + yHi;
+			if (lessThan (mergedLo, xLo))
+				++mergedHi;
+			if ((mergedHi & 0x1ff) == 0x1ff && mergedLo + 1 == 0 && lessThan (yLo + mantissa, mantissa))
+				return Double.NaN;
+			xHi = mergedHi;
+			xLo = mergedLo;
+		}
+
+		// shifting to 54 bits
+		int msb = (int) (xHi >>> 63);
+		long retMantissa = xHi >>> (msb + 9);
+		retExp2 -= 1 ^ msb;
+
+		// half-way ambiguity
+		if (xLo == 0 && (xHi & 0x1ff) == 0 && (retMantissa & 3) == 1)
+			return Double.NaN;
+
+		// from 54 to 53 bits
+		retMantissa += retMantissa & 1;
+		retMantissa >>>= 1;
+		if ((retMantissa >>> 53) > 0)
+		{
+			retMantissa >>>= 1;
+			++retExp2;
+		}
+		// subnormal, infinity and NaN are left to the slow path.
+		if (retExp2 <= 0 || retExp2 >= 0x7ff)
+			return Double.NaN;
+		long retBits = (retExp2 << 52) | (retMantissa & 0x000fffffffffffffL);
+		if (negative)
+			retBits |= 0x8000000000000000L;
+		return Double.longBitsToDouble (retBits);
+	}
+
+	/**
+	 * Computes mantissa * 10^exp10 as a float using the Eisel-Lemire
+	 * algorithm.
+	 *
+	 * @param	mantissa
+	 *			an unsigned 64-bit significand.
+	 * @param	exp10
+	 *			the decimal exponent.
+	 * @param	negative
+	 *			the sign of the number.
+	 * @return	the correctly rounded float value, or NaN if the result
+	 *			could not be determined.
+	 */
+	static float eiselLemire32 (long mantissa, int exp10, boolean negative)
+	{
+		if (mantissa == 0)
+			return negative ? -0.0f : 0.0f;
+		if (exp10 < MIN_EXP10 || exp10 > MAX_EXP10)
+			return Float.NaN;
+
+		// normalization
+		int clz = Long.numberOfLeadingZeros (mantissa);
+		mantissa <<= clz;
+		long retExp2 = ((217706 * exp10) >> 16) + 64 + 127 - clz;
+
+		// multiplication
+		final int index = exp10 - MIN_EXP10;
+		long xHi = multiplyHigh (mantissa, POW10_HI[index]);
+		long xLo = mantissa * POW10_HI[index];
+
+		// wider approximation
+		if ((xHi & 0x3fffffffffL) == 0x3fffffffffL && lessThan (xLo + mantissa, mantissa))
+		{
+			long yHi = multiplyHigh (mantissa, POW10_LO[index]);
+			long yLo = mantissa * POW10_LO[index];
+			long mergedHi = xHi;
+			long mergedLo = xLo + yHi;
+			if (lessThan (mergedLo, xLo))
+				++mergedHi;
+			if ((mergedHi & 0x3fffffffffL) == 0x3fffffffffL && mergedLo + 1 == 0 && lessThan (yLo + mantissa, mantissa))
+				return Float.NaN;
+			xHi = mergedHi;
+			xLo = mergedLo;
+		}
+
+		// shifting to 25 bits
+		int msb = (int) (xHi >>> 63);
+		long retMantissa = xHi >>> (msb + 38);
+		retExp2 -= 1 ^ msb;
+
+		// half-way ambiguity
+		if (xLo == 0 && (xHi & 0x3fffffffffL) == 0 && (retMantissa & 3) == 1)
+			return Float.NaN;
+
+		// from 25 to 24 bits
+		retMantissa += retMantissa & 1;
+		retMantissa >>>= 1;
+		if ((retMantissa >>> 24) > 0)
+		{
+			retMantissa >>>= 1;
+			++retExp2;
+		}
+		// subnormal, infinity and NaN are left to the slow path.
+		if (retExp2 <= 0 || retExp2 >= 0xff)
+			return Float.NaN;
+		int retBits = (int) ((retExp2 << 23) | (retMantissa & 0x007fffffL));
+		if (negative)
+			retBits |= 0x80000000;
+		return Float.intBitsToFloat (retBits);
+	}
+}
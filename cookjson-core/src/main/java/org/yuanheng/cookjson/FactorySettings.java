@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.util.Map;
+
+import javax.json.stream.JsonGenerator;
+
+/**
+ * The options of a factory, resolved once from its configuration map so
+ * that creating a parser or a generator does not look up the map again.
+ * <p>
+ * It also holds the {@link BufferRecycler} shared by the parsers and
+ * generators created from the factory.
+ *
+ * @author	Heng Yuan
+ */
+final class FactorySettings
+{
+	/** @see CookJsonProvider#COMMENT */
+	final boolean allowComments;
+	/** @see CookJsonProvider#MULTIPLE_ROOTS */
+	final boolean multipleRoots;
+	/**
+	 * False if comments or multiple roots are allowed.
+	 *
+	 * @see CookJsonProvider#STRUCTURAL_INDEX
+	 */
+	final boolean structuralIndex;
+	/**
+	 * False if comments or multiple roots are allowed.
+	 *
+	 * @see CookJsonProvider#LAZY_VALUES
+	 */
+	final boolean lazyValues;
+	/**
+	 * The maximum length of shared string values.  0 if disabled.
+	 *
+	 * @see CookJsonProvider#STRING_VALUE_CACHE
+	 */
+	final int stringValueCache;
+	/** @see JsonGenerator#PRETTY_PRINTING */
+	final boolean prettyPrinting;
+	/** @see CookJsonProvider#LINE_DELIMITED */
+	final boolean lineDelimited;
+	/** @see CookJsonProvider#BINARY_FORMAT */
+	final int binaryFormat;
+	/** @see CookJsonProvider#ROOT_AS_ARRAY */
+	final boolean rootAsArray;
+	/** @see CookJsonProvider#USE_DOUBLE */
+	final boolean useDouble;
+
+	/** Buffers shared by the parsers and generators of the factory. */
+	final BufferRecycler recycler = new BufferRecycler ();
+
+	public FactorySettings (Map<String, ?> config)
+	{
+		allowComments = isTrue (config, CookJsonProvider.COMMENT);
+		multipleRoots = isTrue (config, CookJsonProvider.MULTIPLE_ROOTS);
+		lazyValues = isTrue (config, CookJsonProvider.LAZY_VALUES) && !allowComments && !multipleRoots;
+		structuralIndex = (isTrue (config, CookJsonProvider.STRUCTURAL_INDEX) && !allowComments && !multipleRoots) || lazyValues;
+		stringValueCache = getMaxLength (config, CookJsonProvider.STRING_VALUE_CACHE, StringValueTable.DEFAULT_MAX_LENGTH);
+		prettyPrinting = isTrue (config, JsonGenerator.PRETTY_PRINTING);
+		lineDelimited = isTrue (config, CookJsonProvider.LINE_DELIMITED);
+
+		int format = BinaryFormat.BINARY_FORMAT_BASE64;
+		Object obj = config.get (CookJsonProvider.BINARY_FORMAT);
+		if (obj != null && CookJsonProvider.BINARY_FORMAT_HEX.equals (obj.toString ()))
+			format = BinaryFormat.BINARY_FORMAT_HEX;
+		binaryFormat = format;
+
+		rootAsArray = isTrue (config, CookJsonProvider.ROOT_AS_ARRAY);
+		useDouble = isTrue (config, CookJsonProvider.USE_DOUBLE);
+	}
+
+	private static boolean isTrue (Map<String, ?> config, String key)
+	{
+		Object obj = config.get (key);
+		return obj != null && "true".equals (obj.toString ());
+	}
+
+	/**
+	 * Gets a length option that is either a number or true.
+	 *
+	 * @return	the length.  0 if the option is not set or not valid.
+	 */
+	private static int getMaxLength (Map<String, ?> config, String key, int defaultLength)
+	{
+		Object obj = config.get (key);
+		if (obj == null)
+			return 0;
+		String str = obj.toString ();
+		if ("true".equals (str))
+			return defaultLength;
+		try
+		{
+			return Math.max (0, Integer.parseInt (str));
+		}
+		catch (NumberFormatException ex)
+		{
+			return 0;
+		}
+	}
+}
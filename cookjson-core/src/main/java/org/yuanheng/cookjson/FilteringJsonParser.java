@@ -0,0 +1,400 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+
+import javax.json.JsonValue;
+import javax.json.stream.JsonLocation;
+
+/**
+ * A parser that passes through the events of another parser, but only
+ * for the parts of the document selected by path patterns.
+ * <p>
+ * Each pattern is a {@link PathPattern}.  A pattern starting with '!'
+ * excludes the matching values, including the key names.  Otherwise,
+ * it includes the matching values.  If there are no include patterns,
+ * everything not excluded is included.  Exclusion takes precedence over
+ * inclusion.  For example, with {@code "$.user.*"} and
+ * {@code "!$.user.password"}, everything under user except the password
+ * is kept.
+ * <p>
+ * The root value is always kept, and so are the arrays and objects on
+ * the way to the included paths, even if nothing inside them ends up
+ * matching.  Thus the events always form a well formed document.
+ * <p>
+ * The values filtered out are skipped with the underlying parser's
+ * {@link CookJsonParser#skipChildren()}.  UTF8TextJsonParser skips them
+ * at the byte level, and BsonParser skips over them using the lengths
+ * of the documents.  Since this class is a CookJsonParser itself, a
+ * filtered document can be given directly to
+ * {@link Utils#convert(javax.json.stream.JsonParser, javax.json.stream.JsonGenerator)}
+ * or materialized with {@link Utils#getStructure(CookJsonParser)}.
+ *
+ * @author	Heng Yuan
+ */
+public class FilteringJsonParser implements CookJsonParser
+{
+	/**
+	 * The state of an array or object that has been started.
+	 */
+	private final static class Level
+	{
+		/** The value is included by an include pattern. */
+		boolean includeAll;
+		/** The include patterns partially matched so far. */
+		final int[] includes;
+		int includeCount;
+		/** The exclude patterns partially matched so far. */
+		final int[] excludes;
+		int excludeCount;
+		/** The index of the next element in an array. */
+		int index;
+
+		Level (int includes, int excludes)
+		{
+			this.includes = new int[includes];
+			this.excludes = new int[excludes];
+		}
+	}
+
+	private final CookJsonParser m_p;
+	private final PathPattern[] m_includes;
+	private final PathPattern[] m_excludes;
+
+	private final ArrayList<Level> m_levels = new ArrayList<Level> ();
+	/** The depth of the innermost array or object.  -1 if outside the root. */
+	private int m_depth = -1;
+
+	private Event m_event;
+	/** The key name of the current KEY_NAME event. */
+	private String m_name;
+	/**
+	 * The event of the value after the current KEY_NAME event.  The
+	 * underlying parser is already at this event.
+	 */
+	private Event m_pending;
+
+	/**
+	 * @param	p
+	 *			the underlying parser.
+	 * @param	patterns
+	 *			the path patterns.  Exclude patterns start with '!'.
+	 * @throws	IllegalArgumentException
+	 *			if a pattern is invalid or not supported, or if it
+	 *			excludes the root.
+	 */
+	public FilteringJsonParser (CookJsonParser p, String... patterns)
+	{
+		m_p = p;
+		ArrayList<PathPattern> includes = new ArrayList<PathPattern> ();
+		ArrayList<PathPattern> excludes = new ArrayList<PathPattern> ();
+		for (String pattern : patterns)
+		{
+			if (pattern.startsWith ("!"))
+			{
+				PathPattern path = new PathPattern (pattern.substring (1));
+				if (path.size () == 0)
+					throw new IllegalArgumentException ("Invalid path " + pattern + ": the root cannot be excluded.");
+				excludes.add (path);
+			}
+			else
+				includes.add (new PathPattern (pattern));
+		}
+		m_includes = includes.toArray (new PathPattern[includes.size ()]);
+		m_excludes = excludes.toArray (new PathPattern[excludes.size ()]);
+	}
+
+	private Level getLevel (int depth)
+	{
+		while (m_levels.size () <= depth)
+			m_levels.add (new Level (m_includes.length, m_excludes.length));
+		return m_levels.get (depth);
+	}
+
+	private void startRoot ()
+	{
+		Level root = getLevel (0);
+		root.includeAll = m_includes.length == 0;
+		root.includeCount = 0;
+		for (int i = 0; i < m_includes.length; ++i)
+		{
+			if (m_includes[i].size () == 0)
+				root.includeAll = true;
+			root.includes[root.includeCount++] = i;
+		}
+		root.excludeCount = 0;
+		for (int i = 0; i < m_excludes.length; ++i)
+			root.excludes[root.excludeCount++] = i;
+	}
+
+	/**
+	 * Decides if a value in the current array or object is kept, and
+	 * sets up the level for the value.
+	 *
+	 * @param	name
+	 *			the key name of the value in an object.  null in an array.
+	 * @param	index
+	 *			the index of the value in an array.
+	 * @param	e
+	 *			the event of the value.
+	 * @return	true if the value is kept.
+	 */
+	private boolean select (String name, int index, Event e)
+	{
+		final int step = m_depth;
+		final Level parent = m_levels.get (step);
+		final Level child = getLevel (step + 1);
+
+		child.excludeCount = 0;
+		for (int i = 0; i < parent.excludeCount; ++i)
+		{
+			PathPattern path = m_excludes[parent.excludes[i]];
+			if (name == null ? path.matches (step, index) : path.matches (step, name))
+			{
+				if (path.size () == step + 1)
+					return false;
+				child.excludes[child.excludeCount++] = parent.excludes[i];
+			}
+		}
+
+		child.includeAll = parent.includeAll;
+		child.includeCount = 0;
+		if (child.includeAll)
+			return true;
+		for (int i = 0; i < parent.includeCount; ++i)
+		{
+			PathPattern path = m_includes[parent.includes[i]];
+			if (name == null ? path.matches (step, index) : path.matches (step, name))
+			{
+				if (path.size () == step + 1)
+				{
+					child.includeAll = true;
+					return true;
+				}
+				child.includes[child.includeCount++] = parent.includes[i];
+			}
+		}
+		// only an array or object can lead to a partially matched path.
+		return child.includeCount > 0 && (e == Event.START_ARRAY || e == Event.START_OBJECT);
+	}
+
+	private Event enter (Event e)
+	{
+		if (e == Event.START_ARRAY || e == Event.START_OBJECT)
+			getLevel (++m_depth).index = 0;
+		m_event = e;
+		return e;
+	}
+
+	@Override
+	public boolean hasNext ()
+	{
+		return m_pending != null || m_p.hasNext ();
+	}
+
+	@Override
+	public Event next ()
+	{
+		Event e = m_pending;
+		if (e != null)
+		{
+			m_pending = null;
+			m_name = null;
+			return enter (e);
+		}
+		for (;;)
+		{
+			e = m_p.next ();
+			if (m_depth < 0)
+			{
+				startRoot ();
+				return enter (e);
+			}
+			switch (e)
+			{
+				case END_ARRAY:
+				case END_OBJECT:
+					--m_depth;
+					m_event = e;
+					return e;
+				case KEY_NAME:
+				{
+					String name = m_p.getString ();
+					Event v = m_p.next ();
+					if (!select (name, -1, v))
+					{
+						m_p.skipChildren ();
+						continue;
+					}
+					m_name = name;
+					m_pending = v;
+					m_event = e;
+					return e;
+				}
+				default:
+				{
+					if (!select (null, m_levels.get (m_depth).index++, e))
+					{
+						m_p.skipChildren ();
+						continue;
+					}
+					return enter (e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public int readIntArray (int[] values, int offset, int length)
+	{
+		return Utils.readIntArray (this, values, offset, length);
+	}
+
+	@Override
+	public int readLongArray (long[] values, int offset, int length)
+	{
+		return Utils.readLongArray (this, values, offset, length);
+	}
+
+	@Override
+	public int readDoubleArray (double[] values, int offset, int length)
+	{
+		return Utils.readDoubleArray (this, values, offset, length);
+	}
+
+	@Override
+	public void skipChildren ()
+	{
+		if (m_event != Event.START_ARRAY && m_event != Event.START_OBJECT)
+			return;
+		m_p.skipChildren ();
+		m_event = m_p.getEvent ();
+		--m_depth;
+	}
+
+	@Override
+	public Event getEvent ()
+	{
+		return m_event;
+	}
+
+	private IllegalStateException stateError (String function)
+	{
+		return new IllegalStateException (function + " cannot be called at the current state: " + m_event + ".");
+	}
+
+	@Override
+	public String getString ()
+	{
+		if (m_event == Event.KEY_NAME)
+			return m_name;
+		return m_p.getString ();
+	}
+
+	@Override
+	public JsonValue getValue ()
+	{
+		switch (m_event)
+		{
+			case START_ARRAY:
+			case START_OBJECT:
+				// go through the filter.
+				return Utils.getStructure (this);
+			case KEY_NAME:
+				throw stateError ("getValue()");
+			default:
+				return m_p.getValue ();
+		}
+	}
+
+	@Override
+	public boolean isBinary ()
+	{
+		if (m_event != Event.VALUE_STRING)
+			throw stateError ("isBinary()");
+		return m_p.isBinary ();
+	}
+
+	@Override
+	public byte[] getBytes ()
+	{
+		if (m_event != Event.VALUE_STRING)
+			throw stateError ("getBytes()");
+		return m_p.getBytes ();
+	}
+
+	@Override
+	public boolean isIntegralNumber ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("isIntegralNumber()");
+		return m_p.isIntegralNumber ();
+	}
+
+	@Override
+	public int getInt ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getInt()");
+		return m_p.getInt ();
+	}
+
+	@Override
+	public long getLong ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getLong()");
+		return m_p.getLong ();
+	}
+
+	@Override
+	public BigDecimal getBigDecimal ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getBigDecimal()");
+		return m_p.getBigDecimal ();
+	}
+
+	@Override
+	public double getDouble ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getDouble()");
+		return m_p.getDouble ();
+	}
+
+	@Override
+	public float getFloat ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getFloat()");
+		return m_p.getFloat ();
+	}
+
+	@Override
+	public JsonLocation getLocation ()
+	{
+		return m_p.getLocation ();
+	}
+
+	@Override
+	public void close ()
+	{
+		m_p.close ();
+	}
+}
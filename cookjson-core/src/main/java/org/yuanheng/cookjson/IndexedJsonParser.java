@@ -0,0 +1,1573 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+import javax.json.JsonValue;
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParsingException;
+
+import org.yuanheng.cookjson.value.CookJsonString;
+import org.yuanheng.cookjson.value.CookJsonTextNumber;
+
+/**
+ * A two stage parser for UTF-8 JSON data that is entirely in memory.
+ * <p>
+ * The first stage makes a single pass over the whole buffer, 64 bytes at
+ * a time.  It builds bit masks of quotes, backslashes, operators and
+ * white spaces for each block.  Escaped quotes and the inside of strings
+ * are then resolved with carry and prefix XOR tricks on the masks, and
+ * the positions of all the structural characters (brackets, ',', ':',
+ * the quotes and the first characters of other values) are written to
+ * an int[] index.  Bytes are classified 8 at a time with SWAR tricks.
+ * <p>
+ * The second stage generates the usual events by walking the index, so
+ * it never looks at white spaces and {@link #skipChildren()} only needs
+ * to count brackets in the index.
+ * <p>
+ * Comments are not supported.  The data is never modified.
+ * <p>
+ * If {@link #setLazyValues(boolean)} is enabled, {@link #getValue()} at a
+ * START event returns a read-only view that only records the index
+ * positions of its members.  A member is decoded when it is first
+ * accessed, and the decoded value is cached in the view.
+ *
+ * @author	Heng Yuan
+ */
+public class IndexedJsonParser implements CookJsonParser
+{
+	private final static int START = 1;
+	private final static int VALUE = 2;
+	private final static int FIELD = 3;
+
+	private final static int SMALL_APPEND_SIZE = 64;
+
+	/** Number of bytes processed by the first stage at a time. */
+	private final static int BLOCK_SIZE = 64;
+	/** Bits at the odd positions. */
+	private final static long ODD_BITS = 0xaaaaaaaaaaaaaaaaL;
+	/** 0x7f in every byte. */
+	private final static long LOW_BITS = 0x7f7f7f7f7f7f7f7fL;
+	/** 0x80 in every byte. */
+	private final static long HIGH_BITS = 0x8080808080808080L;
+	/** Moves the high bit of each byte to the top byte. */
+	private final static long GATHER = 0x0102040810204080L;
+
+	/** Characters that can follow a number or a literal. */
+	private final static boolean[] s_delimiters = new boolean[256];
+
+	static
+	{
+		s_delimiters['['] = true;
+		s_delimiters[']'] = true;
+		s_delimiters['{'] = true;
+		s_delimiters['}'] = true;
+		s_delimiters[':'] = true;
+		s_delimiters[','] = true;
+		s_delimiters[' '] = true;
+		s_delimiters['\t'] = true;
+		s_delimiters['\n'] = true;
+		s_delimiters['\r'] = true;
+	}
+
+	private final byte[] m_buf;
+	/** A little endian view of m_buf for reading 8 bytes at a time. */
+	private final ByteBuffer m_view;
+	private final int m_base;
+	private final int m_end;
+
+	/** The positions of the structural characters.  Built on demand. */
+	private int[] m_index;
+	private int m_indexLen;
+	private int m_indexPos;
+	/** Bit n is set if the n-th block contains a backslash. */
+	private long[] m_escapeBlocks;
+
+	/** append buffer for storing strings with escape sequences */
+	private byte[] m_appendBuf = new byte[SMALL_APPEND_SIZE];
+	/** position tracking for append buffer */
+	private int m_appendPos;
+	/**
+	 * m_appendBuf has a lone surrogate from an escape sequence, which is kept
+	 * in 3 bytes that the UTF-8 decoder would replace with U+FFFD.
+	 */
+	private boolean m_surrogate;
+
+	/** The position of the current token. */
+	private int m_pos;
+	/** Lines are counted lazily up to this position. */
+	private int m_linePos;
+	private int m_lineStart;
+	private long m_line = 1;
+
+	private final ArrayList<Boolean> m_states = new ArrayList<Boolean> ();
+	private int m_state = ParserState.INITIAL;
+	private int m_lastToken;
+	private boolean m_int;
+
+	private Event m_event;
+	/**
+	 * If this flag is true, the string data is located in the input buffer rather than
+	 * m_appendBuf.
+	 */
+	private boolean m_simple;
+	private int m_start;
+	private int m_len;
+	/** The value parsed by parseLong (). */
+	private long m_long;
+	private final DoubleParser m_doubleParser = new DoubleParser ();
+
+	/** Canonical key names shared with other parsers.  Can be null. */
+	private SymbolTable m_symbols;
+	/** Shared string values for getValue ().  Can be null. */
+	private StringValueTable m_stringValues;
+
+	/** If true, getValue () returns lazy views for arrays and objects. */
+	private boolean m_lazyValues;
+	/** Decodes the members of the lazy views.  It shares the index. */
+	private IndexedJsonParser m_decoder;
+	/**
+	 * For the decoder, the index position of the matching closing
+	 * bracket of each opening bracket.
+	 */
+	private int[] m_match;
+
+	/**
+	 * Create a JsonParser that parses UTF-8 data in a byte array.
+	 *
+	 * @param	buf
+	 *			the byte array containing UTF-8 JSON data.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 */
+	public IndexedJsonParser (byte[] buf, int offset, int length)
+	{
+		m_buf = buf;
+		m_view = ByteBuffer.wrap (buf).order (ByteOrder.LITTLE_ENDIAN);
+		m_base = offset;
+		m_end = offset + length;
+		m_pos = offset;
+		m_linePos = offset;
+		m_lineStart = offset;
+	}
+
+	/**
+	 * Create a JsonParser that parses UTF-8 data in a byte array.
+	 *
+	 * @param	buf
+	 *			the byte array containing UTF-8 JSON data.
+	 */
+	public IndexedJsonParser (byte[] buf)
+	{
+		this (buf, 0, buf.length);
+	}
+
+	/**
+	 * Create a JsonParser that parses the remaining UTF-8 data in a
+	 * ByteBuffer.
+	 * <p>
+	 * The backing array of a heap buffer is used directly.  The data of
+	 * a direct or read-only buffer is copied once.  The position of the
+	 * buffer is not changed.
+	 *
+	 * @param	buffer
+	 *			the ByteBuffer containing UTF-8 JSON data.
+	 */
+	public IndexedJsonParser (ByteBuffer buffer)
+	{
+		this (buffer.hasArray () ? buffer.array () : copy (buffer),
+			  buffer.hasArray () ? buffer.arrayOffset () + buffer.position () : 0,
+			  buffer.remaining ());
+	}
+
+	/**
+	 * Creates the decoder for the lazy views of a parser.
+	 *
+	 * @param	p
+	 *			the parser with the index built.
+	 */
+	private IndexedJsonParser (IndexedJsonParser p)
+	{
+		m_buf = p.m_buf;
+		m_view = p.m_view;
+		m_base = p.m_base;
+		m_end = p.m_end;
+		m_pos = m_base;
+		m_linePos = m_base;
+		m_lineStart = m_base;
+		m_index = p.m_index;
+		m_indexLen = p.m_indexLen;
+		m_escapeBlocks = p.m_escapeBlocks;
+		m_symbols = p.m_symbols;
+		m_stringValues = p.m_stringValues;
+		matchBrackets ();
+	}
+
+	private static byte[] copy (ByteBuffer buffer)
+	{
+		byte[] buf = new byte[buffer.remaining ()];
+		buffer.duplicate ().get (buf);
+		return buf;
+	}
+
+	/**
+	 * Computes the running XOR of all the bits below and at each bit
+	 * position.  Bits between an odd and an even quote are set.
+	 *
+	 * @param	bits
+	 *			the bits.
+	 * @return	the prefix XOR.
+	 */
+	private static long prefixXor (long bits)
+	{
+		bits ^= bits << 1;
+		bits ^= bits << 2;
+		bits ^= bits << 4;
+		bits ^= bits << 8;
+		bits ^= bits << 16;
+		bits ^= bits << 32;
+		return bits;
+	}
+
+	/**
+	 * Creates a word with the same byte repeated.
+	 *
+	 * @param	ch
+	 *			the byte.
+	 * @return	a word with the same byte repeated 8 times.
+	 */
+	private static long repeat (char ch)
+	{
+		return ch * 0x0101010101010101L;
+	}
+
+	private final static long QUOTES = repeat ('"');
+	private final static long BACKSLASHES = repeat ('\\');
+	private final static long CASE_BITS = repeat ((char) 0x20);
+	private final static long LEFT_BRACES = repeat ('{');
+	private final static long RIGHT_BRACES = repeat ('}');
+	private final static long COLONS = repeat (':');
+	private final static long COMMAS = repeat (',');
+	/** Added to the low 7 bits to set the high bit of bytes >= 0x20. */
+	private final static long CONTROL_LIMITS = repeat ((char) 0x60);
+	/** Added to the low 7 bits to set the high bit of bytes >= 0x21. */
+	private final static long SPACE_LIMITS = repeat ((char) 0x5f);
+
+	/**
+	 * Sets the high bit of each non-zero byte.  Unlike the usual "has
+	 * zero byte" test, there is no carry between the bytes, so the result
+	 * is exact.
+	 *
+	 * @param	x
+	 *			a word.
+	 * @return	the high bit of each non-zero byte.
+	 */
+	private static long nonZero (long x)
+	{
+		return ((x & LOW_BITS) + LOW_BITS) | x;
+	}
+
+	/**
+	 * Packs the high bits of the 8 bytes into 8 bits.
+	 *
+	 * @param	highs
+	 *			a word where only the high bits of the bytes are set.
+	 * @return	the high bits in the byte order.
+	 */
+	private static long gather (long highs)
+	{
+		return ((highs >>> 7) * GATHER) >>> 56;
+	}
+
+	/**
+	 * Checks the control characters in a block.  Only '\t', '\n' and '\r'
+	 * are allowed, and only outside of strings.
+	 *
+	 * @param	blockStart
+	 *			the start of the block.
+	 * @param	control
+	 *			the control characters.
+	 * @param	inString
+	 *			the inside of strings.
+	 */
+	private void checkControl (int blockStart, long control, long inString)
+	{
+		// JSON does not allow 0x00 - 0x1f in string.
+		long bad = control & inString;
+		if (bad == 0)
+		{
+			final byte[] buf = m_buf;
+			for (long bits = control; bits != 0; bits &= bits - 1)
+			{
+				int pos = blockStart + Long.numberOfTrailingZeros (bits);
+				byte ch = buf[pos];
+				if (ch != '\n' && ch != '\r' && ch != '\t')
+				{
+					bad = bits;
+					break;
+				}
+			}
+			if (bad == 0)
+				return;
+		}
+		throw unexpected (blockStart + Long.numberOfTrailingZeros (bad));
+	}
+
+	/**
+	 * The first stage.  Builds the index of structural characters.
+	 */
+	private void buildIndex ()
+	{
+		final int end = m_end;
+		int[] index = new int[((end - m_base) >> 3) + 16];
+		int count = 0;
+		final long[] escapeBlocks = new long[((end - m_base) >> 12) + 1];
+		int block = 0;
+
+		// states carried from the previous block.
+		long prevEscaped = 0;
+		long prevInString = 0;
+		long prevScalar = 0;
+
+		for (int blockStart = m_base; blockStart < end; blockStart += BLOCK_SIZE, ++block)
+		{
+			ByteBuffer view = m_view;
+			int pos = blockStart;
+			if (end - blockStart < BLOCK_SIZE)
+			{
+				// pad the last block with spaces.
+				byte[] last = new byte[BLOCK_SIZE];
+				Arrays.fill (last, (byte) ' ');
+				System.arraycopy (m_buf, blockStart, last, 0, end - blockStart);
+				view = ByteBuffer.wrap (last).order (ByteOrder.LITTLE_ENDIAN);
+				pos = 0;
+			}
+
+			// classify 8 bytes at a time.
+			long quote = 0;
+			long backslash = 0;
+			long op = 0;
+			long space = 0;
+			long control = 0;
+			for (int i = 0; i < BLOCK_SIZE; i += 8)
+			{
+				long v = view.getLong (pos + i);
+				// '[' and ']' become '{' and '}'
+				long u = v | CASE_BITS;
+				quote |= gather (~nonZero (v ^ QUOTES) & HIGH_BITS) << i;
+				backslash |= gather (~nonZero (v ^ BACKSLASHES) & HIGH_BITS) << i;
+				op |= gather (~(nonZero (u ^ LEFT_BRACES) & nonZero (u ^ RIGHT_BRACES) &
+								nonZero (v ^ COLONS) & nonZero (v ^ COMMAS)) & HIGH_BITS) << i;
+				// all the bytes up to ' ' are treated as white spaces here.
+				space |= gather (~(((v & LOW_BITS) + SPACE_LIMITS) | v) & HIGH_BITS) << i;
+				control |= gather (~(((v & LOW_BITS) + CONTROL_LIMITS) | v) & HIGH_BITS) << i;
+			}
+
+			// find the escaped characters.  A backslash that is not itself
+			// escaped starts a series.  Subtracting the series from bits at
+			// the odd positions flips the bits after each series of odd
+			// length.
+			long escaped;
+			if (backslash == 0)
+			{
+				escaped = prevEscaped;
+				prevEscaped = 0;
+			}
+			else
+			{
+				escapeBlocks[block >> 6] |= 1L << block;
+				long potentialEscape = backslash & ~prevEscaped;
+				long maybeEscaped = potentialEscape << 1;
+				long code = ((maybeEscaped | ODD_BITS) - potentialEscape) ^ ODD_BITS;
+				escaped = code ^ (backslash | prevEscaped);
+				prevEscaped = (code & backslash) >>> 63;
+			}
+			quote &= ~escaped;
+
+			// the inside of strings, including the opening quote but not the
+			// closing quote.
+			long inString = prefixXor (quote) ^ prevInString;
+			prevInString = inString >> 63;
+			long stringTail = inString ^ quote;
+			if (control != 0)
+				checkControl (blockStart, control, inString);
+
+			// the first character of each literal or number.
+			long scalar = ~(op | space);
+			long nonQuoteScalar = scalar & ~quote;
+			long followsScalar = (nonQuoteScalar << 1) | prevScalar;
+			prevScalar = nonQuoteScalar >>> 63;
+
+			// closing quotes are included so that the second stage knows
+			// where each string ends.
+			long structurals = ((op | (scalar & ~followsScalar)) & ~stringTail) | quote;
+
+			if (count + BLOCK_SIZE > index.length)
+				index = Arrays.copyOf (index, index.length * 2 + BLOCK_SIZE);
+			while (structurals != 0)
+			{
+				index[count++] = blockStart + Long.numberOfTrailingZeros (structurals);
+				structurals &= structurals - 1;
+			}
+		}
+
+		m_index = index;
+		m_indexLen = count;
+		m_escapeBlocks = escapeBlocks;
+		if (prevInString != 0)
+		{
+			// the last string is not terminated.
+			m_pos = end;
+			throw eofError ();
+		}
+	}
+
+	private JsonLocationImpl getLocation (int pos)
+	{
+		if (pos < m_linePos)
+		{
+			m_linePos = m_base;
+			m_lineStart = m_base;
+			m_line = 1;
+		}
+		final byte[] buf = m_buf;
+		for (int i = m_linePos; i < pos; ++i)
+		{
+			if (buf[i] == '\n')
+			{
+				++m_line;
+				m_lineStart = i + 1;
+			}
+		}
+		m_linePos = pos;
+
+		JsonLocationImpl location = new JsonLocationImpl ();
+		location.m_lineNumber = m_line;
+		location.m_columnNumber = pos - m_lineStart + 1;
+		location.m_streamOffset = pos - m_base;
+		return location;
+	}
+
+	private void append (byte[] buf, int start, int len)
+	{
+		int appendPos = m_appendPos;
+		if (appendPos + len > m_appendBuf.length)
+		{
+			int newLen = m_appendBuf.length;
+			while (newLen < appendPos + len)
+				newLen += newLen / 2 + 1;
+			byte[] newBuffer = new byte[newLen];
+			System.arraycopy (m_appendBuf, 0, newBuffer, 0, appendPos);
+			m_appendBuf = newBuffer;
+		}
+		System.arraycopy (buf, start, m_appendBuf, appendPos, len);
+		m_appendPos = appendPos + len;
+	}
+
+	private void append (byte ch)
+	{
+		if (m_appendPos >= m_appendBuf.length)
+		{
+			int len = m_appendBuf.length;
+			// we need to expand the buffer by 50%
+			byte[] newBuffer = new byte[len + len / 2];
+			System.arraycopy (m_appendBuf, 0, newBuffer, 0, len);
+			m_appendBuf = newBuffer;
+		}
+		m_appendBuf[m_appendPos++] = ch;
+	}
+
+	private IllegalStateException stateError (String function)
+	{
+		return new IllegalStateException (function + " cannot be called at the current state: " + m_event + ".");
+	}
+
+	private JsonParsingException error (int pos, String msg)
+	{
+		JsonLocation location = getLocation (pos);
+		return new JsonParsingException ("Parsing error at " + location.toString () + ": " + msg, location);
+	}
+
+	private JsonParsingException eofError ()
+	{
+		return error (m_end, "unexpected eof.");
+	}
+
+	private JsonParsingException unexpected (int pos)
+	{
+		byte ch = m_buf[pos];
+		String charStr;
+		switch (ch)
+		{
+			case '\b':	// 0x08
+				charStr = "\\b";
+				break;
+			case '\t':	// 0x09
+				charStr = "\\t";
+				break;
+			case '\n':	// 0x0a
+				charStr = "\\n";
+				break;
+			case '\r':	// 0x0d
+				charStr = "\\r";
+				break;
+			case '\f':	// 0x0c
+				charStr = "\\f";
+				break;
+			case '\\':
+				charStr = "\\\\";
+				break;
+			case '\'':
+				charStr = "\\'";
+				break;
+			default:
+			{
+				if (ch < ' ' || ch > 127)
+				{
+					String hex = Integer.toHexString (ch & 0xff);
+					charStr = "\\u" + ("0000".substring (hex.length ())) + hex;
+				}
+				else
+				{
+					charStr = Character.toString ((char)ch);
+				}
+				break;
+			}
+		}
+		return error (pos, "unexpected character '" + charStr + "'");
+	}
+
+	/**
+	 * Checks if a value ends at the specified position.
+	 *
+	 * @param	pos
+	 *			the position right after the value.
+	 */
+	private void expectEnd (int pos)
+	{
+		if (pos < m_end && !s_delimiters[m_buf[pos] & 0xff])
+			throw unexpected (pos);
+	}
+
+	private void expect (int pos, String str)
+	{
+		final byte[] buf = m_buf;
+		final int len = str.length ();
+		for (int i = 1; i < len; ++i)
+		{
+			if (pos + i >= m_end)
+				throw eofError ();
+			if (buf[pos + i] != str.charAt (i))
+				throw unexpected (pos + i);
+		}
+		expectEnd (pos + len);
+	}
+
+	private int readDigits (int pos)
+	{
+		final byte[] buf = m_buf;
+		final int end = m_end;
+		while (pos < end && buf[pos] >= '0' && buf[pos] <= '9')
+			++pos;
+		return pos;
+	}
+
+	private int expectDigits (int pos)
+	{
+		if (pos >= m_end)
+			throw eofError ();
+		int digitEnd = readDigits (pos);
+		if (digitEnd == pos)
+			throw unexpected (pos);
+		return digitEnd;
+	}
+
+	private void readNumber (int pos)
+	{
+		final byte[] buf = m_buf;
+		final int end = m_end;
+		m_simple = true;
+		m_int = true;
+		m_start = pos;
+
+		if (buf[pos] == '-')
+			++pos;
+		if (pos < end && buf[pos] == '0')
+			++pos;
+		else
+			pos = expectDigits (pos);
+
+		if (pos < end && buf[pos] == '.')
+		{
+			m_int = false;
+			pos = expectDigits (pos + 1);
+		}
+		if (pos < end && (buf[pos] == 'e' || buf[pos] == 'E'))
+		{
+			m_int = false;
+			++pos;
+			if (pos < end && (buf[pos] == '+' || buf[pos] == '-'))
+				++pos;
+			pos = expectDigits (pos);
+		}
+		expectEnd (pos);
+		m_len = pos - m_start;
+	}
+
+	private int hex (int pos)
+	{
+		byte ch = m_buf[pos];
+		if (ch >= '0' && ch <= '9')
+			return ch - '0';
+		if (ch >= 'A' && ch <= 'F')
+			return ch - 'A' + 10;
+		if (ch >= 'a' && ch <= 'f')
+			return ch - 'a' + 10;
+		throw unexpected (pos);
+	}
+
+	/**
+	 * Decodes an escape sequence.  The first stage guarantees that a
+	 * closing quote follows, so the checks stop before the end of data.
+	 *
+	 * @param	pos
+	 *			the position of the character after '\\'.
+	 * @return	the position after the escape sequence.
+	 */
+	private int readEscape (int pos)
+	{
+		final byte[] buf = m_buf;
+		byte ch = buf[pos++];
+		switch (ch)
+		{
+			case 'b':
+				append ((byte) '\b');
+				break;
+			case 'f':
+				append ((byte) '\f');
+				break;
+			case 'n':
+				append ((byte) '\n');
+				break;
+			case 'r':
+				append ((byte) '\r');
+				break;
+			case 't':
+				append ((byte) '\t');
+				break;
+			case '\\':
+			case '/':
+			case '"':
+				append (ch);
+				break;
+			case 'u':
+			{
+				int val = (hex (pos) << 12) | (hex (pos + 1) << 8) | (hex (pos + 2) << 4) | hex (pos + 3);
+				pos += 4;
+				if (val >= 0xd800 && val < 0xdc00 && buf[pos] == '\\' && buf[pos + 1] == 'u')
+				{
+					// a surrogate pair
+					int low = (hex (pos + 2) << 12) | (hex (pos + 3) << 8) | (hex (pos + 4) << 4) | hex (pos + 5);
+					if (low >= 0xdc00 && low < 0xe000)
+					{
+						int cp = 0x10000 + ((val - 0xd800) << 10) + (low - 0xdc00);
+						append ((byte) (0xf0 | (cp >> 18)));
+						append ((byte) (0x80 | ((cp >> 12) & 0x3f)));
+						append ((byte) (0x80 | ((cp >> 6) & 0x3f)));
+						append ((byte) (0x80 | (cp & 0x3f)));
+						pos += 6;
+						break;
+					}
+				}
+				if (val >= 0xd800 && val < 0xe000)
+					m_surrogate = true;
+				if (val < 0x80)
+					append ((byte) val);
+				else if (val < 0x800)
+				{
+					append ((byte) (0xc0 | (val >> 6)));
+					append ((byte) (0x80 | (val & 0x3f)));
+				}
+				else
+				{
+					append ((byte) (0xe0 | (val >> 12)));
+					append ((byte) (0x80 | ((val >> 6) & 0x3f)));
+					append ((byte) (0x80 | (val & 0x3f)));
+				}
+				break;
+			}
+			default:
+				throw error (pos - 1, "unknown escape sequence '\\" + ((char)ch) + "'");
+		}
+		return pos;
+	}
+
+	/**
+	 * Checks if the blocks containing the range have any backslashes.
+	 *
+	 * @param	start
+	 *			the starting position.
+	 * @param	end
+	 *			the end position.
+	 * @return	true if there may be escape sequences in the range.
+	 */
+	private boolean hasEscape (int start, int end)
+	{
+		final long[] escapeBlocks = m_escapeBlocks;
+		for (int block = (start - m_base) >> 6, last = (end - m_base) >> 6; block <= last; ++block)
+		{
+			if ((escapeBlocks[block >> 6] & (1L << block)) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Reads a string.  The first stage has already checked the string for
+	 * control characters, and the position of the closing quote is the
+	 * next entry in the index.
+	 *
+	 * @param	pos
+	 *			the position of the opening quote.
+	 */
+	private void readString (int pos)
+	{
+		final int start = pos + 1;
+		final int end = m_index[m_indexPos++];
+		if (!hasEscape (start, end))
+		{
+			m_simple = true;
+			m_start = start;
+			m_len = end - start;
+			return;
+		}
+
+		// slow path for strings with escape sequences.
+		final byte[] buf = m_buf;
+		m_simple = false;
+		m_surrogate = false;
+		m_appendPos = 0;
+		pos = start;
+		while (pos < end)
+		{
+			int runEnd = pos;
+			while (runEnd < end && buf[runEnd] != '\\')
+				++runEnd;
+			append (buf, pos, runEnd - pos);
+			pos = runEnd;
+			if (pos < end)
+				pos = readEscape (pos + 1);
+		}
+	}
+
+	private String getBufferString ()
+	{
+		if (m_simple)
+			return new String (m_buf, m_start, m_len, BOM.utf8);
+		if (m_surrogate)
+			return decodeSurrogates (m_appendBuf, 0, m_appendPos);
+		return new String (m_appendBuf, 0, m_appendPos, BOM.utf8);
+	}
+
+	/**
+	 * Decodes UTF-8 data that contains lone surrogates in 3 bytes, so
+	 * that they are kept as they are, like TextJsonParser does.
+	 *
+	 * @param	buf
+	 *			the UTF-8 data.
+	 * @param	start
+	 *			the starting position.
+	 * @param	len
+	 *			the length of the data.
+	 * @return	the decoded string.
+	 */
+	private static String decodeSurrogates (byte[] buf, int start, int len)
+	{
+		final int end = start + len;
+		StringBuilder builder = new StringBuilder (len);
+		int runStart = start;
+		for (int i = start; i < end - 2; ++i)
+		{
+			// 0xed is never a continuation byte, and 0xed 0xa0-0xbf is
+			// only used for the surrogates.
+			if (buf[i] == (byte) 0xed && (buf[i + 1] & 0xe0) == 0xa0)
+			{
+				builder.append (new String (buf, runStart, i - runStart, BOM.utf8));
+				builder.append ((char) (0xd000 | ((buf[i + 1] & 0x3f) << 6) | (buf[i + 2] & 0x3f)));
+				i += 2;
+				runStart = i + 1;
+			}
+		}
+		builder.append (new String (buf, runStart, end - runStart, BOM.utf8));
+		return builder.toString ();
+	}
+
+	private String getKeyString ()
+	{
+		final SymbolTable symbols = m_symbols;
+		if (symbols == null)
+			return getBufferString ();
+		if (m_simple)
+			return symbols.get (m_buf, m_start, m_len);
+		if (m_surrogate)
+			return getBufferString ();
+		return symbols.get (m_appendBuf, 0, m_appendPos);
+	}
+
+	private CookJsonString getStringValue ()
+	{
+		final StringValueTable stringValues = m_stringValues;
+		if (stringValues == null)
+			return new CookJsonString (getBufferString ());
+		if (m_simple)
+			return stringValues.get (m_buf, m_start, m_len);
+		if (m_surrogate)
+			return new CookJsonString (getBufferString ());
+		return stringValues.get (m_appendBuf, 0, m_appendPos);
+	}
+
+	@Override
+	public Event getEvent ()
+	{
+		return m_event;
+	}
+
+	@Override
+	public JsonValue getValue ()
+	{
+		switch (m_event)
+		{
+			case START_ARRAY:
+			case START_OBJECT:
+				if (m_lazyValues)
+					return getLazyStructure ();
+				return Utils.getStructure (this);
+			case END_ARRAY:
+			case END_OBJECT:
+			case KEY_NAME:
+				throw stateError ("getValue()");
+			case VALUE_TRUE:
+				return JsonValue.TRUE;
+			case VALUE_FALSE:
+				return JsonValue.FALSE;
+			case VALUE_NULL:
+				return JsonValue.NULL;
+			case VALUE_NUMBER:
+				if (m_int && parseLong ())
+					return Utils.getNumber (m_long);
+				return new CookJsonTextNumber (getBufferString ());
+			case VALUE_STRING:
+				return getStringValue ();
+		}
+		throw stateError ("getValue()");
+	}
+
+	/**
+	 * Gets the position of the next structural character.
+	 *
+	 * @return	the position of the next structural character.
+	 */
+	private int nextPos ()
+	{
+		if (m_indexPos >= m_indexLen)
+			throw eofError ();
+		return m_index[m_indexPos++];
+	}
+
+	private void readValue (int pos)
+	{
+		m_pos = pos;
+		switch (m_buf[pos])
+		{
+			case '"':
+				readString (pos);
+				m_event = Event.VALUE_STRING;
+				m_lastToken = VALUE;
+				return;
+			case '-':
+			case '0':
+			case '1':
+			case '2':
+			case '3':
+			case '4':
+			case '5':
+			case '6':
+			case '7':
+			case '8':
+			case '9':
+				readNumber (pos);
+				m_event = Event.VALUE_NUMBER;
+				m_lastToken = VALUE;
+				return;
+			case '[':
+				pushState (true);
+				m_event = Event.START_ARRAY;
+				m_lastToken = START;
+				return;
+			case ']':
+				popState (true);
+				m_event = Event.END_ARRAY;
+				m_lastToken = VALUE;
+				return;
+			case '{':
+				pushState (false);
+				m_event = Event.START_OBJECT;
+				m_lastToken = START;
+				return;
+			case 'f':
+				expect (pos, "false");
+				m_event = Event.VALUE_FALSE;
+				m_lastToken = VALUE;
+				return;
+			case 'n':
+				expect (pos, "null");
+				m_event = Event.VALUE_NULL;
+				m_lastToken = VALUE;
+				return;
+			case 't':
+				expect (pos, "true");
+				m_event = Event.VALUE_TRUE;
+				m_lastToken = VALUE;
+				return;
+			default:
+				throw unexpected (pos);
+		}
+	}
+
+	private void readKeyName (int pos)
+	{
+		m_pos = pos;
+		byte ch = m_buf[pos];
+		if (ch == '"')
+		{
+			readString (pos);
+			m_event = Event.KEY_NAME;
+			m_lastToken = FIELD;
+			return;
+		}
+		if (ch == '}')
+		{
+			popState (false);
+			m_event = Event.END_OBJECT;
+			m_lastToken = VALUE;
+			return;
+		}
+		throw unexpected (pos);
+	}
+
+	@Override
+	public Event next ()
+	{
+		if (m_index == null)
+			buildIndex ();
+
+		final byte[] buf = m_buf;
+		int state = m_state;
+		if (state == ParserState.IN_OBJECT)
+		{
+			int lastToken = m_lastToken;
+			if (lastToken == FIELD)
+			{
+				int pos = nextPos ();
+				if (buf[pos] != ':')
+					throw unexpected (pos);
+				readValue (nextPos ());
+				return m_event;
+			}
+
+			if (lastToken == VALUE)
+			{
+				// we now expect either ',' or '}'
+				int pos = nextPos ();
+				byte ch = buf[pos];
+				if (ch == '}')
+				{
+					m_pos = pos;
+					popState (false);
+					m_event = Event.END_OBJECT;
+					m_lastToken = VALUE;
+					return m_event;
+				}
+				if (ch != ',')
+					throw unexpected (pos);
+			}
+
+			readKeyName (nextPos ());
+			return m_event;
+		}
+		else if (state == ParserState.IN_ARRAY)
+		{
+			if (m_lastToken == VALUE)
+			{
+				// we now expect either ',' or ']'
+				int pos = nextPos ();
+				byte ch = buf[pos];
+				if (ch == ']')
+				{
+					m_pos = pos;
+					popState (true);
+					m_event = Event.END_ARRAY;
+					m_lastToken = VALUE;
+					return m_event;
+				}
+				if (ch != ',')
+					throw unexpected (pos);
+			}
+			readValue (nextPos ());
+			return m_event;
+		}
+		else if (state == ParserState.INITIAL)
+		{
+			int pos = nextPos ();
+			byte ch = buf[pos];
+			if (ch != '[' && ch != '{')
+				throw unexpected (pos);
+			readValue (pos);
+			return m_event;
+		}
+		else if (state == ParserState.END)
+			throw new NoSuchElementException ();
+		throw new IllegalStateException ();
+	}
+
+	@Override
+	public int readIntArray (int[] values, int offset, int length)
+	{
+		return Utils.readIntArray (this, values, offset, length);
+	}
+
+	@Override
+	public int readLongArray (long[] values, int offset, int length)
+	{
+		return Utils.readLongArray (this, values, offset, length);
+	}
+
+	@Override
+	public int readDoubleArray (double[] values, int offset, int length)
+	{
+		return Utils.readDoubleArray (this, values, offset, length);
+	}
+
+	@Override
+	public void skipChildren ()
+	{
+		if (m_event != Event.START_ARRAY && m_event != Event.START_OBJECT)
+			return;
+
+		// only the brackets in the index need to be checked.
+		final byte[] buf = m_buf;
+		final int[] index = m_index;
+		final int indexLen = m_indexLen;
+		int indexPos = m_indexPos;
+		int depth = 0;
+		for (;;)
+		{
+			if (indexPos >= indexLen)
+			{
+				m_indexPos = indexPos;
+				throw eofError ();
+			}
+			byte ch = buf[index[indexPos]];
+			if (ch == '[' || ch == '{')
+				++depth;
+			else if (ch == ']' || ch == '}')
+			{
+				if (depth == 0)
+					break;
+				--depth;
+			}
+			++indexPos;
+		}
+		m_indexPos = indexPos;
+		m_lastToken = START;
+		// let next () handle the closing bracket.
+		next ();
+	}
+
+	/**
+	 * Finds the matching brackets of the whole index in one pass.
+	 */
+	private void matchBrackets ()
+	{
+		final byte[] buf = m_buf;
+		final int[] index = m_index;
+		final int indexLen = m_indexLen;
+		final int[] match = new int[indexLen];
+		int[] stack = new int[32];
+		int depth = 0;
+		for (int i = 0; i < indexLen; ++i)
+		{
+			byte ch = buf[index[i]];
+			if (ch == '[' || ch == '{')
+			{
+				if (depth == stack.length)
+					stack = Arrays.copyOf (stack, depth * 2);
+				stack[depth++] = i;
+			}
+			else if ((ch == ']' || ch == '}') && depth > 0)
+			{
+				// '[' + 2 is ']', and '{' + 2 is '}'.
+				int open = stack[--depth];
+				if (buf[index[open]] + 2 != ch)
+					throw unexpected (index[i]);
+				match[open] = i;
+			}
+		}
+		m_match = match;
+	}
+
+	/**
+	 * Gets the matching closing bracket.
+	 *
+	 * @param	indexPos
+	 *			the index position of an opening bracket.
+	 * @return	the index position of the closing bracket.
+	 */
+	private int getMatch (int indexPos)
+	{
+		int end = m_match[indexPos];
+		if (end <= indexPos)
+			throw eofError ();
+		return end;
+	}
+
+	/**
+	 * Skips a value.
+	 *
+	 * @param	indexPos
+	 *			the index position of the value.
+	 * @return	the index position after the value.
+	 */
+	private int skipValue (int indexPos)
+	{
+		switch (m_buf[m_index[indexPos]])
+		{
+			case '[':
+			case '{':
+				return getMatch (indexPos) + 1;
+			case '"':
+				// skip the closing quote as well.
+				return indexPos + 2;
+			default:
+				return indexPos + 1;
+		}
+	}
+
+	/**
+	 * Creates the lazy view of the current array or object, and moves
+	 * the parser to its end.
+	 *
+	 * @return	the lazy view.
+	 */
+	private JsonValue getLazyStructure ()
+	{
+		IndexedJsonParser decoder = m_decoder;
+		if (decoder == null)
+		{
+			decoder = new IndexedJsonParser (this);
+			m_decoder = decoder;
+		}
+		final int indexPos = m_indexPos - 1;
+		JsonValue value;
+		synchronized (decoder)
+		{
+			value = decoder.getLazyValue (indexPos);
+		}
+		m_indexPos = decoder.m_match[indexPos];
+		m_lastToken = START;
+		// let next () handle the closing bracket.
+		next ();
+		return value;
+	}
+
+	/**
+	 * Finds the members of an array or an object, and checks the
+	 * separators between them.  The members themselves are not checked.
+	 * <p>
+	 * This function is only called on the decoder.
+	 *
+	 * @param	indexPos
+	 *			the index position of the opening bracket.
+	 * @return	the index positions of the values of an array, or the
+	 *			key names of an object.
+	 */
+	int[] getMembers (int indexPos)
+	{
+		final byte[] buf = m_buf;
+		final int[] index = m_index;
+		final int end = getMatch (indexPos);
+		final boolean isArray = buf[index[indexPos]] == '[';
+		int[] members = new int[Math.min (end - indexPos, 16)];
+		int count = 0;
+		int i = indexPos + 1;
+		while (i < end)
+		{
+			int valuePos = i;
+			if (!isArray)
+			{
+				if (buf[index[i]] != '"')
+					throw unexpected (index[i]);
+				if (buf[index[i + 2]] != ':')
+					throw unexpected (index[i + 2]);
+				valuePos = i + 3;
+			}
+			byte ch = buf[index[valuePos]];
+			if (ch == ',' || ch == ':' || ch == ']' || ch == '}')
+				throw unexpected (index[valuePos]);
+			if (count == members.length)
+				members = Arrays.copyOf (members, count * 2);
+			members[count++] = i;
+
+			i = skipValue (valuePos);
+			if (i < end)
+			{
+				if (buf[index[i]] != ',')
+					throw unexpected (index[i]);
+				if (++i == end)
+					throw unexpected (index[i]);
+			}
+		}
+		return count == members.length ? members : Arrays.copyOf (members, count);
+	}
+
+	/**
+	 * Gets the value at an index position.  A lazy view is returned for
+	 * an array or an object.
+	 * <p>
+	 * This function is only called on the decoder.
+	 *
+	 * @param	indexPos
+	 *			the index position of the value.
+	 * @return	the value.
+	 */
+	JsonValue getLazyValue (int indexPos)
+	{
+		final int pos = m_index[indexPos];
+		switch (m_buf[pos])
+		{
+			case '[':
+				return new LazyJsonArray (this, indexPos);
+			case '{':
+				return new LazyJsonObject (this, indexPos);
+		}
+		m_indexPos = indexPos + 1;
+		readValue (pos);
+		return getValue ();
+	}
+
+	/**
+	 * Gets the key name at an index position.
+	 * <p>
+	 * This function is only called on the decoder.
+	 *
+	 * @param	indexPos
+	 *			the index position of the opening quote.
+	 * @return	the key name.
+	 */
+	String getKeyName (int indexPos)
+	{
+		m_indexPos = indexPos + 1;
+		readString (m_index[indexPos]);
+		return getKeyString ();
+	}
+
+	@Override
+	public boolean hasNext ()
+	{
+		return m_state != ParserState.END;
+	}
+
+	@Override
+	public boolean isIntegralNumber ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("isIntegralNumber()");
+		if (m_int)
+			return true;
+
+		final byte[] buf = m_buf;
+		int pos = m_start;
+		final int end = m_start + m_len;
+
+		// The BigDecimal scale is the number of fraction digits minus
+		// the exponent, so the number is integral when the two are equal.
+		while (pos < end && buf[pos] != '.' && buf[pos] != 'e' && buf[pos] != 'E')
+			++pos;
+		int fraction = 0;
+		if (pos < end && buf[pos] == '.')
+		{
+			++pos;
+			while (pos < end && buf[pos] != 'e' && buf[pos] != 'E')
+			{
+				++pos;
+				++fraction;
+			}
+		}
+		if (pos == end)
+			return fraction == 0;
+		++pos;
+		boolean negative = false;
+		if (buf[pos] == '+')
+			++pos;
+		else if (buf[pos] == '-')
+		{
+			negative = true;
+			++pos;
+		}
+		if ((end - pos) > 9)
+			return getBigDecimal ().scale () == 0;
+		int exp = 0;
+		for (; pos < end; ++pos)
+			exp = exp * 10 + (buf[pos] - '0');
+		return (negative ? -exp : exp) == fraction;
+	}
+
+	/**
+	 * Parses the integer part of the current number directly from the
+	 * buffer and stores it in m_long.
+	 *
+	 * @return	true if the value was parsed.  false if the value overflows
+	 *			long, or if the number has an exponent.
+	 */
+	private boolean parseLong ()
+	{
+		final byte[] buf = m_buf;
+		int pos = m_start;
+		final int end = m_start + m_len;
+
+		final boolean negative = buf[pos] == '-';
+		if (negative)
+			++pos;
+
+		long value = 0;
+		int digitEnd = readDigits (pos);
+		if (digitEnd > end)
+			digitEnd = end;
+
+		if ((digitEnd - pos) < 19)
+		{
+			// no overflow possible
+			for (; pos < digitEnd; ++pos)
+				value = value * 10 - (buf[pos] - '0');
+		}
+		else
+		{
+			final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+			final long multmin = limit / 10;
+			for (; pos < digitEnd; ++pos)
+			{
+				int digit = buf[pos] - '0';
+				if (value < multmin)
+					return false;
+				value *= 10;
+				if (value < limit + digit)
+					return false;
+				value -= digit;
+			}
+		}
+
+		if (digitEnd < end)
+		{
+			// the fraction can be truncated, but the exponent cannot be ignored.
+			for (pos = digitEnd; pos < end; ++pos)
+			{
+				if (buf[pos] == 'e' || buf[pos] == 'E')
+					return false;
+			}
+		}
+
+		m_long = negative ? value : -value;
+		return true;
+	}
+
+	@Override
+	public int getInt ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getInt()");
+		if (parseLong ())
+			return (int) m_long;
+		return new BigDecimal (getBufferString ()).intValue ();
+	}
+
+	@Override
+	public long getLong ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getLong()");
+		if (parseLong ())
+			return m_long;
+		return new BigDecimal (getBufferString ()).longValue ();
+	}
+
+	@Override
+	public BigDecimal getBigDecimal ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getBigDecimal()");
+		if (m_int && parseLong ())
+			return BigDecimal.valueOf (m_long);
+		return new BigDecimal (getBufferString ());
+	}
+
+	@Override
+	public double getDouble ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getDouble()");
+		final DoubleParser doubleParser = m_doubleParser;
+		doubleParser.scan (m_buf, m_start, m_len);
+		double d = doubleParser.toDouble ();
+		if (d != d)
+			d = Double.parseDouble (getBufferString ());
+		return d;
+	}
+
+	@Override
+	public float getFloat ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getFloat()");
+		final DoubleParser doubleParser = m_doubleParser;
+		doubleParser.scan (m_buf, m_start, m_len);
+		float f = doubleParser.toFloat ();
+		if (f != f)
+			f = Float.parseFloat (getBufferString ());
+		return f;
+	}
+
+	@Override
+	public JsonLocation getLocation ()
+	{
+		return getLocation (m_pos);
+	}
+
+	@Override
+	public String getString ()
+	{
+		if (m_event == null)
+			throw stateError ("getString()");
+		switch (m_event)
+		{
+			case KEY_NAME:
+				return getKeyString ();
+			case VALUE_STRING:
+			case VALUE_NUMBER:
+				return getBufferString ();
+			default:
+				throw stateError ("getString()");
+		}
+	}
+
+	@Override
+	public boolean isBinary ()
+	{
+		if (m_event != Event.VALUE_STRING)
+			throw stateError ("isBinary()");
+		// For Json, it is up to the caller to interpret the string
+		// value as the binary encoded string.
+		return false;
+	}
+
+	@Override
+	public byte[] getBytes ()
+	{
+		if (m_event != Event.VALUE_STRING)
+			throw stateError ("getBytes()");
+		throw new IllegalStateException ("The current string value is not binary.");
+	}
+
+	@Override
+	public void close ()
+	{
+	}
+
+	private void pushState (boolean isArray)
+	{
+		if (m_state != ParserState.INITIAL)
+			m_states.add (Boolean.valueOf (m_state == ParserState.IN_ARRAY));
+		m_state = isArray ? ParserState.IN_ARRAY : ParserState.IN_OBJECT;
+	}
+
+	private void popState (boolean isArrayEnd)
+	{
+		boolean isArray = m_state == ParserState.IN_ARRAY;
+		if (isArrayEnd != isArray)
+			throw unexpected (m_pos);
+		if (m_states.isEmpty ())
+			m_state = ParserState.END;
+		else
+		{
+			boolean b = m_states.remove (m_states.size () - 1);
+			m_state = b ? ParserState.IN_ARRAY : ParserState.IN_OBJECT;
+		}
+	}
+
+	/**
+	 * Sets the table used to look up canonical key name strings.
+	 *
+	 * @param	symbols
+	 *			the symbol table.  Can be null.
+	 */
+	void setSymbolTable (SymbolTable symbols)
+	{
+		m_symbols = symbols;
+	}
+
+	/**
+	 * Sets the table used to share string values returned by
+	 * {@link #getValue()}.
+	 *
+	 * @param	stringValues
+	 *			the string value table.  Can be null.
+	 */
+	void setStringValueTable (StringValueTable stringValues)
+	{
+		m_stringValues = stringValues;
+	}
+
+	/**
+	 * Checks if {@link #getValue()} returns lazy views.
+	 *
+	 * @return	true if lazy views are returned.
+	 */
+	public boolean isLazyValues ()
+	{
+		return m_lazyValues;
+	}
+
+	/**
+	 * Sets whether {@link #getValue()} at a START event returns a lazy
+	 * view instead of building the whole tree.  The members of a lazy
+	 * view are decoded on first access, so errors inside the members
+	 * that are never accessed are not reported.  The default is false.
+	 *
+	 * @param	lazyValues
+	 *			true if lazy views should be returned.
+	 */
+	public void setLazyValues (boolean lazyValues)
+	{
+		m_lazyValues = lazyValues;
+	}
+}
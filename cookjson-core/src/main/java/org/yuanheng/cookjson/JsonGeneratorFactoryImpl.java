@@ -30,30 +30,32 @@ import javax.json.stream.JsonGeneratorFactory;
 class JsonGeneratorFactoryImpl implements JsonGeneratorFactory
 {
 	private final Map<String, ?> m_config;
+	private final FactorySettings m_settings;
 	private final ConfigHandler m_handler;
 
 	public JsonGeneratorFactoryImpl (Map<String, ?> config, ConfigHandler handler)
 	{
 		m_config = config;
+		m_settings = new FactorySettings (config);
 		m_handler = handler;
 	}
 
 	@Override
 	public JsonGenerator createGenerator (Writer writer)
 	{
-		return m_handler.createGenerator (m_config, writer);
+		return m_handler.createGenerator (m_settings, writer);
 	}
 
 	@Override
 	public JsonGenerator createGenerator (OutputStream os)
 	{
-		return m_handler.createGenerator (m_config, os);
+		return m_handler.createGenerator (m_settings, os);
 	}
 
 	@Override
 	public JsonGenerator createGenerator (OutputStream os, Charset charset)
 	{
-		return m_handler.createGenerator (m_config, os, charset);
+		return m_handler.createGenerator (m_settings, os, charset);
 	}
 
 	@Override
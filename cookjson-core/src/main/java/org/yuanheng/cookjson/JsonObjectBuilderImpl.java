@@ -112,7 +112,7 @@ class JsonObjectBuilderImpl implements JsonObjectBuilder
 	@Override
 	public JsonObject build ()
 	{
-		return m_object;
+		return m_object.freeze ();
 	}
 
 }
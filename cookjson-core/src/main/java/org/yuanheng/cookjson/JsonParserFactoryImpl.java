@@ -17,6 +17,8 @@ package org.yuanheng.cookjson;
 
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.util.Collections;
 import java.util.Map;
@@ -24,38 +26,70 @@ import java.util.Map;
 import javax.json.JsonArray;
 import javax.json.JsonObject;
 import javax.json.stream.JsonParser;
-import javax.json.stream.JsonParserFactory;
 
 /**
  * @author	Heng Yuan
  */
-class JsonParserFactoryImpl implements JsonParserFactory
+class JsonParserFactoryImpl implements CookJsonParserFactory
 {
 	private final Map<String, ?> m_config;
+	private final FactorySettings m_settings;
 	private final ConfigHandler m_handler;
+	/** Key names shared by all the parsers created by this factory. */
+	private final SymbolTable m_symbols = new SymbolTable ();
+	/** String values shared by all the parsers.  null if not enabled. */
+	private final StringValueTable m_stringValues;
 
 	public JsonParserFactoryImpl (Map<String, ?> config, ConfigHandler handler)
 	{
 		m_config = config;
+		m_settings = new FactorySettings (config);
 		m_handler = handler;
+		m_stringValues = m_settings.stringValueCache > 0 ? new StringValueTable (m_settings.stringValueCache) : null;
+	}
+
+	private CookJsonParser attach (CookJsonParser p)
+	{
+		m_symbols.attach (p);
+		if (m_stringValues != null)
+			m_stringValues.attach (p);
+		return p;
 	}
 
 	@Override
 	public JsonParser createParser (Reader reader)
 	{
-		return m_handler.createParser (m_config, reader);
+		return attach (m_handler.createParser (m_settings, reader));
 	}
 
 	@Override
 	public JsonParser createParser (InputStream is)
 	{
-		return m_handler.createParser (m_config, is);
+		return attach (m_handler.createParser (m_settings, is));
 	}
 
 	@Override
 	public JsonParser createParser (InputStream is, Charset charset)
 	{
-		return m_handler.createParser (m_config, is, charset);
+		return attach (m_handler.createParser (m_settings, is, charset));
+	}
+
+	@Override
+	public CookJsonParser createParser (FileChannel channel)
+	{
+		return attach (m_handler.createParser (m_settings, channel));
+	}
+
+	@Override
+	public CookJsonParser createParser (byte[] buf, int offset, int length)
+	{
+		return attach (m_handler.createParser (m_settings, buf, offset, length));
+	}
+
+	@Override
+	public CookJsonParser createParser (ByteBuffer buffer)
+	{
+		return attach (m_handler.createParser (m_settings, buffer));
 	}
 
 	@Override
@@ -30,30 +30,45 @@ import javax.json.JsonReaderFactory;
 class JsonReaderFactoryImpl implements JsonReaderFactory
 {
 	private final Map<String, ?> m_config;
+	private final FactorySettings m_settings;
 	private final ConfigHandler m_handler;
+	/** Key names shared by all the readers created by this factory. */
+	private final SymbolTable m_symbols = new SymbolTable ();
+	/** String values shared by all the readers.  null if not enabled. */
+	private final StringValueTable m_stringValues;
 
 	public JsonReaderFactoryImpl (Map<String, ?> config, ConfigHandler handler)
 	{
 		m_config = config;
+		m_settings = new FactorySettings (config);
 		m_handler = handler;
+		m_stringValues = m_settings.stringValueCache > 0 ? new StringValueTable (m_settings.stringValueCache) : null;
+	}
+
+	private CookJsonParser attach (CookJsonParser p)
+	{
+		m_symbols.attach (p);
+		if (m_stringValues != null)
+			m_stringValues.attach (p);
+		return p;
 	}
 
 	@Override
 	public JsonReader createReader (Reader reader)
 	{
-		return new JsonReaderImpl (m_handler.createParser (m_config, reader));
+		return new JsonReaderImpl (attach (m_handler.createParser (m_settings, reader)));
 	}
 
 	@Override
 	public JsonReader createReader (InputStream is)
 	{
-		return new JsonReaderImpl (m_handler.createParser (m_config, is));
+		return new JsonReaderImpl (attach (m_handler.createParser (m_settings, is)));
 	}
 
 	@Override
 	public JsonReader createReader (InputStream is, Charset charset)
 	{
-		return new JsonReaderImpl (m_handler.createParser (m_config, is, charset));
+		return new JsonReaderImpl (attach (m_handler.createParser (m_settings, is, charset)));
 	}
 
 	@Override
@@ -16,89 +16,141 @@
 package org.yuanheng.cookjson;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.NoSuchElementException;
+import java.util.*;
 
 import javax.json.*;
 import javax.json.stream.JsonLocation;
 
 import org.yuanheng.cookjson.value.CookJsonBinary;
+import org.yuanheng.cookjson.value.CookJsonCompactObject;
+import org.yuanheng.cookjson.value.CookJsonDouble;
 
 /**
+ * A parser that goes through the events of a JsonObject or a JsonArray.
+ * <p>
+ * The traversal does not copy the containers.  Objects are walked through
+ * their entries, so each value is obtained without a second lookup, and
+ * the frames of the traversal stack are reused.
+ *
  * @author	Heng Yuan
  */
 public class JsonStructureParser implements CookJsonParser
 {
+	/**
+	 * The traversal state of a container.  Only the fields for the kind
+	 * of the container are used.
+	 */
+	private final static class Frame
+	{
+		/** The array, if it is accessed by index. */
+		List<JsonValue> list;
+		/** The compact object, if it is accessed by index. */
+		CookJsonCompactObject compact;
+		/** The entries of other objects. */
+		Iterator<Map.Entry<String, JsonValue>> entries;
+		/** The elements of other arrays. */
+		Iterator<JsonValue> elements;
+		boolean isArray;
+		int index;
+		int size;
+		/** The value of the key name just returned. */
+		JsonValue pending;
+
+		void clear ()
+		{
+			list = null;
+			compact = null;
+			entries = null;
+			elements = null;
+			pending = null;
+		}
+	}
+
 	private JsonStructure m_s;
 
-	private ArrayList<Object> m_queue = new ArrayList<Object> ();
+	/** The traversal stack.  Frames are reused.  null if closed. */
+	private ArrayList<Frame> m_frames = new ArrayList<Frame> ();
+	private int m_depth;
 	private Event m_event;
 
 	private String m_name;
 	private JsonValue m_value;
 
-	private static class ArrayQueue
-	{
-		JsonArray array;
-		int index;
-	}
-
-	private static class ObjectQueue
-	{
-		JsonObject obj;
-		LinkedList<String> names;
-	}
-
 	public JsonStructureParser (JsonStructure s)
 	{
 		m_s = s;
 		push (s);
 	}
 
-	private Object top ()
-	{
-		return m_queue.get (m_queue.size () - 1);
-	}
-
 	private void pop ()
 	{
-		m_queue.remove (m_queue.size () - 1);
+		m_frames.get (--m_depth).clear ();
 	}
 
 	private void push (JsonStructure value)
 	{
+		Frame frame;
+		if (m_depth < m_frames.size ())
+			frame = m_frames.get (m_depth);
+		else
+		{
+			frame = new Frame ();
+			m_frames.add (frame);
+		}
+		++m_depth;
+
+		frame.index = 0;
 		if (value instanceof JsonArray)
 		{
-			// for array, we just need to save the index position
-			ArrayQueue q = new ArrayQueue ();
-			q.array = (JsonArray) value;
-			q.index = 0;
-			m_queue.add (q);
+			JsonArray array = (JsonArray) value;
+			frame.isArray = true;
+			if (array instanceof RandomAccess)
+			{
+				frame.list = array;
+				frame.size = array.size ();
+			}
+			else
+				frame.elements = array.iterator ();
 		}
-		else if (value instanceof JsonObject)
+		else
 		{
-			// for object, we need to store all the names in an array
-			JsonObject o = (JsonObject) value;
-			LinkedList<String> names = new LinkedList<String> ();
-			names.addAll (o.keySet ());
-			ObjectQueue q = new ObjectQueue ();
-			q.obj = o;
-			q.names = names;
-			m_queue.add (q);
+			frame.isArray = false;
+			if (value instanceof CookJsonCompactObject)
+			{
+				CookJsonCompactObject compact = (CookJsonCompactObject) value;
+				frame.compact = compact;
+				frame.size = compact.size ();
+			}
+			else
+				frame.entries = ((JsonObject) value).entrySet ().iterator ();
 		}
 	}
 
 	@Override
 	public boolean hasNext ()
 	{
-		return m_queue != null && !m_queue.isEmpty ();
+		return m_frames != null && m_depth > 0;
+	}
+
+	/**
+	 * Sets the current value and enters it if it is a container.
+	 *
+	 * @param	v
+	 *			the value.
+	 */
+	private void setValue (JsonValue v)
+	{
+		m_name = null;
+		m_value = v;
+		if (v instanceof JsonStructure)
+			push ((JsonStructure) v);
+		m_event = getEvent (v);
 	}
 
 	@Override
 	public Event next ()
 	{
-		if (m_queue == null || m_queue.size () == 0)
+		if (m_frames == null || m_depth == 0)
 			throw new NoSuchElementException ();
 
 		Event e = m_event;
@@ -108,62 +160,103 @@ public class JsonStructureParser implements CookJsonParser
 			m_event = getEvent (m_s);
 			return m_event;
 		}
-		else if (e == Event.KEY_NAME)
+
+		Frame frame = m_frames.get (m_depth - 1);
+		if (e == Event.KEY_NAME)
 		{
-			// we are in an object
-			ObjectQueue q = (ObjectQueue) top ();
 			// we just handled the name, now get the value.
-			JsonValue v = q.obj.get (m_name);
-			m_name = null;
-			m_value = v;
-			if (v instanceof JsonStructure)
-				push ((JsonStructure) v);
-			m_event = getEvent (v);
+			JsonValue v = frame.pending;
+			frame.pending = null;
+			setValue (v);
 		}
-		else
+		else if (frame.isArray)
 		{
-			Object o = top ();
-			if (o instanceof ObjectQueue)
+			if (frame.list != null)
 			{
-				ObjectQueue q = (ObjectQueue) o;
-				if (q.names.isEmpty ())
-				{
-					// no more objects
-					m_value = null;
-					pop ();
-					m_event = Event.END_OBJECT;
-				}
+				if (frame.index < frame.size)
+					setValue (frame.list.get (frame.index++));
 				else
-				{
-					m_name = q.names.removeFirst ();
-					m_event = Event.KEY_NAME;
-				}
+					endArray ();
 			}
+			else if (frame.elements.hasNext ())
+				setValue (frame.elements.next ());
 			else
+				endArray ();
+		}
+		else
+		{
+			if (frame.compact != null)
 			{
-				ArrayQueue q = (ArrayQueue) o;
-				JsonArray a = q.array;
-				if (q.index < a.size ())
+				if (frame.index < frame.size)
 				{
-					JsonValue v = a.get (q.index++);
-					m_name = null;
-					m_value = v;
-					if (v instanceof JsonStructure)
-						push ((JsonStructure) v);
-					m_event = getEvent (v);
-				}
-				else
-				{
-					// no more values
+					int i = frame.index++;
+					m_name = frame.compact.getShape ().getKey (i);
+					frame.pending = frame.compact.getValueAt (i);
 					m_value = null;
-					pop ();
-					m_event = Event.END_ARRAY;
+					m_event = Event.KEY_NAME;
 				}
+				else
+					endObject ();
+			}
+			else if (frame.entries.hasNext ())
+			{
+				Map.Entry<String, JsonValue> entry = frame.entries.next ();
+				m_name = entry.getKey ();
+				frame.pending = entry.getValue ();
+				m_value = null;
+				m_event = Event.KEY_NAME;
 			}
+			else
+				endObject ();
 		}
 		return m_event;
 	}
 
+	private void endArray ()
+	{
+		m_value = null;
+		pop ();
+		m_event = Event.END_ARRAY;
+	}
+
+	private void endObject ()
+	{
+		m_value = null;
+		pop ();
+		m_event = Event.END_OBJECT;
+	}
+
+	@Override
+	public int readIntArray (int[] values, int offset, int length)
+	{
+		return Utils.readIntArray (this, values, offset, length);
+	}
+
+	@Override
+	public int readLongArray (long[] values, int offset, int length)
+	{
+		return Utils.readLongArray (this, values, offset, length);
+	}
+
+	@Override
+	public int readDoubleArray (double[] values, int offset, int length)
+	{
+		return Utils.readDoubleArray (this, values, offset, length);
+	}
+
+	@Override
+	public void skipChildren ()
+	{
+		if (m_event == Event.START_ARRAY)
+			m_event = Event.END_ARRAY;
+		else if (m_event == Event.START_OBJECT)
+			m_event = Event.END_OBJECT;
+		else
+			return;
+		m_value = null;
+		pop ();
+	}
+
 	private Event getEvent (JsonValue v)
 	{
 		switch (v.getValueType ())
@@ -252,6 +345,24 @@ public class JsonStructureParser implements CookJsonParser
 		return ((JsonNumber)m_value).bigDecimalValue ();
 	}
 
+	@Override
+	public double getDouble ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw new IllegalStateException ();
+		return ((JsonNumber)m_value).doubleValue ();
+	}
+
+	@Override
+	public float getFloat ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw new IllegalStateException ();
+		if (m_value instanceof CookJsonDouble)
+			return (float) ((CookJsonDouble)m_value).doubleValue ();
+		return ((JsonNumber)m_value).bigDecimalValue ().floatValue ();
+	}
+
 	@Override
 	public JsonLocation getLocation ()
 	{
@@ -262,7 +373,8 @@ public class JsonStructureParser implements CookJsonParser
 	public void close ()
 	{
 		m_s = null;
-		m_queue = null;
+		m_frames = null;
+		m_depth = 0;
 	}
 
 	@Override
@@ -30,30 +30,32 @@ import javax.json.JsonWriterFactory;
 class JsonWriterFactoryImpl implements JsonWriterFactory
 {
 	private final Map<String, ?> m_config;
+	private final FactorySettings m_settings;
 	private final ConfigHandler m_handler;
 
 	public JsonWriterFactoryImpl (Map<String, ?> config, ConfigHandler handler)
 	{
 		m_config = config;
+		m_settings = new FactorySettings (config);
 		m_handler = handler;
 	}
 
 	@Override
 	public JsonWriter createWriter (Writer writer)
 	{
-		return new JsonWriterImpl (m_handler.createGenerator (m_config, writer));
+		return new JsonWriterImpl (m_handler.createGenerator (m_settings, writer));
 	}
 
 	@Override
 	public JsonWriter createWriter (OutputStream os)
 	{
-		return new JsonWriterImpl (m_handler.createGenerator (m_config, os));
+		return new JsonWriterImpl (m_handler.createGenerator (m_settings, os));
 	}
 
 	@Override
 	public JsonWriter createWriter (OutputStream os, Charset charset)
 	{
-		return new JsonWriterImpl (m_handler.createGenerator (m_config, os, charset));
+		return new JsonWriterImpl (m_handler.createGenerator (m_settings, os, charset));
 	}
 
 	@Override
@@ -0,0 +1,175 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.json.*;
+
+/**
+ * A read-only JsonArray view of an array parsed by {@link IndexedJsonParser}
+ * in the lazy mode.
+ * <p>
+ * Only the index positions of the elements are recorded.  An element is
+ * decoded when it is first accessed, and the decoded value is cached.
+ *
+ * @author	Heng Yuan
+ */
+final class LazyJsonArray extends AbstractList<JsonValue> implements JsonArray, RandomAccess
+{
+	private final IndexedJsonParser m_decoder;
+	/** The index positions of the elements. */
+	private final int[] m_members;
+	/** The decoded elements. */
+	private final JsonValue[] m_values;
+
+	LazyJsonArray (IndexedJsonParser decoder, int indexPos)
+	{
+		m_decoder = decoder;
+		m_members = decoder.getMembers (indexPos);
+		m_values = new JsonValue[m_members.length];
+	}
+
+	@Override
+	public ValueType getValueType ()
+	{
+		return ValueType.ARRAY;
+	}
+
+	@Override
+	public int size ()
+	{
+		return m_members.length;
+	}
+
+	@Override
+	public JsonValue get (int index)
+	{
+		if (index < 0 || index >= m_members.length)
+			throw new IndexOutOfBoundsException ("Index: " + index + ", Size: " + m_members.length);
+		JsonValue value = m_values[index];
+		if (value == null)
+		{
+			synchronized (m_decoder)
+			{
+				value = m_values[index];
+				if (value == null)
+				{
+					value = m_decoder.getLazyValue (m_members[index]);
+					m_values[index] = value;
+				}
+			}
+		}
+		return value;
+	}
+
+	@Override
+	public JsonObject getJsonObject (int index)
+	{
+		return (JsonObject) get (index);
+	}
+
+	@Override
+	public JsonArray getJsonArray (int index)
+	{
+		return (JsonArray) get (index);
+	}
+
+	@Override
+	public JsonNumber getJsonNumber (int index)
+	{
+		return (JsonNumber) get (index);
+	}
+
+	@Override
+	public JsonString getJsonString (int index)
+	{
+		return (JsonString) get (index);
+	}
+
+	@SuppressWarnings ("unchecked")
+	@Override
+	public <T extends JsonValue> List<T> getValuesAs (Class<T> clazz)
+	{
+		return (List<T>)this;
+	}
+
+	@Override
+	public String getString (int index)
+	{
+		return getJsonString (index).getString ();
+	}
+
+	@Override
+	public String getString (int index, String defaultValue)
+	{
+		if (index < 0 || index >= m_members.length)
+			return defaultValue;
+		JsonValue value = get (index);
+		if (value instanceof JsonString)
+			return ((JsonString) value).getString ();
+		return defaultValue;
+	}
+
+	@Override
+	public int getInt (int index)
+	{
+		return getJsonNumber (index).intValue ();
+	}
+
+	@Override
+	public int getInt (int index, int defaultValue)
+	{
+		if (index < 0 || index >= m_members.length)
+			return defaultValue;
+		JsonValue value = get (index);
+		if (value instanceof JsonNumber)
+			return ((JsonNumber) value).intValue ();
+		return defaultValue;
+	}
+
+	@Override
+	public boolean getBoolean (int index)
+	{
+		JsonValue value = get (index);
+		if (value == JsonValue.TRUE)
+			return true;
+		if (value == JsonValue.FALSE)
+			return false;
+		throw new ClassCastException ();
+	}
+
+	@Override
+	public boolean getBoolean (int index, boolean defaultValue)
+	{
+		if (index < 0 || index >= m_members.length)
+			return defaultValue;
+		JsonValue value = get (index);
+		if (value == JsonValue.TRUE)
+			return true;
+		if (value == JsonValue.FALSE)
+			return false;
+		return defaultValue;
+	}
+
+	@Override
+	public boolean isNull (int index)
+	{
+		return get (index) == JsonValue.NULL;
+	}
+}
@@ -0,0 +1,290 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.util.*;
+
+import javax.json.*;
+
+/**
+ * A read-only JsonObject view of an object parsed by
+ * {@link IndexedJsonParser} in the lazy mode.
+ * <p>
+ * The key names are decoded when the view is created, but a value is
+ * only decoded when it is first accessed, and the decoded value is
+ * cached.  If a key name appears more than once, the last member is
+ * used.
+ *
+ * @author	Heng Yuan
+ */
+final class LazyJsonObject extends AbstractMap<String, JsonValue> implements JsonObject
+{
+	/** Objects larger than this size are searched with a HashMap. */
+	private final static int LINEAR_SIZE = 8;
+
+	private final IndexedJsonParser m_decoder;
+	/** The index positions of the key names. */
+	private final int[] m_members;
+	private final String[] m_names;
+	/** The decoded values. */
+	private final JsonValue[] m_values;
+	/** The member positions of the key names.  null for small objects. */
+	private final HashMap<String, Integer> m_map;
+	/** The number of distinct key names. */
+	private final int m_size;
+
+	LazyJsonObject (IndexedJsonParser decoder, int indexPos)
+	{
+		m_decoder = decoder;
+		final int[] members = decoder.getMembers (indexPos);
+		final int count = members.length;
+		m_members = members;
+		m_names = new String[count];
+		for (int i = 0; i < count; ++i)
+			m_names[i] = decoder.getKeyName (members[i]);
+		m_values = new JsonValue[count];
+
+		if (count > LINEAR_SIZE)
+		{
+			m_map = new HashMap<String, Integer> (count * 2);
+			for (int i = 0; i < count; ++i)
+				m_map.put (m_names[i], i);
+			m_size = m_map.size ();
+		}
+		else
+		{
+			m_map = null;
+			int size = 0;
+			for (int i = 0; i < count; ++i)
+			{
+				if (find (m_names[i]) == i)
+					++size;
+			}
+			m_size = size;
+		}
+	}
+
+	/**
+	 * Finds a member.
+	 *
+	 * @param	name
+	 *			the key name.
+	 * @return	the member position.  -1 if not found.
+	 */
+	private int find (String name)
+	{
+		if (m_map != null)
+		{
+			Integer i = m_map.get (name);
+			return i == null ? -1 : i;
+		}
+		final String[] names = m_names;
+		for (int i = names.length - 1; i >= 0; --i)
+		{
+			if (names[i].equals (name))
+				return i;
+		}
+		return -1;
+	}
+
+	private JsonValue getValue (int i)
+	{
+		JsonValue value = m_values[i];
+		if (value == null)
+		{
+			synchronized (m_decoder)
+			{
+				value = m_values[i];
+				if (value == null)
+				{
+					// the value follows the key name, its closing quote and ':'.
+					value = m_decoder.getLazyValue (m_members[i] + 3);
+					m_values[i] = value;
+				}
+			}
+		}
+		return value;
+	}
+
+	@Override
+	public ValueType getValueType ()
+	{
+		return ValueType.OBJECT;
+	}
+
+	@Override
+	public int size ()
+	{
+		return m_size;
+	}
+
+	@Override
+	public boolean containsKey (Object key)
+	{
+		return key instanceof String && find ((String) key) >= 0;
+	}
+
+	@Override
+	public JsonValue get (Object key)
+	{
+		if (!(key instanceof String))
+			return null;
+		int i = find ((String) key);
+		return i < 0 ? null : getValue (i);
+	}
+
+	@Override
+	public Set<Map.Entry<String, JsonValue>> entrySet ()
+	{
+		return new AbstractSet<Map.Entry<String, JsonValue>> ()
+		{
+			@Override
+			public Iterator<Map.Entry<String, JsonValue>> iterator ()
+			{
+				return new Iterator<Map.Entry<String, JsonValue>> ()
+				{
+					private int m_next = advance (0);
+
+					/**
+					 * Skips the members overridden by later ones.
+					 */
+					private int advance (int i)
+					{
+						final String[] names = m_names;
+						while (i < names.length && find (names[i]) != i)
+							++i;
+						return i;
+					}
+
+					@Override
+					public boolean hasNext ()
+					{
+						return m_next < m_names.length;
+					}
+
+					@Override
+					public Map.Entry<String, JsonValue> next ()
+					{
+						if (!hasNext ())
+							throw new NoSuchElementException ();
+						int i = m_next;
+						m_next = advance (i + 1);
+						return new AbstractMap.SimpleImmutableEntry<String, JsonValue> (m_names[i], getValue (i));
+					}
+
+					@Override
+					public void remove ()
+					{
+						throw new UnsupportedOperationException ();
+					}
+				};
+			}
+
+			@Override
+			public int size ()
+			{
+				return m_size;
+			}
+		};
+	}
+
+	@Override
+	public JsonArray getJsonArray (String name)
+	{
+		return (JsonArray) get (name);
+	}
+
+	@Override
+	public JsonObject getJsonObject (String name)
+	{
+		return (JsonObject) get (name);
+	}
+
+	@Override
+	public JsonNumber getJsonNumber (String name)
+	{
+		return (JsonNumber) get (name);
+	}
+
+	@Override
+	public JsonString getJsonString (String name)
+	{
+		return (JsonString) get (name);
+	}
+
+	@Override
+	public String getString (String name)
+	{
+		return getJsonString (name).getString ();
+	}
+
+	@Override
+	public String getString (String name, String defaultValue)
+	{
+		JsonValue value = get (name);
+		if (value instanceof JsonString)
+			return ((JsonString) value).getString ();
+		return defaultValue;
+	}
+
+	@Override
+	public int getInt (String name)
+	{
+		return getJsonNumber (name).intValue ();
+	}
+
+	@Override
+	public int getInt (String name, int defaultValue)
+	{
+		JsonValue value = get (name);
+		if (value instanceof JsonNumber)
+			return ((JsonNumber) value).intValue ();
+		return defaultValue;
+	}
+
+	@Override
+	public boolean getBoolean (String name)
+	{
+		JsonValue value = get (name);
+		if (value == null)
+			throw new NullPointerException ();
+		if (value == JsonValue.TRUE)
+			return true;
+		if (value == JsonValue.FALSE)
+			return false;
+		throw new ClassCastException ();
+	}
+
+	@Override
+	public boolean getBoolean (String name, boolean defaultValue)
+	{
+		JsonValue value = get (name);
+		if (value == JsonValue.TRUE)
+			return true;
+		if (value == JsonValue.FALSE)
+			return false;
+		return defaultValue;
+	}
+
+	@Override
+	public boolean isNull (String name)
+	{
+		JsonValue value = get (name);
+		if (value == null)
+			throw new NullPointerException ();
+		return value == JsonValue.NULL;
+	}
+}
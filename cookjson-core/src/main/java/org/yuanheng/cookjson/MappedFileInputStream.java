@@ -0,0 +1,278 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * An InputStream that reads a file through memory mapped windows.
+ * <p>
+ * Reading from the mapped window avoids a read () system call for every
+ * parser buffer fill.  The file is mapped in large windows so that files
+ * larger than 2GB can be read as well.  The parser using this stream
+ * should use a large read buffer (see {@link #READ_SIZE}) so that
+ * strings and numbers rarely cross the buffer boundary.
+ * <p>
+ * This is a read-ahead stream rather than a zero copy one: the data is
+ * still copied from the window into the buffer of the caller.  A window
+ * is unmapped as soon as the stream moves past it, and on close (),
+ * if the JDK allows it.  Otherwise, the windows are unmapped by the
+ * garbage collector.
+ *
+ * @author	Heng Yuan
+ */
+class MappedFileInputStream extends InputStream
+{
+	/** The size of each mapped window. */
+	final static int WINDOW_SIZE = 64 * 1024 * 1024;
+	/** The suggested parser read buffer size. */
+	final static int READ_SIZE = 1024 * 1024;
+
+	private final FileChannel m_channel;
+	private final int m_windowSize;
+	/** The file position of the current window. */
+	private long m_position;
+	/** The file size.  -1 if it is not yet known. */
+	private long m_size = -1;
+	private MappedByteBuffer m_window;
+
+	/** Unmaps the windows.  null if the JDK does not allow it. */
+	private static volatile Unmapper s_unmapper = createUnmapper ();
+
+	/**
+	 * Reads the file from the current position of the channel.
+	 *
+	 * @param	channel
+	 *			the file channel.  It is closed when this stream is closed.
+	 */
+	public MappedFileInputStream (FileChannel channel)
+	{
+		this (channel, WINDOW_SIZE);
+	}
+
+	/**
+	 * Reads the file from the current position of the channel.
+	 *
+	 * @param	channel
+	 *			the file channel.  It is closed when this stream is closed.
+	 * @param	windowSize
+	 *			the size of each mapped window.
+	 */
+	public MappedFileInputStream (FileChannel channel, int windowSize)
+	{
+		m_channel = channel;
+		m_windowSize = windowSize;
+	}
+
+	/**
+	 * Maps the next window if the current one has been consumed.
+	 *
+	 * @return	false if the end of file has been reached.
+	 * @throws	IOException
+	 *			in case of I/O error.
+	 */
+	private boolean map () throws IOException
+	{
+		MappedByteBuffer window = m_window;
+		if (window != null)
+		{
+			if (window.hasRemaining ())
+				return true;
+			m_position += window.limit ();
+			m_window = null;
+			unmap (window);
+		}
+		else if (m_size < 0)
+		{
+			m_position = m_channel.position ();
+			m_size = m_channel.size ();
+		}
+		long remaining = m_size - m_position;
+		if (remaining <= 0)
+			return false;
+		m_window = m_channel.map (FileChannel.MapMode.READ_ONLY, m_position, Math.min (remaining, m_windowSize));
+		return true;
+	}
+
+	@Override
+	public int read () throws IOException
+	{
+		if (!map ())
+			return -1;
+		return m_window.get () & 0xff;
+	}
+
+	@Override
+	public int read (byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+			return 0;
+		if (!map ())
+			return -1;
+		int n = Math.min (len, m_window.remaining ());
+		m_window.get (b, off, n);
+		return n;
+	}
+
+	@Override
+	public long skip (long n) throws IOException
+	{
+		if (n <= 0 || !map ())
+			return 0;
+		MappedByteBuffer window = m_window;
+		int pos = window.position ();
+		if (n < window.remaining ())
+		{
+			window.position (pos + (int) n);
+			return n;
+		}
+		// move past the current window.
+		long current = m_position + pos;
+		n = Math.min (n, m_size - current);
+		m_position = current + n;
+		m_window = null;
+		unmap (window);
+		return n;
+	}
+
+	@Override
+	public int available () throws IOException
+	{
+		if (m_window == null)
+			return 0;
+		return m_window.remaining ();
+	}
+
+	@Override
+	public void close () throws IOException
+	{
+		MappedByteBuffer window = m_window;
+		m_window = null;
+		if (window != null)
+			unmap (window);
+		m_channel.close ();
+	}
+
+	/**
+	 * Unmaps a window right away rather than leaving it to the garbage
+	 * collector, which can keep many windows of a large file mapped.
+	 * The window must not be accessed afterward.
+	 *
+	 * @param	window
+	 *			the window to be unmapped.
+	 */
+	private static void unmap (MappedByteBuffer window)
+	{
+		Unmapper unmapper = s_unmapper;
+		if (unmapper == null)
+			return;
+		try
+		{
+			unmapper.unmap (window);
+		}
+		catch (Exception ex)
+		{
+			// the cleaner was resolved, but the JDK refused to run it.
+			// it would fail the same way for every window, so leave the
+			// windows to the garbage collector from now on.
+			s_unmapper = null;
+		}
+	}
+
+	/**
+	 * Checks if the windows can be unmapped before they are garbage
+	 * collected.
+	 *
+	 * @return	true if the JDK cleaner is accessible.
+	 */
+	static boolean canUnmap ()
+	{
+		return s_unmapper != null;
+	}
+
+	/**
+	 * Unmaps a window through the JDK internals.  There is no public API
+	 * for this, so the internals are looked up once when the class is
+	 * loaded.
+	 */
+	private static class Unmapper
+	{
+		/** Java 9 and later: sun.misc.Unsafe.invokeCleaner (ByteBuffer). */
+		private final Object m_unsafe;
+		private final Method m_invokeCleaner;
+		/** Java 8 and earlier: sun.nio.ch.DirectBuffer.cleaner ().clean (). */
+		private final Method m_cleaner;
+		private final Method m_clean;
+
+		Unmapper (Object unsafe, Method invokeCleaner, Method cleaner, Method clean)
+		{
+			m_unsafe = unsafe;
+			m_invokeCleaner = invokeCleaner;
+			m_cleaner = cleaner;
+			m_clean = clean;
+		}
+
+		void unmap (MappedByteBuffer window) throws Exception
+		{
+			if (m_invokeCleaner != null)
+			{
+				m_invokeCleaner.invoke (m_unsafe, window);
+				return;
+			}
+			Object cleaner = m_cleaner.invoke (window);
+			if (cleaner != null)
+				m_clean.invoke (cleaner);
+		}
+	}
+
+	/**
+	 * Finds the JDK cleaner.
+	 *
+	 * @return	the unmapper.  null if the cleaner is not accessible.
+	 */
+	private static Unmapper createUnmapper ()
+	{
+		try
+		{
+			// Java 9 and later.
+			Class<?> unsafeClass = Class.forName ("sun.misc.Unsafe");
+			Method invokeCleaner = unsafeClass.getMethod ("invokeCleaner", ByteBuffer.class);
+			Field field = unsafeClass.getDeclaredField ("theUnsafe");
+			field.setAccessible (true);
+			return new Unmapper (field.get (null), invokeCleaner, null, null);
+		}
+		catch (Exception ex)
+		{
+		}
+		try
+		{
+			// Java 8 and earlier.
+			Method cleaner = Class.forName ("sun.nio.ch.DirectBuffer").getMethod ("cleaner");
+			Method clean = Class.forName ("sun.misc.Cleaner").getMethod ("clean");
+			return new Unmapper (null, null, cleaner, clean);
+		}
+		catch (Exception ex)
+		{
+		}
+		return null;
+	}
+}
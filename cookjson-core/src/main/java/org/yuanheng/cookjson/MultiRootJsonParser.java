@@ -0,0 +1,29 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+/**
+ * A parser that can read multiple concatenated root values from a
+ * single input.
+ *
+ * @author	Heng Yuan
+ */
+interface MultiRootJsonParser
+{
+	public boolean isMultipleRoots ();
+
+	public void setMultipleRoots (boolean multipleRoots);
+}
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+
+import javax.json.JsonStructure;
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParsingException;
+
+/**
+ * Reads newline delimited JSON (JSON Lines / NDJSON) records in UTF-8.
+ * <p>
+ * Each non-blank line contains one JSON object or array.  The lines are
+ * parsed in place in the read buffer of this reader, and the same
+ * {@link UTF8TextJsonParser} is reset for every record, so the per record
+ * overhead is small.
+ * <p>
+ * By default, a malformed line stops the reading with a
+ * {@link JsonParsingException}.  If {@link #setSkipMalformed(boolean)} is
+ * enabled, malformed lines are skipped and counted instead.
+ * <p>
+ * To process a large file on multiple threads, see
+ * {@link ParallelArrayReader#readLines(InputStream, ArrayChunkHandler)}.
+ *
+ * @author	Heng Yuan
+ */
+public class NdjsonReader implements Closeable
+{
+	private final static int READ_SIZE = 65536;
+
+	/** The input stream.  null if reading a byte array. */
+	private final InputStream m_in;
+	private byte[] m_buf;
+	/** The start of the next line. */
+	private int m_pos;
+	/** The position where the search for '\n' continues. */
+	private int m_scanPos;
+	/** The end of the data.  m_buf[m_max] is always available. */
+	private int m_max;
+	private boolean m_eof;
+	/** The stream offset of m_buf[0]. */
+	private long m_offset;
+
+	private int m_lineStart;
+	private int m_lineEnd;
+	private long m_lineNumber;
+
+	private boolean m_skipMalformed;
+	private long m_malformedCount;
+
+	private UTF8TextJsonParser m_parser;
+	/** Canonical key names shared with other parsers.  Can be null. */
+	private SymbolTable m_symbols;
+
+	/**
+	 * Reads records from a UTF-8 input stream.
+	 *
+	 * @param	is
+	 *			the input stream.
+	 */
+	public NdjsonReader (InputStream is)
+	{
+		m_in = is;
+		m_buf = new byte[READ_SIZE + 1];
+	}
+
+	/**
+	 * Reads records from a file through memory mapped windows.
+	 *
+	 * @param	channel
+	 *			the file channel.  It is closed when the reader is closed.
+	 */
+	public NdjsonReader (FileChannel channel)
+	{
+		m_in = new MappedFileInputStream (channel);
+		m_buf = new byte[MappedFileInputStream.READ_SIZE + 1];
+	}
+
+	/**
+	 * Reads records from a byte array.  The data is copied once.
+	 *
+	 * @param	buf
+	 *			the byte array containing UTF-8 JSON lines.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 */
+	public NdjsonReader (byte[] buf, int offset, int length)
+	{
+		m_in = null;
+		m_buf = new byte[length + 1];
+		System.arraycopy (buf, offset, m_buf, 0, length);
+		m_max = length;
+		m_eof = true;
+	}
+
+	/**
+	 * Reads records from a byte array owned by this reader.  The array is
+	 * modified.
+	 *
+	 * @param	buf
+	 *			the byte array.  buf.length must be larger than length.
+	 * @param	length
+	 *			the length of the data.
+	 * @param	offset
+	 *			the stream offset of the data for error reporting.
+	 */
+	NdjsonReader (byte[] buf, int length, long offset)
+	{
+		m_in = null;
+		m_buf = buf;
+		m_max = length;
+		m_eof = true;
+		m_offset = offset;
+	}
+
+	/**
+	 * Reads more data.  The current line is moved to the beginning of the
+	 * buffer, and the buffer is expanded if the line fills it.
+	 *
+	 * @throws	IOException
+	 *			in case of I/O error.
+	 */
+	private void fill () throws IOException
+	{
+		int pos = m_pos;
+		if (pos > 0)
+		{
+			System.arraycopy (m_buf, pos, m_buf, 0, m_max - pos);
+			m_offset += pos;
+			m_max -= pos;
+			m_scanPos -= pos;
+			m_pos = 0;
+		}
+		if (m_max + 1 >= m_buf.length)
+		{
+			byte[] newBuf = new byte[m_buf.length * 2];
+			System.arraycopy (m_buf, 0, newBuf, 0, m_max);
+			m_buf = newBuf;
+		}
+		int n = m_in.read (m_buf, m_max, m_buf.length - 1 - m_max);
+		if (n < 0)
+			m_eof = true;
+		else
+			m_max += n;
+	}
+
+	/**
+	 * Finds the next line.
+	 *
+	 * @return	false if there are no more lines.
+	 * @throws	IOException
+	 *			in case of I/O error.
+	 */
+	private boolean nextLine () throws IOException
+	{
+		for (;;)
+		{
+			final byte[] buf = m_buf;
+			for (int i = m_scanPos, max = m_max; i < max; ++i)
+			{
+				if (buf[i] == '\n')
+				{
+					m_lineStart = m_pos;
+					m_lineEnd = i;
+					m_pos = i + 1;
+					m_scanPos = m_pos;
+					return true;
+				}
+			}
+			m_scanPos = m_max;
+			if (m_eof)
+			{
+				if (m_pos == m_max)
+					return false;
+				m_lineStart = m_pos;
+				m_lineEnd = m_max;
+				m_pos = m_max;
+				return true;
+			}
+			fill ();
+		}
+	}
+
+	private boolean isBlankLine ()
+	{
+		final byte[] buf = m_buf;
+		for (int i = m_lineStart; i < m_lineEnd; ++i)
+		{
+			byte ch = buf[i];
+			if (ch != ' ' && ch != '\t' && ch != '\r')
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Translates a location within the current line to the whole input.
+	 *
+	 * @param	location
+	 *			the location reported by the line parser.
+	 * @return	the location in the input.
+	 */
+	private JsonLocation translate (JsonLocation location)
+	{
+		JsonLocationImpl newLocation = new JsonLocationImpl ();
+		newLocation.m_lineNumber = m_lineNumber;
+		newLocation.m_columnNumber = location.getColumnNumber ();
+		newLocation.m_streamOffset = m_offset + m_lineStart + location.getStreamOffset ();
+		return newLocation;
+	}
+
+	private JsonParsingException error (JsonLocation location, String msg, Throwable cause)
+	{
+		JsonLocation newLocation = translate (location);
+		return new JsonParsingException ("Parsing error at " + newLocation.toString () + ": " + msg, cause, newLocation);
+	}
+
+	/**
+	 * Checks if the current line starts with an object or an array.
+	 *
+	 * @return	true if the first non-blank character is '{' or '['.
+	 */
+	private boolean isStructure ()
+	{
+		final byte[] buf = m_buf;
+		for (int i = m_lineStart; i < m_lineEnd; ++i)
+		{
+			byte ch = buf[i];
+			if (ch != ' ' && ch != '\t' && ch != '\r')
+				return ch == '{' || ch == '[';
+		}
+		return false;
+	}
+
+	private JsonStructure parseLine ()
+	{
+		final int length = m_lineEnd - m_lineStart;
+		// terminate the line with 0 so that it is parsed in place.
+		m_buf[m_lineEnd] = 0;
+		UTF8TextJsonParser p = m_parser;
+		if (p == null)
+		{
+			p = new UTF8TextJsonParser (m_buf, m_lineStart, length);
+			p.setSymbolTable (m_symbols);
+			m_parser = p;
+		}
+		else
+			p.reset (m_buf, m_lineStart, length);
+
+		JsonStructure value;
+		try
+		{
+			p.next ();
+			value = Utils.getStructure (p);
+		}
+		catch (JsonParsingException ex)
+		{
+			if (!isStructure ())
+				throw error (ex.getLocation (), "the record is not an object or an array.", ex);
+			throw Utils.relocate (ex, translate (ex.getLocation ()));
+		}
+		if (p.hasTrailingData ())
+			throw error (p.getLocation (), "unexpected data after the record.", null);
+		return value;
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @return	the next record.  null if there are no more records.
+	 * @throws	JsonParsingException
+	 *			if the record is malformed and malformed lines are not
+	 *			skipped.
+	 */
+	public JsonStructure read ()
+	{
+		for (;;)
+		{
+			try
+			{
+				if (!nextLine ())
+					return null;
+			}
+			catch (IOException ex)
+			{
+				JsonLocationImpl location = new JsonLocationImpl ();
+				location.m_lineNumber = m_lineNumber;
+				location.m_streamOffset = m_offset + m_max;
+				throw new JsonParsingException (ex.getMessage (), ex, location);
+			}
+			++m_lineNumber;
+			if (isBlankLine ())
+				continue;
+			try
+			{
+				return parseLine ();
+			}
+			catch (JsonParsingException ex)
+			{
+				if (!m_skipMalformed)
+					throw ex;
+				++m_malformedCount;
+			}
+		}
+	}
+
+	/**
+	 * Gets the line number of the last record read.
+	 *
+	 * @return	the line number starting from 1.
+	 */
+	public long getLineNumber ()
+	{
+		return m_lineNumber;
+	}
+
+	/**
+	 * Checks if malformed lines are skipped.
+	 *
+	 * @return	true if malformed lines are skipped.
+	 */
+	public boolean isSkipMalformed ()
+	{
+		return m_skipMalformed;
+	}
+
+	/**
+	 * Sets whether malformed lines are skipped instead of throwing a
+	 * {@link JsonParsingException}.  The default is false.
+	 *
+	 * @param	skipMalformed
+	 *			true if malformed lines should be skipped.
+	 */
+	public void setSkipMalformed (boolean skipMalformed)
+	{
+		m_skipMalformed = skipMalformed;
+	}
+
+	/**
+	 * Gets the number of malformed lines skipped so far.
+	 *
+	 * @return	the number of malformed lines skipped.
+	 */
+	public long getMalformedCount ()
+	{
+		return m_malformedCount;
+	}
+
+	/**
+	 * Sets the table used to look up canonical key name strings.
+	 *
+	 * @param	symbols
+	 *			the symbol table.  Can be null.
+	 */
+	void setSymbolTable (SymbolTable symbols)
+	{
+		m_symbols = symbols;
+		if (m_parser != null)
+			m_parser.setSymbolTable (symbols);
+	}
+
+	/**
+	 * Closes the underlying input stream or file channel.  Nothing is
+	 * done when reading a byte array.
+	 *
+	 * @throws	JsonParsingException
+	 *			if the input cannot be closed.
+	 */
+	@Override
+	public void close ()
+	{
+		if (m_in == null)
+			return;
+		try
+		{
+			m_in.close ();
+		}
+		catch (IOException ex)
+		{
+			throw new JsonParsingException (ex.getMessage (), ex, null);
+		}
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import javax.json.JsonArray;
+import javax.json.JsonValue;
+
+import org.yuanheng.cookjson.value.*;
+
+/**
+ * Collects the numbers of an array into a primitive array.
+ * <p>
+ * The array starts as int[] and is widened to long[] or double[] as
+ * needed.  Numbers that cannot be stored exactly, such as integers that
+ * overflow long or fractions that a double cannot hold with the same
+ * digits, are rejected, and the caller then falls back to a regular
+ * {@link CookJsonArray}.
+ *
+ * @author	Heng Yuan
+ */
+final class NumberArrayBuilder
+{
+	private final static int NONE = 0;
+	private final static int INT = 1;
+	private final static int LONG = 2;
+	private final static int DOUBLE = 3;
+
+	/** Integers within this range are exact as doubles. */
+	private final static long MAX_EXACT = 1L << 53;
+
+	private int m_type;
+	private int m_count;
+	private int[] m_ints = new int[16];
+	private long[] m_longs;
+	private double[] m_doubles;
+	/** For double[], bit n is set if the n-th number is an integer. */
+	private long[] m_integers = new long[1];
+	private boolean m_hasIntegers;
+
+	public void reset ()
+	{
+		m_type = NONE;
+		m_count = 0;
+		if (m_hasIntegers)
+		{
+			Arrays.fill (m_integers, 0);
+			m_hasIntegers = false;
+		}
+	}
+
+	public int size ()
+	{
+		return m_count;
+	}
+
+	private void toLongs ()
+	{
+		if (m_longs == null || m_longs.length < m_ints.length)
+			m_longs = new long[m_ints.length];
+		for (int i = 0; i < m_count; ++i)
+			m_longs[i] = m_ints[i];
+		m_type = LONG;
+	}
+
+	private boolean toDoubles ()
+	{
+		final int count = m_count;
+		int capacity = m_type == LONG ? m_longs.length : m_ints.length;
+		if (m_doubles == null || m_doubles.length < capacity)
+			m_doubles = new double[capacity];
+		if (m_type == LONG)
+		{
+			for (int i = 0; i < count; ++i)
+			{
+				long l = m_longs[i];
+				if (l > MAX_EXACT || l < -MAX_EXACT)
+					return false;
+				m_doubles[i] = l;
+			}
+		}
+		else
+		{
+			for (int i = 0; i < count; ++i)
+				m_doubles[i] = m_ints[i];
+		}
+		for (int i = 0; i < count; ++i)
+			setInteger (i);
+		m_type = DOUBLE;
+		return true;
+	}
+
+	private void setInteger (int index)
+	{
+		if ((index >> 6) >= m_integers.length)
+			m_integers = Arrays.copyOf (m_integers, Math.max (m_integers.length * 2, (index >> 6) + 1));
+		m_integers[index >> 6] |= 1L << index;
+		m_hasIntegers = true;
+	}
+
+	private void addInt (int value)
+	{
+		if (m_count == m_ints.length)
+			m_ints = Arrays.copyOf (m_ints, m_count * 2);
+		m_ints[m_count++] = value;
+	}
+
+	private void addLong (long value)
+	{
+		if (m_count == m_longs.length)
+			m_longs = Arrays.copyOf (m_longs, m_count * 2);
+		m_longs[m_count++] = value;
+	}
+
+	private void addDouble (double value)
+	{
+		if (m_count == m_doubles.length)
+			m_doubles = Arrays.copyOf (m_doubles, m_count * 2);
+		m_doubles[m_count++] = value;
+	}
+
+	/**
+	 * Checks if a fraction is the same, including the scale, when it is
+	 * accessed as BigDecimal.valueOf (d).
+	 *
+	 * @param	p
+	 *			the parser at a VALUE_NUMBER event.
+	 * @param	d
+	 *			the double value of the number.
+	 * @return	true if the double holds the number exactly.
+	 */
+	private static boolean isExact (CookJsonParser p, double d)
+	{
+		if (Double.isInfinite (d))
+			return false;
+		double abs = Math.abs (d);
+		if ((p instanceof UTF8TextJsonParser || p instanceof TextJsonParser) &&
+			abs >= 1e-3 && abs < 1e7)
+		{
+			// the text parsers create the BigDecimal from the number text,
+			// and Double.toString (d) has no exponent in this range.  So
+			// unless the text has an exponent, the two BigDecimals are
+			// equal only if the strings are.
+			String text = p.getString ();
+			if (text.indexOf ('e') < 0 && text.indexOf ('E') < 0)
+				return text.equals (Double.toString (d));
+		}
+		return p.getBigDecimal ().equals (BigDecimal.valueOf (d));
+	}
+
+	/**
+	 * Adds the current number of the parser.
+	 *
+	 * @param	p
+	 *			the parser at a VALUE_NUMBER event.
+	 * @return	false if the number cannot be added.
+	 */
+	public boolean add (CookJsonParser p)
+	{
+		final double d = p.getDouble ();
+		if (!p.isIntegralNumber ())
+		{
+			if (!isExact (p, d))
+				return false;
+			if (m_type != DOUBLE && !toDoubles ())
+				return false;
+			addDouble (d);
+			return true;
+		}
+
+		long l;
+		if (d < MAX_EXACT && d > -MAX_EXACT)
+			l = (long) d;
+		else
+		{
+			// the parsers do not report long overflows.
+			l = p.getLong ();
+			if ((double) l != d)
+				return false;
+		}
+
+		if (m_type == NONE)
+			m_type = INT;
+		if (m_type == INT && l != (int) l)
+			toLongs ();
+
+		switch (m_type)
+		{
+			case INT:
+				addInt ((int) l);
+				return true;
+			case LONG:
+				addLong (l);
+				return true;
+			default:
+				if (l > MAX_EXACT || l < -MAX_EXACT)
+					return false;
+				setInteger (m_count);
+				addDouble (l);
+				return true;
+		}
+	}
+
+	/**
+	 * Gets a number added.
+	 *
+	 * @param	index
+	 *			the index of the number.
+	 * @return	the number.
+	 */
+	public JsonValue get (int index)
+	{
+		switch (m_type)
+		{
+			case INT:
+				return CookJsonInt.valueOf (m_ints[index]);
+			case LONG:
+				return new CookJsonLong (m_longs[index]);
+			default:
+				if (m_hasIntegers && (m_integers[index >> 6] & (1L << index)) != 0)
+					return new CookJsonLong ((long) m_doubles[index]);
+				return new CookJsonBigDecimal (BigDecimal.valueOf (m_doubles[index]));
+		}
+	}
+
+	/**
+	 * Creates a packed array of the numbers added.
+	 *
+	 * @return	the packed array.
+	 */
+	public JsonArray build ()
+	{
+		switch (m_type)
+		{
+			case INT:
+				return new CookJsonIntArray (Arrays.copyOf (m_ints, m_count));
+			case LONG:
+				return new CookJsonLongArray (Arrays.copyOf (m_longs, m_count));
+			case DOUBLE:
+			{
+				long[] integers = m_hasIntegers ? Arrays.copyOf (m_integers, (m_count + 63) >> 6) : null;
+				return new CookJsonDoubleArray (Arrays.copyOf (m_doubles, m_count), integers);
+			}
+			default:
+				return new CookJsonArray ();
+		}
+	}
+}
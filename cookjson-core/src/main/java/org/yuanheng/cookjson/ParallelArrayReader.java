@@ -0,0 +1,690 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.json.JsonArray;
+import javax.json.JsonException;
+import javax.json.JsonStructure;
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParsingException;
+
+import org.yuanheng.cookjson.value.CookJsonArray;
+
+/**
+ * Reads a huge root array of UTF-8 JSON data using multiple threads.
+ * <p>
+ * The calling thread only scans the data for the commas between the
+ * elements of the root array.  This scan only tracks the bracket depth
+ * and the string boundaries, which is much cheaper than parsing.  The
+ * elements are grouped into chunks of roughly {@link #getChunkSize()}
+ * bytes, and each chunk is parsed by a separate parser on the executor.
+ * The parsers share one {@link SymbolTable} for the key names.
+ * <p>
+ * In the ordered mode, the chunks are delivered in the order of the
+ * data.  In the unordered mode, they are delivered as soon as they are
+ * parsed.  Either way, the handler is called from the calling thread, so
+ * it does not need to be thread safe.  At most {@link #getMaxPending()}
+ * chunks are queued or held at the same time.
+ * <p>
+ * Newline delimited JSON (JSON Lines) can be read the same way with
+ * {@link #readLines(InputStream, ArrayChunkHandler)}.  The data is split
+ * at the line breaks instead, and each chunk delivers the records in it.
+ * <p>
+ * Comments are not supported.  An instance can only read one input at a
+ * time.
+ *
+ * @author	Heng Yuan
+ */
+public class ParallelArrayReader
+{
+	/** The default chunk size. */
+	public final static int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+	private final static int READ_SIZE = 65536;
+
+	/** The states of the boundary scan. */
+	private final static int BEFORE = 0;
+	private final static int IN_ARRAY = 1;
+	private final static int AFTER = 2;
+
+	private final static class Chunk
+	{
+		final int index;
+		final JsonArray values;
+
+		Chunk (int index, JsonArray values)
+		{
+			this.index = index;
+			this.values = values;
+		}
+	}
+
+	private final ExecutorService m_executor;
+	/** Key names shared by all the chunk parsers. */
+	private final SymbolTable m_symbols = new SymbolTable ();
+	private int m_chunkSize = DEFAULT_CHUNK_SIZE;
+	private int m_maxPending = Runtime.getRuntime ().availableProcessors () * 4;
+	private boolean m_ordered = true;
+	private boolean m_skipMalformed;
+	private final AtomicLong m_malformedCount = new AtomicLong ();
+
+	// boundary scan states
+	/** true if reading JSON lines. */
+	private boolean m_lines;
+	private int m_state;
+	private int m_depth;
+	private boolean m_inString;
+	private boolean m_escape;
+	/** The stream offset of the first byte of the data to be scanned. */
+	private long m_offset;
+	private long m_line;
+	private long m_column;
+	/** The current chunk.  The first byte is always '['. */
+	private byte[] m_chunkBuf;
+	private int m_chunkLen;
+	/** The stream offset of the data in the current chunk. */
+	private long m_chunkOffset;
+	private int m_chunkCount;
+
+	// chunk delivery
+	private ArrayChunkHandler m_handler;
+	private LinkedList<Future<Chunk>> m_futures;
+	private CompletionService<Chunk> m_completion;
+	private int m_pending;
+
+	/**
+	 * @param	executor
+	 *			the executor for parsing the chunks.  It is not shut down
+	 *			by this reader.
+	 */
+	public ParallelArrayReader (ExecutorService executor)
+	{
+		m_executor = executor;
+	}
+
+	/**
+	 * Gets the approximate number of bytes in each chunk.
+	 *
+	 * @return	the chunk size.
+	 */
+	public int getChunkSize ()
+	{
+		return m_chunkSize;
+	}
+
+	/**
+	 * Sets the approximate number of bytes in each chunk.  A chunk always
+	 * contains at least one element.
+	 *
+	 * @param	chunkSize
+	 *			the chunk size.
+	 */
+	public void setChunkSize (int chunkSize)
+	{
+		if (chunkSize < 1)
+			throw new IllegalArgumentException ("chunkSize must be positive.");
+		m_chunkSize = chunkSize;
+	}
+
+	/**
+	 * Gets the maximum number of chunks that are being parsed or are
+	 * waiting to be delivered.
+	 *
+	 * @return	the maximum number of pending chunks.
+	 */
+	public int getMaxPending ()
+	{
+		return m_maxPending;
+	}
+
+	/**
+	 * Sets the maximum number of chunks that are being parsed or are
+	 * waiting to be delivered.  It limits the memory used.  The default
+	 * is 4 times the number of processors.
+	 *
+	 * @param	maxPending
+	 *			the maximum number of pending chunks.
+	 */
+	public void setMaxPending (int maxPending)
+	{
+		if (maxPending < 1)
+			throw new IllegalArgumentException ("maxPending must be positive.");
+		m_maxPending = maxPending;
+	}
+
+	/**
+	 * Checks if the chunks are delivered in the order of the data.
+	 *
+	 * @return	true if the chunks are delivered in order.
+	 */
+	public boolean isOrdered ()
+	{
+		return m_ordered;
+	}
+
+	/**
+	 * Sets whether the chunks are delivered in the order of the data.
+	 * The default is true.
+	 *
+	 * @param	ordered
+	 *			true if the chunks should be delivered in order.
+	 */
+	public void setOrdered (boolean ordered)
+	{
+		m_ordered = ordered;
+	}
+
+	/**
+	 * Checks if malformed lines are skipped in
+	 * {@link #readLines(InputStream, ArrayChunkHandler)}.
+	 *
+	 * @return	true if malformed lines are skipped.
+	 */
+	public boolean isSkipMalformed ()
+	{
+		return m_skipMalformed;
+	}
+
+	/**
+	 * Sets whether malformed lines are skipped when reading JSON lines.
+	 * The default is false.
+	 *
+	 * @param	skipMalformed
+	 *			true if malformed lines should be skipped.
+	 * @see		NdjsonReader#setSkipMalformed(boolean)
+	 */
+	public void setSkipMalformed (boolean skipMalformed)
+	{
+		m_skipMalformed = skipMalformed;
+	}
+
+	/**
+	 * Gets the number of malformed lines skipped by the last
+	 * {@link #readLines(InputStream, ArrayChunkHandler)} call.
+	 *
+	 * @return	the number of malformed lines skipped.
+	 */
+	public long getMalformedCount ()
+	{
+		return m_malformedCount.get ();
+	}
+
+	/**
+	 * Reads the root array in a byte array.
+	 *
+	 * @param	buf
+	 *			the byte array containing UTF-8 JSON data.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 * @param	handler
+	 *			the handler of the elements.
+	 */
+	public void read (byte[] buf, int offset, int length, ArrayChunkHandler handler)
+	{
+		read (new ByteArrayInputStream (buf, offset, length), handler);
+	}
+
+	/**
+	 * Reads the root array in a file through memory mapped windows.
+	 *
+	 * @param	channel
+	 *			the file channel.  It is closed when reading is done.
+	 * @param	handler
+	 *			the handler of the elements.
+	 */
+	public void read (FileChannel channel, ArrayChunkHandler handler)
+	{
+		read (new MappedFileInputStream (channel), handler);
+	}
+
+	/**
+	 * Reads the root array in a UTF-8 input stream.
+	 *
+	 * @param	is
+	 *			the input stream.  It is closed when reading is done.
+	 * @param	handler
+	 *			the handler of the elements.
+	 */
+	public void read (InputStream is, ArrayChunkHandler handler)
+	{
+		run (is, false, handler);
+	}
+
+	/**
+	 * Reads JSON lines in a file through memory mapped windows.
+	 *
+	 * @param	channel
+	 *			the file channel.  It is closed when reading is done.
+	 * @param	handler
+	 *			the handler of the records.
+	 */
+	public void readLines (FileChannel channel, ArrayChunkHandler handler)
+	{
+		readLines (new MappedFileInputStream (channel), handler);
+	}
+
+	/**
+	 * Reads JSON lines in a UTF-8 input stream.  Blank lines are ignored.
+	 * Each chunk contains the records of a group of complete lines.
+	 *
+	 * @param	is
+	 *			the input stream.  It is closed when reading is done.
+	 * @param	handler
+	 *			the handler of the records.
+	 */
+	public void readLines (InputStream is, ArrayChunkHandler handler)
+	{
+		run (is, true, handler);
+	}
+
+	private void run (InputStream is, boolean lines, ArrayChunkHandler handler)
+	{
+		m_lines = lines;
+		m_malformedCount.set (0);
+		m_state = BEFORE;
+		m_depth = 0;
+		m_inString = false;
+		m_escape = false;
+		m_offset = 0;
+		m_line = 1;
+		m_column = 1;
+		m_chunkCount = 0;
+		m_handler = handler;
+		m_pending = 0;
+		m_futures = new LinkedList<Future<Chunk>> ();
+		if (!m_ordered)
+			m_completion = new ExecutorCompletionService<Chunk> (m_executor);
+
+		boolean done = false;
+		try
+		{
+			byte[] readBuf = new byte[READ_SIZE];
+			int n;
+			if (lines)
+			{
+				startChunk (0);
+				while ((n = is.read (readBuf)) > 0)
+					scanLines (readBuf, n);
+				if (m_chunkLen > 0)
+					submitChunk ();
+			}
+			else
+			{
+				while ((n = is.read (readBuf)) > 0)
+					scan (readBuf, n);
+				if (m_state != AFTER)
+					throw error ("unexpected eof.");
+			}
+			while (m_pending > 0)
+				deliver ();
+			done = true;
+		}
+		catch (IOException ex)
+		{
+			throw new JsonParsingException (ex.getMessage (), ex, getLocation ());
+		}
+		finally
+		{
+			if (!done)
+			{
+				for (Future<Chunk> future : m_futures)
+					future.cancel (true);
+			}
+			m_futures = null;
+			m_completion = null;
+			m_handler = null;
+			m_chunkBuf = null;
+			try
+			{
+				is.close ();
+			}
+			catch (IOException ex)
+			{
+			}
+		}
+	}
+
+	/**
+	 * Gets the current location.  The line and column numbers are only
+	 * known before the root array.
+	 */
+	private JsonLocation getLocation ()
+	{
+		JsonLocationImpl location = new JsonLocationImpl ();
+		boolean before = m_state == BEFORE;
+		location.m_lineNumber = before ? m_line : -1;
+		location.m_columnNumber = before ? m_column : -1;
+		location.m_streamOffset = m_offset;
+		return location;
+	}
+
+	private JsonParsingException error (String msg)
+	{
+		JsonLocation location = getLocation ();
+		return new JsonParsingException ("Parsing error at " + location.toString () + ": " + msg, location);
+	}
+
+	/**
+	 * Scans the data for the element boundaries.  Line and column numbers
+	 * are only tracked before the root array.
+	 *
+	 * @param	buf
+	 *			the data.
+	 * @param	len
+	 *			the length of the data.
+	 */
+	private void scan (byte[] buf, int len)
+	{
+		int pos = 0;
+		if (m_state == BEFORE)
+		{
+			for (; pos < len; ++pos)
+			{
+				byte ch = buf[pos];
+				if (ch == '[')
+				{
+					++pos;
+					m_state = IN_ARRAY;
+					startChunk (m_offset + pos);
+					break;
+				}
+				if (ch == '\n')
+				{
+					++m_line;
+					m_column = 1;
+				}
+				else if (ch == ' ' || ch == '\t' || ch == '\r')
+					++m_column;
+				else
+				{
+					m_offset += pos;
+					throw error ("unexpected character '" + (char) (ch & 0xff) + "'");
+				}
+			}
+		}
+		if (m_state != IN_ARRAY)
+		{
+			m_offset += len;
+			return;
+		}
+
+		int depth = m_depth;
+		boolean inString = m_inString;
+		boolean escape = m_escape;
+		int segStart = pos;
+		for (; pos < len; ++pos)
+		{
+			byte ch = buf[pos];
+			if (inString)
+			{
+				if (escape)
+					escape = false;
+				else if (ch == '\\')
+					escape = true;
+				else if (ch == '"')
+					inString = false;
+				continue;
+			}
+			switch (ch)
+			{
+				case '"':
+					inString = true;
+					break;
+				case '[':
+				case '{':
+					++depth;
+					break;
+				case ']':
+				case '}':
+				{
+					if (depth > 0)
+					{
+						--depth;
+						break;
+					}
+					// only ']' ends the root array.
+					if (ch == '}')
+					{
+						m_offset += pos;
+						throw error ("unexpected character '}'");
+					}
+					// the end of the root array.
+					append (buf, segStart, pos - segStart);
+					submitChunk ();
+					m_state = AFTER;
+					m_offset += len;
+					return;
+				}
+				case ',':
+				{
+					if (depth == 0 && (m_chunkLen - 1 + pos - segStart) >= m_chunkSize)
+					{
+						append (buf, segStart, pos - segStart);
+						submitChunk ();
+						segStart = pos + 1;
+						startChunk (m_offset + segStart);
+					}
+					break;
+				}
+			}
+		}
+		append (buf, segStart, len - segStart);
+		m_depth = depth;
+		m_inString = inString;
+		m_escape = escape;
+		m_offset += len;
+	}
+
+	/**
+	 * Splits the data into chunks at the last line break once a chunk
+	 * reaches the chunk size.
+	 *
+	 * @param	buf
+	 *			the data.
+	 * @param	len
+	 *			the length of the data.
+	 */
+	private void scanLines (byte[] buf, int len)
+	{
+		append (buf, 0, len);
+		m_offset += len;
+		if (m_chunkLen < m_chunkSize)
+			return;
+		final byte[] chunkBuf = m_chunkBuf;
+		int pos = m_chunkLen - 1;
+		while (pos >= 0 && chunkBuf[pos] != '\n')
+			--pos;
+		// a line longer than the chunk size keeps growing the chunk.
+		if (pos < 0)
+			return;
+		int lineEnd = pos + 1;
+		int remain = m_chunkLen - lineEnd;
+		long offset = m_chunkOffset + lineEnd;
+		m_chunkLen = lineEnd;
+		submitChunk ();
+		startChunk (offset);
+		append (chunkBuf, lineEnd, remain);
+	}
+
+	private void startChunk (long offset)
+	{
+		m_chunkBuf = new byte[Math.min (m_chunkSize, READ_SIZE) + 3];
+		if (m_lines)
+			m_chunkLen = 0;
+		else
+		{
+			m_chunkBuf[0] = '[';
+			m_chunkLen = 1;
+		}
+		m_chunkOffset = offset;
+	}
+
+	private void append (byte[] buf, int start, int len)
+	{
+		// reserve space for ']' and 0.
+		int newLen = m_chunkLen + len + 2;
+		if (newLen > m_chunkBuf.length)
+		{
+			byte[] newBuf = new byte[Math.max (newLen, m_chunkBuf.length * 2)];
+			System.arraycopy (m_chunkBuf, 0, newBuf, 0, m_chunkLen);
+			m_chunkBuf = newBuf;
+		}
+		System.arraycopy (buf, start, m_chunkBuf, m_chunkLen, len);
+		m_chunkLen += len;
+	}
+
+	private void submitChunk ()
+	{
+		final byte[] buf = m_chunkBuf;
+		final long offset = m_chunkOffset;
+		final int index = m_chunkCount++;
+		final boolean lines = m_lines;
+		final int len;
+		if (lines)
+			len = m_chunkLen;
+		else
+		{
+			len = m_chunkLen + 1;
+			buf[len - 1] = ']';
+			buf[len] = 0;
+		}
+		m_chunkBuf = null;
+
+		if (m_pending >= m_maxPending)
+			deliver ();
+
+		Callable<Chunk> task = new Callable<Chunk> ()
+		{
+			@Override
+			public Chunk call ()
+			{
+				if (lines)
+					return new Chunk (index, parseLines (buf, len, offset));
+				return new Chunk (index, parseChunk (buf, len, offset));
+			}
+		};
+		if (m_ordered)
+			m_futures.add (m_executor.submit (task));
+		else
+			m_futures.add (m_completion.submit (task));
+		++m_pending;
+	}
+
+	private JsonArray parseChunk (byte[] buf, int len, long offset)
+	{
+		UTF8TextJsonParser p = new UTF8TextJsonParser (buf, 0, len);
+		p.setSymbolTable (m_symbols);
+		try
+		{
+			p.next ();
+			return (JsonArray) Utils.getStructure (p);
+		}
+		catch (JsonParsingException ex)
+		{
+			// translate the location to the stream offset.  The line
+			// number within the whole data is not known.
+			JsonLocationImpl location = new JsonLocationImpl ();
+			location.m_lineNumber = -1;
+			location.m_columnNumber = -1;
+			location.m_streamOffset = -1;
+			if (ex.getLocation () != null && ex.getLocation ().getStreamOffset () >= 0)
+				location.m_streamOffset = offset + ex.getLocation ().getStreamOffset () - 1;
+			throw Utils.relocate (ex, location);
+		}
+	}
+
+	private JsonArray parseLines (byte[] buf, int len, long offset)
+	{
+		NdjsonReader reader = new NdjsonReader (buf, len, offset);
+		reader.setSymbolTable (m_symbols);
+		reader.setSkipMalformed (m_skipMalformed);
+		CookJsonArray records = new CookJsonArray ();
+		try
+		{
+			JsonStructure record;
+			while ((record = reader.read ()) != null)
+				records.add (record);
+		}
+		catch (JsonParsingException ex)
+		{
+			// the reader already reports the stream offset, but the line
+			// number within the whole data is not known.
+			JsonLocationImpl location = new JsonLocationImpl ();
+			location.m_lineNumber = -1;
+			location.m_columnNumber = -1;
+			location.m_streamOffset = -1;
+			if (ex.getLocation () != null)
+			{
+				location.m_columnNumber = ex.getLocation ().getColumnNumber ();
+				location.m_streamOffset = ex.getLocation ().getStreamOffset ();
+			}
+			throw Utils.relocate (ex, location);
+		}
+		m_malformedCount.addAndGet (reader.getMalformedCount ());
+		return records;
+	}
+
+	/**
+	 * Waits for a chunk and passes it to the handler.
+	 */
+	private void deliver ()
+	{
+		Chunk chunk;
+		try
+		{
+			Future<Chunk> future;
+			if (m_ordered)
+				future = m_futures.removeFirst ();
+			else
+			{
+				future = m_completion.take ();
+				m_futures.remove (future);
+			}
+			chunk = future.get ();
+		}
+		catch (InterruptedException ex)
+		{
+			Thread.currentThread ().interrupt ();
+			throw new JsonException ("Interrupted while waiting for a chunk.", ex);
+		}
+		catch (ExecutionException ex)
+		{
+			Throwable cause = ex.getCause ();
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new JsonException (cause.getMessage (), cause);
+		}
+		--m_pending;
+		m_handler.handle (chunk.index, chunk.values);
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import javax.json.JsonValue;
+
+/**
+ * Receives the values matched by {@link StreamingPathEvaluator}.
+ *
+ * @author	Heng Yuan
+ */
+public interface PathHandler
+{
+	/**
+	 * Handles a matched value.
+	 *
+	 * @param	path
+	 *			the index of the matching path, in the order the paths
+	 *			were given to the evaluator.
+	 * @param	value
+	 *			the matched value.
+	 */
+	public void handle (int path, JsonValue value);
+}
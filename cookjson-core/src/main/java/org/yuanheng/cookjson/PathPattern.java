@@ -0,0 +1,225 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+/**
+ * A compiled JsonPath that only contains definite and wildcard steps.
+ * <p>
+ * The supported syntax is the root {@code $} followed by any number of
+ * {@code .name}, {@code ['name']}, {@code ["name"]}, {@code [index]},
+ * {@code .*} and {@code [*]} steps.  For example,
+ * {@code $.store.book[*].title} or {@code $['a.b'][0]}.  Deep scans,
+ * filters, slices and unions are not supported, since they cannot be
+ * decided with the path of the current event alone.
+ *
+ * @author	Heng Yuan
+ */
+public final class PathPattern
+{
+	private final String m_path;
+	/** The key names of the steps.  null for index and wildcard steps. */
+	private final String[] m_names;
+	/** The indexes of the steps.  -1 for name and wildcard steps. */
+	private final int[] m_indexes;
+	private final boolean m_definite;
+
+	/**
+	 * Compiles a path.
+	 *
+	 * @param	path
+	 *			the JsonPath.
+	 * @throws	IllegalArgumentException
+	 *			if the path is invalid or not supported.
+	 */
+	public PathPattern (String path)
+	{
+		m_path = path;
+		if (!path.startsWith ("$"))
+			throw error ("the path must start with '$'");
+
+		int count = 0;
+		String[] names = new String[8];
+		int[] indexes = new int[8];
+		boolean definite = true;
+		final int length = path.length ();
+		int pos = 1;
+		while (pos < length)
+		{
+			if (count == names.length)
+			{
+				String[] newNames = new String[count * 2];
+				System.arraycopy (names, 0, newNames, 0, count);
+				names = newNames;
+				int[] newIndexes = new int[count * 2];
+				System.arraycopy (indexes, 0, newIndexes, 0, count);
+				indexes = newIndexes;
+			}
+			String name = null;
+			int index = -1;
+			char ch = path.charAt (pos);
+			if (ch == '.')
+			{
+				int start = ++pos;
+				while (pos < length && path.charAt (pos) != '.' && path.charAt (pos) != '[')
+					++pos;
+				if (pos == start)
+					throw error (pos < length && path.charAt (pos) == '.' ? "deep scan is not supported" : "missing name");
+				name = path.substring (start, pos);
+				if ("*".equals (name))
+					name = null;
+			}
+			else if (ch == '[')
+			{
+				++pos;
+				if (pos >= length)
+					throw error ("unterminated '['");
+				ch = path.charAt (pos);
+				if (ch == '*')
+					++pos;
+				else if (ch == '\'' || ch == '"')
+				{
+					StringBuilder builder = new StringBuilder ();
+					char quote = ch;
+					for (++pos;; ++pos)
+					{
+						if (pos >= length)
+							throw error ("unterminated string");
+						ch = path.charAt (pos);
+						if (ch == quote)
+							break;
+						if (ch == '\\' && pos + 1 < length)
+							ch = path.charAt (++pos);
+						builder.append (ch);
+					}
+					++pos;
+					name = builder.toString ();
+				}
+				else
+				{
+					int start = pos;
+					while (pos < length && path.charAt (pos) >= '0' && path.charAt (pos) <= '9')
+						++pos;
+					if (pos == start || pos - start > 9)
+						throw error ("only names, indexes and '*' are supported in []");
+					index = Integer.parseInt (path.substring (start, pos));
+				}
+				if (pos >= length || path.charAt (pos) != ']')
+					throw error ("expecting ']'");
+				++pos;
+			}
+			else
+				throw error ("unexpected character '" + ch + "'");
+			if (name == null && index < 0)
+				definite = false;
+			names[count] = name;
+			indexes[count] = index;
+			++count;
+		}
+
+		m_names = new String[count];
+		System.arraycopy (names, 0, m_names, 0, count);
+		m_indexes = new int[count];
+		System.arraycopy (indexes, 0, m_indexes, 0, count);
+		m_definite = definite;
+	}
+
+	private IllegalArgumentException error (String msg)
+	{
+		return new IllegalArgumentException ("Invalid path " + m_path + ": " + msg + ".");
+	}
+
+	/**
+	 * Gets the number of steps after the root.
+	 *
+	 * @return	the number of steps.  0 for {@code $}.
+	 */
+	public int size ()
+	{
+		return m_names.length;
+	}
+
+	/**
+	 * Checks if the path matches at most one value, i.e. there are no
+	 * wildcards.
+	 *
+	 * @return	true if there are no wildcard steps.
+	 */
+	public boolean isDefinite ()
+	{
+		return m_definite;
+	}
+
+	/**
+	 * Checks if a step matches a key name in an object.
+	 *
+	 * @param	step
+	 *			the step number, starting from 0.
+	 * @param	name
+	 *			the key name.
+	 * @return	true if the step is the name or a wildcard.
+	 */
+	boolean matches (int step, String name)
+	{
+		String stepName = m_names[step];
+		if (stepName == null)
+			return m_indexes[step] < 0;
+		return stepName.equals (name);
+	}
+
+	/**
+	 * Checks if a step matches an element in an array.
+	 *
+	 * @param	step
+	 *			the step number, starting from 0.
+	 * @param	index
+	 *			the element index.
+	 * @return	true if the step is the index or a wildcard.
+	 */
+	boolean matches (int step, int index)
+	{
+		return m_names[step] == null && (m_indexes[step] < 0 || m_indexes[step] == index);
+	}
+
+	/**
+	 * Gets the key name of a step.
+	 *
+	 * @param	step
+	 *			the step number, starting from 0.
+	 * @return	the key name, or null for index and wildcard steps.
+	 */
+	String getName (int step)
+	{
+		return m_names[step];
+	}
+
+	/**
+	 * Gets the index of a step.
+	 *
+	 * @param	step
+	 *			the step number, starting from 0.
+	 * @return	the index, or -1 for name and wildcard steps.
+	 */
+	int getIndex (int step)
+	{
+		return m_indexes[step];
+	}
+
+	@Override
+	public String toString ()
+	{
+		return m_path;
+	}
+}
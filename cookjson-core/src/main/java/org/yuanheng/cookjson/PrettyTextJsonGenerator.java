@@ -45,6 +45,11 @@ public class PrettyTextJsonGenerator extends TextJsonGenerator
 		super (out);
 	}
 
+	PrettyTextJsonGenerator (Writer out, BufferRecycler recycler)
+	{
+		super (out, recycler);
+	}
+
 	/**
 	 * Sets the indentation string.
 	 * @param	indent
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * Evaluates several JsonPaths in a single pass over the parser events.
+ * <p>
+ * Only the values matched by a path are materialized.  Subtrees that
+ * cannot lead to a match are skipped with
+ * {@link CookJsonParser#skipChildren()} without decoding.  If a path
+ * matches a container and another path goes further into it, the other
+ * path is evaluated on the materialized container.  Once every path is
+ * definite (see {@link PathPattern#isDefinite()}) and has been matched,
+ * the rest of the document is skipped.
+ * <p>
+ * The parser is always left at the end of the root value, so that the
+ * next root value can be evaluated in the multiple roots mode.  An
+ * instance can be reused, but can only evaluate one parser at a time.
+ *
+ * @author	Heng Yuan
+ */
+public class StreamingPathEvaluator
+{
+	private final PathPattern[] m_paths;
+	private final boolean m_definite;
+
+	private PathHandler m_handler;
+	/** The number of paths not matched yet. */
+	private int m_unmatched;
+	private boolean[] m_matched;
+
+	/**
+	 * @param	paths
+	 *			the JsonPaths.
+	 * @throws	IllegalArgumentException
+	 *			if a path is invalid or not supported.
+	 * @see		PathPattern
+	 */
+	public StreamingPathEvaluator (String... paths)
+	{
+		m_paths = new PathPattern[paths.length];
+		boolean definite = true;
+		for (int i = 0; i < paths.length; ++i)
+		{
+			m_paths[i] = new PathPattern (paths[i]);
+			definite &= m_paths[i].isDefinite ();
+		}
+		m_definite = definite;
+		m_matched = new boolean[paths.length];
+	}
+
+	/**
+	 * Gets the compiled paths.
+	 *
+	 * @param	path
+	 *			the index of the path.
+	 * @return	the compiled path.
+	 */
+	public PathPattern getPath (int path)
+	{
+		return m_paths[path];
+	}
+
+	/**
+	 * Reads the next root value and collects the matched values.
+	 *
+	 * @param	p
+	 *			the parser.
+	 * @return	a list of matched values for each path.
+	 */
+	public List<List<JsonValue>> evaluate (CookJsonParser p)
+	{
+		final ArrayList<List<JsonValue>> results = new ArrayList<List<JsonValue>> (m_paths.length);
+		for (int i = 0; i < m_paths.length; ++i)
+			results.add (new ArrayList<JsonValue> ());
+		evaluate (p, new PathHandler ()
+		{
+			@Override
+			public void handle (int path, JsonValue value)
+			{
+				results.get (path).add (value);
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * Reads the next root value and passes the matched values to the
+	 * handler in the document order.  Values found inside a materialized
+	 * object follow the iteration order of the object instead.
+	 *
+	 * @param	p
+	 *			the parser.
+	 * @param	handler
+	 *			the handler of the matched values.
+	 */
+	public void evaluate (CookJsonParser p, PathHandler handler)
+	{
+		final int count = m_paths.length;
+		m_handler = handler;
+		m_unmatched = count;
+		for (int i = 0; i < count; ++i)
+			m_matched[i] = false;
+		int[] active = new int[count];
+		for (int i = 0; i < count; ++i)
+			active[i] = i;
+		try
+		{
+			Event e = p.next ();
+			value (p, e, active, count, 0);
+		}
+		finally
+		{
+			m_handler = null;
+		}
+	}
+
+	private boolean isDone ()
+	{
+		return m_definite && m_unmatched == 0;
+	}
+
+	private void match (int path, JsonValue value)
+	{
+		if (!m_matched[path])
+		{
+			m_matched[path] = true;
+			--m_unmatched;
+		}
+		m_handler.handle (path, value);
+	}
+
+	/**
+	 * Handles the value of the current event.
+	 *
+	 * @param	p
+	 *			the parser.
+	 * @param	e
+	 *			the current event.
+	 * @param	active
+	 *			the paths whose first depth steps match the current
+	 *			position.  The array is modified.
+	 * @param	count
+	 *			the number of paths in active.
+	 * @param	depth
+	 *			the depth of the current value.
+	 */
+	private void value (CookJsonParser p, Event e, int[] active, int count, int depth)
+	{
+		JsonValue value = null;
+		int deeper = 0;
+		for (int i = 0; i < count; ++i)
+		{
+			int path = active[i];
+			if (m_paths[path].size () == depth)
+			{
+				if (value == null)
+					value = p.getValue ();
+				match (path, value);
+			}
+			else
+				active[deeper++] = path;
+		}
+		if (value != null)
+		{
+			// the whole value has been read.
+			for (int i = 0; i < deeper; ++i)
+				tree (value, active[i], depth);
+			return;
+		}
+		if (e == Event.START_OBJECT)
+			object (p, active, deeper, depth);
+		else if (e == Event.START_ARRAY)
+			array (p, active, deeper, depth);
+	}
+
+	private void object (CookJsonParser p, int[] active, int count, int depth)
+	{
+		int[] child = new int[count];
+		Event e;
+		while ((e = p.next ()) == Event.KEY_NAME)
+		{
+			int n = 0;
+			if (!isDone ())
+			{
+				String name = p.getString ();
+				for (int i = 0; i < count; ++i)
+				{
+					if (m_paths[active[i]].matches (depth, name))
+						child[n++] = active[i];
+				}
+			}
+			e = p.next ();
+			if (n == 0)
+				p.skipChildren ();
+			else
+				value (p, e, child, n, depth + 1);
+		}
+	}
+
+	private void array (CookJsonParser p, int[] active, int count, int depth)
+	{
+		int[] child = new int[count];
+		Event e;
+		for (int index = 0; (e = p.next ()) != Event.END_ARRAY; ++index)
+		{
+			int n = 0;
+			if (!isDone ())
+			{
+				for (int i = 0; i < count; ++i)
+				{
+					if (m_paths[active[i]].matches (depth, index))
+						child[n++] = active[i];
+				}
+			}
+			if (n == 0)
+				p.skipChildren ();
+			else
+				value (p, e, child, n, depth + 1);
+		}
+	}
+
+	/**
+	 * Evaluates the rest of a path on a materialized value.
+	 *
+	 * @param	value
+	 *			the value at the depth.
+	 * @param	path
+	 *			the index of the path.
+	 * @param	depth
+	 *			the depth of the value.
+	 */
+	private void tree (JsonValue value, int path, int depth)
+	{
+		PathPattern pattern = m_paths[path];
+		if (pattern.size () == depth)
+		{
+			match (path, value);
+			return;
+		}
+		if (value instanceof JsonObject)
+		{
+			String name = pattern.getName (depth);
+			if (name != null)
+			{
+				JsonValue v = ((JsonObject) value).get (name);
+				if (v != null)
+					tree (v, path, depth + 1);
+			}
+			else if (pattern.getIndex (depth) < 0)
+			{
+				for (Map.Entry<String, JsonValue> entry : ((JsonObject) value).entrySet ())
+					tree (entry.getValue (), path, depth + 1);
+			}
+		}
+		else if (value instanceof JsonArray)
+		{
+			JsonArray array = (JsonArray) value;
+			int index = pattern.getIndex (depth);
+			if (index >= 0)
+			{
+				if (index < array.size ())
+					tree (array.get (index), path, depth + 1);
+			}
+			else if (pattern.getName (depth) == null)
+			{
+				for (JsonValue v : array)
+					tree (v, path, depth + 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import org.yuanheng.cookjson.value.CookJsonString;
+
+/**
+ * A bounded table of shared string values used when building trees.
+ * <p>
+ * Documents often repeat a small vocabulary of enum-like string values
+ * across many nodes.  Instead of creating a new String and a new
+ * {@link CookJsonString} for each occurrence, the parser looks up the raw
+ * bytes (or chars) of the value in this table and gets back the value
+ * created earlier.  A hit does not decode UTF-8 at all.
+ * <p>
+ * Like {@link SymbolTable}, the table is a fixed size, two-way set
+ * associative cache without locking.  Within a set, the entry used most
+ * recently is kept in the first slot, so a miss evicts the least recently
+ * used one.  Values longer than the maximum length are never cached.
+ *
+ * @author	Heng Yuan
+ */
+class StringValueTable
+{
+	/** Default number of slots.  Must be a power of 2. */
+	final static int DEFAULT_SIZE = 4096;
+	/** Default maximum length of the cached values. */
+	final static int DEFAULT_MAX_LENGTH = 32;
+
+	private final static class Entry
+	{
+		final int hash;
+		final byte[] bytes;
+		final CookJsonString value;
+
+		Entry (int hash, byte[] bytes, CookJsonString value)
+		{
+			this.hash = hash;
+			this.bytes = bytes;
+			this.value = value;
+		}
+	}
+
+	private final static class CharEntry
+	{
+		final int hash;
+		final CookJsonString value;
+
+		CharEntry (int hash, CookJsonString value)
+		{
+			this.hash = hash;
+			this.value = value;
+		}
+	}
+
+	private final Entry[] m_byteEntries;
+	private final CharEntry[] m_charEntries;
+	private final int m_mask;
+	private final int m_maxLength;
+
+	public StringValueTable (int maxLength)
+	{
+		this (DEFAULT_SIZE, maxLength);
+	}
+
+	/**
+	 * @param	size
+	 *			number of slots.  Must be a power of 2.
+	 * @param	maxLength
+	 *			the maximum length in bytes (or chars) of the cached values.
+	 */
+	public StringValueTable (int size, int maxLength)
+	{
+		if (size < 2 || (size & (size - 1)) != 0)
+			throw new IllegalArgumentException ("size must be a power of 2.");
+		m_byteEntries = new Entry[size];
+		m_charEntries = new CharEntry[size];
+		m_mask = size - 1;
+		m_maxLength = maxLength;
+	}
+
+	private static boolean equals (byte[] bytes, byte[] buf, int start, int len)
+	{
+		if (bytes.length != len)
+			return false;
+		for (int i = 0; i < len; ++i)
+		{
+			if (bytes[i] != buf[start + i])
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean equals (String str, char[] buf, int start, int len)
+	{
+		if (str.length () != len)
+			return false;
+		for (int i = 0; i < len; ++i)
+		{
+			if (str.charAt (i) != buf[start + i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Lets the parser use this table for string values if it is a text
+	 * parser.
+	 *
+	 * @param	p
+	 *			the parser.
+	 * @return	the same parser.
+	 */
+	CookJsonParser attach (CookJsonParser p)
+	{
+		if (p instanceof UTF8TextJsonParser)
+			((UTF8TextJsonParser) p).setStringValueTable (this);
+		else if (p instanceof TextJsonParser)
+			((TextJsonParser) p).setStringValueTable (this);
+		else if (p instanceof IndexedJsonParser)
+			((IndexedJsonParser) p).setStringValueTable (this);
+		return p;
+	}
+
+	/**
+	 * Gets the shared value for UTF-8 encoded bytes.
+	 *
+	 * @param	buf
+	 *			the buffer containing the bytes.
+	 * @param	start
+	 *			the starting position.
+	 * @param	len
+	 *			the number of bytes.
+	 * @return	the string value.
+	 */
+	public CookJsonString get (byte[] buf, int start, int len)
+	{
+		if (len > m_maxLength)
+			return new CookJsonString (new String (buf, start, len, BOM.utf8));
+
+		int h = 0;
+		for (int i = start, end = start + len; i < end; ++i)
+			h = 31 * h + buf[i];
+		final int hash = h ^ (h >>> 16);
+
+		final Entry[] entries = m_byteEntries;
+		final int index1 = hash & m_mask;
+		final int index2 = index1 ^ 1;
+
+		Entry e1 = entries[index1];
+		if (e1 != null && e1.hash == hash && equals (e1.bytes, buf, start, len))
+			return e1.value;
+		Entry e2 = entries[index2];
+		if (e2 != null && e2.hash == hash && equals (e2.bytes, buf, start, len))
+		{
+			// move the entry to the first slot.  A racing reader may miss
+			// either entry for a moment, which is harmless.
+			entries[index1] = e2;
+			entries[index2] = e1;
+			return e2.value;
+		}
+
+		byte[] bytes = new byte[len];
+		System.arraycopy (buf, start, bytes, 0, len);
+		CookJsonString value = new CookJsonString (new String (bytes, BOM.utf8));
+		if (e1 != null)
+			entries[index2] = e1;
+		entries[index1] = new Entry (hash, bytes, value);
+		return value;
+	}
+
+	/**
+	 * Gets the shared value for the chars.
+	 *
+	 * @param	buf
+	 *			the buffer containing the chars.
+	 * @param	start
+	 *			the starting position.
+	 * @param	len
+	 *			the number of chars.
+	 * @return	the string value.
+	 */
+	public CookJsonString get (char[] buf, int start, int len)
+	{
+		if (len > m_maxLength)
+			return new CookJsonString (new String (buf, start, len));
+
+		int h = 0;
+		for (int i = start, end = start + len; i < end; ++i)
+			h = 31 * h + buf[i];
+		final int hash = h ^ (h >>> 16);
+
+		final CharEntry[] entries = m_charEntries;
+		final int index1 = hash & m_mask;
+		final int index2 = index1 ^ 1;
+
+		CharEntry e1 = entries[index1];
+		if (e1 != null && e1.hash == hash && equals (e1.value.getString (), buf, start, len))
+			return e1.value;
+		CharEntry e2 = entries[index2];
+		if (e2 != null && e2.hash == hash && equals (e2.value.getString (), buf, start, len))
+		{
+			entries[index1] = e2;
+			entries[index2] = e1;
+			return e2.value;
+		}
+
+		CookJsonString value = new CookJsonString (new String (buf, start, len));
+		if (e1 != null)
+			entries[index2] = e1;
+		entries[index1] = new CharEntry (hash, value);
+		return value;
+	}
+}
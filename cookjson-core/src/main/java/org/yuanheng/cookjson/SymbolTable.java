@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+/**
+ * A bounded table of canonical key name strings.
+ * <p>
+ * JSON documents typically repeat the same small set of key names over
+ * and over again.  Instead of decoding a new String for each occurrence,
+ * the parser looks up the raw bytes (or chars) of the key in this table
+ * and gets back the String decoded earlier.
+ * <p>
+ * The table is a fixed size, two-way set associative cache.  When both
+ * slots are taken, the second one is replaced.  There is no locking.
+ * Entries are immutable and published through plain array stores, so
+ * a racing reader either sees a complete entry or a stale one, and a
+ * stale entry simply results in a miss.  This allows all the parsers
+ * created from a single factory to share one table across threads.
+ *
+ * @author	Heng Yuan
+ */
+class SymbolTable
+{
+	/** Default number of slots.  Must be a power of 2. */
+	final static int DEFAULT_SIZE = 2048;
+	/** Keys longer than this are decoded without caching. */
+	final static int MAX_KEY_LENGTH = 64;
+
+	private final static class Entry
+	{
+		final int hash;
+		final byte[] bytes;
+		final String value;
+
+		Entry (int hash, byte[] bytes, String value)
+		{
+			this.hash = hash;
+			this.bytes = bytes;
+			this.value = value;
+		}
+	}
+
+	private final Entry[] m_byteEntries;
+	private final String[] m_charEntries;
+	private final int m_mask;
+
+	public SymbolTable ()
+	{
+		this (DEFAULT_SIZE);
+	}
+
+	/**
+	 * @param	size
+	 *			number of slots.  Must be a power of 2.
+	 */
+	public SymbolTable (int size)
+	{
+		if (size < 2 || (size & (size - 1)) != 0)
+			throw new IllegalArgumentException ("size must be a power of 2.");
+		m_byteEntries = new Entry[size];
+		m_charEntries = new String[size];
+		m_mask = size - 1;
+	}
+
+	private static int hash (byte[] buf, int start, int len)
+	{
+		int h = 0;
+		for (int i = start, end = start + len; i < end; ++i)
+			h = 31 * h + buf[i];
+		return h ^ (h >>> 16);
+	}
+
+	private static boolean equals (byte[] bytes, byte[] buf, int start, int len)
+	{
+		if (bytes.length != len)
+			return false;
+		for (int i = 0; i < len; ++i)
+		{
+			if (bytes[i] != buf[start + i])
+				return false;
+		}
+		return true;
+	}
+
+	private static boolean equals (String str, char[] buf, int start, int len)
+	{
+		if (str.length () != len)
+			return false;
+		for (int i = 0; i < len; ++i)
+		{
+			if (str.charAt (i) != buf[start + i])
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Lets the parser use this table for key names if it is a text parser.
+	 *
+	 * @param	p
+	 *			the parser.
+	 * @return	the same parser.
+	 */
+	CookJsonParser attach (CookJsonParser p)
+	{
+		if (p instanceof UTF8TextJsonParser)
+			((UTF8TextJsonParser) p).setSymbolTable (this);
+		else if (p instanceof TextJsonParser)
+			((TextJsonParser) p).setSymbolTable (this);
+		else if (p instanceof IndexedJsonParser)
+			((IndexedJsonParser) p).setSymbolTable (this);
+		return p;
+	}
+
+	/**
+	 * Gets the canonical String for UTF-8 encoded bytes.
+	 *
+	 * @param	buf
+	 *			the buffer containing the bytes.
+	 * @param	start
+	 *			the starting position.
+	 * @param	len
+	 *			the number of bytes.
+	 * @return	the decoded String.
+	 */
+	public String get (byte[] buf, int start, int len)
+	{
+		if (len > MAX_KEY_LENGTH)
+			return new String (buf, start, len, BOM.utf8);
+
+		final Entry[] entries = m_byteEntries;
+		final int hash = hash (buf, start, len);
+		final int index1 = hash & m_mask;
+		final int index2 = index1 ^ 1;
+
+		Entry e1 = entries[index1];
+		if (e1 != null && e1.hash == hash && equals (e1.bytes, buf, start, len))
+			return e1.value;
+		Entry e2 = entries[index2];
+		if (e2 != null && e2.hash == hash && equals (e2.bytes, buf, start, len))
+			return e2.value;
+
+		byte[] bytes = new byte[len];
+		System.arraycopy (buf, start, bytes, 0, len);
+		String value = new String (bytes, BOM.utf8);
+		Entry e = new Entry (hash, bytes, value);
+		if (e1 == null)
+			entries[index1] = e;
+		else
+			entries[index2] = e;
+		return value;
+	}
+
+	/**
+	 * Gets the canonical String for the chars.
+	 *
+	 * @param	buf
+	 *			the buffer containing the chars.
+	 * @param	start
+	 *			the starting position.
+	 * @param	len
+	 *			the number of chars.
+	 * @return	the String.
+	 */
+	public String get (char[] buf, int start, int len)
+	{
+		if (len > MAX_KEY_LENGTH)
+			return new String (buf, start, len);
+
+		// use the same hash as String.hashCode () since String caches it.
+		int h = 0;
+		for (int i = start, end = start + len; i < end; ++i)
+			h = 31 * h + buf[i];
+
+		final String[] entries = m_charEntries;
+		final int spread = h ^ (h >>> 16);
+		final int index1 = spread & m_mask;
+		final int index2 = index1 ^ 1;
+
+		String s1 = entries[index1];
+		if (s1 != null && s1.hashCode () == h && equals (s1, buf, start, len))
+			return s1;
+		String s2 = entries[index2];
+		if (s2 != null && s2.hashCode () == h && equals (s2, buf, start, len))
+			return s2;
+
+		String value = new String (buf, start, len);
+		if (s1 == null)
+			entries[index1] = value;
+		else
+			entries[index2] = value;
+		return value;
+	}
+}
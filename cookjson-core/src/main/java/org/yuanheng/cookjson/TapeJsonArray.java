@@ -0,0 +1,236 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.json.*;
+
+/**
+ * A read-only JsonArray view of an array in a {@link CookJsonTape}.
+ * <p>
+ * Since the values have different sizes on the tape, an element is
+ * located by walking from the previously accessed element.  Thus
+ * sequential access with {@link #get(int)} is as fast as the iterator.
+ *
+ * @author	Heng Yuan
+ */
+final class TapeJsonArray extends AbstractList<JsonValue> implements JsonArray
+{
+	private final CookJsonTape m_tape;
+	/** The position of the start entry. */
+	private final int m_pos;
+	private final int m_size;
+	/**
+	 * The index of the last accessed element in the upper half, and
+	 * its position in the lower half.  It is kept in a single field so
+	 * that the view can be shared among threads.
+	 */
+	private volatile long m_cursor;
+
+	TapeJsonArray (CookJsonTape tape, int pos)
+	{
+		m_tape = tape;
+		m_pos = pos;
+		m_size = tape.getCount (pos);
+		m_cursor = pos + 1;
+	}
+
+	/**
+	 * Finds an element.
+	 *
+	 * @param	index
+	 *			the index of the element.
+	 * @return	the position of the element.
+	 */
+	private int find (int index)
+	{
+		if (index < 0 || index >= m_size)
+			throw new IndexOutOfBoundsException ("Index: " + index + ", Size: " + m_size);
+		long cursor = m_cursor;
+		int i = (int) (cursor >>> 32);
+		int pos = (int) cursor;
+		if (i > index)
+		{
+			i = 0;
+			pos = m_pos + 1;
+		}
+		final CookJsonTape tape = m_tape;
+		for (; i < index; ++i)
+			pos = tape.skip (pos);
+		m_cursor = ((long) index << 32) | pos;
+		return pos;
+	}
+
+	@Override
+	public ValueType getValueType ()
+	{
+		return ValueType.ARRAY;
+	}
+
+	@Override
+	public int size ()
+	{
+		return m_size;
+	}
+
+	@Override
+	public JsonValue get (int index)
+	{
+		return m_tape.getValue (find (index));
+	}
+
+	@Override
+	public Iterator<JsonValue> iterator ()
+	{
+		return new Iterator<JsonValue> ()
+		{
+			private int m_next = m_pos + 1;
+
+			@Override
+			public boolean hasNext ()
+			{
+				return m_next < m_tape.getEnd (m_pos);
+			}
+
+			@Override
+			public JsonValue next ()
+			{
+				if (!hasNext ())
+					throw new NoSuchElementException ();
+				int pos = m_next;
+				m_next = m_tape.skip (pos);
+				return m_tape.getValue (pos);
+			}
+
+			@Override
+			public void remove ()
+			{
+				throw new UnsupportedOperationException ();
+			}
+		};
+	}
+
+	@Override
+	public JsonObject getJsonObject (int index)
+	{
+		return (JsonObject) get (index);
+	}
+
+	@Override
+	public JsonArray getJsonArray (int index)
+	{
+		return (JsonArray) get (index);
+	}
+
+	@Override
+	public JsonNumber getJsonNumber (int index)
+	{
+		return (JsonNumber) get (index);
+	}
+
+	@Override
+	public JsonString getJsonString (int index)
+	{
+		return (JsonString) get (index);
+	}
+
+	@SuppressWarnings ("unchecked")
+	@Override
+	public <T extends JsonValue> List<T> getValuesAs (Class<T> clazz)
+	{
+		return (List<T>)this;
+	}
+
+	@Override
+	public String getString (int index)
+	{
+		int pos = find (index);
+		if (m_tape.getType (pos) == CookJsonTape.STRING)
+			return m_tape.getString (pos);
+		return ((JsonString) m_tape.getValue (pos)).getString ();
+	}
+
+	@Override
+	public String getString (int index, String defaultValue)
+	{
+		if (index < 0 || index >= m_size)
+			return defaultValue;
+		int pos = find (index);
+		if (m_tape.getType (pos) == CookJsonTape.STRING)
+			return m_tape.getString (pos);
+		JsonValue value = m_tape.getValue (pos);
+		if (value instanceof JsonString)
+			return ((JsonString) value).getString ();
+		return defaultValue;
+	}
+
+	@Override
+	public int getInt (int index)
+	{
+		int pos = find (index);
+		if (m_tape.getType (pos) == CookJsonTape.INTEGER)
+			return (int) m_tape.getLong (pos);
+		return ((JsonNumber) m_tape.getValue (pos)).intValue ();
+	}
+
+	@Override
+	public int getInt (int index, int defaultValue)
+	{
+		if (index < 0 || index >= m_size)
+			return defaultValue;
+		int pos = find (index);
+		if (m_tape.getType (pos) == CookJsonTape.INTEGER)
+			return (int) m_tape.getLong (pos);
+		JsonValue value = m_tape.getValue (pos);
+		if (value instanceof JsonNumber)
+			return ((JsonNumber) value).intValue ();
+		return defaultValue;
+	}
+
+	@Override
+	public boolean getBoolean (int index)
+	{
+		int type = m_tape.getType (find (index));
+		if (type == CookJsonTape.TRUE)
+			return true;
+		if (type == CookJsonTape.FALSE)
+			return false;
+		throw new ClassCastException ();
+	}
+
+	@Override
+	public boolean getBoolean (int index, boolean defaultValue)
+	{
+		if (index < 0 || index >= m_size)
+			return defaultValue;
+		int type = m_tape.getType (find (index));
+		if (type == CookJsonTape.TRUE)
+			return true;
+		if (type == CookJsonTape.FALSE)
+			return false;
+		return defaultValue;
+	}
+
+	@Override
+	public boolean isNull (int index)
+	{
+		return m_tape.getType (find (index)) == CookJsonTape.NULL;
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.util.*;
+
+import javax.json.*;
+
+/**
+ * A read-only JsonObject view of an object in a {@link CookJsonTape}.
+ * <p>
+ * The members of a large object are found through the hash index in the
+ * tape, and those of a small object are searched linearly.  The key names
+ * are compared without being decoded.
+ *
+ * @author	Heng Yuan
+ */
+final class TapeJsonObject extends AbstractMap<String, JsonValue> implements JsonObject
+{
+	private final CookJsonTape m_tape;
+	/** The position of the start entry. */
+	private final int m_pos;
+
+	TapeJsonObject (CookJsonTape tape, int pos)
+	{
+		m_tape = tape;
+		m_pos = pos;
+	}
+
+	/**
+	 * Finds the value of a member.
+	 *
+	 * @param	name
+	 *			the key name.
+	 * @return	the position of the value.  -1 if not found.
+	 */
+	private int find (String name)
+	{
+		return m_tape.find (m_pos, name);
+	}
+
+	/**
+	 * Skips the members with shadowed key names.
+	 *
+	 * @param	pos
+	 *			the position of a key name or the end entry.
+	 * @return	the position of the next visible key name or the end entry.
+	 */
+	private int skipShadowed (int pos)
+	{
+		final CookJsonTape tape = m_tape;
+		final int end = tape.getEnd (m_pos);
+		while (pos < end && tape.getType (pos) == CookJsonTape.SHADOWED_KEY)
+			pos = tape.skip (pos + 1);
+		return pos;
+	}
+
+	@Override
+	public ValueType getValueType ()
+	{
+		return ValueType.OBJECT;
+	}
+
+	@Override
+	public int size ()
+	{
+		return m_tape.getCount (m_pos);
+	}
+
+	@Override
+	public boolean containsKey (Object key)
+	{
+		return key instanceof String && find ((String) key) >= 0;
+	}
+
+	@Override
+	public JsonValue get (Object key)
+	{
+		if (!(key instanceof String))
+			return null;
+		int pos = find ((String) key);
+		return pos < 0 ? null : m_tape.getValue (pos);
+	}
+
+	@Override
+	public Set<Map.Entry<String, JsonValue>> entrySet ()
+	{
+		return new AbstractSet<Map.Entry<String, JsonValue>> ()
+		{
+			@Override
+			public Iterator<Map.Entry<String, JsonValue>> iterator ()
+			{
+				return new Iterator<Map.Entry<String, JsonValue>> ()
+				{
+					private int m_next = skipShadowed (m_pos + 1);
+
+					@Override
+					public boolean hasNext ()
+					{
+						return m_next < m_tape.getEnd (m_pos);
+					}
+
+					@Override
+					public Map.Entry<String, JsonValue> next ()
+					{
+						if (!hasNext ())
+							throw new NoSuchElementException ();
+						int pos = m_next;
+						m_next = skipShadowed (m_tape.skip (pos + 1));
+						return new AbstractMap.SimpleImmutableEntry<String, JsonValue> (m_tape.getString (pos), m_tape.getValue (pos + 1));
+					}
+
+					@Override
+					public void remove ()
+					{
+						throw new UnsupportedOperationException ();
+					}
+				};
+			}
+
+			@Override
+			public int size ()
+			{
+				return TapeJsonObject.this.size ();
+			}
+		};
+	}
+
+	@Override
+	public JsonArray getJsonArray (String name)
+	{
+		return (JsonArray) get (name);
+	}
+
+	@Override
+	public JsonObject getJsonObject (String name)
+	{
+		return (JsonObject) get (name);
+	}
+
+	@Override
+	public JsonNumber getJsonNumber (String name)
+	{
+		return (JsonNumber) get (name);
+	}
+
+	@Override
+	public JsonString getJsonString (String name)
+	{
+		return (JsonString) get (name);
+	}
+
+	@Override
+	public String getString (String name)
+	{
+		int pos = find (name);
+		if (pos >= 0 && m_tape.getType (pos) == CookJsonTape.STRING)
+			return m_tape.getString (pos);
+		return getJsonString (name).getString ();
+	}
+
+	@Override
+	public String getString (String name, String defaultValue)
+	{
+		int pos = find (name);
+		if (pos < 0)
+			return defaultValue;
+		if (m_tape.getType (pos) == CookJsonTape.STRING)
+			return m_tape.getString (pos);
+		JsonValue value = m_tape.getValue (pos);
+		if (value instanceof JsonString)
+			return ((JsonString) value).getString ();
+		return defaultValue;
+	}
+
+	@Override
+	public int getInt (String name)
+	{
+		int pos = find (name);
+		if (pos >= 0 && m_tape.getType (pos) == CookJsonTape.INTEGER)
+			return (int) m_tape.getLong (pos);
+		return getJsonNumber (name).intValue ();
+	}
+
+	@Override
+	public int getInt (String name, int defaultValue)
+	{
+		int pos = find (name);
+		if (pos < 0)
+			return defaultValue;
+		if (m_tape.getType (pos) == CookJsonTape.INTEGER)
+			return (int) m_tape.getLong (pos);
+		JsonValue value = m_tape.getValue (pos);
+		if (value instanceof JsonNumber)
+			return ((JsonNumber) value).intValue ();
+		return defaultValue;
+	}
+
+	@Override
+	public boolean getBoolean (String name)
+	{
+		int pos = find (name);
+		if (pos < 0)
+			throw new NullPointerException ();
+		int type = m_tape.getType (pos);
+		if (type == CookJsonTape.TRUE)
+			return true;
+		if (type == CookJsonTape.FALSE)
+			return false;
+		throw new ClassCastException ();
+	}
+
+	@Override
+	public boolean getBoolean (String name, boolean defaultValue)
+	{
+		int pos = find (name);
+		if (pos < 0)
+			return defaultValue;
+		int type = m_tape.getType (pos);
+		if (type == CookJsonTape.TRUE)
+			return true;
+		if (type == CookJsonTape.FALSE)
+			return false;
+		return defaultValue;
+	}
+
+	@Override
+	public boolean isNull (String name)
+	{
+		int pos = find (name);
+		if (pos < 0)
+			throw new NullPointerException ();
+		return m_tape.getType (pos) == CookJsonTape.NULL;
+	}
+}
@@ -16,8 +16,10 @@
 package org.yuanheng.cookjson;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
-import java.util.Map;
+import java.util.Arrays;
 
 import javax.json.stream.JsonGenerator;
 import javax.json.stream.JsonParsingException;
@@ -29,7 +31,39 @@ class TextJsonConfigHandler implements ConfigHandler
 {
 	private final static ConfigHandler s_instance = new TextJsonConfigHandler ();
 
+	private final static int READ_SIZE = 8192;
+
 	public static CookJsonParser getJsonParser (InputStream is)
+	{
+		return getJsonParser (is, READ_SIZE);
+	}
+
+	/**
+	 * Creates a parser after detecting the character set from the BOM.
+	 *
+	 * @param	is
+	 *			the input stream.
+	 * @param	bufferSize
+	 *			the read buffer size of the parser.
+	 * @return	a parser.
+	 */
+	public static CookJsonParser getJsonParser (InputStream is, int bufferSize)
+	{
+		return getJsonParser (is, bufferSize, null);
+	}
+
+	/**
+	 * Creates a parser after detecting the character set from the BOM.
+	 *
+	 * @param	is
+	 *			the input stream.
+	 * @param	bufferSize
+	 *			the read buffer size of the parser.
+	 * @param	recycler
+	 *			the buffer recycler.  Can be null.
+	 * @return	a parser.
+	 */
+	static CookJsonParser getJsonParser (InputStream is, int bufferSize, BufferRecycler recycler)
 	{
 		PushbackInputStream pis = new PushbackInputStream (is, 3);
 		Charset charset;
@@ -44,16 +78,59 @@ class TextJsonConfigHandler implements ConfigHandler
 			throw new JsonParsingException (ex.getMessage (), ex, location);
 		}
 		if (charset == BOM.utf8)
-			return new UTF8TextJsonParser (pis);
-		return new TextJsonParser (new InputStreamReader (pis, charset));
+			return new UTF8TextJsonParser (pis, bufferSize + 1, recycler);
+		return new TextJsonParser (new InputStreamReader (pis, charset), bufferSize + 1, recycler);
 	}
 
 	public static CookJsonParser getJsonParser (InputStream is, Charset charset)
+	{
+		return getJsonParser (is, charset, null);
+	}
+
+	static CookJsonParser getJsonParser (InputStream is, Charset charset, BufferRecycler recycler)
 	{
 		if (BOM.utf8.equals (charset))
-			return new UTF8TextJsonParser (is);
+			return new UTF8TextJsonParser (is, READ_SIZE + 1, recycler);
 		else
-			return new TextJsonParser (new InputStreamReader (is, charset));
+			return new TextJsonParser (new InputStreamReader (is, charset), READ_SIZE + 1, recycler);
+	}
+
+	/**
+	 * Creates a parser for JSON data in a byte array.  UTF-8 data is
+	 * parsed directly from the array.
+	 *
+	 * @param	buf
+	 *			the byte array.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 * @return	a parser.
+	 */
+	public static CookJsonParser getJsonParser (byte[] buf, int offset, int length)
+	{
+		// see BOM.guessCharset ()
+		if (length >= 2 && buf[offset] != 0 && buf[offset + 1] != 0)
+			return new UTF8TextJsonParser (buf, offset, length);
+		return getJsonParser (new ByteArrayInputStream (buf, offset, length));
+	}
+
+	/**
+	 * Creates a parser for the remaining JSON data in a ByteBuffer.  UTF-8
+	 * data is parsed directly from the backing array of a heap buffer.
+	 *
+	 * @param	buffer
+	 *			the ByteBuffer.
+	 * @return	a parser.
+	 */
+	public static CookJsonParser getJsonParser (ByteBuffer buffer)
+	{
+		int pos = buffer.position ();
+		if (buffer.remaining () >= 2 && buffer.get (pos) != 0 && buffer.get (pos + 1) != 0)
+			return new UTF8TextJsonParser (buffer);
+		byte[] buf = new byte[buffer.remaining ()];
+		buffer.duplicate ().get (buf);
+		return getJsonParser (new ByteArrayInputStream (buf));
 	}
 
 	public static ConfigHandler getInstance ()
@@ -65,76 +142,195 @@ class TextJsonConfigHandler implements ConfigHandler
 	{
 	}
 
-	private void configure (Map<String, ?> config, CookJsonParser p)
+	private void configure (FactorySettings settings, CookJsonParser p)
 	{
-		boolean allowComments = false;
-		Object obj = config.get (CookJsonProvider.COMMENT);
-		if (obj != null)
-			allowComments = "true".equals (obj.toString ());
-		((CommentJsonParser)p).setAllowComments (allowComments);
+		((CommentJsonParser)p).setAllowComments (settings.allowComments);
+		((MultiRootJsonParser)p).setMultipleRoots (settings.multipleRoots);
 	}
 
 	@Override
-	public CookJsonParser createParser (Map<String, ?> config, Reader reader)
+	public CookJsonParser createParser (FactorySettings settings, Reader reader)
 	{
-		CookJsonParser p = new TextJsonParser (reader);
-		configure (config, p);
+		CookJsonParser p = new TextJsonParser (reader, READ_SIZE + 1, settings.recycler);
+		configure (settings, p);
 		return p;
 	}
 
+	/**
+	 * Creates a parser in the lazy mode.  The lazy views need the whole
+	 * document in memory, so UTF-8 input is read fully into a byte array
+	 * and parsed with {@link IndexedJsonParser}.  The array is allocated
+	 * with the expected size, grown only if the input turns out to be
+	 * longer, and parsed without another copy.  Other input is parsed
+	 * with {@link TextJsonParser}.
+	 *
+	 * @param	settings
+	 *			the factory settings.
+	 * @param	is
+	 *			the input stream.
+	 * @param	charset
+	 *			the character set.  null to detect it from the input.
+	 * @param	size
+	 *			the expected size of the input.  0 if it is not known.
+	 * @return	a parser.
+	 */
+	private static CookJsonParser createLazyParser (FactorySettings settings, InputStream is, Charset charset, int size)
+	{
+		try
+		{
+			if (charset == null)
+			{
+				PushbackInputStream pis = new PushbackInputStream (is, 3);
+				charset = BOM.guessCharset (pis);
+				is = pis;
+			}
+			if (!BOM.utf8.equals (charset))
+				return new TextJsonParser (new InputStreamReader (is, charset), READ_SIZE + 1, settings.recycler);
+
+			// one spare byte so that the end of input is detected without
+			// growing the array.
+			byte[] buf = new byte[(size > 0 && size < Integer.MAX_VALUE - 8 ? size : READ_SIZE) + 1];
+			int length = 0;
+			for (;;)
+			{
+				if (length == buf.length)
+					buf = Arrays.copyOf (buf, buf.length << 1);
+				int n = is.read (buf, length, buf.length - length);
+				if (n < 0)
+					break;
+				length += n;
+			}
+			is.close ();
+			IndexedJsonParser p = new IndexedJsonParser (buf, 0, length);
+			p.setLazyValues (true);
+			return p;
+		}
+		catch (IOException ex)
+		{
+			JsonLocationImpl location = new JsonLocationImpl ();
+			location.m_streamOffset = 0;
+			throw new JsonParsingException (ex.getMessage (), ex, location);
+		}
+	}
+
+	/**
+	 * Gets the expected size of an input stream for the lazy mode.
+	 *
+	 * @param	is
+	 *			the input stream.
+	 * @return	the number of bytes available.  0 if it is not known.
+	 */
+	private static int available (InputStream is)
+	{
+		try
+		{
+			return is.available ();
+		}
+		catch (IOException ex)
+		{
+			return 0;
+		}
+	}
+
 	@Override
-	public CookJsonParser createParser (Map<String, ?> config, InputStream is)
+	public CookJsonParser createParser (FactorySettings settings, InputStream is)
 	{
-		CookJsonParser p = getJsonParser (is);
-		configure (config, p);
+		if (settings.lazyValues)
+			return createLazyParser (settings, is, null, available (is));
+		CookJsonParser p = getJsonParser (is, READ_SIZE, settings.recycler);
+		configure (settings, p);
 		return p;
 	}
 
 	@Override
-	public CookJsonParser createParser (Map<String, ?> config, InputStream is, Charset charset)
+	public CookJsonParser createParser (FactorySettings settings, InputStream is, Charset charset)
 	{
-		CookJsonParser p = getJsonParser (is, charset);
-		configure (config, p);
+		if (settings.lazyValues)
+			return createLazyParser (settings, is, charset, available (is));
+		CookJsonParser p = getJsonParser (is, charset, settings.recycler);
+		configure (settings, p);
 		return p;
 	}
 
 	@Override
-	public JsonGenerator createGenerator (Map<String, ?> config, Writer writer)
+	public CookJsonParser createParser (FactorySettings settings, FileChannel channel)
 	{
-		TextJsonGenerator g;
-
-		boolean pretty = false;
-		Object obj = config.get (JsonGenerator.PRETTY_PRINTING);
-		if (obj != null)
-			pretty = "true".equals (obj.toString ());
-		if (pretty)
-			g = new PrettyTextJsonGenerator (writer);
-		else
-			g = new TextJsonGenerator (writer);
-
-		int binaryFormat = BinaryFormat.BINARY_FORMAT_BASE64;
-		obj = config.get (CookJsonProvider.BINARY_FORMAT);
-		if (obj != null)
+		if (settings.lazyValues)
 		{
-			if (CookJsonProvider.BINARY_FORMAT_HEX.equals (obj.toString ()))
+			long size;
+			try
+			{
+				size = channel.size () - channel.position ();
+			}
+			catch (IOException ex)
 			{
-				binaryFormat = BinaryFormat.BINARY_FORMAT_HEX;
+				JsonLocationImpl location = new JsonLocationImpl ();
+				location.m_streamOffset = 0;
+				throw new JsonParsingException (ex.getMessage (), ex, location);
 			}
+			// a file too large for an array is parsed as usual.
+			if (size < Integer.MAX_VALUE - 8)
+				return createLazyParser (settings, new MappedFileInputStream (channel), null, (int) size);
+		}
+		CookJsonParser p = getJsonParser (new MappedFileInputStream (channel), MappedFileInputStream.READ_SIZE);
+		configure (settings, p);
+		return p;
+	}
+
+	@Override
+	public CookJsonParser createParser (FactorySettings settings, byte[] buf, int offset, int length)
+	{
+		// see BOM.guessCharset ()
+		if (settings.structuralIndex && length >= 2 && buf[offset] != 0 && buf[offset + 1] != 0)
+		{
+			IndexedJsonParser p = new IndexedJsonParser (buf, offset, length);
+			p.setLazyValues (settings.lazyValues);
+			return p;
 		}
-		g.setBinaryFormat (binaryFormat);
+		CookJsonParser p = getJsonParser (buf, offset, length);
+		configure (settings, p);
+		return p;
+	}
 
+	@Override
+	public CookJsonParser createParser (FactorySettings settings, ByteBuffer buffer)
+	{
+		int pos = buffer.position ();
+		if (settings.structuralIndex && buffer.remaining () >= 2 && buffer.get (pos) != 0 && buffer.get (pos + 1) != 0)
+		{
+			IndexedJsonParser p = new IndexedJsonParser (buffer);
+			p.setLazyValues (settings.lazyValues);
+			return p;
+		}
+		CookJsonParser p = getJsonParser (buffer);
+		configure (settings, p);
+		return p;
+	}
+
+	@Override
+	public JsonGenerator createGenerator (FactorySettings settings, Writer writer)
+	{
+		TextJsonGenerator g;
+		if (settings.prettyPrinting && !settings.lineDelimited)
+			g = new PrettyTextJsonGenerator (writer, settings.recycler);
+		else
+			g = new TextJsonGenerator (writer, settings.recycler);
+		g.setLineDelimited (settings.lineDelimited);
+		g.setBinaryFormat (settings.binaryFormat);
 		return g;
 	}
 
 	@Override
-	public JsonGenerator createGenerator (Map<String, ?> config, OutputStream os)
+	public JsonGenerator createGenerator (FactorySettings settings, OutputStream os)
 	{
-		return createGenerator (config, new OutputStreamWriter (os, BOM.utf8));
+		return createGenerator (settings, new UTF8Writer (os, settings.recycler));
 	}
 
 	@Override
-	public JsonGenerator createGenerator (Map<String, ?> config, OutputStream os, Charset charset)
+	public JsonGenerator createGenerator (FactorySettings settings, OutputStream os, Charset charset)
 	{
-		return createGenerator (config, new OutputStreamWriter (os, charset));
+		if (BOM.utf8.equals (charset))
+			return createGenerator (settings, os);
+		return createGenerator (settings, new OutputStreamWriter (os, charset));
 	}
 }
@@ -71,7 +71,7 @@ public class TextJsonGenerator implements CookJsonGenerator
 	 * using BufferedWriter due to slight performance improvement.
 	 */
 	final static int m_max = 8192;
-	final char[] m_buffer = new char[m_max + 1];	// +1 so that our single char padding logic is simpler
+	char[] m_buffer;	// m_max + 1 so that our single char padding logic is simpler.  null after close.
 	/** Buffer position */
 	int m_pos;
 
@@ -80,14 +80,40 @@ public class TextJsonGenerator implements CookJsonGenerator
 
 	int m_binaryFormat;
 
+	/**
+	 * If true, each root value is followed by a new line, and more root
+	 * values can be written.
+	 */
+	boolean m_lineDelimited;
+
+	/** The recycler of m_buffer.  null if m_buffer is not recycled. */
+	private BufferRecycler m_recycler;
+
 	public TextJsonGenerator (OutputStream os)
 	{
-		m_out = new OutputStreamWriter (os, BOM.utf8);
+		this (new OutputStreamWriter (os, BOM.utf8));
 	}
 
 	public TextJsonGenerator (Writer out)
+	{
+		this (out, null);
+	}
+
+	/**
+	 * @param	out
+	 *			the output writer.
+	 * @param	recycler
+	 *			the recycler that supplies the write buffer and gets it
+	 *			back on close ().  Can be null.
+	 */
+	TextJsonGenerator (Writer out, BufferRecycler recycler)
 	{
 		m_out = out;
+		m_recycler = recycler;
+		if (recycler == null)
+			m_buffer = new char[m_max + 1];
+		else
+			m_buffer = recycler.allocChars (BufferRecycler.CHAR_WRITE, m_max + 1);
 	}
 
 	void writeComma () throws IOException
@@ -293,6 +319,8 @@ public class TextJsonGenerator implements CookJsonGenerator
 	{
 		int pos = m_pos;
 		char[] buf = m_buffer;
+		if (buf == null)
+			throw new IOException ("Stream closed");
 		if (pos + length < m_max)
 		{
 			for (int i = 0; i < length; ++i)
@@ -328,6 +356,8 @@ public class TextJsonGenerator implements CookJsonGenerator
 	{
 		int pos = m_pos;
 		char[] buf = m_buffer;
+		if (buf == null)
+			throw new IOException ("Stream closed");
 		if (pos + length < m_max)
 		{
 			str.getChars (offset, offset + length, buf, pos);
@@ -358,6 +388,8 @@ public class TextJsonGenerator implements CookJsonGenerator
 	void w (char ch) throws IOException
 	{
 		char[] buf = m_buffer;
+		if (buf == null)
+			throw new IOException ("Stream closed");
 		int pos = m_pos;
 		buf[pos++] = ch;
 		if (pos >= m_max)
@@ -768,6 +800,8 @@ public class TextJsonGenerator implements CookJsonGenerator
 		try
 		{
 			w (ch);
+			if (m_lineDelimited && m_state == GeneratorState.END)
+				endLine ();
 		}
 		catch (IOException ex)
 		{
@@ -776,6 +810,19 @@ public class TextJsonGenerator implements CookJsonGenerator
 		return this;
 	}
 
+	/**
+	 * Ends a root value in the line delimited mode.
+	 *
+	 * @throws	IOException
+	 *			in case of I/O error.
+	 */
+	private void endLine () throws IOException
+	{
+		w ('\n');
+		m_state = GeneratorState.INITIAL;
+		m_first = true;
+	}
+
 	@Override
 	public JsonGenerator write (JsonValue value)
 	{
@@ -794,7 +841,10 @@ public class TextJsonGenerator implements CookJsonGenerator
 		try
 		{
 			writeComma ();
-			return writeValue (value);
+			writeValue (value);
+			if (m_lineDelimited && m_state == GeneratorState.INITIAL)
+				endLine ();
+			return this;
 		}
 		catch (IOException ex)
 		{
@@ -970,6 +1020,8 @@ public class TextJsonGenerator implements CookJsonGenerator
 	@Override
 	public void close ()
 	{
+		if (m_buffer == null)
+			return;
 		try
 		{
 			flush ();
@@ -979,6 +1031,15 @@ public class TextJsonGenerator implements CookJsonGenerator
 		{
 			throw new JsonGenerationException (ex.getMessage (), ex);
 		}
+		finally
+		{
+			if (m_recycler != null)
+			{
+				m_recycler.releaseChars (BufferRecycler.CHAR_WRITE, m_buffer);
+				m_recycler = null;
+			}
+			m_buffer = null;
+		}
 	}
 
 	@Override
@@ -986,6 +1047,8 @@ public class TextJsonGenerator implements CookJsonGenerator
 	{
 		try
 		{
+			if (m_buffer == null)
+				throw new IOException ("Stream closed");
 			if (m_pos > 0)
 			{
 				m_out.write (m_buffer, 0, m_pos);
@@ -1019,6 +1082,31 @@ public class TextJsonGenerator implements CookJsonGenerator
 		return isArray;
 	}
 
+	/**
+	 * Checks if the output is newline delimited JSON.
+	 *
+	 * @return	true if each root value is written on its own line.
+	 */
+	public boolean isLineDelimited ()
+	{
+		return m_lineDelimited;
+	}
+
+	/**
+	 * Sets whether the output is newline delimited JSON (JSON Lines).
+	 * In this mode, each root value is followed by '\n', and any number
+	 * of root values can be written.  It should be set before anything
+	 * is written, and is not meant for {@link PrettyTextJsonGenerator}.
+	 *
+	 * @param	lineDelimited
+	 *			true if each root value should be written on its own line.
+	 * @see		NdjsonReader
+	 */
+	public void setLineDelimited (boolean lineDelimited)
+	{
+		m_lineDelimited = lineDelimited;
+	}
+
 	/**
 	 * Check if key name is escaped.
 	 * @return	true if key name is escaped.  false otherwise.
@@ -25,8 +25,8 @@ import javax.json.JsonValue;
 import javax.json.stream.JsonLocation;
 import javax.json.stream.JsonParsingException;
 
-import org.yuanheng.cookjson.value.CookJsonBigDecimal;
 import org.yuanheng.cookjson.value.CookJsonString;
+import org.yuanheng.cookjson.value.CookJsonTextNumber;
 
 /**
  * This JsonParser adds the ability to allow parse JavaScript line and
@@ -34,30 +34,59 @@ import org.yuanheng.cookjson.value.CookJsonString;
  *
  * @author	Heng Yuan
  */
-public class TextJsonParser implements CookJsonParser, CommentJsonParser
+public class TextJsonParser implements CookJsonParser, CommentJsonParser, MultiRootJsonParser
 {
 	private final static int START = 1;
 	private final static int VALUE = 2;
 	private final static int FIELD = 3;
 
 	private final static int READ_SIZE = 8192;
+	/**
+	 * The initial append buffer size when parsing a String or char array.
+	 * Only strings with escape sequences need the append buffer in this case.
+	 */
+	private final static int SMALL_APPEND_SIZE = 64;
+	/**
+	 * When a parser is reset, an append buffer larger than this size
+	 * (left over from an unusually long string) is replaced.
+	 */
+	private final static int MAX_KEPT_APPEND_SIZE = READ_SIZE * 8;
 
 	private boolean m_allowComments;
+	/** Keeps reading root values after the first one. */
+	private boolean m_multipleRoots;
 
-	private final Reader m_reader;
+	/** The reader.  null if parsing a String or char array. */
+	private Reader m_reader;
 	/** append buffer for storing output string */
-	private char[] m_appendBuf = new char[8193];
+	private char[] m_appendBuf;
 	/** position tracking for append buffer */
 	private int m_appendPos;
 
-	private long m_line;
-	private long m_offset;
-	private long m_column;
-	private long savedLine;
-	private long savedColumn;
-	private long savedOffset;
-
-	private final char[] m_readBuf;
+	/**
+	 * The stream offset of m_readBuf[0].  The current stream offset is
+	 * simply m_base + m_readPos, so that the scanners only need to keep
+	 * m_readPos up to date.
+	 */
+	private long m_base;
+	/**
+	 * Line numbers are only counted when a location is needed, and before
+	 * the data is discarded from m_readBuf.  The lines have been counted up
+	 * to this position of m_readBuf.
+	 */
+	private int m_markPos;
+	/** The line number at m_markPos. */
+	private long m_markLine;
+	/** The stream offset of the start of the line at m_markPos. */
+	private long m_markLineStart;
+	/** The stream offset of the '"' of the current string. */
+	private long m_stringOffset;
+
+	private char[] m_readBuf;
+	/** m_readBuf is allocated by this parser rather than supplied by the caller. */
+	private boolean m_ownReadBuf;
+	/** The recycler of m_readBuf and m_appendBuf.  Can be null. */
+	private BufferRecycler m_recycler;
 	private int m_readPos = 0;
 	private int m_readMax = 0;
 
@@ -74,6 +103,14 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 	private boolean m_simple;
 	private int m_start;
 	private int m_len;
+	/** The value parsed by parseLong (). */
+	private long m_long;
+	private final DoubleParser m_doubleParser = new DoubleParser ();
+
+	/** Canonical key names shared with other parsers.  Can be null. */
+	private SymbolTable m_symbols;
+	/** Shared string values for getValue ().  Can be null. */
+	private StringValueTable m_stringValues;
 
 	/**
 	 * Create a JsonParser based on a Reader input.
@@ -96,17 +133,274 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 	 */
 	public TextJsonParser (Reader r, int bufferSize)
 	{
-		m_readBuf = new char[bufferSize];
+		this (r, bufferSize, null);
+	}
+
+	/**
+	 * Create a JsonParser based on a Reader input, with the buffers taken
+	 * from a recycler.  The buffers are handed back to the recycler on
+	 * close ().
+	 *
+	 * @param	r
+	 * 			reader input
+	 * @param	bufferSize
+	 * 			the input buffer size.
+	 * @param	recycler
+	 *			the buffer recycler.  Can be null.
+	 */
+	TextJsonParser (Reader r, int bufferSize, BufferRecycler recycler)
+	{
+		if (recycler == null)
+		{
+			m_readBuf = new char[bufferSize];
+			m_appendBuf = new char[READ_SIZE + 1];
+		}
+		else
+		{
+			m_readBuf = recycler.allocChars (BufferRecycler.CHAR_READ, bufferSize);
+			m_appendBuf = recycler.allocChars (BufferRecycler.CHAR_APPEND, READ_SIZE + 1);
+			// a recycled buffer is not cleared.
+			m_readBuf[0] = 0;
+		}
+		m_recycler = recycler;
+		m_ownReadBuf = true;
+		m_reader = r;
+		m_markLine = 1;
+	}
+
+	/**
+	 * Create a JsonParser that parses a char array.
+	 * <p>
+	 * The array is scanned directly without a Reader or a read buffer.
+	 * The scanner needs a 0 right after the data to mark the end.  If
+	 * buf[offset + length] is 0, the array is used as is.  Otherwise,
+	 * the data is copied once.  The array is never modified.
+	 *
+	 * @param	buf
+	 *			the char array containing JSON data.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 */
+	public TextJsonParser (char[] buf, int offset, int length)
+	{
+		m_reader = null;
+		setInput (buf, offset, length);
+	}
+
+	/**
+	 * Create a JsonParser that parses a String.
+	 * <p>
+	 * The characters are copied once into an array that is then scanned
+	 * directly.  There is no Reader or read buffer involved.
+	 *
+	 * @param	str
+	 *			the JSON text.
+	 */
+	public TextJsonParser (String str)
+	{
+		m_reader = null;
+		setInput (str);
+	}
+
+	private void setInput (char[] buf, int offset, int length)
+	{
+		int end = offset + length;
+		if (end < buf.length && buf[end] == 0)
+		{
+			m_readBuf = buf;
+			m_ownReadBuf = false;
+			m_readPos = offset;
+		}
+		else
+		{
+			m_readBuf = new char[length + 1];
+			m_ownReadBuf = true;
+			System.arraycopy (buf, offset, m_readBuf, 0, length);
+			m_readPos = 0;
+			end = length;
+		}
+		m_readMax = end;
+		if (m_appendBuf == null)
+			m_appendBuf = new char[SMALL_APPEND_SIZE];
+		m_base = -m_readPos;
+		m_markPos = m_readPos;
+		m_markLine = 1;
+		m_markLineStart = 0;
+	}
+
+	private void setInput (String str)
+	{
+		int length = str.length ();
+		// a String of similar size can reuse the array of the previous one.
+		if (!m_ownReadBuf || m_readBuf.length <= length || m_readBuf.length > 2 * (length + 1))
+		{
+			m_readBuf = new char[length + 1];
+			m_ownReadBuf = true;
+		}
+		str.getChars (0, length, m_readBuf, 0);
+		m_readBuf[length] = 0;
+		m_readPos = 0;
+		m_readMax = length;
+		if (m_appendBuf == null)
+			m_appendBuf = new char[SMALL_APPEND_SIZE];
+		m_base = -m_readPos;
+		m_markPos = m_readPos;
+		m_markLine = 1;
+		m_markLineStart = 0;
+	}
+
+	/**
+	 * Resets the parser to parse another document in a Reader.  The read
+	 * buffer, the append buffer and the state stack are reused, so that a
+	 * single parser can serve many documents.  The previous input is not
+	 * closed.
+	 *
+	 * @param	r
+	 *			reader input
+	 */
+	public void reset (Reader r)
+	{
+		if (!m_ownReadBuf || m_readBuf.length < READ_SIZE + 1)
+		{
+			m_readBuf = new char[READ_SIZE + 1];
+			m_ownReadBuf = true;
+		}
 		m_reader = r;
-		m_line = 1;
-		m_column = 1;
+		m_readPos = 0;
+		m_readMax = 0;
+		m_readBuf[0] = 0;
+		m_base = 0;
+		m_markPos = 0;
+		m_markLine = 1;
+		m_markLineStart = 0;
+		resetState ();
+	}
+
+	/**
+	 * Resets the parser to parse another document in a char array.  The
+	 * append buffer and the state stack are reused.  The previous input
+	 * is not closed.
+	 *
+	 * @param	buf
+	 *			the char array containing JSON data.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 * @see		#TextJsonParser(char[], int, int)
+	 */
+	public void reset (char[] buf, int offset, int length)
+	{
+		m_reader = null;
+		setInput (buf, offset, length);
+		resetState ();
+	}
+
+	/**
+	 * Resets the parser to parse another document in a String.  The
+	 * previous input is not closed.
+	 *
+	 * @param	str
+	 *			the JSON text.
+	 */
+	public void reset (String str)
+	{
+		m_reader = null;
+		setInput (str);
+		resetState ();
+	}
+
+	private void resetState ()
+	{
+		m_states.clear ();
+		m_state = ParserState.INITIAL;
+		m_lastToken = 0;
+		m_event = null;
+		m_appendPos = 0;
+		if (m_appendBuf == null || m_appendBuf.length > MAX_KEPT_APPEND_SIZE)
+			m_appendBuf = new char[READ_SIZE + 1];
 	}
 
 	private void saveLocation ()
 	{
-		savedLine = m_line;
-		savedOffset = m_offset;
-		savedColumn = m_column;
+		// the '"' has been read.
+		m_stringOffset = m_base + m_readPos - 1;
+	}
+
+	/**
+	 * Counts the lines up to a position of the read buffer.
+	 *
+	 * @param	pos
+	 *			the position of the read buffer.
+	 */
+	private void markLines (int pos)
+	{
+		final char[] readBuf = m_readBuf;
+		long line = m_markLine;
+		int lineStart = -1;
+		for (int i = m_markPos; i < pos; ++i)
+		{
+			if (readBuf[i] == '\n')
+			{
+				++line;
+				lineStart = i + 1;
+			}
+		}
+		if (lineStart >= 0)
+			m_markLineStart = m_base + lineStart;
+		m_markLine = line;
+		m_markPos = pos;
+	}
+
+	/**
+	 * Computes the location of a stream offset in the read buffer.
+	 * <p>
+	 * An offset before m_markPos is assumed to be on the line of m_markPos.
+	 * This is the case for the start of the current token, since a token
+	 * never spans multiple lines.
+	 *
+	 * @param	offset
+	 *			the stream offset.
+	 * @return	the location.
+	 */
+	private JsonLocationImpl createLocation (long offset)
+	{
+		int pos = (int) (offset - m_base);
+		if (pos > m_markPos)
+			markLines (Math.min (pos, m_readMax));
+		JsonLocationImpl location = new JsonLocationImpl ();
+		location.m_lineNumber = m_markLine;
+		location.m_columnNumber = offset - m_markLineStart + 1;
+		location.m_streamOffset = offset;
+		return location;
+	}
+
+	/**
+	 * Appends a range of chars to the append buffer.
+	 *
+	 * @param	buf
+	 *			the source buffer.
+	 * @param	start
+	 *			the starting position.
+	 * @param	len
+	 *			the number of chars.
+	 */
+	private void append (char[] buf, int start, int len)
+	{
+		int appendPos = m_appendPos;
+		if (appendPos + len > m_appendBuf.length)
+		{
+			int newLen = m_appendBuf.length;
+			while (newLen < appendPos + len)
+				newLen += newLen / 2 + 1;
+			char[] newBuffer = new char[newLen];
+			System.arraycopy (m_appendBuf, 0, newBuffer, 0, appendPos);
+			m_appendBuf = newBuffer;
+		}
+		System.arraycopy (buf, start, m_appendBuf, appendPos, len);
+		m_appendPos = appendPos + len;
 	}
 
 	private void append (char ch)
@@ -129,11 +423,8 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 
 	private JsonParsingException ioError (String msg)
 	{
-		JsonLocationImpl location = new JsonLocationImpl ();
-		location.m_lineNumber = m_line;
 		// -1 to back track the last read character.
-		location.m_columnNumber = m_column -1;
-		location.m_streamOffset = m_offset - 1;
+		JsonLocationImpl location = createLocation (m_base + m_readPos - 1);
 		return new JsonParsingException ("Parsing error at " + location.toString () + ": " + msg, location);
 	}
 
@@ -190,26 +481,43 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		if (m_readPos >= m_readMax)
 			fill ();
-		++m_offset;
-		++m_column;
 		return m_readBuf[m_readPos++];
 	}
 
 	private void unread ()
 	{
 		--m_readPos;
-		--m_offset;
-		--m_column;
 	}
 
 	private void fill () throws IOException
 	{
+		if (!fillMore ())
+			throw eofError ();
+	}
+
+	/**
+	 * Reads more data into the read buffer.
+	 *
+	 * @return	false if the end of input is reached.
+	 * @throws	IOException
+	 *			in case of I/O error.
+	 */
+	private boolean fillMore () throws IOException
+	{
+		if (m_reader == null)
+			return false;
 		final char[] readBuf = m_readBuf;
+		// count the lines before the data is discarded.
+		markLines (m_readMax);
+		int n = m_reader.read (readBuf, 0, readBuf.length - 1);
+		if (n <= 0)
+			return false;
+		m_base += m_readMax;
+		m_markPos = 0;
 		m_readPos = 0;
-		m_readMax = m_reader.read (readBuf, 0, readBuf.length - 1);
-		if (m_readMax <= 0)
-			throw eofError ();
-		readBuf[m_readMax] = 0;	// mark the end of buffer
+		m_readMax = n;
+		readBuf[n] = 0;	// mark the end of buffer
+		return true;
 	}
 
 	private void readLineComment () throws IOException
@@ -224,24 +532,14 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 
 			if (ch == '\n')
 			{
-				m_offset += readPos - m_readPos;
-				m_column = 1;
-				++m_line;
 				m_readPos = readPos;
 				return;
 			}
 			else if (ch == 0)
 			{
+				m_readPos = readPos;
 				if (readPos <= m_readMax)
-				{
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
 					throw unexpected (ch);
-				}
-				int l = readPos - m_readPos - 1;
-				m_offset += l;
-				m_column += l;
 				fill ();
 				readPos = 0;
 			}
@@ -253,24 +551,14 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		final char[] readBuf = m_readBuf;
 
 		int readPos = m_readPos;
-		int len = 0;
 		for (;;)
 		{
 			char ch = readBuf[readPos++];
-			++len;
 
 			// switch is useful for scanning characters that are
 			// mostly handled as default.
 			switch (ch)
 			{
-				case '\n':
-				{
-					m_offset += len;
-					m_column = 1;
-					++m_line;
-					len = 0;
-					break;
-				}
 				case '*':
 				{
 					char nextChar;
@@ -280,14 +568,13 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 					}
 					else
 					{
+						m_readPos = readPos;
 						fill ();
 						readPos = 0;
 						nextChar = readBuf[readPos];
 					}
 					if (nextChar == '/')
 					{
-						m_offset += len + 1;
-						m_column += len + 1;
 						m_readPos = readPos + 1;
 						return;
 					}
@@ -295,13 +582,9 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				}
 				case 0:
 				{
+					m_readPos = readPos;
 					if (readPos <= m_readMax)
-					{
-						m_offset += len;
-						m_column += len;
 						throw unexpected (ch);
-					}
-					--len;
 					fill ();
 					readPos = 0;
 					break;
@@ -320,8 +603,7 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 			readBlockComment ();
 		else
 		{
-			--m_offset;
-			--m_column;
+			--m_readPos;
 			throw unexpected ('/');
 		}
 	}
@@ -363,11 +645,13 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 			{
 				char ch = readBuf[readPos++];
 				if (ch != str.charAt (i))
+				{
+					// report the same location as the slow path.
+					m_readPos = readPos;
 					throw ioError ("expecting '" + ch + "'");
+				}
 			}
 			m_readPos = readPos;
-			m_offset += len;
-			m_column += len;
 		}
 	}
 
@@ -380,8 +664,6 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		m_appendPos = 1;
 
 		char ch = m_readBuf[m_readPos++];
-		++m_offset;
-		++m_column;
 		if (ch == 0)
 		{
 			if (m_readPos <= m_readMax)
@@ -484,9 +766,7 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 			}
 			else
 			{
-				int l = readPos - m_readPos;
-				m_offset += l;
-				m_column += l;
+				m_readPos = readPos;
 				throw unexpected (ch);
 			}
 		}
@@ -509,9 +789,7 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 			}
 			else
 			{
-				int l = readPos - m_readPos;
-				m_offset += l;
-				m_column += l;
+				m_readPos = readPos;
 				throw unexpected (ch);
 			}
 
@@ -528,9 +806,7 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				{
 					if (readPos <= m_readMax)
 					{
-						int l = readPos - m_readPos;
-						m_offset += l;
-						m_column += l;
+						m_readPos = readPos;
 						throw unexpected (ch);
 					}
 					readNumber (firstChar);
@@ -540,10 +816,7 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 			}
 		}
 
-		int l = readPos - m_readPos - 1;
-		m_offset += l;
-		m_column += l;
-		m_readPos += l;
+		m_readPos = readPos - 1;
 		m_len = m_readPos - m_start;
 	}
 
@@ -753,11 +1026,8 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				else
 				{
 					// handle '"' case, which closes this scan
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
+					m_len = readPos - m_readPos - 1;
 					m_readPos = readPos;
-					m_len = l - 1;
 					return;
 				}
 			}
@@ -769,9 +1039,7 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 			}
 			else
 			{
-				int l = readPos - m_readPos;
-				m_offset += l;
-				m_column += l;
+				m_readPos = readPos;
 				throw unexpected (ch);
 			}
 		}
@@ -797,7 +1065,17 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 
 		for (;;)
 		{
-			char ch = readBuf[readPos++];
+			// copy runs of ordinary chars in bulk.
+			int end = readPos;
+			char ch;
+			while ((ch = readBuf[end]) >= ' ' && ch != '"' && ch != '\\')
+				++end;
+			if (end > readPos)
+			{
+				append (readBuf, readPos, end - readPos);
+				readPos = end;
+			}
+			ch = readBuf[readPos++];
 			// JSON does not allow 0x00 - 0x1f in string.
 			// And '"' and '\\' must be escaped.
 			if (ch > '\\')
@@ -813,9 +1091,6 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				else
 				{
 					// handle '\\' case
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
 					m_readPos = readPos;
 					readEscape ();
 					readPos = m_readPos;
@@ -830,33 +1105,21 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				else
 				{
 					// handle '"' case
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
 					m_readPos = readPos;
 					return;
 				}
 			}
 			else if (ch == 0)
 			{
+				m_readPos = readPos;
 				if (readPos <= m_readMax)
-				{
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
 					throw unexpected (ch);
-				}
-				int l = readPos - m_readPos - 1;
-				m_offset += l;
-				m_column += l;
 				fill ();
 				readPos = 0;
 			}
 			else
 			{
-				int l = readPos - m_readPos;
-				m_offset += l;
-				m_column += l;
+				m_readPos = readPos;
 				throw unexpected (ch);
 			}
 		}
@@ -869,6 +1132,26 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		return new String (m_appendBuf, 0, m_appendPos);
 	}
 
+	private String getKeyString ()
+	{
+		final SymbolTable symbols = m_symbols;
+		if (symbols == null)
+			return getBufferString ();
+		if (m_simple)
+			return symbols.get (m_readBuf, m_start, m_len);
+		return symbols.get (m_appendBuf, 0, m_appendPos);
+	}
+
+	private CookJsonString getStringValue ()
+	{
+		final StringValueTable stringValues = m_stringValues;
+		if (stringValues == null)
+			return new CookJsonString (getBufferString ());
+		if (m_simple)
+			return stringValues.get (m_readBuf, m_start, m_len);
+		return stringValues.get (m_appendBuf, 0, m_appendPos);
+	}
+
 	@Override
 	public Event getEvent ()
 	{
@@ -894,9 +1177,11 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 			case VALUE_NULL:
 				return JsonValue.NULL;
 			case VALUE_NUMBER:
-				return new CookJsonBigDecimal (getBigDecimal ());
+				if (m_int && parseLong ())
+					return Utils.getNumber (m_long);
+				return new CookJsonTextNumber (getBufferString ());
 			case VALUE_STRING:
-				return new CookJsonString (getString ());
+				return getStringValue ();
 		}
 		throw stateError ("getValue()");
 	}
@@ -906,8 +1191,6 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			char ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			// since we are only call at initiation.  We are mostly expecting
 			// '[' and '{', not anything else.
 			if (ch == '[')
@@ -924,20 +1207,12 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				m_lastToken = START;
 				return;
 			}
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -950,8 +1225,6 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			char ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			if (ch == ',')
 				return false;
 			if (ch == '}')
@@ -961,20 +1234,12 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				m_lastToken = VALUE;
 				return true;
 			}
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -987,8 +1252,6 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			char ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			if (ch == ',')
 				return false;
 			if (ch == ']')
@@ -998,20 +1261,12 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				m_lastToken = VALUE;
 				return true;
 			}
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -1024,24 +1279,14 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			char ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			if (ch == ':')
 				return;
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -1054,8 +1299,6 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			char ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			if (ch == '"')
 			{
 				saveLocation ();
@@ -1072,20 +1315,12 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				m_lastToken = VALUE;
 				return;
 			}
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -1098,17 +1333,11 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			char ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			switch (ch)
 			{
 				case '\t':
 				case '\r':
-					break;
 				case '\n':
-					m_column = 1;
-					++m_line;
-					break;
 				case ' ':
 					break;
 				case '"':
@@ -1190,8 +1419,6 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				{
 					if (m_readPos <= m_readMax)
 						throw unexpected (ch);
-					--m_offset;
-					--m_column;
 					fill ();
 					break;
 				}
@@ -1259,36 +1486,316 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		}
 	}
 
+	@Override
+	public int readIntArray (int[] values, int offset, int length)
+	{
+		return Utils.readIntArray (this, values, offset, length);
+	}
+
+	@Override
+	public int readLongArray (long[] values, int offset, int length)
+	{
+		return Utils.readLongArray (this, values, offset, length);
+	}
+
+	@Override
+	public int readDoubleArray (double[] values, int offset, int length)
+	{
+		return Utils.readDoubleArray (this, values, offset, length);
+	}
+
+	@Override
+	public void skipChildren ()
+	{
+		if (m_event != Event.START_ARRAY && m_event != Event.START_OBJECT)
+			return;
+		try
+		{
+			skipToEnd ();
+		}
+		catch (IOException ex)
+		{
+			throw new JsonParsingException (ex.getMessage (), ex, getCurrentLocation ());
+		}
+		// let next () handle the closing bracket.
+		next ();
+	}
+
+	/**
+	 * Refills the buffer when the end of buffer marker is hit while
+	 * skipping.
+	 *
+	 * @param	readPos
+	 *			the read position right after the 0.
+	 * @return	the new read position.
+	 * @throws	IOException
+	 *			in case of error.
+	 */
+	private int skipFill (int readPos) throws IOException
+	{
+		m_readPos = readPos;
+		if (readPos <= m_readMax)
+			throw unexpected ((char) 0);
+		fill ();
+		return 0;
+	}
+
+	/**
+	 * Skips the contents of the current array or object without decoding
+	 * them.  Only the bracket depth and string boundaries are tracked.
+	 * The read position is left at the matching closing bracket.
+	 *
+	 * @throws	IOException
+	 *			in case of error.
+	 */
+	private void skipToEnd () throws IOException
+	{
+		final char[] readBuf = m_readBuf;
+		int readPos = m_readPos;
+		int depth = 0;
+
+		for (;;)
+		{
+			char ch = readBuf[readPos++];
+			switch (ch)
+			{
+				case '"':
+				{
+					for (;;)
+					{
+						ch = readBuf[readPos++];
+						if (ch == '"')
+							break;
+						if (ch == '\\')
+						{
+							ch = readBuf[readPos++];
+							if (ch == 0)
+								readPos = skipFill (readPos) + 1;
+						}
+						else if (ch == 0)
+							readPos = skipFill (readPos);
+					}
+					break;
+				}
+				case '[':
+				case '{':
+					++depth;
+					break;
+				case ']':
+				case '}':
+				{
+					if (depth == 0)
+					{
+						m_readPos = readPos - 1;
+						return;
+					}
+					--depth;
+					break;
+				}
+				case '/':
+				{
+					if (m_allowComments)
+					{
+						m_readPos = readPos;
+						readComment ();
+						readPos = m_readPos;
+					}
+					break;
+				}
+				case 0:
+				{
+					readPos = skipFill (readPos);
+					break;
+				}
+			}
+		}
+	}
+
 	@Override
 	public boolean hasNext ()
 	{
+		if (m_multipleRoots && m_state == ParserState.INITIAL)
+			return hasMoreRoots ();
 		return m_state != ParserState.END;
 	}
 
+	/**
+	 * Skips the white spaces and comments before the next root value.
+	 *
+	 * @return	false if there are no more root values.
+	 */
+	private boolean hasMoreRoots ()
+	{
+		try
+		{
+			for (;;)
+			{
+				char ch = m_readBuf[m_readPos];
+				if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
+				{
+					++m_readPos;
+				}
+				else if (ch == 0)
+				{
+					// let next () report a 0 in the data.
+					if (m_readPos < m_readMax)
+						return true;
+					if (!fillMore ())
+						return false;
+				}
+				else if (ch == '/' && m_allowComments)
+				{
+					++m_readPos;
+					readComment ();
+				}
+				else
+					return true;
+			}
+		}
+		catch (IOException ex)
+		{
+			throw new JsonParsingException (ex.getMessage (), ex, getCurrentLocation ());
+		}
+	}
+
 	@Override
 	public boolean isIntegralNumber ()
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw stateError ("isIntegralNumber()");
-		return m_int || getBigDecimal ().scale () == 0;
+		if (m_int)
+			return true;
+
+		final char[] buf;
+		int pos;
+		final int end;
+		if (m_simple)
+		{
+			buf = m_readBuf;
+			pos = m_start;
+			end = m_start + m_len;
+		}
+		else
+		{
+			buf = m_appendBuf;
+			pos = 0;
+			end = m_appendPos;
+		}
+
+		// The BigDecimal scale is the number of fraction digits minus
+		// the exponent, so the number is integral when the two are equal.
+		while (pos < end && buf[pos] != '.' && buf[pos] != 'e' && buf[pos] != 'E')
+			++pos;
+		int fraction = 0;
+		if (pos < end && buf[pos] == '.')
+		{
+			++pos;
+			while (pos < end && buf[pos] != 'e' && buf[pos] != 'E')
+			{
+				++pos;
+				++fraction;
+			}
+		}
+		if (pos == end)
+			return fraction == 0;
+		++pos;
+		boolean negative = false;
+		if (buf[pos] == '+')
+			++pos;
+		else if (buf[pos] == '-')
+		{
+			negative = true;
+			++pos;
+		}
+		if ((end - pos) > 9)
+			return getBigDecimal ().scale () == 0;
+		int exp = 0;
+		for (; pos < end; ++pos)
+			exp = exp * 10 + (buf[pos] - '0');
+		return (negative ? -exp : exp) == fraction;
 	}
 
-	@Override
-	public int getInt ()
+	/**
+	 * Parses the integer part of the current number directly from the
+	 * buffer and stores it in m_long.
+	 * <p>
+	 * The digits are accumulated as a negative value since the magnitude
+	 * of Long.MIN_VALUE is larger than Long.MAX_VALUE.
+	 *
+	 * @return	true if the value was parsed.  false if the value overflows
+	 *			long, or if the number has an exponent.
+	 */
+	private boolean parseLong ()
 	{
-		if (m_event != Event.VALUE_NUMBER)
-			throw stateError ("getInt()");
-		if (m_int)
+		final char[] buf;
+		int pos;
+		final int end;
+		if (m_simple)
+		{
+			buf = m_readBuf;
+			pos = m_start;
+			end = m_start + m_len;
+		}
+		else
+		{
+			buf = m_appendBuf;
+			pos = 0;
+			end = m_appendPos;
+		}
+
+		final boolean negative = buf[pos] == '-';
+		if (negative)
+			++pos;
+
+		long value = 0;
+		int digitEnd = pos;
+		while (digitEnd < end && buf[digitEnd] >= '0' && buf[digitEnd] <= '9')
+			++digitEnd;
+
+		if ((digitEnd - pos) < 19)
 		{
-			int len = m_simple ? m_len : m_appendPos;
-			if (len < 10 ||
-				(len < 11 && m_appendBuf[0] == '-'))
+			// no overflow possible
+			for (; pos < digitEnd; ++pos)
+				value = value * 10 - (buf[pos] - '0');
+		}
+		else
+		{
+			final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+			final long multmin = limit / 10;
+			for (; pos < digitEnd; ++pos)
+			{
+				int digit = buf[pos] - '0';
+				if (value < multmin)
+					return false;
+				value *= 10;
+				if (value < limit + digit)
+					return false;
+				value -= digit;
+			}
+		}
+
+		if (digitEnd < end)
+		{
+			// the fraction can be truncated, but the exponent cannot be ignored.
+			for (pos = digitEnd; pos < end; ++pos)
 			{
-				return Integer.valueOf (getBufferString ());
+				if (buf[pos] == 'e' || buf[pos] == 'E')
+					return false;
 			}
 		}
-		BigDecimal bd = m_simple ? new BigDecimal (m_readBuf, m_start, m_len) : new BigDecimal (getBufferString ());
-		return bd.intValue ();
+
+		m_long = negative ? value : -value;
+		return true;
+	}
+
+	@Override
+	public int getInt ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getInt()");
+		if (parseLong ())
+			return (int) m_long;
+		return new BigDecimal (getBufferString ()).intValue ();
 	}
 
 	@Override
@@ -1296,17 +1803,9 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw stateError ("getLong()");
-		if (m_int)
-		{
-			int len = m_simple ? m_len : m_appendPos;
-			if (len < 19 ||
-				(len < 20 && m_appendBuf[0] == '-'))
-			{
-				return Long.valueOf (getBufferString ());
-			}
-		}
-		BigDecimal bd = m_simple ? new BigDecimal (m_readBuf, m_start, m_len) : new BigDecimal (getBufferString ());
-		return bd.longValue ();
+		if (parseLong ())
+			return m_long;
+		return new BigDecimal (getBufferString ()).longValue ();
 	}
 
 	@Override
@@ -1314,24 +1813,53 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw stateError ("getBigDecimal()");
-		if (m_simple)
-			return new BigDecimal (m_readBuf, m_start, m_len);
+		if (m_int && parseLong ())
+			return BigDecimal.valueOf (m_long);
 		return new BigDecimal (getBufferString ());
 	}
 
+	private DoubleParser scanNumber ()
+	{
+		final DoubleParser doubleParser = m_doubleParser;
+		if (m_simple)
+			doubleParser.scan (m_readBuf, m_start, m_len);
+		else
+			doubleParser.scan (m_appendBuf, 0, m_appendPos);
+		return doubleParser;
+	}
+
+	@Override
+	public double getDouble ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getDouble()");
+		double d = scanNumber ().toDouble ();
+		if (d != d)
+			d = Double.parseDouble (getBufferString ());
+		return d;
+	}
+
+	@Override
+	public float getFloat ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getFloat()");
+		float f = scanNumber ().toFloat ();
+		if (f != f)
+			f = Float.parseFloat (getBufferString ());
+		return f;
+	}
+
 	private JsonLocation getCurrentLocation ()
 	{
-		JsonLocationImpl location = new JsonLocationImpl ();
-		location.m_columnNumber = m_column;
-		location.m_streamOffset = m_offset;
-		location.m_lineNumber = m_line;
-		return location;
+		// after the end of buffer marker is hit, the position is at most
+		// m_readMax.
+		return createLocation (m_base + Math.min (m_readPos, m_readMax));
 	}
 
 	@Override
 	public JsonLocation getLocation ()
 	{
-		JsonLocationImpl location = new JsonLocationImpl ();
 		long diff = 0;
 		switch (m_event)
 		{
@@ -1349,12 +1877,7 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				break;
 			case KEY_NAME:
 			case VALUE_STRING:
-			{
-				location.m_columnNumber = savedColumn - 1;	// minus 1 to account for '"'
-				location.m_streamOffset = savedOffset - 1;	// minus 1 to account for '"'
-				location.m_lineNumber = savedLine;
-				return location;
-			}
+				return createLocation (m_stringOffset);
 			case VALUE_FALSE:
 				diff = 5;
 				break;
@@ -1363,10 +1886,7 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 				diff = 4;
 				break;
 		}
-		location.m_columnNumber = m_column - diff;
-		location.m_streamOffset = m_offset - diff;
-		location.m_lineNumber = m_line;
-		return location;
+		return createLocation (m_base + m_readPos - diff);
 	}
 
 	@Override
@@ -1376,6 +1896,8 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 			m_event != Event.VALUE_NUMBER &&
 			m_event != Event.KEY_NAME)
 			throw stateError ("getString()");
+		if (m_event == Event.KEY_NAME)
+			return getKeyString ();
 		return getBufferString ();
 	}
 
@@ -1402,12 +1924,38 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		try
 		{
-			m_reader.close ();
+			if (m_reader != null)
+				m_reader.close ();
 		}
 		catch (IOException ex)
 		{
 			throw new JsonParsingException (ex.getMessage (), ex, getCurrentLocation ());
 		}
+		finally
+		{
+			releaseBuffers ();
+		}
+	}
+
+	/**
+	 * Hands the buffers back to the recycler if there is one, and drops
+	 * the references to them, including an array supplied by the caller.
+	 * If the parser is reset afterward, new buffers are allocated.
+	 */
+	private void releaseBuffers ()
+	{
+		final BufferRecycler recycler = m_recycler;
+		m_recycler = null;
+		if (recycler != null)
+		{
+			if (m_ownReadBuf)
+				recycler.releaseChars (BufferRecycler.CHAR_READ, m_readBuf);
+			if (m_appendBuf != null)
+				recycler.releaseChars (BufferRecycler.CHAR_APPEND, m_appendBuf);
+		}
+		m_readBuf = null;
+		m_ownReadBuf = false;
+		m_appendBuf = null;
 	}
 
 	private void pushState (boolean isArray)
@@ -1423,7 +1971,7 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 		if (isArrayEnd != isArray)
 			throw new IllegalStateException ();
 		if (m_states.isEmpty ())
-			m_state = ParserState.END;
+			m_state = m_multipleRoots ? ParserState.INITIAL : ParserState.END;
 		else
 		{
 			boolean b = m_states.remove (m_states.size () - 1);
@@ -1457,4 +2005,39 @@ public class TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		m_allowComments = allowComments;
 	}
+
+	@Override
+	public boolean isMultipleRoots ()
+	{
+		return m_multipleRoots;
+	}
+
+	@Override
+	public void setMultipleRoots (boolean multipleRoots)
+	{
+		m_multipleRoots = multipleRoots;
+	}
+
+	/**
+	 * Sets the table used to look up canonical key name strings.
+	 *
+	 * @param	symbols
+	 *			the symbol table.  Can be null.
+	 */
+	void setSymbolTable (SymbolTable symbols)
+	{
+		m_symbols = symbols;
+	}
+
+	/**
+	 * Sets the table used to share string values returned by
+	 * {@link #getValue()}.
+	 *
+	 * @param	stringValues
+	 *			the string value table.  Can be null.
+	 */
+	void setStringValueTable (StringValueTable stringValues)
+	{
+		m_stringValues = stringValues;
+	}
 }
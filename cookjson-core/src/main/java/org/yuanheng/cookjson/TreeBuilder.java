@@ -0,0 +1,192 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.util.Arrays;
+
+import javax.json.JsonStructure;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser.Event;
+
+import org.yuanheng.cookjson.value.*;
+
+/**
+ * Builds an immutable tree from parser events.
+ * <p>
+ * The members of all the open levels are collected on a shared stack,
+ * and each level is frozen when it ends.  Objects become
+ * {@link CookJsonCompactObject}s.  Arrays of numbers are collected by
+ * a {@link NumberArrayBuilder} and become {@link CookJsonPackedArray}s,
+ * until an element that does not fit is found.
+ *
+ * @author	Heng Yuan
+ */
+final class TreeBuilder
+{
+	private String[] m_names = new String[32];
+	private JsonValue[] m_values = new JsonValue[32];
+	private int m_top;
+
+	// the stack position of the first member, the type, the key name and
+	// the number collector of each open level.
+	private int[] m_starts = new int[16];
+	private boolean[] m_arrays = new boolean[16];
+	private String[] m_levelNames = new String[16];
+	private NumberArrayBuilder[] m_numbers = new NumberArrayBuilder[16];
+	/** If true, the numbers of the array are being collected. */
+	private boolean[] m_packing = new boolean[16];
+	private int m_depth;
+
+	private void push (String name, JsonValue value)
+	{
+		int top = m_top;
+		if (top == m_values.length)
+		{
+			m_names = Arrays.copyOf (m_names, top * 2);
+			m_values = Arrays.copyOf (m_values, top * 2);
+		}
+		m_names[top] = name;
+		m_values[top] = value;
+		m_top = top + 1;
+	}
+
+	private void startLevel (boolean isArray, String name)
+	{
+		int depth = m_depth;
+		if (depth == m_starts.length)
+		{
+			m_starts = Arrays.copyOf (m_starts, depth * 2);
+			m_arrays = Arrays.copyOf (m_arrays, depth * 2);
+			m_levelNames = Arrays.copyOf (m_levelNames, depth * 2);
+			m_numbers = Arrays.copyOf (m_numbers, depth * 2);
+			m_packing = Arrays.copyOf (m_packing, depth * 2);
+		}
+		m_starts[depth] = m_top;
+		m_arrays[depth] = isArray;
+		m_levelNames[depth] = name;
+		m_packing[depth] = isArray;
+		if (isArray)
+		{
+			if (m_numbers[depth] == null)
+				m_numbers[depth] = new NumberArrayBuilder ();
+			m_numbers[depth].reset ();
+		}
+		m_depth = depth + 1;
+	}
+
+	/**
+	 * Stops collecting the numbers of the current array, and moves the
+	 * numbers collected so far to the stack.
+	 */
+	private void stopPacking ()
+	{
+		final int level = m_depth - 1;
+		m_packing[level] = false;
+		NumberArrayBuilder numbers = m_numbers[level];
+		for (int i = 0, size = numbers.size (); i < size; ++i)
+			push (null, numbers.get (i));
+	}
+
+	private JsonStructure endLevel ()
+	{
+		final int depth = --m_depth;
+		final int start = m_starts[depth];
+		final int top = m_top;
+		JsonStructure value;
+		if (m_packing[depth])
+			value = m_numbers[depth].build ();
+		else if (m_arrays[depth])
+		{
+			CookJsonArray array = new CookJsonArray ();
+			array.ensureCapacity (top - start);
+			for (int i = start; i < top; ++i)
+				array.add (m_values[i]);
+			value = array;
+		}
+		else
+			value = CookJsonCompactObject.create (m_names, m_values, start, top - start);
+		// release the references.
+		Arrays.fill (m_values, start, top, null);
+		m_top = start;
+		return value;
+	}
+
+	/**
+	 * Builds the tree of the current array or object.
+	 *
+	 * @param	p
+	 * 			JSON input parser at a START event.
+	 * @param	isArray
+	 *			true if the current value is an array.
+	 * @return	constructed JsonArray / JsonObject.
+	 */
+	public JsonStructure build (CookJsonParser p, boolean isArray)
+	{
+		startLevel (isArray, null);
+		String name = null;
+		for (;;)
+		{
+			Event e = p.next ();
+			JsonValue value;
+			switch (e)
+			{
+				case START_ARRAY:
+				case START_OBJECT:
+				{
+					if (m_packing[m_depth - 1])
+						stopPacking ();
+					startLevel (e == Event.START_ARRAY, name);
+					name = null;
+					continue;
+				}
+				case KEY_NAME:
+				{
+					name = p.getString ();
+					continue;
+				}
+				case END_ARRAY:
+				case END_OBJECT:
+				{
+					value = endLevel ();
+					if (m_depth == 0)
+						return (JsonStructure) value;	// done
+					name = m_levelNames[m_depth];
+					break;
+				}
+				case VALUE_NUMBER:
+				{
+					if (m_packing[m_depth - 1])
+					{
+						if (m_numbers[m_depth - 1].add (p))
+							continue;
+						stopPacking ();
+					}
+					value = p.getValue ();
+					break;
+				}
+				default:
+				{
+					if (m_packing[m_depth - 1])
+						stopPacking ();
+					value = p.getValue ();
+					break;
+				}
+			}
+			push (name, value);
+			name = null;
+		}
+	}
+}
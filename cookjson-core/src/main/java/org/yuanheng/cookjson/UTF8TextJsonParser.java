@@ -15,9 +15,12 @@
  */
 package org.yuanheng.cookjson;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.NoSuchElementException;
 
@@ -25,8 +28,8 @@ import javax.json.JsonValue;
 import javax.json.stream.JsonLocation;
 import javax.json.stream.JsonParsingException;
 
-import org.yuanheng.cookjson.value.CookJsonBigDecimal;
 import org.yuanheng.cookjson.value.CookJsonString;
+import org.yuanheng.cookjson.value.CookJsonTextNumber;
 
 /**
  * This parser is much like TextJsonParser, except that it only works on UTF-8
@@ -34,30 +37,106 @@ import org.yuanheng.cookjson.value.CookJsonString;
  *
  * @author	Heng Yuan
  */
-public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
+public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser, MultiRootJsonParser
 {
 	private final static int START = 1;
 	private final static int VALUE = 2;
 	private final static int FIELD = 3;
 
 	private final static int READ_SIZE = 8192;
+	/**
+	 * The initial append buffer size when parsing a byte array.  Only
+	 * strings with escape sequences need the append buffer in this case.
+	 */
+	private final static int SMALL_APPEND_SIZE = 64;
+	/**
+	 * When a parser is reset, an append buffer larger than this size
+	 * (left over from an unusually long string) is replaced.
+	 */
+	private final static int MAX_KEPT_APPEND_SIZE = READ_SIZE * 8;
 
-	private boolean m_allowComments;
+	/**
+	 * Thrown by fill () in non-blocking mode when more input is needed.
+	 * It is caught by next (), so a single instance without the stack
+	 * trace is used.
+	 */
+	private final static class NeedMoreInputException extends IOException
+	{
+		private static final long serialVersionUID = 6451295512315440893L;
 
-	private final InputStream m_in;
+		@Override
+		public synchronized Throwable fillInStackTrace ()
+		{
+			return this;
+		}
+	}
+
+	private final static NeedMoreInputException NEED_MORE_INPUT = new NeedMoreInputException ();
+
+	/** 0x01 in every byte. */
+	private final static long SWAR_ONES = 0x0101010101010101L;
+	/** 0x80 in every byte. */
+	private final static long SWAR_HIGHS = 0x8080808080808080L;
+	private final static long SWAR_QUOTES = 0x2222222222222222L;
+	private final static long SWAR_BACKSLASHES = 0x5c5c5c5c5c5c5c5cL;
+	private final static long SWAR_NEWLINES = 0x0a0a0a0a0a0a0a0aL;
+	/** 0x7f in every byte. */
+	private final static long SWAR_LOWS = 0x7f7f7f7f7f7f7f7fL;
+	private final static long SWAR_SPACES = 0x2020202020202020L;
+
+	private boolean m_allowComments;
+	/** Keeps reading root values after the first one. */
+	private boolean m_multipleRoots;
+
+	/** The input stream.  null if parsing a byte array or in non-blocking mode. */
+	private InputStream m_in;
+	/** Non-blocking mode.  Input is supplied through feedInput (). */
+	private final boolean m_feed;
+	/** In non-blocking mode, endOfInput () has been called. */
+	private boolean m_endOfInput;
+	/**
+	 * In non-blocking mode, the start of a string that ran out of input.
+	 * The bytes up to m_resumePos have been scanned, so the scan continues
+	 * there after more input is fed.  -1 if there is none.
+	 */
+	private int m_resumeStart = -1;
+	private int m_resumePos;
+	/**
+	 * The append buffer position at m_resumePos.  -1 if the string has no
+	 * escape sequences so far and is still in the read buffer.
+	 */
+	private int m_resumeAppendPos;
 	/** append buffer for storing output string */
-	private byte[] m_appendBuf = new byte[8193];
+	private byte[] m_appendBuf;
 	/** position tracking for append buffer */
 	private int m_appendPos;
 
-	private long m_line;
-	private long m_offset;
-	private long m_column;
-	private long savedLine;
-	private long savedColumn;
-	private long savedOffset;
-
-	private final byte[] m_readBuf;
+	/**
+	 * The stream offset of m_readBuf[0].  The current stream offset is
+	 * simply m_base + m_readPos, so that the scanners only need to keep
+	 * m_readPos up to date.
+	 */
+	private long m_base;
+	/**
+	 * Line numbers are only counted when a location is needed, and before
+	 * the data is discarded from m_readBuf.  The lines have been counted up
+	 * to this position of m_readBuf.
+	 */
+	private int m_markPos;
+	/** The line number at m_markPos. */
+	private long m_markLine;
+	/** The stream offset of the start of the line at m_markPos. */
+	private long m_markLineStart;
+	/** The stream offset of the '"' of the current string. */
+	private long m_stringOffset;
+
+	private byte[] m_readBuf;
+	/** m_readBuf is allocated by this parser rather than supplied by the caller. */
+	private boolean m_ownReadBuf;
+	/** The recycler of m_readBuf and m_appendBuf.  Can be null. */
+	private BufferRecycler m_recycler;
+	/** A little endian view of m_readBuf for reading 8 bytes at a time. */
+	private ByteBuffer m_readView;
 	private int m_readPos = 0;
 	private int m_readMax = 0;
 
@@ -74,6 +153,14 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 	private boolean m_simple;
 	private int m_start;
 	private int m_len;
+	/** The value parsed by parseLong (). */
+	private long m_long;
+	private final DoubleParser m_doubleParser = new DoubleParser ();
+
+	/** Canonical key names shared with other parsers.  Can be null. */
+	private SymbolTable m_symbols;
+	/** Shared string values for getValue ().  Can be null. */
+	private StringValueTable m_stringValues;
 
 	/**
 	 * Create a JsonParser based on a UTF-8 InputStream input.
@@ -97,17 +184,362 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 	 */
 	public UTF8TextJsonParser (InputStream is, int bufferSize)
 	{
-		m_readBuf = new byte[bufferSize];
+		this (is, bufferSize, null);
+	}
+
+	/**
+	 * Create a JsonParser based on a UTF-8 InputStream input, with the
+	 * buffers taken from a recycler.  The buffers are handed back to the
+	 * recycler on close ().
+	 *
+	 * @param	is
+	 * 			UTF-8 InputStream
+	 * @param	bufferSize
+	 * 			the input buffer size.
+	 * @param	recycler
+	 *			the buffer recycler.  Can be null.
+	 */
+	UTF8TextJsonParser (InputStream is, int bufferSize, BufferRecycler recycler)
+	{
+		if (recycler == null)
+		{
+			m_readBuf = new byte[bufferSize];
+			m_appendBuf = new byte[READ_SIZE + 1];
+		}
+		else
+		{
+			m_readBuf = recycler.allocBytes (BufferRecycler.BYTE_READ, bufferSize);
+			m_appendBuf = recycler.allocBytes (BufferRecycler.BYTE_APPEND, READ_SIZE + 1);
+			// a recycled buffer is not cleared.
+			m_readBuf[0] = 0;
+		}
+		m_recycler = recycler;
+		m_ownReadBuf = true;
+		m_in = is;
+		m_feed = false;
+		m_markLine = 1;
+	}
+
+	/**
+	 * Create a non-blocking JsonParser.
+	 * <p>
+	 * UTF-8 data is supplied in chunks with {@link #feedInput(byte[], int, int)},
+	 * and {@link #endOfInput()} is called after the last chunk.  When the
+	 * next event cannot be determined with the data fed so far,
+	 * {@link #next()} returns null instead of blocking, and the parser
+	 * keeps its state until more data is fed.  Tokens (strings, numbers,
+	 * escapes, comments etc) can be split anywhere across the chunks.
+	 * <p>
+	 * An event that needs more input is parsed again from its beginning
+	 * after the next chunk is fed.  Thus very large tokens should be fed
+	 * in large chunks.
+	 * <p>
+	 * {@link #skipChildren()} and {@link #getValue()} for arrays and
+	 * objects are not supported in this mode.
+	 */
+	public UTF8TextJsonParser ()
+	{
+		m_readBuf = new byte[READ_SIZE + 1];
+		m_ownReadBuf = true;
+		m_appendBuf = new byte[READ_SIZE + 1];
+		m_in = null;
+		m_feed = true;
+		m_markLine = 1;
+	}
+
+	/**
+	 * Create a JsonParser that parses UTF-8 data in a byte array.
+	 * <p>
+	 * The scanner needs a 0 right after the data to mark the end.  To
+	 * have the array scanned in place without any copying, the caller
+	 * must supply buf[offset + length] == 0 (for instance, by allocating
+	 * a spare byte at the end).  Otherwise, the data is read in chunks
+	 * through a small read buffer, as if it came from an InputStream.
+	 * The array is never modified.
+	 * <p>
+	 * The sentinel is deliberate.  Every scanning loop stops on the 0
+	 * in the same branch that handles control characters, so the end of
+	 * the buffer costs nothing per byte.  Scanning an array without it
+	 * would need a bounds check on every byte of every token, which
+	 * costs more than copying the data through the read buffer.
+	 *
+	 * @param	buf
+	 *			the byte array containing UTF-8 JSON data.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 */
+	public UTF8TextJsonParser (byte[] buf, int offset, int length)
+	{
+		m_feed = false;
+		setInput (buf, offset, length);
+	}
+
+	/**
+	 * Create a JsonParser that parses UTF-8 data in a byte array.
+	 *
+	 * @param	buf
+	 *			the byte array containing UTF-8 JSON data.
+	 * @see		#UTF8TextJsonParser(byte[], int, int)
+	 */
+	public UTF8TextJsonParser (byte[] buf)
+	{
+		this (buf, 0, buf.length);
+	}
+
+	/**
+	 * Create a JsonParser that parses the remaining UTF-8 data in a
+	 * ByteBuffer.
+	 * <p>
+	 * The backing array of a heap buffer is scanned directly, as
+	 * described in {@link #UTF8TextJsonParser(byte[], int, int)}.  The
+	 * data of a direct or read-only buffer is copied once.  The position
+	 * of the buffer is not changed.
+	 *
+	 * @param	buffer
+	 *			the ByteBuffer containing UTF-8 JSON data.
+	 */
+	public UTF8TextJsonParser (ByteBuffer buffer)
+	{
+		m_feed = false;
+		int length = buffer.remaining ();
+		if (buffer.hasArray ())
+		{
+			setInput (buffer.array (), buffer.arrayOffset () + buffer.position (), length);
+		}
+		else
+		{
+			byte[] buf = new byte[length + 1];
+			buffer.duplicate ().get (buf, 0, length);
+			setInput (buf, 0, length);
+		}
+	}
+
+	private void setInput (byte[] buf, int offset, int length)
+	{
+		int end = offset + length;
+		if (end < buf.length && buf[end] == 0)
+		{
+			m_in = null;
+			m_readBuf = buf;
+			m_ownReadBuf = false;
+			m_readPos = offset;
+			m_readMax = end;
+		}
+		else
+		{
+			// without the sentinel, read the data like a stream rather
+			// than copying all of it up front.  The copy is cheaper than
+			// a bounds check for every byte in the scanning loops.  The
+			// callers within this package (NdjsonReader,
+			// ParallelArrayReader) own their arrays and always supply
+			// the sentinel.
+			m_in = new ByteArrayInputStream (buf, offset, length);
+			int size = Math.min (length, READ_SIZE) + 1;
+			if (!m_ownReadBuf || m_readBuf.length < size)
+			{
+				m_readBuf = new byte[size];
+				m_ownReadBuf = true;
+			}
+			m_readPos = 0;
+			m_readMax = 0;
+			m_readBuf[0] = 0;
+		}
+		if (m_appendBuf == null)
+			m_appendBuf = new byte[SMALL_APPEND_SIZE];
+		m_base = -m_readPos;
+		m_markPos = m_readPos;
+		m_markLine = 1;
+		m_markLineStart = 0;
+	}
+
+	/**
+	 * Resets the parser to parse another document in a UTF-8 InputStream.
+	 * The read buffer, the append buffer and the state stack are reused,
+	 * so that a single parser can serve many documents.  The previous
+	 * input is not closed.
+	 *
+	 * @param	is
+	 *			UTF-8 InputStream
+	 * @throws	IllegalStateException
+	 *			if the parser is in non-blocking mode.
+	 */
+	public void reset (InputStream is)
+	{
+		if (m_feed)
+			throw new IllegalStateException ("A non-blocking parser cannot be reset.");
+		if (!m_ownReadBuf || m_readBuf.length < READ_SIZE + 1)
+		{
+			m_readBuf = new byte[READ_SIZE + 1];
+			m_ownReadBuf = true;
+		}
 		m_in = is;
-		m_line = 1;
-		m_column = 1;
+		m_readPos = 0;
+		m_readMax = 0;
+		m_readBuf[0] = 0;
+		m_base = 0;
+		m_markPos = 0;
+		m_markLine = 1;
+		m_markLineStart = 0;
+		resetState ();
+	}
+
+	/**
+	 * Resets the parser to parse another document in a byte array.  The
+	 * append buffer and the state stack are reused.  The previous input
+	 * is not closed.
+	 *
+	 * @param	buf
+	 *			the byte array containing UTF-8 JSON data.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 * @throws	IllegalStateException
+	 *			if the parser is in non-blocking mode.
+	 * @see		#UTF8TextJsonParser(byte[], int, int)
+	 */
+	public void reset (byte[] buf, int offset, int length)
+	{
+		if (m_feed)
+			throw new IllegalStateException ("A non-blocking parser cannot be reset.");
+		setInput (buf, offset, length);
+		resetState ();
+	}
+
+	/**
+	 * Resets the parser to parse another document in a byte array.
+	 *
+	 * @param	buf
+	 *			the byte array containing UTF-8 JSON data.
+	 * @see		#reset(byte[], int, int)
+	 */
+	public void reset (byte[] buf)
+	{
+		reset (buf, 0, buf.length);
+	}
+
+	private void resetState ()
+	{
+		m_states.clear ();
+		m_state = ParserState.INITIAL;
+		m_lastToken = 0;
+		m_event = null;
+		m_appendPos = 0;
+		if (m_appendBuf == null || m_appendBuf.length > MAX_KEPT_APPEND_SIZE)
+			m_appendBuf = new byte[READ_SIZE + 1];
+	}
+
+	/**
+	 * Checks if there is anything other than white spaces left after the
+	 * current position.  Only used for data scanned in place.
+	 *
+	 * @return	true if there is trailing data.
+	 */
+	boolean hasTrailingData ()
+	{
+		final byte[] readBuf = m_readBuf;
+		for (int i = m_readPos, end = m_readMax; i < end; ++i)
+		{
+			byte ch = readBuf[i];
+			if (ch != ' ' && ch != '\t' && ch != '\r' && ch != '\n')
+				return true;
+		}
+		return false;
 	}
 
 	private void saveLocation ()
 	{
-		savedLine = m_line;
-		savedOffset = m_offset;
-		savedColumn = m_column;
+		// the '"' has been read.
+		m_stringOffset = m_base + m_readPos - 1;
+	}
+
+	/**
+	 * Counts the lines up to a position of the read buffer, 8 bytes at a
+	 * time.  The high bit of a byte is set in t only if the byte is '\n'.
+	 *
+	 * @param	pos
+	 *			the position of the read buffer.
+	 */
+	private void markLines (int pos)
+	{
+		final byte[] readBuf = m_readBuf;
+		final ByteBuffer view = getReadView ();
+		int i = m_markPos;
+		long line = m_markLine;
+		int lineStart = -1;
+		for (; i + 8 <= pos; i += 8)
+		{
+			long v = view.getLong (i) ^ SWAR_NEWLINES;
+			long t = ~(((v & SWAR_LOWS) + SWAR_LOWS) | v | SWAR_LOWS);
+			if (t != 0)
+			{
+				line += Long.bitCount (t);
+				lineStart = i + ((63 - Long.numberOfLeadingZeros (t)) >>> 3) + 1;
+			}
+		}
+		for (; i < pos; ++i)
+		{
+			if (readBuf[i] == '\n')
+			{
+				++line;
+				lineStart = i + 1;
+			}
+		}
+		if (lineStart >= 0)
+			m_markLineStart = m_base + lineStart;
+		m_markLine = line;
+		m_markPos = pos;
+	}
+
+	/**
+	 * Computes the location of a stream offset in the read buffer.
+	 * <p>
+	 * An offset before m_markPos is assumed to be on the line of m_markPos.
+	 * This is the case for the start of the current token, since a token
+	 * never spans multiple lines.
+	 *
+	 * @param	offset
+	 *			the stream offset.
+	 * @return	the location.
+	 */
+	private JsonLocationImpl createLocation (long offset)
+	{
+		int pos = (int) (offset - m_base);
+		if (pos > m_markPos)
+			markLines (Math.min (pos, m_readMax));
+		JsonLocationImpl location = new JsonLocationImpl ();
+		location.m_lineNumber = m_markLine;
+		location.m_columnNumber = offset - m_markLineStart + 1;
+		location.m_streamOffset = offset;
+		return location;
+	}
+
+	/**
+	 * Appends a range of bytes to the append buffer.
+	 *
+	 * @param	buf
+	 *			the source buffer.
+	 * @param	start
+	 *			the starting position.
+	 * @param	len
+	 *			the number of bytes.
+	 */
+	private void append (byte[] buf, int start, int len)
+	{
+		int appendPos = m_appendPos;
+		if (appendPos + len > m_appendBuf.length)
+		{
+			int newLen = m_appendBuf.length;
+			while (newLen < appendPos + len)
+				newLen += newLen / 2 + 1;
+			byte[] newBuffer = new byte[newLen];
+			System.arraycopy (m_appendBuf, 0, newBuffer, 0, appendPos);
+			m_appendBuf = newBuffer;
+		}
+		System.arraycopy (buf, start, m_appendBuf, appendPos, len);
+		m_appendPos = appendPos + len;
 	}
 
 	private void append (byte ch)
@@ -130,11 +562,8 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 
 	private JsonParsingException ioError (String msg)
 	{
-		JsonLocationImpl location = new JsonLocationImpl ();
-		location.m_lineNumber = m_line;
 		// -1 to back track the last read character.
-		location.m_columnNumber = m_column -1;
-		location.m_streamOffset = m_offset - 1;
+		JsonLocationImpl location = createLocation (m_base + m_readPos - 1);
 		return new JsonParsingException ("Parsing error at " + location.toString () + ": " + msg, location);
 	}
 
@@ -191,26 +620,47 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		if (m_readPos >= m_readMax)
 			fill ();
-		++m_offset;
-		++m_column;
 		return m_readBuf[m_readPos++];
 	}
 
 	private void unread ()
 	{
 		--m_readPos;
-		--m_offset;
-		--m_column;
 	}
 
 	private void fill () throws IOException
 	{
+		if (!fillMore ())
+			throw eofError ();
+	}
+
+	/**
+	 * Reads more data into the read buffer.
+	 *
+	 * @return	false if the end of input is reached.
+	 * @throws	IOException
+	 *			in case of I/O error.
+	 */
+	private boolean fillMore () throws IOException
+	{
+		if (m_in == null)
+		{
+			if (m_feed && !m_endOfInput)
+				throw NEED_MORE_INPUT;
+			return false;
+		}
 		final byte[] readBuf = m_readBuf;
+		// count the lines before the data is discarded.
+		markLines (m_readMax);
+		int n = m_in.read (readBuf, 0, readBuf.length - 1);
+		if (n <= 0)
+			return false;
+		m_base += m_readMax;
+		m_markPos = 0;
 		m_readPos = 0;
-		m_readMax = m_in.read (readBuf, 0, readBuf.length - 1);
-		if (m_readMax <= 0)
-			throw eofError ();
-		readBuf[m_readMax] = 0;	// mark the end of buffer
+		m_readMax = n;
+		readBuf[n] = 0;	// mark the end of buffer
+		return true;
 	}
 
 	private void readLineComment () throws IOException
@@ -225,24 +675,14 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 
 			if (ch == '\n')
 			{
-				m_offset += readPos - m_readPos;
-				m_column = 1;
-				++m_line;
 				m_readPos = readPos;
 				return;
 			}
 			else if (ch == 0)
 			{
+				m_readPos = readPos;
 				if (readPos <= m_readMax)
-				{
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
 					throw unexpected (ch);
-				}
-				int l = readPos - m_readPos - 1;
-				m_offset += l;
-				m_column += l;
 				fill ();
 				readPos = 0;
 			}
@@ -254,24 +694,14 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		final byte[] readBuf = m_readBuf;
 
 		int readPos = m_readPos;
-		int len = 0;
 		for (;;)
 		{
 			byte ch = readBuf[readPos++];
-			++len;
 
 			// switch is useful for scanning characters that are
 			// mostly handled as default.
 			switch (ch)
 			{
-				case '\n':
-				{
-					m_offset += len;
-					m_column = 1;
-					++m_line;
-					len = 0;
-					break;
-				}
 				case '*':
 				{
 					byte nextChar;
@@ -281,14 +711,13 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 					}
 					else
 					{
+						m_readPos = readPos;
 						fill ();
 						readPos = 0;
 						nextChar = readBuf[readPos];
 					}
 					if (nextChar == '/')
 					{
-						m_offset += len + 1;
-						m_column += len + 1;
 						m_readPos = readPos + 1;
 						return;
 					}
@@ -296,13 +725,9 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				}
 				case 0:
 				{
+					m_readPos = readPos;
 					if (readPos <= m_readMax)
-					{
-						m_offset += len;
-						m_column += len;
 						throw unexpected (ch);
-					}
-					--len;
 					fill ();
 					readPos = 0;
 					break;
@@ -321,8 +746,7 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 			readBlockComment ();
 		else
 		{
-			--m_offset;
-			--m_column;
+			--m_readPos;
 			throw unexpected ((byte) '/');
 		}
 	}
@@ -353,7 +777,7 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 			{
 				byte ch = read ();
 				if (ch != str.charAt (i))
-					throw ioError ("expecting '" + ch + "'");
+					throw ioError ("expecting '" + (char) (ch & 0xff) + "'");
 			}
 		}
 		else
@@ -364,11 +788,13 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 			{
 				byte ch = readBuf[readPos++];
 				if (ch != str.charAt (i))
-					throw ioError ("expecting '" + ch + "'");
+				{
+					// report the same location as the slow path.
+					m_readPos = readPos;
+					throw ioError ("expecting '" + (char) (ch & 0xff) + "'");
+				}
 			}
 			m_readPos = readPos;
-			m_offset += len;
-			m_column += len;
 		}
 	}
 
@@ -381,8 +807,6 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		m_appendPos = 1;
 
 		byte ch = m_readBuf[m_readPos++];
-		++m_offset;
-		++m_column;
 		if (ch == 0)
 		{
 			if (m_readPos <= m_readMax)
@@ -485,9 +909,7 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 			}
 			else
 			{
-				int l = readPos - m_readPos;
-				m_offset += l;
-				m_column += l;
+				m_readPos = readPos;
 				throw unexpected (ch);
 			}
 		}
@@ -510,9 +932,7 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 			}
 			else
 			{
-				int l = readPos - m_readPos;
-				m_offset += l;
-				m_column += l;
+				m_readPos = readPos;
 				throw unexpected (ch);
 			}
 
@@ -529,9 +949,7 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				{
 					if (readPos <= m_readMax)
 					{
-						int l = readPos - m_readPos;
-						m_offset += l;
-						m_column += l;
+						m_readPos = readPos;
 						throw unexpected (ch);
 					}
 					readNumber (firstChar);
@@ -541,10 +959,7 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 			}
 		}
 
-		int l = readPos - m_readPos - 1;
-		m_offset += l;
-		m_column += l;
-		m_readPos += l;
+		m_readPos = readPos - 1;
 		m_len = m_readPos - m_start;
 	}
 
@@ -715,6 +1130,52 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		}
 	}
 
+	private ByteBuffer getReadView ()
+	{
+		ByteBuffer view = m_readView;
+		if (view == null || view.array () != m_readBuf)
+		{
+			view = ByteBuffer.wrap (m_readBuf).order (ByteOrder.LITTLE_ENDIAN);
+			m_readView = view;
+		}
+		return view;
+	}
+
+	/**
+	 * Skips over ordinary string bytes 8 bytes at a time (SWAR).
+	 * <p>
+	 * Each 8 byte word is checked for '"', '\\' and bytes less than 0x20,
+	 * which include the 0 end of buffer marker.  The classic "has zero
+	 * byte" test can only have false positives above a real match, so the
+	 * lowest flagged byte is exact.  Bytes 0x80 and above (UTF-8 sequences)
+	 * are never flagged.
+	 *
+	 * @param	view
+	 *			the little endian view of the read buffer.
+	 * @param	readPos
+	 *			the starting position.
+	 * @return	the position of the first byte that needs to be checked
+	 *			individually.
+	 */
+	private static int scanString (ByteBuffer view, int readPos)
+	{
+		final int limit = view.capacity () - 8;
+		while (readPos <= limit)
+		{
+			long v = view.getLong (readPos);
+			long q = v ^ SWAR_QUOTES;
+			long b = v ^ SWAR_BACKSLASHES;
+			long t = ((q - SWAR_ONES) & ~q) |
+					 ((b - SWAR_ONES) & ~b) |
+					 ((v - SWAR_SPACES) & ~v);
+			t &= SWAR_HIGHS;
+			if (t != 0)
+				return readPos + (Long.numberOfTrailingZeros (t) >>> 3);
+			readPos += 8;
+		}
+		return readPos;
+	}
+
 	/**
 	 * Check if we have a case where we do not need to refresh the buffer, and no escape sequences etc
 	 * were encountered.  In this case, we do not need to copy the data to m_appendBuf and thus saves
@@ -723,12 +1184,26 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 	private void readString () throws IOException
 	{
 		final byte[] readBuf = m_readBuf;
+		final ByteBuffer view = getReadView ();
 		int readPos = m_readPos;
 		m_simple = true;
 		m_start = readPos;
+		if (readPos == m_resumeStart)
+		{
+			// continue the scan where the last input ran out.
+			if (m_resumeAppendPos >= 0)
+			{
+				m_simple = false;
+				m_appendPos = m_resumeAppendPos;
+				scanComplexString (m_resumePos);
+				return;
+			}
+			readPos = m_resumePos;
+		}
 
 		for (;;)
 		{
+			readPos = scanString (view, readPos);
 			byte ch = readBuf[readPos++];
 			// JSON does not allow 0x00 - 0x1f in string.
 			// And '"' and '\\' must be escaped.
@@ -754,25 +1229,31 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				else
 				{
 					// handle '"' case, which closes this scan
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
+					m_len = readPos - m_readPos - 1;
 					m_readPos = readPos;
-					m_len = l - 1;
 					return;
 				}
 			}
 			else if (ch == 0)
 			{
+				if (m_feed && readPos > m_readMax)
+				{
+					// fill () needs more input, which is appended to the
+					// read buffer.  Keep the progress so that the string
+					// is not scanned again from the start.
+					m_resumeStart = m_start;
+					m_resumePos = readPos - 1;
+					m_resumeAppendPos = -1;
+					m_readPos = readPos;
+					fill ();
+				}
 				// Encountered end of buffer.
 				readComplexString (readPos - 1);
 				return;
 			}
 			else
 			{
-				int l = readPos - m_readPos;
-				m_offset += l;
-				m_column += l;
+				m_readPos = readPos;
 				throw unexpected ((byte)ch);
 			}
 		}
@@ -795,9 +1276,21 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		}
 		System.arraycopy (readBuf, m_start, m_appendBuf, 0, len);
 		m_appendPos = len;
+		scanComplexString (readPos);
+	}
 
+	private void scanComplexString (int readPos) throws IOException
+	{
+		final byte[] readBuf = m_readBuf;
+		final ByteBuffer view = getReadView ();
 		for (;;)
 		{
+			int end = scanString (view, readPos);
+			if (end > readPos)
+			{
+				append (readBuf, readPos, end - readPos);
+				readPos = end;
+			}
 			byte ch = readBuf[readPos++];
 			// JSON does not allow 0x00 - 0x1f in string.
 			// And '"' and '\\' must be escaped.
@@ -814,9 +1307,6 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				else
 				{
 					// handle '\\' case
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
 					m_readPos = readPos;
 					readEscape ();
 					readPos = m_readPos;
@@ -831,33 +1321,29 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				else
 				{
 					// handle '"' case
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
 					m_readPos = readPos;
 					return;
 				}
 			}
 			else if (ch == 0)
 			{
+				m_readPos = readPos;
 				if (readPos <= m_readMax)
-				{
-					int l = readPos - m_readPos;
-					m_offset += l;
-					m_column += l;
 					throw unexpected (ch);
+				if (m_feed)
+				{
+					// fill () needs more input.  Keep the progress so that
+					// the string is not scanned again from the start.
+					m_resumeStart = m_start;
+					m_resumePos = readPos - 1;
+					m_resumeAppendPos = m_appendPos;
 				}
-				int l = readPos - m_readPos - 1;
-				m_offset += l;
-				m_column += l;
 				fill ();
 				readPos = 0;
 			}
 			else
 			{
-				int l = readPos - m_readPos;
-				m_offset += l;
-				m_column += l;
+				m_readPos = readPos;
 				throw unexpected (ch);
 			}
 		}
@@ -870,6 +1356,26 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		return new String (m_appendBuf, 0, m_appendPos, BOM.utf8);
 	}
 
+	private String getKeyString ()
+	{
+		final SymbolTable symbols = m_symbols;
+		if (symbols == null)
+			return getBufferString ();
+		if (m_simple)
+			return symbols.get (m_readBuf, m_start, m_len);
+		return symbols.get (m_appendBuf, 0, m_appendPos);
+	}
+
+	private CookJsonString getStringValue ()
+	{
+		final StringValueTable stringValues = m_stringValues;
+		if (stringValues == null)
+			return new CookJsonString (getBufferString ());
+		if (m_simple)
+			return stringValues.get (m_readBuf, m_start, m_len);
+		return stringValues.get (m_appendBuf, 0, m_appendPos);
+	}
+
 	@Override
 	public Event getEvent ()
 	{
@@ -895,9 +1401,11 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 			case VALUE_NULL:
 				return JsonValue.NULL;
 			case VALUE_NUMBER:
-				return new CookJsonBigDecimal (getBigDecimal ());
+				if (m_int && parseLong ())
+					return Utils.getNumber (m_long);
+				return new CookJsonTextNumber (getBufferString ());
 			case VALUE_STRING:
-				return new CookJsonString (getString ());
+				return getStringValue ();
 		}
 		throw stateError ("getValue()");
 	}
@@ -907,8 +1415,6 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			byte ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			// since we are only call at initiation.  We are mostly expecting
 			// '[' and '{', not anything else.
 			if (ch == '[')
@@ -925,20 +1431,12 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				m_lastToken = START;
 				return;
 			}
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -951,8 +1449,6 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			byte ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			if (ch == ',')
 				return false;
 			if (ch == '}')
@@ -962,20 +1458,12 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				m_lastToken = VALUE;
 				return true;
 			}
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -988,8 +1476,6 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			byte ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			if (ch == ',')
 				return false;
 			if (ch == ']')
@@ -999,20 +1485,12 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				m_lastToken = VALUE;
 				return true;
 			}
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -1025,24 +1503,14 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			byte ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			if (ch == ':')
 				return;
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -1055,8 +1523,6 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			byte ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			if (ch == '"')
 			{
 				saveLocation ();
@@ -1073,20 +1539,12 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				m_lastToken = VALUE;
 				return;
 			}
-			if (ch == ' ' || ch == '\t' || ch == '\r')
-				continue;
-			if (ch == '\n')
-			{
-				m_column = 1;
-				++m_line;
+			if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
 				continue;
-			}
 			if (ch == 0)
 			{
 				if (m_readPos <= m_readMax)
 					throw unexpected (ch);
-				--m_offset;
-				--m_column;
 				fill ();
 				continue;
 			}
@@ -1099,17 +1557,11 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		for (;;)
 		{
 			byte ch = m_readBuf[m_readPos++];
-			++m_offset;
-			++m_column;
 			switch (ch)
 			{
 				case '\t':
 				case '\r':
-					break;
 				case '\n':
-					m_column = 1;
-					++m_line;
-					break;
 				case ' ':
 					break;
 				case '"':
@@ -1191,8 +1643,6 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				{
 					if (m_readPos <= m_readMax)
 						throw unexpected (ch);
-					--m_offset;
-					--m_column;
 					fill ();
 					break;
 				}
@@ -1204,90 +1654,498 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		}
 	}
 
-	@Override
-	public Event next ()
+	/**
+	 * Supplies the next chunk of data in non-blocking mode.
+	 * <p>
+	 * The data is copied, so the caller can reuse the array once this
+	 * method returns.
+	 *
+	 * @param	buf
+	 *			the buffer containing UTF-8 data.
+	 * @param	offset
+	 *			the starting position of the data.
+	 * @param	length
+	 *			the length of the data.
+	 * @throws	IllegalStateException
+	 *			if the parser is not in non-blocking mode, or if
+	 *			{@link #endOfInput()} has been called.
+	 */
+	public void feedInput (byte[] buf, int offset, int length)
 	{
-		try
+		if (!m_feed)
+			throw new IllegalStateException ("The parser is not in non-blocking mode.");
+		if (m_endOfInput)
+			throw new IllegalStateException ("endOfInput () has been called.");
+
+		// keep the unparsed data and the data of the current event.
+		int keep = m_readPos;
+		if (m_simple && m_start < keep &&
+			(m_event == Event.KEY_NAME || m_event == Event.VALUE_STRING || m_event == Event.VALUE_NUMBER))
 		{
-			int state = m_state;
-			if (state == ParserState.IN_OBJECT)
-			{
-				int lastToken = m_lastToken;
-				if (lastToken == FIELD)
-				{
-					expectColon ();
-					expectValue ();
-					return m_event;
-				}
+			keep = m_start;
+		}
+		if (m_markPos < keep)
+			markLines (keep);
+		m_markPos -= keep;
+		m_base += keep;
+		int remaining = m_readMax - keep;
+		byte[] readBuf = m_readBuf;
+		if (remaining + length + 1 > readBuf.length)
+		{
+			byte[] newBuf = new byte[Math.max (remaining + length + 1, readBuf.length * 2)];
+			System.arraycopy (readBuf, keep, newBuf, 0, remaining);
+			readBuf = newBuf;
+			m_readBuf = newBuf;
+		}
+		else if (keep > 0)
+		{
+			System.arraycopy (readBuf, keep, readBuf, 0, remaining);
+		}
+		System.arraycopy (buf, offset, readBuf, remaining, length);
+		m_readPos -= keep;
+		m_start -= keep;
+		if (m_resumeStart >= 0)
+		{
+			m_resumeStart -= keep;
+			m_resumePos -= keep;
+		}
+		m_readMax = remaining + length;
+		readBuf[m_readMax] = 0;	// mark the end of buffer
+	}
 
-				if (lastToken == VALUE)
-				{
-					// we now expect either ',' or '}'
-					if (expectCommaObject ())
-					{
-						return m_event;
-					}
-				}
+	/**
+	 * Indicates that all the data has been fed in non-blocking mode.
+	 * After this call, {@link #next()} no longer returns null, and
+	 * incomplete input results in a parsing error.
+	 */
+	public void endOfInput ()
+	{
+		if (!m_feed)
+			throw new IllegalStateException ("The parser is not in non-blocking mode.");
+		m_endOfInput = true;
+	}
+
+	/**
+	 * Tries to get the next event in non-blocking mode.  If more input is
+	 * needed, the state of the parser is restored to that before the
+	 * call.
+	 *
+	 * @return	the next event, or null if more input is needed.
+	 */
+	private Event feedNext ()
+	{
+		final int readPos = m_readPos;
+		final long stringOffset = m_stringOffset;
+		final int state = m_state;
+		final int lastToken = m_lastToken;
+		final Event event = m_event;
+		final boolean isInt = m_int;
+		final boolean simple = m_simple;
+		final int start = m_start;
+		final int len = m_len;
+		final int appendPos = m_appendPos;
+		final int depth = m_states.size ();
+		final Boolean top = depth > 0 ? m_states.get (depth - 1) : null;
+		try
+		{
+			Event e = nextEvent ();
+			m_resumeStart = -1;
+			return e;
+		}
+		catch (NeedMoreInputException ex)
+		{
+			m_readPos = readPos;
+			m_stringOffset = stringOffset;
+			m_state = state;
+			m_lastToken = lastToken;
+			m_event = event;
+			m_int = isInt;
+			m_simple = simple;
+			m_start = start;
+			m_len = len;
+			m_appendPos = appendPos;
+			// at most one push or pop can happen in a single event.
+			while (m_states.size () > depth)
+				m_states.remove (m_states.size () - 1);
+			if (m_states.size () < depth)
+				m_states.add (top);
+			return null;
+		}
+		catch (IOException ex)
+		{
+			throw new JsonParsingException (ex.getMessage (), ex, getCurrentLocation ());
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * <p>
+	 * In non-blocking mode, null is returned if more input is needed.
+	 */
+	@Override
+	public Event next ()
+	{
+		if (m_feed)
+			return feedNext ();
+		try
+		{
+			return nextEvent ();
+		}
+		catch (IOException ex)
+		{
+			throw new JsonParsingException (ex.getMessage (), ex, getCurrentLocation ());
+		}
+	}
 
-				expectKeyName ();
+	private Event nextEvent () throws IOException
+	{
+		int state = m_state;
+		if (state == ParserState.IN_OBJECT)
+		{
+			int lastToken = m_lastToken;
+			if (lastToken == FIELD)
+			{
+				expectColon ();
+				expectValue ();
 				return m_event;
 			}
-			else if (state == ParserState.IN_ARRAY)
+
+			if (lastToken == VALUE)
 			{
-				if (m_lastToken == VALUE)
+				// we now expect either ',' or '}'
+				if (expectCommaObject ())
 				{
-					// we now expect either ',' or ']'
-					if (expectCommaArray ())
-					{
-						return m_event;
-					}
+					return m_event;
 				}
-				expectValue ();
-				return m_event;
 			}
-			else if (state == ParserState.INITIAL)
+
+			expectKeyName ();
+			return m_event;
+		}
+		else if (state == ParserState.IN_ARRAY)
+		{
+			if (m_lastToken == VALUE)
 			{
-				expectArrayObject ();
-				return m_event;
+				// we now expect either ',' or ']'
+				if (expectCommaArray ())
+				{
+					return m_event;
+				}
 			}
-			else if (state == ParserState.END)
-				throw new NoSuchElementException ();
-			throw new IllegalStateException ();
+			expectValue ();
+			return m_event;
+		}
+		else if (state == ParserState.INITIAL)
+		{
+			expectArrayObject ();
+			return m_event;
+		}
+		else if (state == ParserState.END)
+			throw new NoSuchElementException ();
+		throw new IllegalStateException ();
+	}
+
+	@Override
+	public void skipChildren ()
+	{
+		if (m_event != Event.START_ARRAY && m_event != Event.START_OBJECT)
+			return;
+		if (m_feed)
+			throw new IllegalStateException ("skipChildren () is not supported in non-blocking mode.");
+		try
+		{
+			skipToEnd ();
 		}
 		catch (IOException ex)
 		{
 			throw new JsonParsingException (ex.getMessage (), ex, getCurrentLocation ());
 		}
+		// let next () handle the closing bracket.
+		next ();
+	}
+
+	/**
+	 * Refills the buffer when the end of buffer marker is hit while
+	 * skipping.
+	 *
+	 * @param	readPos
+	 *			the read position right after the 0.
+	 * @return	the new read position.
+	 * @throws	IOException
+	 *			in case of error.
+	 */
+	private int skipFill (int readPos) throws IOException
+	{
+		m_readPos = readPos;
+		if (readPos <= m_readMax)
+			throw unexpected ((byte) 0);
+		fill ();
+		return 0;
+	}
+
+	/**
+	 * Skips the contents of the current array or object without decoding
+	 * them.  Only the bracket depth and string boundaries are tracked.
+	 * The read position is left at the matching closing bracket.
+	 *
+	 * @throws	IOException
+	 *			in case of error.
+	 */
+	private void skipToEnd () throws IOException
+	{
+		final byte[] readBuf = m_readBuf;
+		int readPos = m_readPos;
+		int depth = 0;
+
+		for (;;)
+		{
+			byte ch = readBuf[readPos++];
+			switch (ch)
+			{
+				case '"':
+				{
+					for (;;)
+					{
+						ch = readBuf[readPos++];
+						if (ch == '"')
+							break;
+						if (ch == '\\')
+						{
+							ch = readBuf[readPos++];
+							if (ch == 0)
+								readPos = skipFill (readPos) + 1;
+						}
+						else if (ch == 0)
+							readPos = skipFill (readPos);
+					}
+					break;
+				}
+				case '[':
+				case '{':
+					++depth;
+					break;
+				case ']':
+				case '}':
+				{
+					if (depth == 0)
+					{
+						m_readPos = readPos - 1;
+						return;
+					}
+					--depth;
+					break;
+				}
+				case '/':
+				{
+					if (m_allowComments)
+					{
+						m_readPos = readPos;
+						readComment ();
+						readPos = m_readPos;
+					}
+					break;
+				}
+				case 0:
+				{
+					readPos = skipFill (readPos);
+					break;
+				}
+			}
+		}
 	}
 
 	@Override
 	public boolean hasNext ()
 	{
+		if (m_multipleRoots && m_state == ParserState.INITIAL)
+			return hasMoreRoots ();
 		return m_state != ParserState.END;
 	}
 
+	/**
+	 * Skips the white spaces and comments before the next root value.
+	 * In non-blocking mode, true is returned if more input is needed to
+	 * tell.
+	 *
+	 * @return	false if there are no more root values.
+	 */
+	private boolean hasMoreRoots ()
+	{
+		final int readPos = m_readPos;
+		try
+		{
+			for (;;)
+			{
+				byte ch = m_readBuf[m_readPos];
+				if (ch == ' ' || ch == '\t' || ch == '\r' || ch == '\n')
+				{
+					++m_readPos;
+				}
+				else if (ch == 0)
+				{
+					// let next () report a 0 in the data.
+					if (m_readPos < m_readMax)
+						return true;
+					if (!fillMore ())
+						return false;
+				}
+				else if (ch == '/' && m_allowComments)
+				{
+					++m_readPos;
+					readComment ();
+				}
+				else
+					return true;
+			}
+		}
+		catch (NeedMoreInputException ex)
+		{
+			m_readPos = readPos;
+			return true;
+		}
+		catch (IOException ex)
+		{
+			throw new JsonParsingException (ex.getMessage (), ex, getCurrentLocation ());
+		}
+	}
+
 	@Override
 	public boolean isIntegralNumber ()
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw stateError ("isIntegralNumber()");
-		return m_int || getBigDecimal ().scale () == 0;
+		if (m_int)
+			return true;
+
+		final byte[] buf;
+		int pos;
+		final int end;
+		if (m_simple)
+		{
+			buf = m_readBuf;
+			pos = m_start;
+			end = m_start + m_len;
+		}
+		else
+		{
+			buf = m_appendBuf;
+			pos = 0;
+			end = m_appendPos;
+		}
+
+		// The BigDecimal scale is the number of fraction digits minus
+		// the exponent, so the number is integral when the two are equal.
+		while (pos < end && buf[pos] != '.' && buf[pos] != 'e' && buf[pos] != 'E')
+			++pos;
+		int fraction = 0;
+		if (pos < end && buf[pos] == '.')
+		{
+			++pos;
+			while (pos < end && buf[pos] != 'e' && buf[pos] != 'E')
+			{
+				++pos;
+				++fraction;
+			}
+		}
+		if (pos == end)
+			return fraction == 0;
+		++pos;
+		boolean negative = false;
+		if (buf[pos] == '+')
+			++pos;
+		else if (buf[pos] == '-')
+		{
+			negative = true;
+			++pos;
+		}
+		if ((end - pos) > 9)
+			return getBigDecimal ().scale () == 0;
+		int exp = 0;
+		for (; pos < end; ++pos)
+			exp = exp * 10 + (buf[pos] - '0');
+		return (negative ? -exp : exp) == fraction;
 	}
 
-	@Override
-	public int getInt ()
+	/**
+	 * Parses the integer part of the current number directly from the
+	 * buffer and stores it in m_long.
+	 * <p>
+	 * The digits are accumulated as a negative value since the magnitude
+	 * of Long.MIN_VALUE is larger than Long.MAX_VALUE.
+	 *
+	 * @return	true if the value was parsed.  false if the value overflows
+	 *			long, or if the number has an exponent.
+	 */
+	private boolean parseLong ()
 	{
-		if (m_event != Event.VALUE_NUMBER)
-			throw stateError ("getInt()");
-		if (m_int)
+		final byte[] buf;
+		int pos;
+		final int end;
+		if (m_simple)
+		{
+			buf = m_readBuf;
+			pos = m_start;
+			end = m_start + m_len;
+		}
+		else
+		{
+			buf = m_appendBuf;
+			pos = 0;
+			end = m_appendPos;
+		}
+
+		final boolean negative = buf[pos] == '-';
+		if (negative)
+			++pos;
+
+		long value = 0;
+		int digitEnd = pos;
+		while (digitEnd < end && buf[digitEnd] >= '0' && buf[digitEnd] <= '9')
+			++digitEnd;
+
+		if ((digitEnd - pos) < 19)
+		{
+			// no overflow possible
+			for (; pos < digitEnd; ++pos)
+				value = value * 10 - (buf[pos] - '0');
+		}
+		else
+		{
+			final long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+			final long multmin = limit / 10;
+			for (; pos < digitEnd; ++pos)
+			{
+				int digit = buf[pos] - '0';
+				if (value < multmin)
+					return false;
+				value *= 10;
+				if (value < limit + digit)
+					return false;
+				value -= digit;
+			}
+		}
+
+		if (digitEnd < end)
 		{
-			int len = m_simple ? m_len : m_appendPos;
-			if (len < 10 ||
-				(len < 11 && m_appendBuf[0] == '-'))
+			// the fraction can be truncated, but the exponent cannot be ignored.
+			for (pos = digitEnd; pos < end; ++pos)
 			{
-				return Integer.valueOf (getBufferString ());
+				if (buf[pos] == 'e' || buf[pos] == 'E')
+					return false;
 			}
 		}
+
+		m_long = negative ? value : -value;
+		return true;
+	}
+
+	@Override
+	public int getInt ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getInt()");
+		if (parseLong ())
+			return (int) m_long;
 		return new BigDecimal (getBufferString ()).intValue ();
 	}
 
@@ -1296,15 +2154,8 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw stateError ("getLong()");
-		if (m_int)
-		{
-			int len = m_simple ? m_len : m_appendPos;
-			if (len < 19 ||
-				(len < 20 && m_appendBuf[0] == '-'))
-			{
-				return Long.valueOf (getBufferString ());
-			}
-		}
+		if (parseLong ())
+			return m_long;
 		return new BigDecimal (getBufferString ()).longValue ();
 	}
 
@@ -1313,22 +2164,199 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		if (m_event != Event.VALUE_NUMBER)
 			throw stateError ("getBigDecimal()");
+		if (m_int && parseLong ())
+			return BigDecimal.valueOf (m_long);
 		return new BigDecimal (getBufferString ());
 	}
 
+	private DoubleParser scanNumber ()
+	{
+		final DoubleParser doubleParser = m_doubleParser;
+		if (m_simple)
+			doubleParser.scan (m_readBuf, m_start, m_len);
+		else
+			doubleParser.scan (m_appendBuf, 0, m_appendPos);
+		return doubleParser;
+	}
+
+	@Override
+	public double getDouble ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getDouble()");
+		double d = scanNumber ().toDouble ();
+		if (d != d)
+			d = Double.parseDouble (getBufferString ());
+		return d;
+	}
+
+	@Override
+	public float getFloat ()
+	{
+		if (m_event != Event.VALUE_NUMBER)
+			throw stateError ("getFloat()");
+		float f = scanNumber ().toFloat ();
+		if (f != f)
+			f = Float.parseFloat (getBufferString ());
+		return f;
+	}
+
+	/**
+	 * Scans the next element of the current array in a tight loop if it
+	 * is a number that is entirely in the read buffer and is followed by a
+	 * delimiter.  Anything else, including the end of the array and
+	 * malformed input, is left to {@link #next()}.
+	 * <p>
+	 * If an integer of up to 18 digits is scanned, its value is stored in
+	 * m_long.
+	 *
+	 * @return	-1 if nothing was scanned.  0 if a number was scanned.
+	 *			1 if an integer was scanned and m_long has its value.
+	 */
+	private int scanArrayNumber ()
+	{
+		final byte[] buf = m_readBuf;
+		int pos = m_readPos;
+		byte ch = buf[pos];
+		while (ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t')
+			ch = buf[++pos];
+		if (m_lastToken == VALUE)
+		{
+			if (ch != ',')
+				return -1;
+			ch = buf[++pos];
+			while (ch == ' ' || ch == '\n' || ch == '\r' || ch == '\t')
+				ch = buf[++pos];
+		}
+
+		// the sentinel 0 at m_readMax stops all the loops below.
+		final int start = pos;
+		final boolean negative = ch == '-';
+		if (negative)
+			ch = buf[++pos];
+		final int digitStart = pos;
+		long value = 0;
+		while (ch >= '0' && ch <= '9')
+		{
+			value = value * 10 - (ch - '0');
+			ch = buf[++pos];
+		}
+		final int digits = pos - digitStart;
+		if (digits == 0 || (digits > 1 && buf[digitStart] == '0'))
+			return -1;
+
+		boolean isInt = true;
+		if (ch == '.')
+		{
+			isInt = false;
+			ch = buf[++pos];
+			if (!(ch >= '0' && ch <= '9'))
+				return -1;
+			while (ch >= '0' && ch <= '9')
+				ch = buf[++pos];
+		}
+		if (ch == 'e' || ch == 'E')
+		{
+			isInt = false;
+			ch = buf[++pos];
+			if (ch == '+' || ch == '-')
+				ch = buf[++pos];
+			if (!(ch >= '0' && ch <= '9'))
+				return -1;
+			while (ch >= '0' && ch <= '9')
+				ch = buf[++pos];
+		}
+		if (ch != ',' && ch != ']' && ch != ' ' && ch != '\n' && ch != '\r' && ch != '\t')
+			return -1;
+
+		m_readPos = pos;
+		m_simple = true;
+		m_int = isInt;
+		m_start = start;
+		m_len = pos - start;
+		m_event = Event.VALUE_NUMBER;
+		m_lastToken = VALUE;
+		// -0 is left to getDouble () to keep the sign.
+		if (isInt && digits < 19 && (value != 0 || !negative))
+		{
+			m_long = negative ? value : -value;
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Checks if the bulk array reading can continue from the current
+	 * event.
+	 *
+	 * @param	function
+	 *			the function name for the error message.
+	 * @return	true if the numbers can be scanned directly from the buffer.
+	 */
+	private boolean checkArrayRead (String function)
+	{
+		if (m_state != ParserState.IN_ARRAY ||
+			(m_event != Event.START_ARRAY && m_event != Event.VALUE_NUMBER))
+			throw stateError (function);
+		return !m_feed;
+	}
+
+	@Override
+	public int readIntArray (int[] values, int offset, int length)
+	{
+		final boolean fast = checkArrayRead ("readIntArray()");
+		int count = 0;
+		while (count < length)
+		{
+			int scan = fast ? scanArrayNumber () : -1;
+			if (scan < 0 && next () != Event.VALUE_NUMBER)
+				break;
+			values[offset + count++] = (scan > 0) ? (int) m_long : getInt ();
+		}
+		return count;
+	}
+
+	@Override
+	public int readLongArray (long[] values, int offset, int length)
+	{
+		final boolean fast = checkArrayRead ("readLongArray()");
+		int count = 0;
+		while (count < length)
+		{
+			int scan = fast ? scanArrayNumber () : -1;
+			if (scan < 0 && next () != Event.VALUE_NUMBER)
+				break;
+			values[offset + count++] = (scan > 0) ? m_long : getLong ();
+		}
+		return count;
+	}
+
+	@Override
+	public int readDoubleArray (double[] values, int offset, int length)
+	{
+		final boolean fast = checkArrayRead ("readDoubleArray()");
+		int count = 0;
+		while (count < length)
+		{
+			int scan = fast ? scanArrayNumber () : -1;
+			if (scan < 0 && next () != Event.VALUE_NUMBER)
+				break;
+			// the conversion of a long to double is correctly rounded.
+			values[offset + count++] = (scan > 0) ? (double) m_long : getDouble ();
+		}
+		return count;
+	}
+
 	private JsonLocation getCurrentLocation ()
 	{
-		JsonLocationImpl location = new JsonLocationImpl ();
-		location.m_columnNumber = m_column;
-		location.m_streamOffset = m_offset;
-		location.m_lineNumber = m_line;
-		return location;
+		// after the end of buffer marker is hit, the position is at most
+		// m_readMax.
+		return createLocation (m_base + Math.min (m_readPos, m_readMax));
 	}
 
 	@Override
 	public JsonLocation getLocation ()
 	{
-		JsonLocationImpl location = new JsonLocationImpl ();
 		long diff = 0;
 		switch (m_event)
 		{
@@ -1346,12 +2374,7 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				break;
 			case KEY_NAME:
 			case VALUE_STRING:
-			{
-				location.m_columnNumber = savedColumn - 1;	// minus 1 to account for '"'
-				location.m_streamOffset = savedOffset - 1;	// minus 1 to account for '"'
-				location.m_lineNumber = savedLine;
-				return location;
-			}
+				return createLocation (m_stringOffset);
 			case VALUE_FALSE:
 				diff = 5;
 				break;
@@ -1360,10 +2383,7 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 				diff = 4;
 				break;
 		}
-		location.m_columnNumber = m_column - diff;
-		location.m_streamOffset = m_offset - diff;
-		location.m_lineNumber = m_line;
-		return location;
+		return createLocation (m_base + m_readPos - diff);
 	}
 
 	@Override
@@ -1373,9 +2393,10 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 			throw stateError ("getString()");
 		switch (m_event)
 		{
+			case KEY_NAME:
+				return getKeyString ();
 			case VALUE_STRING:
 			case VALUE_NUMBER:
-			case KEY_NAME:
 				return getBufferString ();
 			default:
 				throw stateError ("getString()");
@@ -1405,12 +2426,39 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		try
 		{
-			m_in.close ();
+			if (m_in != null)
+				m_in.close ();
 		}
 		catch (IOException ex)
 		{
 			throw new JsonParsingException (ex.getMessage (), ex, getCurrentLocation ());
 		}
+		finally
+		{
+			releaseBuffers ();
+		}
+	}
+
+	/**
+	 * Hands the buffers back to the recycler if there is one, and drops
+	 * the references to them, including an array supplied by the caller.
+	 * If the parser is reset afterward, new buffers are allocated.
+	 */
+	private void releaseBuffers ()
+	{
+		final BufferRecycler recycler = m_recycler;
+		m_recycler = null;
+		if (recycler != null)
+		{
+			if (m_ownReadBuf)
+				recycler.releaseBytes (BufferRecycler.BYTE_READ, m_readBuf);
+			if (m_appendBuf != null)
+				recycler.releaseBytes (BufferRecycler.BYTE_APPEND, m_appendBuf);
+		}
+		m_readBuf = null;
+		m_ownReadBuf = false;
+		m_readView = null;
+		m_appendBuf = null;
 	}
 
 	private void pushState (boolean isArray)
@@ -1426,7 +2474,7 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 		if (isArrayEnd != isArray)
 			throw new IllegalStateException ();
 		if (m_states.isEmpty ())
-			m_state = ParserState.END;
+			m_state = m_multipleRoots ? ParserState.INITIAL : ParserState.END;
 		else
 		{
 			boolean b = m_states.remove (m_states.size () - 1);
@@ -1460,4 +2508,39 @@ public class UTF8TextJsonParser implements CookJsonParser, CommentJsonParser
 	{
 		m_allowComments = allowComments;
 	}
+
+	@Override
+	public boolean isMultipleRoots ()
+	{
+		return m_multipleRoots;
+	}
+
+	@Override
+	public void setMultipleRoots (boolean multipleRoots)
+	{
+		m_multipleRoots = multipleRoots;
+	}
+
+	/**
+	 * Sets the table used to look up canonical key name strings.
+	 *
+	 * @param	symbols
+	 *			the symbol table.  Can be null.
+	 */
+	void setSymbolTable (SymbolTable symbols)
+	{
+		m_symbols = symbols;
+	}
+
+	/**
+	 * Sets the table used to share string values returned by
+	 * {@link #getValue()}.
+	 *
+	 * @param	stringValues
+	 *			the string value table.  Can be null.
+	 */
+	void setStringValueTable (StringValueTable stringValues)
+	{
+		m_stringValues = stringValues;
+	}
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A Writer that encodes chars into UTF-8.
+ * <p>
+ * It replaces OutputStreamWriter for generators created by a factory, so
+ * that the encoding buffer can be taken from and handed back to the
+ * factory's {@link BufferRecycler}.  Like OutputStreamWriter, unpaired
+ * surrogates are written as '?'.
+ *
+ * @author	Heng Yuan
+ */
+class UTF8Writer extends Writer
+{
+	private final static int BUFFER_SIZE = 8192;
+
+	private final OutputStream m_os;
+	private BufferRecycler m_recycler;
+	private byte[] m_buf;
+	private int m_pos;
+	/** A high surrogate waiting for the low surrogate.  0 if none. */
+	private char m_highSurrogate;
+
+	/**
+	 * @param	os
+	 *			the output stream.
+	 * @param	recycler
+	 *			the buffer recycler.  Can be null.
+	 */
+	public UTF8Writer (OutputStream os, BufferRecycler recycler)
+	{
+		m_os = os;
+		m_recycler = recycler;
+		if (recycler == null)
+			m_buf = new byte[BUFFER_SIZE];
+		else
+			m_buf = recycler.allocBytes (BufferRecycler.BYTE_WRITE, BUFFER_SIZE);
+	}
+
+	@Override
+	public void write (char[] cbuf, int off, int len) throws IOException
+	{
+		if (m_buf == null)
+			throw new IOException ("Stream closed");
+		final byte[] buf = m_buf;
+		// leave room for the longest sequence, including a '?' for an
+		// unpaired surrogate.
+		final int limit = buf.length - 5;
+		int pos = m_pos;
+		for (int end = off + len; off < end; ++off)
+		{
+			if (pos > limit)
+			{
+				m_os.write (buf, 0, pos);
+				pos = 0;
+			}
+			char ch = cbuf[off];
+			if (m_highSurrogate != 0)
+			{
+				char high = m_highSurrogate;
+				m_highSurrogate = 0;
+				if (Character.isLowSurrogate (ch))
+				{
+					int cp = Character.toCodePoint (high, ch);
+					buf[pos++] = (byte) (0xf0 | (cp >> 18));
+					buf[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+					buf[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+					buf[pos++] = (byte) (0x80 | (cp & 0x3f));
+					continue;
+				}
+				buf[pos++] = '?';
+			}
+			if (ch < 0x80)
+				buf[pos++] = (byte) ch;
+			else if (ch < 0x800)
+			{
+				buf[pos++] = (byte) (0xc0 | (ch >> 6));
+				buf[pos++] = (byte) (0x80 | (ch & 0x3f));
+			}
+			else if (Character.isHighSurrogate (ch))
+				m_highSurrogate = ch;
+			else if (Character.isLowSurrogate (ch))
+				buf[pos++] = '?';
+			else
+			{
+				buf[pos++] = (byte) (0xe0 | (ch >> 12));
+				buf[pos++] = (byte) (0x80 | ((ch >> 6) & 0x3f));
+				buf[pos++] = (byte) (0x80 | (ch & 0x3f));
+			}
+		}
+		m_pos = pos;
+	}
+
+	@Override
+	public void write (String str, int off, int len) throws IOException
+	{
+		char[] chars = new char[Math.min (len, 256)];
+		while (len > 0)
+		{
+			int n = Math.min (len, chars.length);
+			str.getChars (off, off + n, chars, 0);
+			write (chars, 0, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	@Override
+	public void write (int c) throws IOException
+	{
+		write (new char[] { (char) c }, 0, 1);
+	}
+
+	@Override
+	public void flush () throws IOException
+	{
+		if (m_buf == null)
+			return;
+		if (m_pos > 0)
+		{
+			m_os.write (m_buf, 0, m_pos);
+			m_pos = 0;
+		}
+		m_os.flush ();
+	}
+
+	@Override
+	public void close () throws IOException
+	{
+		if (m_buf == null)
+			return;
+		if (m_highSurrogate != 0)
+		{
+			m_highSurrogate = 0;
+			m_buf[m_pos++] = '?';
+		}
+		flush ();
+		m_os.close ();
+		if (m_recycler != null)
+		{
+			m_recycler.releaseBytes (BufferRecycler.BYTE_WRITE, m_buf);
+			m_recycler = null;
+		}
+		m_buf = null;
+	}
+}
@@ -23,12 +23,15 @@ import java.util.ArrayList;
 import java.util.NoSuchElementException;
 
 import javax.json.JsonArray;
+import javax.json.JsonNumber;
 import javax.json.JsonObject;
 import javax.json.JsonStructure;
 import javax.json.JsonValue;
 import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonLocation;
 import javax.json.stream.JsonParser;
 import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
 
 import org.yuanheng.cookjson.value.*;
 
@@ -158,12 +161,37 @@ public class Utils
 	/**
 	 * A simple utility that constructs {@link JsonArray} and
 	 * {@link JsonObject} from a {@link JsonParser}.
+	 * <p>
+	 * The objects are immutable {@link CookJsonCompactObject}s, and arrays
+	 * of numbers are {@link CookJsonPackedArray}s.
 	 *
 	 * @param	p
 	 * 			JSON input parser.
 	 * @return	constructed JsonArray / JsonObject.
 	 */
 	public static JsonStructure getStructure (CookJsonParser p)
+	{
+		Event e = p.getEvent ();
+		switch (e)
+		{
+			case START_ARRAY:
+				return new TreeBuilder ().build (p, true);
+			case START_OBJECT:
+				return new TreeBuilder ().build (p, false);
+			default:
+				throw new IllegalStateException ();
+		}
+	}
+
+	/**
+	 * Constructs a mutable tree of {@link CookJsonArray} and
+	 * {@link CookJsonObject} from a {@link JsonParser}.
+	 *
+	 * @param	p
+	 * 			JSON input parser.
+	 * @return	constructed JsonArray / JsonObject.
+	 */
+	static JsonStructure getMutableStructure (CookJsonParser p)
 	{
 		Event e = p.getEvent ();
 		switch (e)
@@ -185,6 +213,122 @@ public class Utils
 		}
 	}
 
+	/**
+	 * Gets the smallest JSON number object for an integer value.
+	 *
+	 * @param	value
+	 *			the value.
+	 * @return	a JSON number.
+	 */
+	static JsonNumber getNumber (long value)
+	{
+		if (value == (int) value)
+			return CookJsonInt.valueOf ((int) value);
+		return new CookJsonLong (value);
+	}
+
+	/**
+	 * Rebuilds a parsing exception of a part of the input with the location
+	 * translated to the whole input.  The location in the original message
+	 * is replaced so that the message agrees with the new location.
+	 *
+	 * @param	ex
+	 *			the original exception.
+	 * @param	location
+	 *			the translated location.
+	 * @return	the new exception.
+	 */
+	static JsonParsingException relocate (JsonParsingException ex, JsonLocation location)
+	{
+		String msg = ex.getMessage ();
+		if (msg != null && ex.getLocation () != null)
+		{
+			String prefix = "Parsing error at " + ex.getLocation ().toString () + ": ";
+			if (msg.startsWith (prefix))
+				msg = msg.substring (prefix.length ());
+		}
+		return new JsonParsingException ("Parsing error at " + location.toString () + ": " + msg, ex, location);
+	}
+
+	private static void checkArrayRead (CookJsonParser p)
+	{
+		Event e = p.getEvent ();
+		if (e != Event.START_ARRAY && e != Event.VALUE_NUMBER)
+			throw new IllegalStateException ();
+	}
+
+	/**
+	 * A generic implementation of
+	 * {@link CookJsonParser#readIntArray(int[], int, int)} that goes
+	 * through the events.
+	 *
+	 * @param	p
+	 * 			JSON input parser.
+	 * @param	values
+	 *			the destination array.
+	 * @param	offset
+	 *			the starting position in the destination.
+	 * @param	length
+	 *			the maximum number of values to read.
+	 * @return	the number of values read.
+	 */
+	static int readIntArray (CookJsonParser p, int[] values, int offset, int length)
+	{
+		checkArrayRead (p);
+		int count = 0;
+		while (count < length && p.next () == Event.VALUE_NUMBER)
+			values[offset + count++] = p.getInt ();
+		return count;
+	}
+
+	/**
+	 * A generic implementation of
+	 * {@link CookJsonParser#readLongArray(long[], int, int)} that goes
+	 * through the events.
+	 *
+	 * @param	p
+	 * 			JSON input parser.
+	 * @param	values
+	 *			the destination array.
+	 * @param	offset
+	 *			the starting position in the destination.
+	 * @param	length
+	 *			the maximum number of values to read.
+	 * @return	the number of values read.
+	 */
+	static int readLongArray (CookJsonParser p, long[] values, int offset, int length)
+	{
+		checkArrayRead (p);
+		int count = 0;
+		while (count < length && p.next () == Event.VALUE_NUMBER)
+			values[offset + count++] = p.getLong ();
+		return count;
+	}
+
+	/**
+	 * A generic implementation of
+	 * {@link CookJsonParser#readDoubleArray(double[], int, int)} that goes
+	 * through the events.
+	 *
+	 * @param	p
+	 * 			JSON input parser.
+	 * @param	values
+	 *			the destination array.
+	 * @param	offset
+	 *			the starting position in the destination.
+	 * @param	length
+	 *			the maximum number of values to read.
+	 * @return	the number of values read.
+	 */
+	static int readDoubleArray (CookJsonParser p, double[] values, int offset, int length)
+	{
+		checkArrayRead (p);
+		int count = 0;
+		while (count < length && p.next () == Event.VALUE_NUMBER)
+			values[offset + count++] = p.getDouble ();
+		return count;
+	}
+
 	/**
 	 * This utility reads data from a {@link JsonParser} and dumps it to a
 	 * {@link JsonGenerator}.  This utility is useful for converting data
@@ -0,0 +1,288 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.value;
+
+import java.util.*;
+
+import javax.json.*;
+
+/**
+ * An immutable JsonObject that stores its values in a flat array.
+ * <p>
+ * The key names and their hash index are kept in a {@link CookJsonShape},
+ * which is shared by all the objects with the same key names.  Thus an
+ * object costs little more than its values, instead of a hash table and
+ * one node per member in {@link CookJsonObject}.
+ * <p>
+ * The accessors with default values do not throw exceptions internally.
+ *
+ * @author	Heng Yuan
+ */
+public final class CookJsonCompactObject extends AbstractMap<String, JsonValue> implements JsonObject
+{
+	public final static CookJsonCompactObject EMPTY = new CookJsonCompactObject (CookJsonShape.EMPTY, new JsonValue[0]);
+
+	private final CookJsonShape m_shape;
+	private final JsonValue[] m_values;
+
+	private CookJsonCompactObject (CookJsonShape shape, JsonValue[] values)
+	{
+		m_shape = shape;
+		m_values = values;
+	}
+
+	/**
+	 * Creates an object from the parallel arrays of key names and values.
+	 * The arrays are not kept, so they can be reused by the caller.  If a
+	 * key name appears more than once, the last value is used.
+	 *
+	 * @param	keys
+	 *			the array containing the key names.
+	 * @param	values
+	 *			the array containing the values.
+	 * @param	start
+	 *			the position of the first member.
+	 * @param	count
+	 *			the number of members.
+	 * @return	the object.
+	 */
+	public static CookJsonCompactObject create (String[] keys, JsonValue[] values, int start, int count)
+	{
+		if (count == 0)
+			return EMPTY;
+		CookJsonShape shape = CookJsonShape.get (keys, start, count);
+		if (!shape.m_distinct)
+		{
+			// rare.  Remove the duplicates, keeping the first position.
+			LinkedHashMap<String, JsonValue> map = new LinkedHashMap<String, JsonValue> ();
+			for (int i = start, end = start + count; i < end; ++i)
+				map.put (keys[i], values[i]);
+			return create (map);
+		}
+		JsonValue[] newValues = new JsonValue[count];
+		System.arraycopy (values, start, newValues, 0, count);
+		return new CookJsonCompactObject (shape, newValues);
+	}
+
+	/**
+	 * Creates an object with the members of a map.
+	 *
+	 * @param	map
+	 *			the map.
+	 * @return	the object.
+	 */
+	public static CookJsonCompactObject create (Map<String, ? extends JsonValue> map)
+	{
+		final int count = map.size ();
+		if (count == 0)
+			return EMPTY;
+		String[] keys = new String[count];
+		JsonValue[] values = new JsonValue[count];
+		int i = 0;
+		for (Map.Entry<String, ? extends JsonValue> entry : map.entrySet ())
+		{
+			keys[i] = entry.getKey ();
+			values[i] = entry.getValue ();
+			++i;
+		}
+		return new CookJsonCompactObject (CookJsonShape.get (keys, 0, count), values);
+	}
+
+	/**
+	 * Gets the shape of this object.
+	 *
+	 * @return	the shape.
+	 */
+	public CookJsonShape getShape ()
+	{
+		return m_shape;
+	}
+
+	/**
+	 * Gets the value of the key at the index of the shape.  Along with
+	 * {@link CookJsonShape#getKey(int)}, it allows the members to be
+	 * visited without lookups or entry objects.
+	 *
+	 * @param	index
+	 *			the index of the key in the shape.
+	 * @return	the value.
+	 */
+	public JsonValue getValueAt (int index)
+	{
+		return m_values[index];
+	}
+
+	private JsonValue getValue (String name)
+	{
+		int i = m_shape.indexOf (name);
+		return i < 0 ? null : m_values[i];
+	}
+
+	@Override
+	public ValueType getValueType ()
+	{
+		return ValueType.OBJECT;
+	}
+
+	@Override
+	public int size ()
+	{
+		return m_values.length;
+	}
+
+	@Override
+	public boolean containsKey (Object key)
+	{
+		return key instanceof String && m_shape.indexOf ((String) key) >= 0;
+	}
+
+	@Override
+	public JsonValue get (Object key)
+	{
+		if (!(key instanceof String))
+			return null;
+		return getValue ((String) key);
+	}
+
+	@Override
+	public Set<Map.Entry<String, JsonValue>> entrySet ()
+	{
+		return new AbstractSet<Map.Entry<String, JsonValue>> ()
+		{
+			@Override
+			public Iterator<Map.Entry<String, JsonValue>> iterator ()
+			{
+				return new Iterator<Map.Entry<String, JsonValue>> ()
+				{
+					private int m_next;
+
+					@Override
+					public boolean hasNext ()
+					{
+						return m_next < m_values.length;
+					}
+
+					@Override
+					public Map.Entry<String, JsonValue> next ()
+					{
+						if (!hasNext ())
+							throw new NoSuchElementException ();
+						int i = m_next++;
+						return new AbstractMap.SimpleImmutableEntry<String, JsonValue> (m_shape.getKey (i), m_values[i]);
+					}
+
+					@Override
+					public void remove ()
+					{
+						throw new UnsupportedOperationException ();
+					}
+				};
+			}
+
+			@Override
+			public int size ()
+			{
+				return m_values.length;
+			}
+		};
+	}
+
+	@Override
+	public JsonArray getJsonArray (String name)
+	{
+		return (JsonArray) getValue (name);
+	}
+
+	@Override
+	public JsonObject getJsonObject (String name)
+	{
+		return (JsonObject) getValue (name);
+	}
+
+	@Override
+	public JsonNumber getJsonNumber (String name)
+	{
+		return (JsonNumber) getValue (name);
+	}
+
+	@Override
+	public JsonString getJsonString (String name)
+	{
+		return (JsonString) getValue (name);
+	}
+
+	@Override
+	public String getString (String name)
+	{
+		return getJsonString (name).getString ();
+	}
+
+	@Override
+	public String getString (String name, String defaultValue)
+	{
+		JsonValue v = getValue (name);
+		if (v instanceof JsonString)
+			return ((JsonString) v).getString ();
+		return defaultValue;
+	}
+
+	@Override
+	public int getInt (String name)
+	{
+		return getJsonNumber (name).intValue ();
+	}
+
+	@Override
+	public int getInt (String name, int defaultValue)
+	{
+		JsonValue v = getValue (name);
+		if (v instanceof JsonNumber)
+			return ((JsonNumber) v).intValue ();
+		return defaultValue;
+	}
+
+	@Override
+	public boolean getBoolean (String name)
+	{
+		JsonValue v = getValue (name);
+		if (v == null)
+			throw new NullPointerException ();
+		if (v.getValueType () == ValueType.TRUE)
+			return true;
+		if (v.getValueType () == ValueType.FALSE)
+			return false;
+		throw new ClassCastException ();
+	}
+
+	@Override
+	public boolean getBoolean (String name, boolean defaultValue)
+	{
+		JsonValue v = getValue (name);
+		if (v == null)
+			return defaultValue;
+		if (v.getValueType () == ValueType.TRUE)
+			return true;
+		if (v.getValueType () == ValueType.FALSE)
+			return false;
+		return defaultValue;
+	}
+
+	@Override
+	public boolean isNull (String name)
+	{
+		return getValue (name).getValueType () == ValueType.NULL;
+	}
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.value;
+
+import java.math.BigDecimal;
+
+import javax.json.JsonValue;
+
+/**
+ * A packed array of double values.
+ * <p>
+ * The elements are accessed as {@link CookJsonBigDecimal}s so that they
+ * are printed in the same way as the numbers parsed from JSON text.
+ * Thus only fractions that print the same as {@code BigDecimal.valueOf (d)}
+ * should be stored.
+ * Integers mixed with the other numbers can be flagged so that they are
+ * accessed as {@link CookJsonLong}s.
+ *
+ * @author	Heng Yuan
+ */
+public final class CookJsonDoubleArray extends CookJsonPackedArray
+{
+	private final double[] m_values;
+	/** Bit n is set if the n-th element is an integer.  Can be null. */
+	private final long[] m_integers;
+
+	/**
+	 * @param	values
+	 *			the values.  The array is not copied.
+	 */
+	public CookJsonDoubleArray (double[] values)
+	{
+		this (values, null);
+	}
+
+	/**
+	 * @param	values
+	 *			the values.  The array is not copied.
+	 * @param	integers
+	 *			bit n is set if the n-th element is an integer.  Can be
+	 *			null.  The array is not copied.
+	 */
+	public CookJsonDoubleArray (double[] values, long[] integers)
+	{
+		m_values = values;
+		m_integers = integers;
+	}
+
+	@Override
+	public int size ()
+	{
+		return m_values.length;
+	}
+
+	@Override
+	public JsonValue get (int index)
+	{
+		final double d = m_values[index];
+		final long[] integers = m_integers;
+		if (integers != null && (integers[index >> 6] & (1L << index)) != 0)
+			return new CookJsonLong ((long) d);
+		return new CookJsonBigDecimal (BigDecimal.valueOf (d));
+	}
+
+	@Override
+	public int getInt (int index)
+	{
+		return (int) m_values[index];
+	}
+
+	@Override
+	public long getLong (int index)
+	{
+		return (long) m_values[index];
+	}
+
+	@Override
+	public double getDouble (int index)
+	{
+		return m_values[index];
+	}
+
+	@Override
+	public double[] toDoubleArray ()
+	{
+		return m_values.clone ();
+	}
+}
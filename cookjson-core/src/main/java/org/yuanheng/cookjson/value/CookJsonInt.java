@@ -25,6 +25,33 @@ import javax.json.JsonNumber;
  */
 public class CookJsonInt implements JsonNumber
 {
+	private final static int CACHE_LOW = -128;
+	private final static int CACHE_HIGH = 1023;
+
+	/** Shared instances of small integers. */
+	private final static CookJsonInt[] s_cache = new CookJsonInt[CACHE_HIGH - CACHE_LOW + 1];
+
+	static
+	{
+		for (int i = 0; i < s_cache.length; ++i)
+			s_cache[i] = new CookJsonInt (i + CACHE_LOW);
+	}
+
+	/**
+	 * Gets a JSON number for an int value.  Small values share the same
+	 * instances.
+	 *
+	 * @param	value
+	 *			the value.
+	 * @return	a JSON number.
+	 */
+	public static CookJsonInt valueOf (int value)
+	{
+		if (value >= CACHE_LOW && value <= CACHE_HIGH)
+			return s_cache[value - CACHE_LOW];
+		return new CookJsonInt (value);
+	}
+
 	private final int m_value;
 	private BigDecimal m_decimal;
 
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.value;
+
+import javax.json.JsonValue;
+
+/**
+ * A packed array of int values.
+ *
+ * @author	Heng Yuan
+ */
+public final class CookJsonIntArray extends CookJsonPackedArray
+{
+	private final int[] m_values;
+
+	/**
+	 * @param	values
+	 *			the values.  The array is not copied.
+	 */
+	public CookJsonIntArray (int[] values)
+	{
+		m_values = values;
+	}
+
+	@Override
+	public int size ()
+	{
+		return m_values.length;
+	}
+
+	@Override
+	public JsonValue get (int index)
+	{
+		return CookJsonInt.valueOf (m_values[index]);
+	}
+
+	@Override
+	public int getInt (int index)
+	{
+		return m_values[index];
+	}
+
+	@Override
+	public long getLong (int index)
+	{
+		return m_values[index];
+	}
+
+	@Override
+	public double getDouble (int index)
+	{
+		return m_values[index];
+	}
+
+	/**
+	 * Gets the values of all the elements.
+	 *
+	 * @return	a new array containing the values.
+	 */
+	public int[] toIntArray ()
+	{
+		return m_values.clone ();
+	}
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.value;
+
+import javax.json.JsonValue;
+
+/**
+ * A packed array of long values.
+ *
+ * @author	Heng Yuan
+ */
+public final class CookJsonLongArray extends CookJsonPackedArray
+{
+	private final long[] m_values;
+
+	/**
+	 * @param	values
+	 *			the values.  The array is not copied.
+	 */
+	public CookJsonLongArray (long[] values)
+	{
+		m_values = values;
+	}
+
+	@Override
+	public int size ()
+	{
+		return m_values.length;
+	}
+
+	@Override
+	public JsonValue get (int index)
+	{
+		return new CookJsonLong (m_values[index]);
+	}
+
+	@Override
+	public long getLong (int index)
+	{
+		return m_values[index];
+	}
+
+	@Override
+	public double getDouble (int index)
+	{
+		return m_values[index];
+	}
+
+	@Override
+	public long[] toLongArray ()
+	{
+		return m_values.clone ();
+	}
+}
@@ -20,12 +20,27 @@ import java.util.HashMap;
 import javax.json.*;
 
 /**
+ * A mutable JsonObject backed by a HashMap.
+ * <p>
+ * Trees built by the parsers and the builders use the more compact
+ * {@link CookJsonCompactObject} instead.  See {@link #freeze()}.
+ *
  * @author	Heng Yuan
  */
 public class CookJsonObject extends HashMap<String, JsonValue> implements JsonObject
 {
 	private static final long serialVersionUID = -4911944799507752602L;
 
+	/**
+	 * Creates an immutable copy of this object.
+	 *
+	 * @return	an immutable copy.
+	 */
+	public CookJsonCompactObject freeze ()
+	{
+		return CookJsonCompactObject.create (this);
+	}
+
 	@Override
 	public ValueType getValueType ()
 	{
@@ -65,14 +80,10 @@ public class CookJsonObject extends HashMap<String, JsonValue> implements JsonOb
 	@Override
 	public String getString (String name, String defaultValue)
 	{
-		try
-		{
-			return getString (name);
-		}
-		catch (Exception ex)
-		{
-			return defaultValue;
-		}
+		JsonValue v = get (name);
+		if (v instanceof JsonString)
+			return ((JsonString) v).getString ();
+		return defaultValue;
 	}
 
 	@Override
@@ -84,14 +95,10 @@ public class CookJsonObject extends HashMap<String, JsonValue> implements JsonOb
 	@Override
 	public int getInt (String name, int defaultValue)
 	{
-		try
-		{
-			return getJsonNumber (name).intValue ();
-		}
-		catch (Exception ex)
-		{
-			return defaultValue;
-		}
+		JsonValue v = get (name);
+		if (v instanceof JsonNumber)
+			return ((JsonNumber) v).intValue ();
+		return defaultValue;
 	}
 
 	@Override
@@ -108,14 +115,14 @@ public class CookJsonObject extends HashMap<String, JsonValue> implements JsonOb
 	@Override
 	public boolean getBoolean (String name, boolean defaultValue)
 	{
-		try
-		{
-			return getBoolean (name);
-		}
-		catch (Exception ex)
-		{
+		JsonValue v = get (name);
+		if (v == null)
 			return defaultValue;
-		}
+		if (v.getValueType () == ValueType.TRUE)
+			return true;
+		if (v.getValueType () == ValueType.FALSE)
+			return false;
+		return defaultValue;
 	}
 
 	@Override
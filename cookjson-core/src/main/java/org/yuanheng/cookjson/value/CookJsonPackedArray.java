@@ -0,0 +1,162 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.value;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import javax.json.*;
+
+/**
+ * An immutable JsonArray of numbers that are stored in a primitive array.
+ * <p>
+ * The {@link JsonNumber} of an element is only created when it is
+ * accessed with {@link #get(int)}.  The values can be read without
+ * creating them with {@link #getLong(int)}, {@link #getDouble(int)} and
+ * the bulk getters.
+ *
+ * @author	Heng Yuan
+ */
+public abstract class CookJsonPackedArray extends AbstractList<JsonValue> implements JsonArray, RandomAccess
+{
+	/**
+	 * Gets the long value of an element.
+	 *
+	 * @param	index
+	 *			the index of the element.
+	 * @return	the value of the element as a long.
+	 */
+	public abstract long getLong (int index);
+
+	/**
+	 * Gets the double value of an element.
+	 *
+	 * @param	index
+	 *			the index of the element.
+	 * @return	the value of the element as a double.
+	 */
+	public abstract double getDouble (int index);
+
+	/**
+	 * Gets the values of all the elements.
+	 *
+	 * @return	a new array containing the values as longs.
+	 */
+	public long[] toLongArray ()
+	{
+		long[] values = new long[size ()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = getLong (i);
+		return values;
+	}
+
+	/**
+	 * Gets the values of all the elements.
+	 *
+	 * @return	a new array containing the values as doubles.
+	 */
+	public double[] toDoubleArray ()
+	{
+		double[] values = new double[size ()];
+		for (int i = 0; i < values.length; ++i)
+			values[i] = getDouble (i);
+		return values;
+	}
+
+	@Override
+	public ValueType getValueType ()
+	{
+		return ValueType.ARRAY;
+	}
+
+	@Override
+	public JsonObject getJsonObject (int index)
+	{
+		return (JsonObject) get (index);
+	}
+
+	@Override
+	public JsonArray getJsonArray (int index)
+	{
+		return (JsonArray) get (index);
+	}
+
+	@Override
+	public JsonNumber getJsonNumber (int index)
+	{
+		return (JsonNumber) get (index);
+	}
+
+	@Override
+	public JsonString getJsonString (int index)
+	{
+		return (JsonString) get (index);
+	}
+
+	@SuppressWarnings ("unchecked")
+	@Override
+	public <T extends JsonValue> List<T> getValuesAs (Class<T> clazz)
+	{
+		return (List<T>)this;
+	}
+
+	@Override
+	public String getString (int index)
+	{
+		return getJsonString (index).getString ();
+	}
+
+	@Override
+	public String getString (int index, String defaultValue)
+	{
+		return defaultValue;
+	}
+
+	@Override
+	public int getInt (int index)
+	{
+		return (int) getLong (index);
+	}
+
+	@Override
+	public int getInt (int index, int defaultValue)
+	{
+		if (index < 0 || index >= size ())
+			return defaultValue;
+		return getInt (index);
+	}
+
+	@Override
+	public boolean getBoolean (int index)
+	{
+		get (index);
+		throw new ClassCastException ();
+	}
+
+	@Override
+	public boolean getBoolean (int index, boolean defaultValue)
+	{
+		return defaultValue;
+	}
+
+	@Override
+	public boolean isNull (int index)
+	{
+		get (index);
+		return false;
+	}
+}
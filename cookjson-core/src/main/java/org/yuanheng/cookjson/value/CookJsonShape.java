@@ -0,0 +1,186 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.value;
+
+/**
+ * The key names of a {@link CookJsonCompactObject} and their hash index.
+ * <p>
+ * Objects with the same key names in the same order share one shape, so
+ * each object only needs to store its values.  Shapes are interned in a
+ * small, fixed size cache.  Like the key name table of the parsers, the
+ * cache has no locking.  Shapes are immutable, and a racing lookup
+ * either sees a complete shape or misses and creates a new one.
+ *
+ * @author	Heng Yuan
+ */
+public final class CookJsonShape
+{
+	/** Number of slots of the shape cache.  Must be a power of 2. */
+	private final static int CACHE_SIZE = 1024;
+	/** Shapes with more keys than this are not cached. */
+	private final static int MAX_CACHED_KEYS = 32;
+
+	private final static CookJsonShape[] s_cache = new CookJsonShape[CACHE_SIZE];
+
+	/** The empty shape. */
+	public final static CookJsonShape EMPTY = new CookJsonShape (new String[0], 0);
+
+	private final String[] m_keys;
+	/**
+	 * The open addressing hash index with linear probing.  Each slot
+	 * contains the key position + 1, or 0 if the slot is empty.
+	 */
+	private final int[] m_table;
+	private final int m_mask;
+	private final int m_hash;
+	/** False if some key names appear more than once. */
+	final boolean m_distinct;
+
+	private CookJsonShape (String[] keys, int hash)
+	{
+		m_keys = keys;
+		m_hash = hash;
+		int size = 4;
+		while (size < keys.length * 2)
+			size <<= 1;
+		m_table = new int[size];
+		m_mask = size - 1;
+		boolean distinct = true;
+		for (int i = 0; i < keys.length; ++i)
+		{
+			int slot = spread (keys[i].hashCode ()) & m_mask;
+			while (m_table[slot] != 0)
+			{
+				if (keys[m_table[slot] - 1].equals (keys[i]))
+					distinct = false;
+				slot = (slot + 1) & m_mask;
+			}
+			m_table[slot] = i + 1;
+		}
+		m_distinct = distinct;
+	}
+
+	private static int spread (int h)
+	{
+		return h ^ (h >>> 16);
+	}
+
+	private static int hash (String[] keys, int start, int count)
+	{
+		int h = count;
+		for (int i = start, end = start + count; i < end; ++i)
+			h = 31 * h + keys[i].hashCode ();
+		return spread (h);
+	}
+
+	private boolean matches (String[] keys, int start, int count, int hash)
+	{
+		final String[] myKeys = m_keys;
+		if (m_hash != hash || myKeys.length != count)
+			return false;
+		for (int i = 0; i < count; ++i)
+		{
+			String key = keys[start + i];
+			if (myKeys[i] != key && !myKeys[i].equals (key))
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Gets the shape of a list of key names.  The array is not kept, so
+	 * it can be reused by the caller.  Shapes with duplicate key names are
+	 * not cached.
+	 *
+	 * @param	keys
+	 *			the array containing the key names.
+	 * @param	start
+	 *			the position of the first key name.
+	 * @param	count
+	 *			the number of key names.
+	 * @return	the shared shape of the key names.
+	 */
+	public static CookJsonShape get (String[] keys, int start, int count)
+	{
+		if (count == 0)
+			return EMPTY;
+		final int hash = hash (keys, start, count);
+		if (count > MAX_CACHED_KEYS)
+			return new CookJsonShape (copy (keys, start, count), hash);
+
+		final int slot = hash & (CACHE_SIZE - 1);
+		CookJsonShape shape = s_cache[slot];
+		if (shape != null && shape.matches (keys, start, count, hash))
+			return shape;
+		shape = new CookJsonShape (copy (keys, start, count), hash);
+		if (shape.m_distinct)
+			s_cache[slot] = shape;
+		return shape;
+	}
+
+	private static String[] copy (String[] keys, int start, int count)
+	{
+		String[] newKeys = new String[count];
+		System.arraycopy (keys, start, newKeys, 0, count);
+		return newKeys;
+	}
+
+	/**
+	 * Finds a key name.
+	 *
+	 * @param	key
+	 *			the key name.
+	 * @return	the position of the key name.  -1 if not found.
+	 */
+	public int indexOf (String key)
+	{
+		final String[] keys = m_keys;
+		final int[] table = m_table;
+		final int mask = m_mask;
+		int slot = spread (key.hashCode ()) & mask;
+		for (;;)
+		{
+			int i = table[slot] - 1;
+			if (i < 0)
+				return -1;
+			if (keys[i] == key || keys[i].equals (key))
+				return i;
+			slot = (slot + 1) & mask;
+		}
+	}
+
+	/**
+	 * Gets the number of keys.
+	 *
+	 * @return	the number of keys.
+	 */
+	public int size ()
+	{
+		return m_keys.length;
+	}
+
+	/**
+	 * Gets a key name.
+	 *
+	 * @param	index
+	 *			the position of the key name.
+	 * @return	the key name.
+	 */
+	public String getKey (int index)
+	{
+		return m_keys[index];
+	}
+}
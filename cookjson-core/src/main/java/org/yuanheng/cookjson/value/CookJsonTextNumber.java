@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.value;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+import javax.json.JsonNumber;
+
+/**
+ * A JSON number that keeps the text of the number token, and converts it
+ * only when its value is asked for.
+ * <p>
+ * Parsers use it for numbers that do not fit an int or a long, so that
+ * building a tree does not parse the numbers that are never looked at.
+ * {@link #doubleValue()} parses the text directly without creating a
+ * BigDecimal.  {@link #toString()} is the same as
+ * {@code bigDecimalValue().toString()}.
+ *
+ * @author	Heng Yuan
+ */
+public class CookJsonTextNumber implements JsonNumber
+{
+	private final String m_text;
+	private BigDecimal m_decimal;
+
+	/**
+	 * @param	text
+	 *			a valid JSON number token.
+	 */
+	public CookJsonTextNumber (String text)
+	{
+		m_text = text;
+	}
+
+	/**
+	 * Gets the original text of the number.
+	 *
+	 * @return	the number token.
+	 */
+	public String getText ()
+	{
+		return m_text;
+	}
+
+	@Override
+	public ValueType getValueType ()
+	{
+		return ValueType.NUMBER;
+	}
+
+	@Override
+	public boolean isIntegral ()
+	{
+		return bigDecimalValue ().scale () == 0;
+	}
+
+	@Override
+	public int intValue ()
+	{
+		return bigDecimalValue ().intValue ();
+	}
+
+	@Override
+	public int intValueExact ()
+	{
+		return bigDecimalValue ().intValueExact ();
+	}
+
+	@Override
+	public long longValue ()
+	{
+		return bigDecimalValue ().longValue ();
+	}
+
+	@Override
+	public long longValueExact ()
+	{
+		return bigDecimalValue ().longValueExact ();
+	}
+
+	@Override
+	public BigInteger bigIntegerValue ()
+	{
+		return bigDecimalValue ().toBigInteger ();
+	}
+
+	@Override
+	public BigInteger bigIntegerValueExact ()
+	{
+		return bigDecimalValue ().toBigIntegerExact ();
+	}
+
+	@Override
+	public double doubleValue ()
+	{
+		if (m_decimal != null)
+			return m_decimal.doubleValue ();
+		return Double.parseDouble (m_text);
+	}
+
+	@Override
+	public BigDecimal bigDecimalValue ()
+	{
+		if (m_decimal == null)
+			m_decimal = new BigDecimal (m_text);
+		return m_decimal;
+	}
+
+	@Override
+	public int hashCode ()
+	{
+		return bigDecimalValue ().hashCode ();
+	}
+
+	@Override
+	public String toString ()
+	{
+		return bigDecimalValue ().toString ();
+	}
+}
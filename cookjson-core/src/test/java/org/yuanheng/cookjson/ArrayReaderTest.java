@@ -0,0 +1,255 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.Random;
+
+import javax.json.stream.JsonParser.Event;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class ArrayReaderTest
+{
+	private static interface ParserCreator
+	{
+		public CookJsonParser create (String json) throws IOException;
+	}
+
+	private final static ParserCreator[] s_creators = new ParserCreator[]
+	{
+		new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create (String json)
+			{
+				byte[] bytes = json.getBytes (BOM.utf8);
+				return new UTF8TextJsonParser (bytes, 0, bytes.length);
+			}
+		},
+		new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create (String json)
+			{
+				// a small buffer so that numbers cross the buffer boundary.
+				return new UTF8TextJsonParser (new ByteArrayInputStream (json.getBytes (BOM.utf8)), 7);
+			}
+		},
+		new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create (String json)
+			{
+				return new TextJsonParser (json);
+			}
+		},
+		new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create (String json)
+			{
+				return new IndexedJsonParser (json.getBytes (BOM.utf8));
+			}
+		},
+		new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create (String json)
+			{
+				CookJsonParser p = new TextJsonParser (json);
+				p.next ();
+				return new JsonStructureParser (Utils.getStructure (p));
+			}
+		},
+		new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create (String json) throws IOException
+			{
+				CookJsonParser p = new TextJsonParser (json);
+				ByteArrayOutputStream bos = new ByteArrayOutputStream ();
+				BsonGenerator g = new BsonGenerator (bos);
+				g.setUseDouble (true);
+				Utils.convert (p, g);
+				g.close ();
+				BsonParser bp = new BsonParser (new ByteArrayInputStream (bos.toByteArray ()));
+				bp.setRootAsArray (true);
+				return bp;
+			}
+		}
+	};
+
+	private static String getNumbers (int count, boolean withFraction)
+	{
+		Random r = new Random (count);
+		StringBuilder builder = new StringBuilder ();
+		builder.append ('[');
+		for (int i = 0; i < count; ++i)
+		{
+			if (i > 0)
+				builder.append ((i % 3) == 0 ? " , " : ",");
+			if (withFraction && (i % 2) == 1)
+				builder.append (r.nextInt (100000) / 8.0);
+			else
+				builder.append (r.nextInt () >> (i % 31));
+		}
+		builder.append (']');
+		return builder.toString ();
+	}
+
+	private static double[] getExpected (String json)
+	{
+		CookJsonParser p = new TextJsonParser (json);
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		double[] values = new double[1000];
+		int count = 0;
+		while (p.next () == Event.VALUE_NUMBER)
+			values[count++] = p.getDouble ();
+		double[] expected = new double[count];
+		System.arraycopy (values, 0, expected, 0, count);
+		return expected;
+	}
+
+	@Test
+	public void testReadIntArray () throws IOException
+	{
+		String json = getNumbers (500, false);
+		double[] expected = getExpected (json);
+		for (ParserCreator creator : s_creators)
+		{
+			CookJsonParser p = creator.create (json);
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			int[] values = new int[expected.length + 2];
+			Assert.assertEquals (expected.length, p.readIntArray (values, 1, values.length - 1));
+			for (int i = 0; i < expected.length; ++i)
+				Assert.assertEquals (expected[i], values[i + 1], 0);
+			Assert.assertEquals (Event.END_ARRAY, p.getEvent ());
+			Assert.assertFalse (p.hasNext ());
+			p.close ();
+		}
+	}
+
+	@Test
+	public void testReadLongArray () throws IOException
+	{
+		String json = "[0,-0, 12345678901234, -9223372036854775808,9223372036854775807 ,1e3 ,-2.5]";
+		long[] expected = new long[] { 0, 0, 12345678901234L, Long.MIN_VALUE, Long.MAX_VALUE, 1000, -2 };
+		for (ParserCreator creator : s_creators)
+		{
+			CookJsonParser p = creator.create (json);
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			long[] values = new long[10];
+			Assert.assertEquals (expected.length, p.readLongArray (values, 0, values.length));
+			for (int i = 0; i < expected.length; ++i)
+				Assert.assertEquals (expected[i], values[i]);
+			Assert.assertEquals (Event.END_ARRAY, p.getEvent ());
+			p.close ();
+		}
+	}
+
+	@Test
+	public void testReadDoubleArray () throws IOException
+	{
+		String json = getNumbers (500, true);
+		double[] expected = getExpected (json);
+		for (ParserCreator creator : s_creators)
+		{
+			CookJsonParser p = creator.create (json);
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			double[] values = new double[expected.length];
+			Assert.assertEquals (expected.length, p.readDoubleArray (values, 0, values.length));
+			Assert.assertArrayEquals (expected, values, 0);
+			// the destination is full.
+			Assert.assertEquals (Event.VALUE_NUMBER, p.getEvent ());
+			Assert.assertEquals (0, p.readDoubleArray (values, 0, 10));
+			Assert.assertEquals (Event.END_ARRAY, p.getEvent ());
+			p.close ();
+		}
+
+		String str = "[-0, 1.5e-3, 123456789012345678901234567890]";
+		for (ParserCreator creator : s_creators)
+		{
+			CookJsonParser p = creator.create (str);
+			p.next ();
+			double[] values = new double[3];
+			Assert.assertEquals (3, p.readDoubleArray (values, 0, 3));
+			Assert.assertEquals (0, values[0], 0);
+			Assert.assertEquals (1.5e-3, values[1], 0);
+			Assert.assertEquals (1.2345678901234568e29, values[2], 0);
+			p.close ();
+		}
+
+		// the text parsers keep the sign of -0.
+		for (int i = 0; i < 3; ++i)
+		{
+			CookJsonParser p = s_creators[i].create (str);
+			p.next ();
+			double[] values = new double[1];
+			Assert.assertEquals (1, p.readDoubleArray (values, 0, 1));
+			Assert.assertEquals (Double.doubleToLongBits (-0.0), Double.doubleToLongBits (values[0]));
+			p.close ();
+		}
+	}
+
+	@Test
+	public void testPartial () throws IOException
+	{
+		String json = "[[1,2,3,4,5],[6,\"a\",7],{\"b\":[8]},[]]";
+		for (ParserCreator creator : s_creators)
+		{
+			CookJsonParser p = creator.create (json);
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			long[] values = new long[5];
+			Assert.assertEquals (2, p.readLongArray (values, 0, 2));
+			Assert.assertEquals (Event.VALUE_NUMBER, p.getEvent ());
+			Assert.assertEquals (2, p.getLong ());
+			Assert.assertEquals (3, p.readLongArray (values, 2, 3));
+			Assert.assertEquals (5, values[4]);
+			Assert.assertEquals (Event.END_ARRAY, p.next ());
+
+			// stops at a non-number value.
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			Assert.assertEquals (1, p.readLongArray (values, 0, 5));
+			Assert.assertEquals (6, values[0]);
+			Assert.assertEquals (Event.VALUE_STRING, p.getEvent ());
+			Assert.assertEquals ("a", p.getString ());
+			Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+			Assert.assertEquals (Event.END_ARRAY, p.next ());
+
+			Assert.assertEquals (Event.START_OBJECT, p.next ());
+			try
+			{
+				p.readLongArray (values, 0, 5);
+				Assert.fail ();
+			}
+			catch (IllegalStateException ex)
+			{
+			}
+			p.skipChildren ();
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			Assert.assertEquals (0, p.readIntArray (new int[1], 0, 1));
+			Assert.assertEquals (Event.END_ARRAY, p.getEvent ());
+			Assert.assertEquals (Event.END_ARRAY, p.next ());
+			p.close ();
+		}
+	}
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.HashMap;
+
+import javax.json.JsonReader;
+import javax.json.JsonStructure;
+import javax.json.JsonWriter;
+import javax.json.stream.JsonGenerationException;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonGeneratorFactory;
+import javax.json.stream.JsonParser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class BufferRecyclerTest
+{
+	@Test
+	public void testRecycle ()
+	{
+		BufferRecycler recycler = new BufferRecycler (2);
+		byte[] b1 = recycler.allocBytes (BufferRecycler.BYTE_READ, 100);
+		byte[] b2 = recycler.allocBytes (BufferRecycler.BYTE_READ, 100);
+		Assert.assertNotSame (b1, b2);
+		recycler.releaseBytes (BufferRecycler.BYTE_READ, b1);
+		// a different kind does not get the buffer.
+		Assert.assertNotSame (b1, recycler.allocBytes (BufferRecycler.BYTE_APPEND, 100));
+		Assert.assertSame (b1, recycler.allocBytes (BufferRecycler.BYTE_READ, 100));
+
+		// the pool is bounded.
+		recycler.releaseBytes (BufferRecycler.BYTE_READ, b1);
+		recycler.releaseBytes (BufferRecycler.BYTE_READ, b2);
+		recycler.releaseBytes (BufferRecycler.BYTE_READ, new byte[100]);
+		byte[] b3 = recycler.allocBytes (BufferRecycler.BYTE_READ, 100);
+		byte[] b4 = recycler.allocBytes (BufferRecycler.BYTE_READ, 100);
+		Assert.assertTrue ((b3 == b1 && b4 == b2) || (b3 == b2 && b4 == b1));
+
+		// large buffers are not kept.
+		char[] c1 = recycler.allocChars (BufferRecycler.CHAR_WRITE, BufferRecycler.MAX_BUFFER_SIZE + 1);
+		recycler.releaseChars (BufferRecycler.CHAR_WRITE, c1);
+		Assert.assertNotSame (c1, recycler.allocChars (BufferRecycler.CHAR_WRITE, 10));
+
+		char[] c2 = recycler.allocChars (BufferRecycler.CHAR_WRITE, 10);
+		recycler.releaseChars (BufferRecycler.CHAR_WRITE, c2);
+		// too small for the request, but it stays in the pool.
+		Assert.assertNotSame (c2, recycler.allocChars (BufferRecycler.CHAR_WRITE, 20));
+		Assert.assertSame (c2, recycler.allocChars (BufferRecycler.CHAR_WRITE, 10));
+
+		// a short buffer does not hide a large enough one in the next slot.
+		byte[] s1 = new byte[10];
+		byte[] s2 = new byte[200];
+		recycler.releaseBytes (BufferRecycler.BYTE_APPEND, s1);
+		recycler.releaseBytes (BufferRecycler.BYTE_APPEND, s2);
+		Assert.assertSame (s2, recycler.allocBytes (BufferRecycler.BYTE_APPEND, 100));
+		Assert.assertSame (s1, recycler.allocBytes (BufferRecycler.BYTE_APPEND, 10));
+	}
+
+	@Test
+	public void testUTF8Writer () throws IOException
+	{
+		StringBuilder builder = new StringBuilder ();
+		for (int i = 0; i < 3000; ++i)
+			builder.append ("aé中😀");
+		// unpaired surrogates
+		builder.append ("\ude00x\ud83dy\ud83d");
+		String str = builder.toString ();
+
+		ByteArrayOutputStream expected = new ByteArrayOutputStream ();
+		Writer w = new OutputStreamWriter (expected, BOM.utf8);
+		w.write (str);
+		w.close ();
+
+		BufferRecycler recycler = new BufferRecycler ();
+		for (int split = 1; split < 8; ++split)
+		{
+			ByteArrayOutputStream bos = new ByteArrayOutputStream ();
+			w = new UTF8Writer (bos, recycler);
+			char[] chars = str.toCharArray ();
+			// split the surrogate pairs across the write calls.
+			for (int i = 0; i < chars.length; i += split)
+				w.write (chars, i, Math.min (split, chars.length - i));
+			w.close ();
+			Assert.assertArrayEquals (expected.toByteArray (), bos.toByteArray ());
+		}
+	}
+
+	@Test
+	public void testCloseInMemory ()
+	{
+		// the buffers are released even if the last input was in memory.
+		BufferRecycler recycler = new BufferRecycler (1);
+		byte[] b = recycler.allocBytes (BufferRecycler.BYTE_READ, 8193);
+		recycler.releaseBytes (BufferRecycler.BYTE_READ, b);
+		UTF8TextJsonParser p = new UTF8TextJsonParser (new ByteArrayInputStream (new byte[0]), 8193, recycler);
+		p.reset ("[1,2]".getBytes (BOM.utf8));
+		p.next ();
+		p.close ();
+		Assert.assertSame (b, recycler.allocBytes (BufferRecycler.BYTE_READ, 10));
+		// the parser can still be reused.
+		p.reset ("[3]".getBytes (BOM.utf8));
+		p.next ();
+		p.next ();
+		Assert.assertEquals (3, p.getInt ());
+		p.close ();
+
+		// a String replaces the read buffer, but the append buffer is kept.
+		char[] c = recycler.allocChars (BufferRecycler.CHAR_APPEND, 8193);
+		recycler.releaseChars (BufferRecycler.CHAR_APPEND, c);
+		TextJsonParser tp = new TextJsonParser (new StringReader (""), 8193, recycler);
+		tp.reset ("[1,2]");
+		tp.next ();
+		tp.close ();
+		Assert.assertSame (c, recycler.allocChars (BufferRecycler.CHAR_APPEND, 10));
+		tp.reset (new StringReader ("[3]"));
+		tp.next ();
+		tp.next ();
+		Assert.assertEquals (3, tp.getInt ());
+		tp.close ();
+	}
+
+	@Test
+	public void testGeneratorClose ()
+	{
+		BufferRecycler recycler = new BufferRecycler (1);
+		StringWriter sw = new StringWriter ();
+		TextJsonGenerator g = new TextJsonGenerator (sw, recycler);
+		g.writeStartArray ();
+		g.write (1);
+		g.writeEnd ();
+		g.close ();
+		Assert.assertEquals ("[1]", sw.toString ());
+		Assert.assertNull (g.m_buffer);
+		// closing again is harmless.
+		g.close ();
+
+		// the generator cannot be used after close.
+		g = new TextJsonGenerator (new StringWriter (), recycler);
+		g.writeStartArray ();
+		g.close ();
+		try
+		{
+			g.write (1);
+			Assert.fail ();
+		}
+		catch (JsonGenerationException ex)
+		{
+		}
+		try
+		{
+			g.flush ();
+			Assert.fail ();
+		}
+		catch (JsonGenerationException ex)
+		{
+		}
+
+		// the buffer is released even if the close fails.
+		g = new TextJsonGenerator (new Writer ()
+		{
+			@Override
+			public void write (char[] cbuf, int off, int len) throws IOException
+			{
+				throw new IOException ("failed");
+			}
+
+			@Override
+			public void flush ()
+			{
+			}
+
+			@Override
+			public void close ()
+			{
+			}
+		}, recycler);
+		char[] buf = g.m_buffer;
+		g.writeStartArray ();
+		try
+		{
+			g.close ();
+			Assert.fail ();
+		}
+		catch (JsonGenerationException ex)
+		{
+		}
+		Assert.assertNull (g.m_buffer);
+		Assert.assertSame (buf, recycler.allocChars (BufferRecycler.CHAR_WRITE, 10));
+	}
+
+	@Test
+	public void testFactory ()
+	{
+		String json = "{\"a\":[1,2.5,\"abc\\né\"],\"b\":{\"c\":null}}";
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		CookJsonProvider provider = new CookJsonProvider ();
+		JsonGeneratorFactory gf = provider.createGeneratorFactory (config);
+		CookJsonParserFactory pf = (CookJsonParserFactory) provider.createParserFactory (config);
+
+		for (int i = 0; i < 10; ++i)
+		{
+			// the buffers of the last parser and generator are reused.
+			ByteArrayOutputStream bos = new ByteArrayOutputStream ();
+			JsonGenerator g = gf.createGenerator (bos);
+			JsonParser p = pf.createParser (new ByteArrayInputStream (json.getBytes (BOM.utf8)));
+			Utils.convert (p, g);
+			p.close ();
+			g.close ();
+			Assert.assertEquals (json, new String (bos.toByteArray (), BOM.utf8));
+
+			StringWriter sw = new StringWriter ();
+			JsonWriter writer = provider.createWriterFactory (config).createWriter (sw);
+			JsonReader reader = provider.createReaderFactory (config).createReader (new StringReader (json));
+			JsonStructure value = reader.read ();
+			reader.close ();
+			writer.write (value);
+			writer.close ();
+			Assert.assertEquals (json, sw.toString ());
+		}
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class ByteArrayParserTest
+{
+	private String toJson (JsonParser p)
+	{
+		StringWriter out = new StringWriter ();
+		TextJsonGenerator g = new TextJsonGenerator (out);
+		Utils.convert (p, g);
+		p.close ();
+		g.close ();
+		return out.toString ();
+	}
+
+	void testFile (String f) throws IOException
+	{
+		byte[] bytes = TestUtils.readFile (f);
+		String expected = toJson (new UTF8TextJsonParser (new ByteArrayInputStream (bytes)));
+
+		Assert.assertEquals (expected, toJson (new UTF8TextJsonParser (bytes)));
+
+		// in place parsing with a 0 after the data.
+		byte[] padded = new byte[bytes.length + 10];
+		Arrays.fill (padded, (byte) ']');
+		System.arraycopy (bytes, 0, padded, 3, bytes.length);
+		padded[bytes.length + 3] = 0;
+		byte[] copy = padded.clone ();
+		Assert.assertEquals (expected, toJson (new UTF8TextJsonParser (padded, 3, bytes.length)));
+		Assert.assertArrayEquals (copy, padded);
+
+		// data followed by garbage.
+		padded[bytes.length + 3] = ']';
+		Assert.assertEquals (expected, toJson (new UTF8TextJsonParser (padded, 3, bytes.length)));
+
+		ByteBuffer heap = ByteBuffer.wrap (padded, 3, bytes.length);
+		Assert.assertEquals (expected, toJson (new UTF8TextJsonParser (heap)));
+		Assert.assertEquals (3, heap.position ());
+
+		ByteBuffer direct = ByteBuffer.allocateDirect (bytes.length);
+		direct.put (bytes).flip ();
+		Assert.assertEquals (expected, toJson (new UTF8TextJsonParser (direct)));
+		Assert.assertEquals (0, direct.position ());
+
+		Assert.assertEquals (expected, toJson (new UTF8TextJsonParser (heap.asReadOnlyBuffer ())));
+	}
+
+	@Test
+	public void testFiles () throws IOException
+	{
+		testFile ("../tests/data/complex1.json");
+		testFile ("../tests/data/string.json");
+		testFile ("../tests/data/string3.json");
+		testFile ("../tests/data/number.json");
+		testFile ("../tests/data/types.json");
+	}
+
+	@Test
+	public void testInPlace ()
+	{
+		byte[] bytes = "xx[\"abc\",-12,\"a\\tb\"]\0yy".getBytes (BOM.utf8);
+		byte[] copy = bytes.clone ();
+		UTF8TextJsonParser p = new UTF8TextJsonParser (bytes, 2, 18);
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		Assert.assertEquals (Event.VALUE_STRING, p.next ());
+		Assert.assertEquals ("abc", p.getString ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals (-12, p.getInt ());
+		Assert.assertEquals (Event.VALUE_STRING, p.next ());
+		Assert.assertEquals ("a\tb", p.getString ());
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		Assert.assertEquals (17, p.getLocation ().getStreamOffset ());
+		Assert.assertFalse (p.hasNext ());
+		p.close ();
+		Assert.assertArrayEquals (copy, bytes);
+	}
+
+	@Test
+	public void testNoSentinel ()
+	{
+		// larger than the read buffer, and without a 0 after the data.
+		StringBuilder builder = new StringBuilder ("[");
+		for (int i = 0; i < 5000; ++i)
+			builder.append (i == 0 ? "" : ",").append ("\"s").append (i).append ("\"");
+		builder.append ("]");
+		String json = builder.toString ();
+		byte[] bytes = json.getBytes (BOM.utf8);
+		UTF8TextJsonParser p = new UTF8TextJsonParser (bytes);
+		Assert.assertEquals (json, toJson (p));
+
+		// switch between in place and chunked reading.
+		byte[] padded = Arrays.copyOf (bytes, bytes.length + 1);
+		p.reset (padded, 0, bytes.length);
+		Assert.assertEquals (json, toJson (p));
+		p.reset (bytes);
+		Assert.assertEquals (json, toJson (p));
+	}
+
+	@Test
+	public void testLongEscapedString ()
+	{
+		StringBuilder builder = new StringBuilder ();
+		for (int i = 0; i < 500; ++i)
+			builder.append ("\\n").append (i);
+		String json = "[\"" + builder + "\"]";
+		UTF8TextJsonParser p = new UTF8TextJsonParser (json.getBytes (BOM.utf8));
+		p.next ();
+		p.next ();
+		Assert.assertEquals (builder.toString ().replace ("\\n", "\n"), p.getString ());
+		p.close ();
+	}
+
+	@Test
+	public void testFactory () throws IOException
+	{
+		CookJsonParserFactory factory = (CookJsonParserFactory) new CookJsonProvider ().createParserFactory (new HashMap<String, Object> ());
+		String json = "{\"a\":[1,2,\"é\"]}";
+
+		Assert.assertEquals (json, toJson (factory.createParser (json.getBytes (BOM.utf8), 0, json.getBytes (BOM.utf8).length)));
+		Assert.assertEquals (json, toJson (factory.createParser (ByteBuffer.wrap (json.getBytes (BOM.utf8)))));
+
+		byte[] utf16 = json.getBytes (BOM.utf16le);
+		Assert.assertEquals (json, toJson (factory.createParser (utf16, 0, utf16.length)));
+		Assert.assertEquals (json, toJson (factory.createParser (ByteBuffer.wrap (utf16))));
+
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		config.put (CookJsonProvider.FORMAT, CookJsonProvider.FORMAT_BSON);
+		CookJsonParserFactory bsonFactory = (CookJsonParserFactory) new CookJsonProvider ().createParserFactory (config);
+		byte[] bson = TestUtils.readFile ("../tests/data/complex1.bson");
+		String expected = toJson (new BsonParser (new ByteArrayInputStream (bson)));
+		Assert.assertEquals (expected, toJson (bsonFactory.createParser (bson, 0, bson.length)));
+		ByteBuffer direct = ByteBuffer.allocateDirect (bson.length);
+		direct.put (bson).flip ();
+		Assert.assertEquals (expected, toJson (bsonFactory.createParser (direct)));
+	}
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.json.*;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import org.yuanheng.cookjson.value.CookJsonBinary;
+
+/**
+ * @author	Heng Yuan
+ */
+public class CookJsonTapeTest
+{
+	/**
+	 * Parses the JSON text into the HashMap based tree and prints it, so
+	 * that the key orders of the two are the same.
+	 */
+	private static String canonical (String json)
+	{
+		CookJsonParser p = new TextJsonParser (json);
+		p.next ();
+		return TestUtils.toJson (Utils.getStructure (p));
+	}
+
+	private void testFile (String f) throws IOException
+	{
+		File file = new File (f.replace ('/', File.separatorChar));
+		String json = Utils.getString (file);
+		CookJsonParser p = new UTF8TextJsonParser (new FileInputStream (file));
+		CookJsonTape tape = new CookJsonTapeBuilder ().build (p);
+		p.close ();
+		Assert.assertEquals (canonical (json), canonical (TestUtils.toJson (tape.getRoot ())));
+	}
+
+	@Test
+	public void testFiles () throws IOException
+	{
+		testFile ("../tests/data/complex1.json");
+		testFile ("../tests/data/types.json");
+		testFile ("../tests/data/number.json");
+		testFile ("../tests/data/string.json");
+		testFile ("../tests/data/string4.json");
+		testFile ("../tests/data/large.json");
+	}
+
+	@Test
+	public void testMemory () throws IOException
+	{
+		File file = new File ("../tests/data/large.json".replace ('/', File.separatorChar));
+		CookJsonParser p = new UTF8TextJsonParser (new FileInputStream (file));
+		CookJsonTape tape = new CookJsonTapeBuilder ().build (p);
+		p.close ();
+		Assert.assertTrue (tape.getMemorySize () < file.length ());
+	}
+
+	@Test
+	public void testValues ()
+	{
+		String json = "{\"a\":1,\"b\":-72057594037927936,\"c\":9223372036854775807,\"d\":123456789012345678901234567890," +
+			"\"e\":1.5e3,\"f\":\"abc\\u00e9\\ud83d\\ude00\",\"\\u00e9\":[true,false,null,{},[]],\"g\":{\"h\":[1,[2,3],{\"i\":4}]}}";
+		CookJsonParser p = new TextJsonParser (json);
+		JsonObject obj = (JsonObject) new CookJsonTapeBuilder ().build (p).getRoot ();
+		Assert.assertEquals (8, obj.size ());
+		Assert.assertEquals (1, obj.getInt ("a"));
+		Assert.assertEquals (-72057594037927936L, obj.getJsonNumber ("b").longValue ());
+		Assert.assertEquals (Long.MAX_VALUE, obj.getJsonNumber ("c").longValue ());
+		Assert.assertEquals ("123456789012345678901234567890", obj.getJsonNumber ("d").bigIntegerValue ().toString ());
+		Assert.assertEquals (1500, obj.getInt ("e"));
+		Assert.assertFalse (obj.getJsonNumber ("e").isIntegral ());
+		Assert.assertEquals ("abc\u00e9\ud83d\ude00", obj.getString ("f"));
+		Assert.assertTrue (obj.containsKey ("\u00e9"));
+		Assert.assertFalse (obj.containsKey ("\u00e8"));
+		Assert.assertFalse (obj.containsKey ("ab"));
+		Assert.assertNull (obj.get ("x"));
+		Assert.assertEquals ("x", obj.getString ("x", "x"));
+
+		JsonArray array = obj.getJsonArray ("\u00e9");
+		Assert.assertEquals (5, array.size ());
+		Assert.assertTrue (array.getBoolean (0));
+		Assert.assertFalse (array.getBoolean (1));
+		Assert.assertTrue (array.isNull (2));
+		Assert.assertTrue (array.getJsonObject (3).isEmpty ());
+		Assert.assertTrue (array.getJsonArray (4).isEmpty ());
+		Assert.assertEquals ("x", array.getString (0, "x"));
+		Assert.assertEquals (7, array.getInt (2, 7));
+		Assert.assertTrue (array.getBoolean (5, true));
+		Assert.assertEquals (1, obj.getInt ("a", 7));
+		Assert.assertEquals (7, obj.getInt ("f", 7));
+		Assert.assertEquals ("x", obj.getString ("a", "x"));
+		Assert.assertTrue (obj.getBoolean ("a", true));
+
+		JsonArray h = obj.getJsonObject ("g").getJsonArray ("h");
+		Assert.assertEquals (4, h.getJsonObject (2).getInt ("i"));
+		Assert.assertEquals (1, h.getInt (0));
+		Assert.assertEquals (3, h.getJsonArray (1).getInt (1));
+		Assert.assertEquals ("[1,[2,3],{\"i\":4}]", TestUtils.toJson (h));
+
+		Iterator<Map.Entry<String, JsonValue>> iter = obj.entrySet ().iterator ();
+		Assert.assertEquals ("a", iter.next ().getKey ());
+		Assert.assertEquals ("b", iter.next ().getKey ());
+
+		try
+		{
+			obj.put ("z", JsonValue.NULL);
+			Assert.fail ();
+		}
+		catch (UnsupportedOperationException ex)
+		{
+		}
+		try
+		{
+			h.get (3);
+			Assert.fail ();
+		}
+		catch (IndexOutOfBoundsException ex)
+		{
+		}
+	}
+
+	@Test
+	public void testDuplicateKeys ()
+	{
+		JsonObject obj = (JsonObject) new CookJsonTapeBuilder ().build (new TextJsonParser ("{\"a\":1,\"b\":2,\"a\":3}")).getRoot ();
+		Assert.assertEquals (2, obj.size ());
+		Assert.assertEquals (3, obj.getInt ("a"));
+		Assert.assertEquals (2, obj.keySet ().size ());
+		Assert.assertTrue (obj.keySet ().containsAll (Arrays.asList ("a", "b")));
+		Assert.assertEquals ("{\"b\":2,\"a\":3}", TestUtils.toJson (obj));
+
+		// large objects are looked up through the hash index.
+		StringBuilder builder = new StringBuilder ("{");
+		for (int i = 0; i < 100; ++i)
+			builder.append ("\"k").append (i % 70).append ("\":{\"v\":[").append (i).append ("]},");
+		builder.append ("\"z\":\"\\u00e9\"}");
+		String json = builder.toString ();
+		CookJsonParser p = new TextJsonParser (json);
+		p.next ();
+		JsonObject expected = (JsonObject) Utils.getStructure (p);
+		JsonArray array = (JsonArray) new CookJsonTapeBuilder ().build (new TextJsonParser ("[" + json + "," + json + "]")).getRoot ();
+		Assert.assertEquals (2, array.size ());
+		obj = array.getJsonObject (1);
+		Assert.assertEquals (71, obj.size ());
+		Assert.assertEquals (expected.keySet (), obj.keySet ());
+		for (int i = 0; i < 70; ++i)
+			Assert.assertEquals (i < 30 ? i + 70 : i, obj.getJsonObject ("k" + i).getJsonArray ("v").getInt (0));
+		Assert.assertEquals ("\u00e9", obj.getString ("z"));
+		Assert.assertFalse (obj.containsKey ("k70"));
+	}
+
+	@Test
+	public void testBson () throws IOException
+	{
+		File file = new File ("../tests/data/binary.bson".replace ('/', File.separatorChar));
+		BsonParser p = new BsonParser (new FileInputStream (file));
+		p.setRootAsArray (true);
+		JsonArray array = (JsonArray) new CookJsonTapeBuilder ().build (p).getRoot ();
+		p.close ();
+
+		p = new BsonParser (new FileInputStream (file));
+		p.setRootAsArray (true);
+		p.next ();
+		JsonArray expected = (JsonArray) Utils.getStructure (p);
+		p.close ();
+
+		Assert.assertEquals (expected.size (), array.size ());
+		for (int i = 0; i < array.size (); ++i)
+		{
+			JsonValue v = array.get (i);
+			Assert.assertEquals (expected.get (i).toString (), v.toString ());
+			if (expected.get (i) instanceof CookJsonBinary)
+				Assert.assertArrayEquals (((CookJsonBinary) expected.get (i)).getBytes (), ((CookJsonBinary) v).getBytes ());
+		}
+	}
+
+	@Test
+	public void testReuse ()
+	{
+		CookJsonTapeBuilder builder = new CookJsonTapeBuilder ();
+		TextJsonParser p = new TextJsonParser ("[1,2,3] {\"a\":[\"b\"]}");
+		p.setMultipleRoots (true);
+		JsonArray array = (JsonArray) builder.build (p).getRoot ();
+		p.next ();
+		JsonObject obj = (JsonObject) builder.build (p).getRoot ();
+		Assert.assertEquals ("[1,2,3]", TestUtils.toJson (array));
+		Assert.assertEquals ("{\"a\":[\"b\"]}", TestUtils.toJson (obj));
+	}
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javax.json.stream.JsonParser.Event;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks getDouble () and getFloat () against Double.parseDouble () and
+ * Float.parseFloat ().
+ *
+ * @author	Heng Yuan
+ */
+public class DoubleParserTest
+{
+	private final static String[] s_numbers =
+	{
+		"0", "-0", "0.0", "-0.0", "1", "-1", "0.1", "0.3", "1.5", "3.14159",
+		"1e22", "1e23", "9007199254740992", "9007199254740993", "9007199254740995",
+		"123456789012345678901234567890", "0.1000000000000000055511151231257827",
+		"2.2250738585072011e-308", "2.2250738585072014e-308", "4.9e-324", "1e-400",
+		"1.7976931348623157e308", "1.7976931348623159e308", "1e400", "-1e400",
+		"3.4028235e38", "3.4028236e38", "1.4e-45", "1.17549435e-38",
+		"7.0064923216240854e-46", "9007199254740993.0000000000000000001",
+		"2.0000000000000000000000000000000000000001",
+		"0.000000000000000000000000000000000000000000000000000000001",
+		"1e0000000000000000001", "1E+2", "1e-2", "123.456e-7"
+	};
+
+	private static String[] getNumbers ()
+	{
+		ArrayList<String> list = new ArrayList<String> ();
+		for (String s : s_numbers)
+			list.add (s);
+
+		Random r = new Random (1234);
+		for (int i = 0; i < 5000; ++i)
+		{
+			double d = Double.longBitsToDouble (r.nextLong ());
+			if (Double.isNaN (d) || Double.isInfinite (d))
+				continue;
+			list.add (Double.toString (d));
+			if (!Float.isInfinite ((float) d))
+				list.add (Float.toString ((float) d));
+			// exact decimal expansions, which are often long and halfway-ish.
+			list.add (new BigDecimal (d).round (new MathContext (17 + r.nextInt (20))).toString ());
+		}
+		for (int i = 0; i < 5000; ++i)
+		{
+			// random digit strings with random exponents.
+			StringBuilder builder = new StringBuilder ();
+			if (r.nextBoolean ())
+				builder.append ('-');
+			int digits = 1 + r.nextInt (25);
+			builder.append ((char) ('1' + r.nextInt (9)));
+			for (int j = 1; j < digits; ++j)
+			{
+				if (j == 1 && r.nextBoolean ())
+					builder.append ('.');
+				builder.append ((char) ('0' + r.nextInt (10)));
+			}
+			builder.append ('e').append (r.nextInt (700) - 350);
+			list.add (builder.toString ());
+		}
+		return list.toArray (new String[list.size ()]);
+	}
+
+	private void check (String number, CookJsonParser p, boolean isFloat)
+	{
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		if (isFloat)
+			Assert.assertEquals (number, Float.floatToIntBits (Float.parseFloat (number)), Float.floatToIntBits (p.getFloat ()));
+		else
+			Assert.assertEquals (number, Double.doubleToLongBits (Double.parseDouble (number)), Double.doubleToLongBits (p.getDouble ()));
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		p.close ();
+	}
+
+	@Test
+	public void testUTF8 ()
+	{
+		for (String number : getNumbers ())
+		{
+			byte[] bytes = ("[" + number + "]").getBytes (BOM.utf8);
+			check (number, new UTF8TextJsonParser (new ByteArrayInputStream (bytes)), false);
+			check (number, new UTF8TextJsonParser (new ByteArrayInputStream (bytes)), true);
+			check (number, new UTF8TextJsonParser (new ByteArrayInputStream (bytes), 5), false);
+		}
+	}
+
+	@Test
+	public void testText ()
+	{
+		for (String number : getNumbers ())
+		{
+			String json = "[" + number + "]";
+			check (number, new TextJsonParser (new StringReader (json)), false);
+			check (number, new TextJsonParser (new StringReader (json)), true);
+			check (number, new TextJsonParser (new StringReader (json), 5), false);
+		}
+	}
+
+	@Test
+	public void testBson ()
+	{
+		Random r = new Random (1234);
+		for (int i = 0; i < 100; ++i)
+		{
+			double d = Double.longBitsToDouble (r.nextLong ());
+			if (Double.isNaN (d))
+				continue;
+			ByteArrayOutputStream bos = new ByteArrayOutputStream ();
+			BsonGenerator g = new BsonGenerator (bos);
+			g.writeStartArray ().write (d).write (i).write (1L << 40).writeEnd ().close ();
+
+			BsonParser p = new BsonParser (new ByteArrayInputStream (bos.toByteArray ()));
+			p.setRootAsArray (true);
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+			Assert.assertEquals (Double.doubleToLongBits (d), Double.doubleToLongBits (p.getDouble ()));
+			Assert.assertEquals (Float.floatToIntBits ((float) d), Float.floatToIntBits (p.getFloat ()));
+			Assert.assertFalse (p.isIntegralNumber ());
+			Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+			Assert.assertEquals (i, p.getInt ());
+			Assert.assertEquals (i, p.getDouble (), 0);
+			Assert.assertTrue (p.isIntegralNumber ());
+			Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+			Assert.assertEquals (1L << 40, p.getLong ());
+			Assert.assertEquals ("1099511627776", p.getString ());
+			Assert.assertEquals (Event.END_ARRAY, p.next ());
+			p.close ();
+		}
+	}
+}
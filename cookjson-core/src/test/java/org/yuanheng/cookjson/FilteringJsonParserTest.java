@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser.Event;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class FilteringJsonParserTest
+{
+	private final static String JSON =
+		"{\"user\":{\"name\":\"abc\",\"password\":\"xyz\",\"tags\":[1,2,3]}," +
+		"\"payload\":{\"blob\":\"AAAA\",\"size\":4,\"items\":[{\"a\":1,\"b\":2},{\"a\":3,\"b\":4}]}," +
+		"\"count\":5}";
+
+	private static String filter (CookJsonParser p, String... patterns)
+	{
+		StringWriter out = new StringWriter ();
+		TextJsonGenerator g = new TextJsonGenerator (out);
+		Utils.convert (new FilteringJsonParser (p, patterns), g);
+		g.close ();
+		return out.toString ();
+	}
+
+	private void testParser (CookJsonParser p, String[] patterns, String expected)
+	{
+		Assert.assertEquals (expected, filter (p, patterns));
+	}
+
+	private static byte[] toBson (String json)
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream ();
+		BsonGenerator g = new BsonGenerator (bos);
+		Utils.convert (new TextJsonParser (json), g);
+		g.close ();
+		return bos.toByteArray ();
+	}
+
+	private void testAll (String[] patterns, String expected)
+	{
+		testParser (new TextJsonParser (JSON), patterns, expected);
+		testParser (new UTF8TextJsonParser (JSON.getBytes (BOM.utf8)), patterns, expected);
+		testParser (new UTF8TextJsonParser (new ByteArrayInputStream (JSON.getBytes (BOM.utf8))), patterns, expected);
+		testParser (new BsonParser (new ByteArrayInputStream (toBson (JSON))), patterns, expected);
+	}
+
+	@Test
+	public void testExclude ()
+	{
+		testAll (new String[] { "!$.payload.blob", "!$.user.password" },
+			"{\"user\":{\"name\":\"abc\",\"tags\":[1,2,3]}," +
+			"\"payload\":{\"size\":4,\"items\":[{\"a\":1,\"b\":2},{\"a\":3,\"b\":4}]}," +
+			"\"count\":5}");
+		testAll (new String[] { "!$.payload", "!$.user.tags[1]" },
+			"{\"user\":{\"name\":\"abc\",\"password\":\"xyz\",\"tags\":[1,3]},\"count\":5}");
+		testAll (new String[] { "!$.payload.items[*].a", "!$.*.tags" },
+			"{\"user\":{\"name\":\"abc\",\"password\":\"xyz\"}," +
+			"\"payload\":{\"blob\":\"AAAA\",\"size\":4,\"items\":[{\"b\":2},{\"b\":4}]}," +
+			"\"count\":5}");
+	}
+
+	@Test
+	public void testInclude ()
+	{
+		testAll (new String[] { "$.user.*", "!$.user.password" },
+			"{\"user\":{\"name\":\"abc\",\"tags\":[1,2,3]}}");
+		testAll (new String[] { "$.payload.items[*].b", "$.count" },
+			"{\"payload\":{\"items\":[{\"b\":2},{\"b\":4}]},\"count\":5}");
+		// containers on the way to a path are kept.
+		testAll (new String[] { "$.user.missing", "$.payload.items[1]" },
+			"{\"user\":{},\"payload\":{\"items\":[{\"a\":3,\"b\":4}]}}");
+		testAll (new String[] { "$" }, JSON);
+		testAll (new String[] {}, JSON);
+	}
+
+	@Test
+	public void testRootArray ()
+	{
+		String json = "[1,{\"a\":[2,3],\"b\":true},[4,5],null]";
+		Assert.assertEquals ("[{\"b\":true},[4,5],null]", filter (new TextJsonParser (json), "!$[0]", "!$[*].a"));
+		Assert.assertEquals ("[{\"a\":[3]},[5]]", filter (new UTF8TextJsonParser (json.getBytes (BOM.utf8)), "$[*][1]", "$[1].a[1]", "!$[1].b"));
+	}
+
+	@Test
+	public void testReader ()
+	{
+		CookJsonParser p = new FilteringJsonParser (new UTF8TextJsonParser (JSON.getBytes (BOM.utf8)), "$.user", "!$.user.tags");
+		JsonObject obj = new JsonReaderImpl (p).readObject ();
+		Assert.assertEquals (1, obj.size ());
+		JsonObject user = obj.getJsonObject ("user");
+		Assert.assertEquals (2, user.size ());
+		Assert.assertEquals ("abc", user.getString ("name"));
+		Assert.assertFalse (user.containsKey ("tags"));
+	}
+
+	@Test
+	public void testEvents ()
+	{
+		CookJsonParser p = new FilteringJsonParser (new TextJsonParser (JSON), "!$.user", "!$.payload.blob");
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		Assert.assertEquals (Event.KEY_NAME, p.next ());
+		Assert.assertEquals ("payload", p.getString ());
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		p.skipChildren ();
+		Assert.assertEquals (Event.END_OBJECT, p.getEvent ());
+		Assert.assertEquals (Event.KEY_NAME, p.next ());
+		Assert.assertEquals ("count", p.getString ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals (5, p.getInt ());
+		Assert.assertEquals (Event.END_OBJECT, p.next ());
+		Assert.assertFalse (p.hasNext ());
+
+		p = new FilteringJsonParser (new TextJsonParser (JSON), "$.payload.items", "!$.payload.items[0]");
+		p.next ();
+		p.next ();
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		JsonValue v = p.getValue ();
+		Assert.assertEquals ("{\"items\":[{\"a\":3,\"b\":4}]}", TestUtils.toJson (v));
+	}
+
+	@Test (expected = IllegalArgumentException.class)
+	public void testExcludeRoot ()
+	{
+		new FilteringJsonParser (new TextJsonParser (JSON), "!$");
+	}
+}
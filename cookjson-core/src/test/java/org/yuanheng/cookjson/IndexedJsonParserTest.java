@@ -0,0 +1,259 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Random;
+
+import javax.json.JsonString;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class IndexedJsonParserTest
+{
+	private String toJson (JsonParser p)
+	{
+		StringWriter out = new StringWriter ();
+		TextJsonGenerator g = new TextJsonGenerator (out);
+		Utils.convert (p, g);
+		p.close ();
+		g.close ();
+		return out.toString ();
+	}
+
+	private void testJson (String json)
+	{
+		byte[] bytes = json.getBytes (BOM.utf8);
+		Assert.assertEquals (toJson (new TextJsonParser (json)), toJson (new IndexedJsonParser (bytes)));
+	}
+
+	private void testFile (String f) throws IOException
+	{
+		testJson (new String (TestUtils.readFile (f), BOM.utf8));
+	}
+
+	@Test
+	public void testFiles () throws IOException
+	{
+		testFile ("../tests/data/complex1.json");
+		testFile ("../tests/data/complex1_pretty.json");
+		testFile ("../tests/data/data3.json");
+		testFile ("../tests/data/double.json");
+		testFile ("../tests/data/long.json");
+		testFile ("../tests/data/nested1.json");
+		testFile ("../tests/data/nested2.json");
+		testFile ("../tests/data/number.json");
+		testFile ("../tests/data/number2.json");
+		testFile ("../tests/data/number3.json");
+		testFile ("../tests/data/number4.json");
+		testFile ("../tests/data/string.json");
+		testFile ("../tests/data/string2.json");
+		testFile ("../tests/data/string3.json");
+		testFile ("../tests/data/string4.json");
+		testFile ("../tests/data/types.json");
+		testFile ("../tests/data/large.json");
+	}
+
+	@Test
+	public void testEscapes ()
+	{
+		// backslash series of different lengths across the 64 byte blocks.
+		Random r = new Random (1234);
+		String[] pieces = { "a", "\\\\", "\\\"", "\\n", "\\u0041", "é", "\"", ",", "]", "[", "{", "}", ":", " " };
+		for (int n = 0; n < 200; ++n)
+		{
+			StringBuilder builder = new StringBuilder ();
+			builder.append ("[");
+			for (int i = 0; i < r.nextInt (100); ++i)
+				builder.append (' ');
+			builder.append ("\"");
+			for (int i = 0; i < 150; ++i)
+			{
+				String piece = pieces[r.nextInt (6)];
+				builder.append (piece);
+			}
+			builder.append ("\",\"");
+			for (int i = 0; i < 150; ++i)
+			{
+				// quoted so that the string stays valid
+				String piece = pieces[r.nextInt (pieces.length)];
+				if (piece.length () == 1 && piece.charAt (0) == '"')
+					piece = "\\\"";
+				builder.append (piece);
+			}
+			builder.append ("\",1]");
+			testJson (builder.toString ());
+		}
+	}
+
+	@Test
+	public void testUnicodeEscape ()
+	{
+		IndexedJsonParser p = new IndexedJsonParser ("[\"\\u00e9\\u4e2d\\ud83d\\ude00\"]".getBytes (BOM.utf8));
+		p.next ();
+		p.next ();
+		Assert.assertEquals ("é中😀", p.getString ());
+		p.close ();
+
+		// lone surrogates are kept as they are, as TextJsonParser does.
+		String json = "[\"a\\ud83dé\", \"\\ude00\\ud83d\", {\"\\udfff\": \"x\\ud800\\ud800\\ude00\"}]";
+		Assert.assertEquals (toJson (new TextJsonParser (json)), toJson (new IndexedJsonParser (json.getBytes (BOM.utf8))));
+		p = new IndexedJsonParser (json.getBytes (BOM.utf8));
+		p.setSymbolTable (new SymbolTable ());
+		p.setStringValueTable (new StringValueTable (16));
+		p.next ();
+		p.next ();
+		Assert.assertEquals ("a\ud83dé", p.getString ());
+		Assert.assertEquals ("a\ud83dé", ((JsonString) p.getValue ()).getString ());
+		p.next ();
+		Assert.assertEquals ("\ude00\ud83d", p.getString ());
+		p.next ();
+		p.next ();
+		Assert.assertEquals ("\udfff", p.getString ());
+		p.next ();
+		Assert.assertEquals ("x\ud800\ud800\ude00", p.getString ());
+		p.close ();
+	}
+
+	@Test
+	public void testValues ()
+	{
+		byte[] bytes = "xx{\"a\": [ -12, 1.5e3, 12345678901234567890, true, false, null ], \"b\" : { } }yy".getBytes (BOM.utf8);
+		IndexedJsonParser p = new IndexedJsonParser (bytes, 2, bytes.length - 4);
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		Assert.assertEquals (Event.KEY_NAME, p.next ());
+		Assert.assertEquals ("a", p.getString ());
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals (-12, p.getInt ());
+		Assert.assertTrue (p.isIntegralNumber ());
+		Assert.assertEquals (8, p.getLocation ().getStreamOffset ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals (1500.0, p.getDouble (), 0);
+		Assert.assertFalse (p.isIntegralNumber ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals ("12345678901234567890", p.getBigDecimal ().toString ());
+		Assert.assertEquals (Event.VALUE_TRUE, p.next ());
+		Assert.assertEquals (Event.VALUE_FALSE, p.next ());
+		Assert.assertEquals (Event.VALUE_NULL, p.next ());
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		Assert.assertEquals (Event.KEY_NAME, p.next ());
+		Assert.assertEquals ("b", p.getString ());
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		Assert.assertEquals (Event.END_OBJECT, p.next ());
+		Assert.assertEquals (Event.END_OBJECT, p.next ());
+		Assert.assertFalse (p.hasNext ());
+		p.close ();
+	}
+
+	@Test
+	public void testSkipChildren () throws IOException
+	{
+		byte[] bytes = "[{\"a\":[1,{\"b\":\"]}\"}]},2]".getBytes (BOM.utf8);
+		IndexedJsonParser p = new IndexedJsonParser (bytes);
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		p.skipChildren ();
+		Assert.assertEquals (Event.END_OBJECT, p.getEvent ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals (2, p.getInt ());
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		p.close ();
+	}
+
+	private void testError (String json, long offset)
+	{
+		IndexedJsonParser p = new IndexedJsonParser (json.getBytes (BOM.utf8));
+		try
+		{
+			while (p.hasNext ())
+				p.next ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+			Assert.assertEquals (offset, ex.getLocation ().getStreamOffset ());
+		}
+	}
+
+	@Test
+	public void testErrors ()
+	{
+		testError ("[\"abc", 5);
+		testError ("[1", 2);
+		testError ("[1 2]", 3);
+		testError ("[1x]", 2);
+		testError ("[tru]", 4);
+		testError ("[truex]", 5);
+		testError ("[01]", 2);
+		testError ("[1.]", 3);
+		testError ("[\"a\u0001\"]", 3);
+		testError ("[1,\u0001 2]", 3);
+		testError ("[\"a\\x\"]", 4);
+		testError ("{\"a\" 1}", 5);
+		testError ("[1}", 2);
+		testError ("\n  1", 3);
+
+		IndexedJsonParser p = new IndexedJsonParser ("[\n  \"a\",\n  x]".getBytes (BOM.utf8));
+		p.next ();
+		p.next ();
+		try
+		{
+			p.next ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+			Assert.assertEquals (3, ex.getLocation ().getLineNumber ());
+			Assert.assertEquals (3, ex.getLocation ().getColumnNumber ());
+		}
+	}
+
+	@Test
+	public void testFactory () throws IOException
+	{
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		config.put (CookJsonProvider.STRUCTURAL_INDEX, "true");
+		CookJsonParserFactory factory = (CookJsonParserFactory) new CookJsonProvider ().createParserFactory (config);
+		byte[] bytes = TestUtils.readFile ("../tests/data/complex1.json");
+		String expected = toJson (new UTF8TextJsonParser (bytes));
+
+		JsonParser p = factory.createParser (bytes, 0, bytes.length);
+		Assert.assertTrue (p instanceof IndexedJsonParser);
+		Assert.assertEquals (expected, toJson (p));
+
+		ByteBuffer direct = ByteBuffer.allocateDirect (bytes.length);
+		direct.put (bytes).flip ();
+		p = factory.createParser (direct);
+		Assert.assertTrue (p instanceof IndexedJsonParser);
+		Assert.assertEquals (expected, toJson (p));
+		Assert.assertEquals (0, direct.position ());
+
+		// comments require the regular parser.
+		config.put (CookJsonProvider.COMMENT, "true");
+		factory = (CookJsonParserFactory) new CookJsonProvider ().createParserFactory (config);
+		Assert.assertTrue (factory.createParser (bytes, 0, bytes.length) instanceof UTF8TextJsonParser);
+	}
+}
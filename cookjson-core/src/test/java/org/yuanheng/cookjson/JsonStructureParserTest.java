@@ -18,7 +18,9 @@ package org.yuanheng.cookjson;
 import java.io.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 import javax.json.*;
 import javax.json.spi.JsonProvider;
@@ -273,4 +275,127 @@ public class JsonStructureParserTest
 		Assert.assertEquals (sum (new BigDecimal[]{ new BigDecimal (1234), new BigDecimal (12345678901234L), new BigDecimal ("1234567890123412345678901234"), new BigDecimal (12345.5), new BigDecimal (1234), new BigDecimal (12345678901234L), new BigDecimal ("1234567890123412345678901234"), new BigDecimal (12345.5), new BigDecimal (1) }), sum (decimals));
 	}
 
+	/**
+	 * Lists the events of a value by walking the tree directly.
+	 */
+	private static void walk (JsonValue value, ArrayList<String> tokens)
+	{
+		switch (value.getValueType ())
+		{
+			case ARRAY:
+				tokens.add ("START_ARRAY");
+				for (JsonValue v : (JsonArray) value)
+					walk (v, tokens);
+				tokens.add ("END_ARRAY");
+				break;
+			case OBJECT:
+				tokens.add ("START_OBJECT");
+				for (Map.Entry<String, JsonValue> entry : ((JsonObject) value).entrySet ())
+				{
+					tokens.add ("KEY_NAME:" + entry.getKey ());
+					walk (entry.getValue (), tokens);
+				}
+				tokens.add ("END_OBJECT");
+				break;
+			default:
+				tokens.add (value.getValueType () + ":" + value.toString ());
+				break;
+		}
+	}
+
+	private static ArrayList<String> parse (JsonStructure value)
+	{
+		ArrayList<String> tokens = new ArrayList<String> ();
+		CookJsonParser p = new JsonStructureParser (value);
+		while (p.hasNext ())
+		{
+			Event e = p.next ();
+			switch (e)
+			{
+				case START_ARRAY:
+				case START_OBJECT:
+				case END_ARRAY:
+				case END_OBJECT:
+					tokens.add (e.toString ());
+					break;
+				case KEY_NAME:
+					tokens.add ("KEY_NAME:" + p.getString ());
+					break;
+				default:
+					tokens.add (p.getValue ().getValueType () + ":" + p.getValue ().toString ());
+					break;
+			}
+		}
+		p.close ();
+		Assert.assertFalse (p.hasNext ());
+		return tokens;
+	}
+
+	@Test
+	public void testTreeTypes () throws IOException
+	{
+		String[] files = { "../tests/data/complex1.json", "../tests/data/double.json", "../tests/data/empty.json", "../tests/data/long.json" };
+		for (String f : files)
+		{
+			File file = new File (f.replace ('/', File.separatorChar));
+			byte[] bytes = Utils.getString (file).getBytes (BOM.utf8);
+			ArrayList<JsonStructure> trees = new ArrayList<JsonStructure> ();
+
+			CookJsonParser p = new UTF8TextJsonParser (bytes, 0, bytes.length);
+			p.next ();
+			trees.add (Utils.getStructure (p));
+
+			p = new UTF8TextJsonParser (bytes, 0, bytes.length);
+			p.next ();
+			trees.add (Utils.getMutableStructure (p));
+
+			IndexedJsonParser ip = new IndexedJsonParser (bytes);
+			ip.setLazyValues (true);
+			ip.next ();
+			trees.add ((JsonStructure) ip.getValue ());
+
+			p = new UTF8TextJsonParser (bytes, 0, bytes.length);
+			trees.add (new CookJsonTapeBuilder ().build (p).getRoot ());
+
+			trees.add (new org.glassfish.json.JsonProviderImpl ().createReader (new ByteArrayInputStream (bytes)).read ());
+
+			for (JsonStructure tree : trees)
+			{
+				ArrayList<String> expected = new ArrayList<String> ();
+				walk (tree, expected);
+				Assert.assertEquals (f + " " + tree.getClass (), expected, parse (tree));
+			}
+		}
+	}
+
+	@Test
+	public void testSkipChildren ()
+	{
+		CookJsonParser p = new TextJsonParser ("{\"a\":[1,[2]],\"b\":{\"c\":3},\"d\":[4,5]}");
+		p.next ();
+		JsonStructure tree = Utils.getStructure (p);
+		p = new JsonStructureParser (tree);
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		Assert.assertEquals (Event.KEY_NAME, p.next ());
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		p.skipChildren ();
+		Assert.assertEquals (Event.END_ARRAY, p.getEvent ());
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		Assert.assertEquals (Event.KEY_NAME, p.next ());
+		Assert.assertEquals ("b", p.getString ());
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		p.skipChildren ();
+		Assert.assertEquals (Event.END_OBJECT, p.getEvent ());
+		Assert.assertEquals (Event.KEY_NAME, p.next ());
+		Assert.assertEquals ("d", p.getString ());
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		long[] values = new long[2];
+		Assert.assertEquals (2, p.readLongArray (values, 0, 2));
+		Assert.assertEquals (5, values[1]);
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		Assert.assertEquals (Event.END_OBJECT, p.next ());
+		Assert.assertFalse (p.hasNext ());
+	}
 }
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import javax.json.*;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class LazyJsonValueTest
+{
+	private static JsonValue readLazy (String json)
+	{
+		IndexedJsonParser p = new IndexedJsonParser (json.getBytes (BOM.utf8));
+		p.setLazyValues (true);
+		p.next ();
+		return p.getValue ();
+	}
+
+	/**
+	 * Parses the JSON text into the HashMap based tree and prints it, so
+	 * that the key orders of the two are the same.
+	 */
+	private static String canonical (String json)
+	{
+		CookJsonParser p = new TextJsonParser (json);
+		p.next ();
+		return TestUtils.toJson (Utils.getStructure (p));
+	}
+
+	private void testFile (String f) throws IOException
+	{
+		File file = new File (f.replace ('/', File.separatorChar));
+		String json = Utils.getString (file);
+		Assert.assertEquals (canonical (json), canonical (TestUtils.toJson (readLazy (json))));
+	}
+
+	@Test
+	public void testFiles () throws IOException
+	{
+		testFile ("../tests/data/complex1.json");
+		testFile ("../tests/data/types.json");
+		testFile ("../tests/data/number.json");
+		testFile ("../tests/data/string.json");
+		testFile ("../tests/data/string4.json");
+		testFile ("../tests/data/large.json");
+	}
+
+	@Test
+	public void testValues ()
+	{
+		String json = "{\"a\":1,\"b\":\"x\\ny\",\"\\u00e9\":[true,false,null,{},[]],\"c\":{\"d\":[1,[2,3],{\"e\":4}]},\"a\":2}";
+		JsonObject obj = (JsonObject) readLazy (json);
+		Assert.assertEquals (4, obj.size ());
+		// the last duplicate key wins.
+		Assert.assertEquals (2, obj.getInt ("a"));
+		Assert.assertEquals ("x\ny", obj.getString ("b"));
+		Assert.assertSame (obj.get ("b"), obj.get ("b"));
+		Assert.assertTrue (obj.containsKey ("\u00e9"));
+		Assert.assertNull (obj.get ("x"));
+		Assert.assertEquals ("x", obj.getString ("x", "x"));
+
+		JsonArray array = obj.getJsonArray ("\u00e9");
+		Assert.assertEquals (5, array.size ());
+		Assert.assertTrue (array.getBoolean (0));
+		Assert.assertFalse (array.getBoolean (1));
+		Assert.assertTrue (array.isNull (2));
+		Assert.assertTrue (array.getJsonObject (3).isEmpty ());
+		Assert.assertTrue (array.getJsonArray (4).isEmpty ());
+		Assert.assertEquals ("x", array.getString (0, "x"));
+		Assert.assertEquals (7, array.getInt (2, 7));
+		Assert.assertTrue (array.getBoolean (5, true));
+		Assert.assertFalse (array.getBoolean (1, true));
+		Assert.assertEquals (2, obj.getInt ("a", 7));
+		Assert.assertEquals (7, obj.getInt ("b", 7));
+		Assert.assertEquals ("x", obj.getString ("a", "x"));
+		Assert.assertTrue (obj.getBoolean ("a", true));
+
+		JsonArray d = obj.getJsonObject ("c").getJsonArray ("d");
+		Assert.assertEquals (4, d.getJsonObject (2).getInt ("e"));
+		Assert.assertEquals (3, d.getJsonArray (1).getInt (1));
+		Assert.assertEquals ("[1,[2,3],{\"e\":4}]", TestUtils.toJson (d));
+
+		Iterator<Map.Entry<String, JsonValue>> iter = obj.entrySet ().iterator ();
+		Assert.assertEquals ("b", iter.next ().getKey ());
+		Assert.assertEquals ("\u00e9", iter.next ().getKey ());
+		Assert.assertEquals ("c", iter.next ().getKey ());
+		Assert.assertEquals (2, ((JsonNumber) iter.next ().getValue ()).intValue ());
+		Assert.assertFalse (iter.hasNext ());
+
+		// a large object is searched with a HashMap.
+		StringBuilder builder = new StringBuilder ("{");
+		for (int i = 0; i < 100; ++i)
+			builder.append (i == 0 ? "" : ",").append ("\"k").append (i).append ("\":").append (i);
+		builder.append (",\"k5\":-5}");
+		obj = (JsonObject) readLazy (builder.toString ());
+		Assert.assertEquals (100, obj.size ());
+		Assert.assertEquals (99, obj.getInt ("k99"));
+		Assert.assertEquals (-5, obj.getInt ("k5"));
+		int count = 0;
+		for (Map.Entry<String, JsonValue> entry : obj.entrySet ())
+			Assert.assertEquals (obj.get (entry.getKey ()), entry.getValue ());
+		for (String key : obj.keySet ())
+			++count;
+		Assert.assertEquals (100, count);
+	}
+
+	@Test
+	public void testEvents ()
+	{
+		// the parser continues after the lazy value.
+		IndexedJsonParser p = new IndexedJsonParser ("[{\"a\":[1,2]},[3],4]".getBytes (BOM.utf8));
+		p.setLazyValues (true);
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		JsonObject obj = (JsonObject) p.getValue ();
+		Assert.assertEquals (Event.END_OBJECT, p.getEvent ());
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		JsonArray array = (JsonArray) p.getValue ();
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals (4, p.getInt ());
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		Assert.assertFalse (p.hasNext ());
+		Assert.assertEquals (2, obj.getJsonArray ("a").getInt (1));
+		Assert.assertEquals (3, array.getInt (0));
+	}
+
+	private void testError (String json, boolean lazy)
+	{
+		try
+		{
+			JsonValue v = readLazy (json);
+			Assert.assertTrue (lazy);
+			// the error is reported when the member is accessed.
+			if (v instanceof JsonArray)
+				((JsonArray) v).get (0);
+			else
+				((JsonObject) v).get ("a");
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+		}
+	}
+
+	@Test
+	public void testError ()
+	{
+		testError ("[1,]", false);
+		testError ("[1 2]", false);
+		testError ("[,1]", false);
+		testError ("[1,2", false);
+		testError ("[1}", false);
+		testError ("{\"a\":1,}", false);
+		testError ("{\"a\" 1}", false);
+		testError ("{\"a\":}", false);
+		testError ("[01]", true);
+		testError ("[[1}]", true);
+		testError ("{\"a\":tru}", true);
+		testError ("{\"a\":\"\\x\"}", true);
+	}
+
+	@Test
+	public void testReader () throws IOException
+	{
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		config.put (CookJsonProvider.LAZY_VALUES, "true");
+		JsonReaderFactory factory = new CookJsonProvider ().createReaderFactory (config);
+		File file = new File ("../tests/data/complex1.json".replace ('/', File.separatorChar));
+		String json = Utils.getString (file);
+
+		JsonReader reader = factory.createReader (new FileInputStream (file));
+		JsonStructure value = reader.read ();
+		reader.close ();
+		Assert.assertTrue (value instanceof LazyJsonObject || value instanceof LazyJsonArray);
+		Assert.assertEquals (canonical (json), canonical (TestUtils.toJson (value)));
+
+		// other character sets are read eagerly.
+		byte[] bytes = "[\"\u00e9\"]".getBytes (BOM.utf16le);
+		reader = factory.createReader (new ByteArrayInputStream (bytes));
+		Assert.assertEquals ("\u00e9", reader.readArray ().getString (0));
+
+		// a stream of unknown size is read into a growing array.
+		StringBuilder builder = new StringBuilder ("[");
+		for (int i = 0; i < 5000; ++i)
+			builder.append (i == 0 ? "" : ",").append (i);
+		builder.append ("]");
+		String large = builder.toString ();
+		InputStream is = new FilterInputStream (new ByteArrayInputStream (large.getBytes (BOM.utf8)))
+		{
+			@Override
+			public int available ()
+			{
+				return 0;
+			}
+		};
+		reader = factory.createReader (is);
+		value = reader.read ();
+		reader.close ();
+		Assert.assertTrue (value instanceof LazyJsonArray);
+		Assert.assertEquals (large, TestUtils.toJson (value));
+	}
+
+	@Test
+	public void testFileChannel () throws IOException
+	{
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		config.put (CookJsonProvider.LAZY_VALUES, "true");
+		CookJsonParserFactory factory = (CookJsonParserFactory) new CookJsonProvider ().createParserFactory (config);
+		File file = new File ("../tests/data/complex1.json".replace ('/', File.separatorChar));
+		String json = Utils.getString (file);
+
+		FileInputStream fis = new FileInputStream (file);
+		CookJsonParser p = factory.createParser (fis.getChannel ());
+		p.next ();
+		JsonValue value = p.getValue ();
+		p.close ();
+		Assert.assertTrue (value instanceof LazyJsonObject || value instanceof LazyJsonArray);
+		Assert.assertEquals (canonical (json), canonical (TestUtils.toJson (value)));
+		Assert.assertFalse (fis.getChannel ().isOpen ());
+	}
+}
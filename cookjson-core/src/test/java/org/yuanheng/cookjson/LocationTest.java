@@ -0,0 +1,244 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import javax.json.stream.JsonLocation;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks the lazily computed line and column numbers against a full
+ * scan of the text.
+ *
+ * @author	Heng Yuan
+ */
+public class LocationTest
+{
+	private static String createJson ()
+	{
+		StringBuilder builder = new StringBuilder ();
+		builder.append ("// header\n[\n");
+		for (int i = 0; i < 300; ++i)
+		{
+			if (i > 0)
+				builder.append (",\n");
+			if ((i % 7) == 0)
+				builder.append ("  /* block\n   comment */\n");
+			builder.append ("  {\"id\": ").append (i).append (",\r\n   \"name\":\"abcdefgh\\n").append (i).append ("\",");
+			builder.append ("\"flags\": [true, false,\n null, -1.5e3]}");
+		}
+		builder.append ("\n]\n");
+		return builder.toString ();
+	}
+
+	private static void checkLocation (String json, JsonLocation location)
+	{
+		int offset = (int) location.getStreamOffset ();
+		int line = 1;
+		int lineStart = 0;
+		for (int i = 0; i < offset; ++i)
+		{
+			if (json.charAt (i) == '\n')
+			{
+				++line;
+				lineStart = i + 1;
+			}
+		}
+		Assert.assertEquals (line, location.getLineNumber ());
+		Assert.assertEquals (offset - lineStart + 1, location.getColumnNumber ());
+	}
+
+	private static void testParser (String json, CookJsonParser p)
+	{
+		((CommentJsonParser) p).setAllowComments (true);
+		int count = 0;
+		while (p.hasNext ())
+		{
+			Event e = p.next ();
+			JsonLocation location = p.getLocation ();
+			char ch = json.charAt ((int) location.getStreamOffset ());
+			switch (e)
+			{
+				case START_ARRAY:
+					Assert.assertEquals ('[', ch);
+					break;
+				case END_ARRAY:
+					Assert.assertEquals (']', ch);
+					break;
+				case START_OBJECT:
+					Assert.assertEquals ('{', ch);
+					break;
+				case END_OBJECT:
+					Assert.assertEquals ('}', ch);
+					break;
+				case KEY_NAME:
+				case VALUE_STRING:
+					Assert.assertEquals ('"', ch);
+					break;
+				case VALUE_NUMBER:
+					Assert.assertTrue (ch == '-' || (ch >= '0' && ch <= '9'));
+					break;
+				default:
+					Assert.assertTrue (ch == 't' || ch == 'f' || ch == 'n');
+					break;
+			}
+			// skip some of the checks so that the lines are also counted
+			// when the buffer is refilled.
+			if ((++count % 3) == 0)
+				checkLocation (json, location);
+		}
+		p.close ();
+	}
+
+	@Test
+	public void testText ()
+	{
+		String json = createJson ();
+		byte[] bytes = json.getBytes (BOM.utf8);
+		testParser (json, new TextJsonParser (json));
+		testParser (json, new TextJsonParser (new StringReader (json), 17));
+		testParser (json, new UTF8TextJsonParser (bytes));
+		testParser (json, new UTF8TextJsonParser (new ByteArrayInputStream (bytes), 17));
+		testParser (json, new UTF8TextJsonParser (new ByteArrayInputStream (bytes), 1025));
+	}
+
+	@Test
+	public void testError ()
+	{
+		String json = createJson ();
+		int pos = json.lastIndexOf (",\n");
+		json = json.substring (0, pos) + ",\n\n  x" + json.substring (pos + 1);
+		byte[] bytes = json.getBytes (BOM.utf8);
+		CookJsonParser[] parsers = new CookJsonParser[]
+		{
+			new TextJsonParser (json),
+			new TextJsonParser (new StringReader (json), 17),
+			new UTF8TextJsonParser (new ByteArrayInputStream (bytes), 17)
+		};
+		for (CookJsonParser p : parsers)
+		{
+			((CommentJsonParser) p).setAllowComments (true);
+			try
+			{
+				while (p.hasNext ())
+					p.next ();
+				Assert.fail ();
+			}
+			catch (JsonParsingException ex)
+			{
+				JsonLocation location = ex.getLocation ();
+				Assert.assertEquals (json.indexOf ("  x") + 2, location.getStreamOffset ());
+				checkLocation (json, location);
+			}
+		}
+	}
+
+	private static String getError (CookJsonParser p)
+	{
+		try
+		{
+			while (p.hasNext ())
+				p.next ();
+			Assert.fail ();
+			return null;
+		}
+		catch (JsonParsingException ex)
+		{
+			JsonLocation location = ex.getLocation ();
+			Assert.assertTrue (ex.getMessage ().startsWith ("Parsing error at " + location + ": "));
+			return ex.getMessage ();
+		}
+		finally
+		{
+			p.close ();
+		}
+	}
+
+	@Test
+	public void testLiteralError ()
+	{
+		// the in-memory inputs match the literals in place, while the
+		// streams with a small buffer match them one character at a time.
+		String[] jsons = new String[]
+		{
+			"[nrue]",
+			"[tx]",
+			"[true, fals]",
+			createJson ().replace ("[true, false,\n null, -1.5e3]}\n]", "[true, false,\n nulx, -1.5e3]}\n]"),
+			createJson ().replace ("\"flags\": [true", "\"flags\": [trux")
+		};
+		for (String json : jsons)
+		{
+			byte[] bytes = json.getBytes (BOM.utf8);
+			byte[] padded = new byte[bytes.length + 1];
+			System.arraycopy (bytes, 0, padded, 0, bytes.length);
+			ByteBuffer direct = ByteBuffer.allocateDirect (bytes.length);
+			direct.put (bytes);
+			direct.flip ();
+
+			String expected = getError (new TextJsonParser (new StringReader (json), 2));
+			Assert.assertEquals (expected, getError (new TextJsonParser (json)));
+			Assert.assertEquals (expected, getError (new UTF8TextJsonParser (new ByteArrayInputStream (bytes), 2)));
+			Assert.assertEquals (expected, getError (new UTF8TextJsonParser (bytes)));
+			Assert.assertEquals (expected, getError (new UTF8TextJsonParser (padded, 0, bytes.length)));
+			Assert.assertEquals (expected, getError (new UTF8TextJsonParser (ByteBuffer.wrap (bytes))));
+			Assert.assertEquals (expected, getError (new UTF8TextJsonParser (direct)));
+		}
+		Assert.assertEquals ("Parsing error at line 1, column 3, offset 2: expecting 'r'", getError (new UTF8TextJsonParser ("[nrue]".getBytes (BOM.utf8))));
+	}
+
+	@Test
+	public void testSkipChildren ()
+	{
+		String json = createJson () + "\n";
+		byte[] bytes = json.getBytes (BOM.utf8);
+		CookJsonParser p = new UTF8TextJsonParser (new ByteArrayInputStream (bytes), 17);
+		((CommentJsonParser) p).setAllowComments (true);
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		p.skipChildren ();
+		JsonLocation location = p.getLocation ();
+		Assert.assertEquals (json.lastIndexOf (']'), location.getStreamOffset ());
+		checkLocation (json, location);
+	}
+
+	@Test
+	public void testBson ()
+	{
+		ByteArrayOutputStream bos = new ByteArrayOutputStream ();
+		BsonGenerator g = new BsonGenerator (bos);
+		g.writeStartObject ().write ("a", 1).write ("b", "c").writeEnd ();
+		g.close ();
+		BsonParser p = new BsonParser (new ByteArrayInputStream (bos.toByteArray ()));
+		p.next ();
+		p.next ();
+		JsonLocation location = p.getLocation ();
+		Assert.assertEquals (-1, location.getLineNumber ());
+		Assert.assertEquals (p.getStreamOffset (), location.getStreamOffset ());
+		p.next ();
+		p.next ();
+		// a location is a snapshot.
+		Assert.assertTrue (p.getStreamOffset () > location.getStreamOffset ());
+		p.close ();
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.HashMap;
+
+import javax.json.stream.JsonParser;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class MappedFileTest
+{
+	private String toJson (JsonParser p)
+	{
+		StringWriter out = new StringWriter ();
+		TextJsonGenerator g = new TextJsonGenerator (out);
+		Utils.convert (p, g);
+		p.close ();
+		g.close ();
+		return out.toString ();
+	}
+
+	void testFile (String f) throws IOException
+	{
+		File file = new File (f.replace ('/', File.separatorChar));
+
+		String expected = toJson (new UTF8TextJsonParser (new FileInputStream (file)));
+
+		CookJsonParserFactory factory = (CookJsonParserFactory) new CookJsonProvider ().createParserFactory (new HashMap<String, Object> ());
+		Assert.assertEquals (expected, toJson (factory.createParser (new FileInputStream (file).getChannel ())));
+	}
+
+	@Test
+	public void testWindow () throws IOException
+	{
+		File file = new File ("../tests/data/complex1.json".replace ('/', File.separatorChar));
+
+		String expected = toJson (new UTF8TextJsonParser (new FileInputStream (file)));
+
+		// small windows and buffers to test the window boundaries.
+		for (int windowSize = 1; windowSize < 20; windowSize += 3)
+		{
+			MappedFileInputStream is = new MappedFileInputStream (new FileInputStream (file).getChannel (), windowSize);
+			Assert.assertEquals (expected, toJson (new UTF8TextJsonParser (is, 8)));
+		}
+		// the windows were unmapped without disabling the cleaner.
+		Assert.assertTrue (MappedFileInputStream.canUnmap ());
+	}
+
+	@Test
+	public void test () throws IOException
+	{
+		testFile ("../tests/data/complex1.json");
+		testFile ("../tests/data/large.json");
+		testFile ("../tests/data/string3.json");
+		testFile ("../tests/data/number.json");
+	}
+
+	@Test
+	public void testBson () throws IOException
+	{
+		File file = new File ("../tests/data/complex1.bson".replace ('/', File.separatorChar));
+
+		String expected = toJson (new BsonParser (new FileInputStream (file)));
+
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		config.put (CookJsonProvider.FORMAT, CookJsonProvider.FORMAT_BSON);
+		CookJsonParserFactory factory = (CookJsonParserFactory) new CookJsonProvider ().createParserFactory (config);
+		Assert.assertEquals (expected, toJson (factory.createParser (new FileInputStream (file).getChannel ())));
+	}
+
+	@Test
+	public void testSkip () throws IOException
+	{
+		File file = new File ("../tests/data/complex1.json".replace ('/', File.separatorChar));
+		byte[] bytes = new byte[(int) file.length ()];
+		DataInputStream dis = new DataInputStream (new FileInputStream (file));
+		dis.readFully (bytes);
+		dis.close ();
+
+		MappedFileInputStream is = new MappedFileInputStream (new FileInputStream (file).getChannel (), 16);
+		int pos = 0;
+		for (int n = 1; pos + n < bytes.length; n += 3)
+		{
+			long skipped = is.skip (n);
+			Assert.assertTrue (skipped > 0 && skipped <= n);
+			pos += skipped;
+			Assert.assertEquals (bytes[pos] & 0xff, is.read ());
+			++pos;
+		}
+		Assert.assertEquals (bytes.length - pos, is.skip (bytes.length));
+		Assert.assertEquals (-1, is.read ());
+		is.close ();
+	}
+
+	@Test
+	public void testPosition () throws IOException
+	{
+		File file = File.createTempFile ("cookjson", ".json");
+		file.deleteOnExit ();
+		FileOutputStream os = new FileOutputStream (file);
+		os.write ("garbage[1,2,3]".getBytes (BOM.utf8));
+		os.close ();
+
+		RandomAccessFile raf = new RandomAccessFile (file, "r");
+		raf.seek (7);
+		CookJsonParserFactory factory = (CookJsonParserFactory) new CookJsonProvider ().createParserFactory (new HashMap<String, Object> ());
+		Assert.assertEquals ("[1,2,3]", toJson (factory.createParser (raf.getChannel ())));
+		Assert.assertFalse (raf.getChannel ().isOpen ());
+	}
+}
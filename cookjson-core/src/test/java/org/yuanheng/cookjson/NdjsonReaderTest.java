@@ -0,0 +1,338 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.json.*;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParsingException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class NdjsonReaderTest
+{
+	private static String createLines (int count)
+	{
+		StringBuilder builder = new StringBuilder ();
+		for (int i = 0; i < count; ++i)
+		{
+			if ((i % 3) == 0)
+				builder.append ("{\"id\":").append (i).append (",\"name\":\"a\\nb\"}");
+			else
+				builder.append ("[").append (i).append (",true,null]");
+			builder.append ((i % 5) == 0 ? "\r\n" : "\n");
+			if ((i % 7) == 0)
+				builder.append (" \n");
+		}
+		return builder.toString ();
+	}
+
+	private static ArrayList<String> readAll (NdjsonReader reader)
+	{
+		ArrayList<String> records = new ArrayList<String> ();
+		JsonStructure record;
+		while ((record = reader.read ()) != null)
+			records.add (record.toString ());
+		reader.close ();
+		return records;
+	}
+
+	@Test
+	public void testRead () throws IOException
+	{
+		String str = createLines (1000);
+		byte[] bytes = str.getBytes (BOM.utf8);
+
+		NdjsonReader reader = new NdjsonReader (bytes, 0, bytes.length);
+		JsonObject obj = (JsonObject) reader.read ();
+		Assert.assertEquals (0, obj.getInt ("id"));
+		Assert.assertEquals ("a\nb", obj.getString ("name"));
+		JsonArray array = (JsonArray) reader.read ();
+		Assert.assertEquals (1, array.getInt (0));
+		Assert.assertEquals (JsonValue.NULL, array.get (2));
+		Assert.assertEquals (3, reader.getLineNumber ());
+
+		ArrayList<String> expected = readAll (new NdjsonReader (bytes, 0, bytes.length));
+		Assert.assertEquals (1000, expected.size ());
+
+		// a small buffer with the last line not terminated.
+		byte[] last = "[1000]".getBytes (BOM.utf8);
+		ByteArrayOutputStream bos = new ByteArrayOutputStream ();
+		bos.write (bytes);
+		bos.write (last);
+		reader = new NdjsonReader (new ByteArrayInputStream (bos.toByteArray ()));
+		ArrayList<String> records = readAll (reader);
+		Assert.assertEquals (1001, records.size ());
+		Assert.assertEquals (expected, records.subList (0, 1000));
+	}
+
+	@Test
+	public void testFile () throws IOException
+	{
+		String str = createLines (1000);
+		byte[] bytes = str.getBytes (BOM.utf8);
+		ArrayList<String> expected = readAll (new NdjsonReader (bytes, 0, bytes.length));
+
+		File file = File.createTempFile ("ndjson", ".json");
+		try
+		{
+			FileOutputStream fos = new FileOutputStream (file);
+			fos.write (bytes);
+			fos.close ();
+			Assert.assertEquals (expected, readAll (new NdjsonReader (new FileInputStream (file).getChannel ())));
+		}
+		finally
+		{
+			file.delete ();
+		}
+	}
+
+	@Test
+	public void testLongLine ()
+	{
+		StringBuilder builder = new StringBuilder ();
+		builder.append ("[1]\n[");
+		for (int i = 0; i < 50000; ++i)
+		{
+			if (i > 0)
+				builder.append (',');
+			builder.append ("\"abcdefgh\"");
+		}
+		builder.append ("]\n[2]\n");
+		byte[] bytes = builder.toString ().getBytes (BOM.utf8);
+		NdjsonReader reader = new NdjsonReader (new ByteArrayInputStream (bytes));
+		Assert.assertEquals (1, ((JsonArray) reader.read ()).getInt (0));
+		Assert.assertEquals (50000, ((JsonArray) reader.read ()).size ());
+		Assert.assertEquals (2, ((JsonArray) reader.read ()).getInt (0));
+		Assert.assertNull (reader.read ());
+		Assert.assertEquals (3, reader.getLineNumber ());
+	}
+
+	@Test
+	public void testMalformed ()
+	{
+		String str = "[1]\n[2,\n{\"a\":1} 3\n\"abc\"\n[5]\n";
+		byte[] bytes = str.getBytes (BOM.utf8);
+
+		NdjsonReader reader = new NdjsonReader (new ByteArrayInputStream (bytes));
+		Assert.assertEquals (1, ((JsonArray) reader.read ()).getInt (0));
+		try
+		{
+			reader.read ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+			Assert.assertEquals (2, ex.getLocation ().getLineNumber ());
+		}
+		try
+		{
+			reader.read ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+			Assert.assertEquals (3, ex.getLocation ().getLineNumber ());
+			// the error is reported at the end of the record.
+			Assert.assertEquals (14, ex.getLocation ().getStreamOffset ());
+		}
+
+		reader = new NdjsonReader (new ByteArrayInputStream (bytes));
+		reader.setSkipMalformed (true);
+		ArrayList<String> records = readAll (reader);
+		Assert.assertEquals (2, records.size ());
+		Assert.assertEquals (3, reader.getMalformedCount ());
+	}
+
+	private static void checkError (JsonParsingException ex, String msg)
+	{
+		String prefix = "Parsing error at " + ex.getLocation () + ": ";
+		Assert.assertEquals (prefix + msg, ex.getMessage ());
+	}
+
+	@Test
+	public void testErrorMessage ()
+	{
+		String str = "[1]\n  [2, x]\n 3\n{\"a\":1} 3\n{\"a\" 1}\n[3,\n";
+		NdjsonReader reader = new NdjsonReader (new ByteArrayInputStream (str.getBytes (BOM.utf8)));
+		Assert.assertEquals (1, ((JsonArray) reader.read ()).getInt (0));
+		try
+		{
+			reader.read ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+			// the location of the line parser is translated once.
+			Assert.assertEquals (2, ex.getLocation ().getLineNumber ());
+			Assert.assertEquals (7, ex.getLocation ().getColumnNumber ());
+			Assert.assertEquals (10, ex.getLocation ().getStreamOffset ());
+			checkError (ex, "unexpected character 'x'");
+		}
+		try
+		{
+			reader.read ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+			Assert.assertEquals (3, ex.getLocation ().getLineNumber ());
+			checkError (ex, "the record is not an object or an array.");
+		}
+		try
+		{
+			reader.read ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+			Assert.assertEquals (4, ex.getLocation ().getLineNumber ());
+			checkError (ex, "unexpected data after the record.");
+		}
+		try
+		{
+			reader.read ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+			// only a scalar record is reported as not an object or an array.
+			Assert.assertEquals (5, ex.getLocation ().getLineNumber ());
+			checkError (ex, "unexpected character '1'");
+		}
+		try
+		{
+			reader.read ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+			Assert.assertEquals (6, ex.getLocation ().getLineNumber ());
+			Assert.assertFalse (ex.getMessage ().contains ("not an object"));
+			Assert.assertEquals (ex.getMessage ().indexOf ("Parsing error at "), ex.getMessage ().lastIndexOf ("Parsing error at "));
+		}
+		Assert.assertNull (reader.read ());
+		reader.close ();
+	}
+
+	@Test
+	public void testParallel () throws IOException
+	{
+		String str = createLines (3000) + "[3000]";
+		byte[] bytes = str.getBytes (BOM.utf8);
+		ArrayList<String> expected = readAll (new NdjsonReader (bytes, 0, bytes.length));
+
+		ExecutorService executor = Executors.newFixedThreadPool (4);
+		try
+		{
+			ParallelArrayReader reader = new ParallelArrayReader (executor);
+			reader.setChunkSize (1000);
+			final ArrayList<String> records = new ArrayList<String> ();
+			reader.readLines (new ByteArrayInputStream (bytes), new ArrayChunkHandler ()
+			{
+				@Override
+				public void handle (int chunk, JsonArray values)
+				{
+					for (JsonValue v : values)
+						records.add (v.toString ());
+				}
+			});
+			Assert.assertEquals (expected, records);
+
+			reader.setOrdered (false);
+			final TreeMap<Integer, JsonArray> chunks = new TreeMap<Integer, JsonArray> ();
+			reader.readLines (new ByteArrayInputStream (bytes), new ArrayChunkHandler ()
+			{
+				@Override
+				public void handle (int chunk, JsonArray values)
+				{
+					chunks.put (chunk, values);
+				}
+			});
+			records.clear ();
+			for (JsonArray values : chunks.values ())
+				for (JsonValue v : values)
+					records.add (v.toString ());
+			Assert.assertEquals (expected, records);
+
+			byte[] bad = (str + "\n[1,,\n[2]\n").getBytes (BOM.utf8);
+			reader.setSkipMalformed (true);
+			records.clear ();
+			reader.readLines (new ByteArrayInputStream (bad), new ArrayChunkHandler ()
+			{
+				@Override
+				public void handle (int chunk, JsonArray values)
+				{
+					records.add (values.toString ());
+				}
+			});
+			Assert.assertEquals (1, reader.getMalformedCount ());
+
+			reader.setSkipMalformed (false);
+			try
+			{
+				reader.readLines (new ByteArrayInputStream (bad), new ArrayChunkHandler ()
+				{
+					@Override
+					public void handle (int chunk, JsonArray values)
+					{
+					}
+				});
+				Assert.fail ();
+			}
+			catch (JsonParsingException ex)
+			{
+				Assert.assertEquals (bytes.length + 4, ex.getLocation ().getStreamOffset ());
+			}
+		}
+		finally
+		{
+			executor.shutdown ();
+		}
+	}
+
+	@Test
+	public void testGenerator ()
+	{
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		config.put (CookJsonProvider.LINE_DELIMITED, "true");
+		config.put (JsonGenerator.PRETTY_PRINTING, "true");
+		StringWriter sw = new StringWriter ();
+		JsonGenerator g = new CookJsonProvider ().createGeneratorFactory (config).createGenerator (sw);
+		g.writeStartObject ().write ("a", 1).writeEnd ();
+		g.writeStartArray ().write ("b").writeStartArray ().writeEnd ().writeEnd ();
+		g.write (new CookJsonProvider ().createObjectBuilder ().add ("c", true).build ());
+		g.close ();
+		Assert.assertEquals ("{\"a\":1}\n[\"b\",[]]\n{\"c\":true}\n", sw.toString ());
+
+		byte[] bytes = sw.toString ().getBytes (BOM.utf8);
+		NdjsonReader reader = new NdjsonReader (bytes, 0, bytes.length);
+		Assert.assertEquals (1, ((JsonObject) reader.read ()).getInt ("a"));
+		Assert.assertEquals ("b", ((JsonArray) reader.read ()).getString (0));
+		Assert.assertTrue (((JsonObject) reader.read ()).getBoolean ("c"));
+		Assert.assertNull (reader.read ());
+	}
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.ArrayList;
+
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class NonBlockingParserTest
+{
+	private void testFeed (byte[] bytes, boolean allowComments)
+	{
+		ArrayList<String> expected = new ArrayList<String> ();
+		UTF8TextJsonParser p = new UTF8TextJsonParser (new ByteArrayInputStream (bytes));
+		p.setAllowComments (allowComments);
+		while (p.hasNext ())
+		{
+			p.next ();
+			expected.add (TestUtils.getToken (p) + " @" + p.getLocation ());
+		}
+		p.close ();
+
+		int[] chunkSizes = { 1, 2, 3, 7, 64, 1000, bytes.length };
+		for (int chunkSize : chunkSizes)
+		{
+			ArrayList<String> tokens = new ArrayList<String> ();
+			p = new UTF8TextJsonParser ();
+			p.setAllowComments (allowComments);
+			int pos = 0;
+			while (p.hasNext ())
+			{
+				Event e = p.next ();
+				if (e == null)
+				{
+					if (pos == bytes.length)
+						p.endOfInput ();
+					else
+					{
+						int len = Math.min (chunkSize, bytes.length - pos);
+						p.feedInput (bytes, pos, len);
+						pos += len;
+					}
+					continue;
+				}
+				tokens.add (TestUtils.getToken (p) + " @" + p.getLocation ());
+			}
+			p.close ();
+			Assert.assertEquals ("chunk size " + chunkSize, expected, tokens);
+		}
+	}
+
+	@Test
+	public void testFiles () throws IOException
+	{
+		testFeed (TestUtils.readFile ("../tests/data/complex1.json"), false);
+		testFeed (TestUtils.readFile ("../tests/data/complex1_pretty.json"), false);
+		testFeed (TestUtils.readFile ("../tests/data/types.json"), false);
+		testFeed (TestUtils.readFile ("../tests/data/string.json"), false);
+		testFeed (TestUtils.readFile ("../tests/data/number2.json"), false);
+		testFeed (TestUtils.readFile ("../tests/data/comment.json"), true);
+		testFeed (TestUtils.readFile ("../tests/data/comment2.json"), true);
+		testFeed ("[\"\\u0041\\\"\\\\\", -1.5e-3, \"été\", true, false, null, {}, []]".getBytes (BOM.utf8), false);
+	}
+
+	@Test
+	public void testEvents ()
+	{
+		UTF8TextJsonParser p = new UTF8TextJsonParser ();
+		Assert.assertNull (p.next ());
+		p.feedInput ("{\"ab".getBytes (BOM.utf8), 0, 4);
+		Assert.assertEquals (Event.START_OBJECT, p.next ());
+		Assert.assertNull (p.next ());
+		// the current event is still available.
+		Assert.assertEquals (Event.START_OBJECT, p.getEvent ());
+		p.feedInput ("c\":12".getBytes (BOM.utf8), 0, 5);
+		Assert.assertEquals (Event.KEY_NAME, p.next ());
+		Assert.assertEquals ("abc", p.getString ());
+		// the number may continue.
+		Assert.assertNull (p.next ());
+		Assert.assertEquals ("abc", p.getString ());
+		p.feedInput ("3}".getBytes (BOM.utf8), 0, 2);
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals (123, p.getInt ());
+		Assert.assertEquals (Event.END_OBJECT, p.next ());
+		Assert.assertFalse (p.hasNext ());
+		p.close ();
+	}
+
+	@Test
+	public void testLongString ()
+	{
+		// each chunk continues the scan of the string where the previous
+		// one stopped, including across escape sequences and multi-byte
+		// characters.
+		StringBuilder builder = new StringBuilder ();
+		for (int i = 0; i < 100000; ++i)
+		{
+			builder.append ("abcdefgh");
+			if ((i % 1000) == 0)
+				builder.append ("\\n\\u0041\\\"");
+			if ((i % 777) == 0)
+				builder.append ("é中😀");
+		}
+		String value = builder.toString ().replace ("\\n", "\n").replace ("\\u0041", "A").replace ("\\\"", "\"");
+		byte[] bytes = ("[\"" + builder + "\", \"" + builder + "\"]").getBytes (BOM.utf8);
+
+		int[] chunkSizes = { 4096, 4097, 7 };
+		for (int chunkSize : chunkSizes)
+		{
+			UTF8TextJsonParser p = new UTF8TextJsonParser ();
+			int pos = 0;
+			int count = 0;
+			while (p.hasNext ())
+			{
+				Event e = p.next ();
+				if (e == null)
+				{
+					if (pos == bytes.length)
+						p.endOfInput ();
+					else
+					{
+						int len = Math.min (chunkSize, bytes.length - pos);
+						p.feedInput (bytes, pos, len);
+						pos += len;
+					}
+					continue;
+				}
+				if (e == Event.VALUE_STRING)
+				{
+					Assert.assertEquals (value, p.getString ());
+					++count;
+				}
+			}
+			p.close ();
+			Assert.assertEquals (2, count);
+		}
+	}
+
+	@Test
+	public void testEndOfInput ()
+	{
+		UTF8TextJsonParser p = new UTF8TextJsonParser ();
+		p.feedInput ("[1, \"abc".getBytes (BOM.utf8), 0, 8);
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertNull (p.next ());
+		p.endOfInput ();
+		try
+		{
+			p.next ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+		}
+	}
+
+	@Test (expected = IllegalStateException.class)
+	public void testNotFeedMode ()
+	{
+		new UTF8TextJsonParser (new ByteArrayInputStream (new byte[0])).feedInput (new byte[1], 0, 1);
+	}
+}
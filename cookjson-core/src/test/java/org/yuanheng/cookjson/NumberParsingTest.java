@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import javax.json.JsonNumber;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.yuanheng.cookjson.value.*;
+
+/**
+ * Checks the number accessors of the text parsers against BigDecimal.
+ *
+ * @author	Heng Yuan
+ */
+public class NumberParsingTest
+{
+	private final static String[] s_numbers =
+	{
+		"0", "-0", "1", "-1", "12", "1234567890",
+		"2147483647", "2147483648", "-2147483648", "-2147483649",
+		"4294967296", "-4294967297",
+		"999999999999999999", "-999999999999999999",
+		"1000000000000000000", "9223372036854775807", "-9223372036854775807",
+		"-9223372036854775808", "9223372036854775808", "-9223372036854775809",
+		"18446744073709551616", "123456789012345678901234567890",
+		"0.0", "-0.5", "1.0", "12.75", "-12.75", "1.5e1", "1.50e1",
+		"1E0", "1e1", "1e-1", "10e-1", "100E-2", "1.23E+2", "1.234e2",
+		"9223372036854775807.9", "-9223372036854775808.9", "9223372036854775808.5",
+		"1e30", "-2.5e10", "0e0", "1e0000000001", "1.0e00000000001"
+	};
+
+	private void check (String number, JsonParser p)
+	{
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+
+		BigDecimal expected = new BigDecimal (number);
+		Assert.assertEquals (number, expected.intValue (), p.getInt ());
+		Assert.assertEquals (number, expected.longValue (), p.getLong ());
+		Assert.assertEquals (number, expected.scale () == 0, p.isIntegralNumber ());
+		Assert.assertEquals (number, expected, p.getBigDecimal ());
+
+		JsonNumber v = (JsonNumber) ((CookJsonParser) p).getValue ();
+		Assert.assertEquals (number, expected, v.bigDecimalValue ());
+		Assert.assertEquals (number, expected.scale () == 0, v.isIntegral ());
+		Assert.assertEquals (number, expected.doubleValue (), v.doubleValue (), 0);
+		Assert.assertEquals (number, expected.toString (), v.toString ());
+		Assert.assertEquals (number, expected.hashCode (), v.hashCode ());
+
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		p.close ();
+	}
+
+	@Test
+	public void testUTF8 ()
+	{
+		for (String number : s_numbers)
+		{
+			byte[] bytes = ("[" + number + "]").getBytes (BOM.utf8);
+			check (number, new UTF8TextJsonParser (new ByteArrayInputStream (bytes)));
+			// small buffers to force numbers to be split across reads.
+			for (int size = 2; size < 8; ++size)
+				check (number, new UTF8TextJsonParser (new ByteArrayInputStream (bytes), size));
+		}
+	}
+
+	@Test
+	public void testText ()
+	{
+		for (String number : s_numbers)
+		{
+			String json = "[" + number + "]";
+			check (number, new TextJsonParser (new StringReader (json)));
+			for (int size = 2; size < 8; ++size)
+				check (number, new TextJsonParser (new StringReader (json), size));
+		}
+	}
+
+	@Test
+	public void testIndexed ()
+	{
+		for (String number : s_numbers)
+			check (number, new IndexedJsonParser (("[" + number + "]").getBytes (BOM.utf8)));
+	}
+
+	@Test
+	public void testValueType ()
+	{
+		byte[] bytes = "[12,-3000,4294967296,1.5,123456789012345678901234567890]".getBytes (BOM.utf8);
+		CookJsonParser[] parsers = new CookJsonParser[]
+		{
+			new UTF8TextJsonParser (bytes, 0, bytes.length),
+			new TextJsonParser (new String (bytes, BOM.utf8)),
+			new IndexedJsonParser (bytes)
+		};
+		for (CookJsonParser p : parsers)
+		{
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			p.next ();
+			JsonValue v = p.getValue ();
+			Assert.assertTrue (v instanceof CookJsonInt);
+			// small integers are shared.
+			Assert.assertSame (v, p.getValue ());
+			p.next ();
+			Assert.assertTrue (p.getValue () instanceof CookJsonInt);
+			Assert.assertNotSame (p.getValue (), p.getValue ());
+			p.next ();
+			Assert.assertTrue (p.getValue () instanceof CookJsonLong);
+			p.next ();
+			Assert.assertTrue (p.getValue () instanceof CookJsonTextNumber);
+			p.next ();
+			Assert.assertTrue (p.getValue () instanceof CookJsonTextNumber);
+			Assert.assertEquals (Event.END_ARRAY, p.next ());
+			p.close ();
+		}
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.json.JsonArray;
+import javax.json.JsonValue;
+import javax.json.stream.JsonParsingException;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class ParallelArrayReaderTest
+{
+	private static ExecutorService s_executor;
+
+	@BeforeClass
+	public static void setUp ()
+	{
+		s_executor = Executors.newFixedThreadPool (4);
+	}
+
+	@AfterClass
+	public static void tearDown ()
+	{
+		s_executor.shutdown ();
+	}
+
+	private static String createJson ()
+	{
+		Random r = new Random (1234);
+		StringBuilder builder = new StringBuilder ();
+		builder.append (" \n[");
+		for (int i = 0; i < 2000; ++i)
+		{
+			if (i > 0)
+				builder.append (", ");
+			switch (r.nextInt (5))
+			{
+				case 0:
+					builder.append (i);
+					break;
+				case 1:
+					builder.append ("\"a,]\\\"[,\\\\").append (i).append ('"');
+					break;
+				case 2:
+					builder.append ("[1, {\"a\": \"]\"}, [").append (i).append ("]]");
+					break;
+				case 3:
+					builder.append ("{\"id\": ").append (i).append (", \"name\": \"}{\", \"v\": [true, null]}");
+					break;
+				default:
+					builder.append ("false");
+			}
+		}
+		builder.append ("]\n");
+		return builder.toString ();
+	}
+
+	private static class Collector implements ArrayChunkHandler
+	{
+		final TreeMap<Integer, JsonArray> chunks = new TreeMap<Integer, JsonArray> ();
+		final ArrayList<Integer> order = new ArrayList<Integer> ();
+		final Thread thread = Thread.currentThread ();
+
+		@Override
+		public void handle (int chunk, JsonArray values)
+		{
+			Assert.assertSame (thread, Thread.currentThread ());
+			Assert.assertNull (chunks.put (chunk, values));
+			order.add (chunk);
+		}
+
+		ArrayList<JsonValue> getValues ()
+		{
+			ArrayList<JsonValue> values = new ArrayList<JsonValue> ();
+			for (JsonArray array : chunks.values ())
+				values.addAll (array);
+			return values;
+		}
+	}
+
+	private static JsonArray readArray (byte[] bytes)
+	{
+		UTF8TextJsonParser p = new UTF8TextJsonParser (bytes);
+		p.next ();
+		return (JsonArray) Utils.getStructure (p);
+	}
+
+	@Test
+	public void testOrdered ()
+	{
+		byte[] bytes = createJson ().getBytes (BOM.utf8);
+		JsonArray expected = readArray (bytes);
+		for (int chunkSize : new int[] { 1, 100, 1000, 1000000 })
+		{
+			ParallelArrayReader reader = new ParallelArrayReader (s_executor);
+			reader.setChunkSize (chunkSize);
+			reader.setMaxPending (3);
+			Collector collector = new Collector ();
+			reader.read (bytes, 0, bytes.length, collector);
+			Assert.assertEquals (new ArrayList<JsonValue> (expected).toString (), collector.getValues ().toString ());
+			for (int i = 0; i < collector.order.size (); ++i)
+				Assert.assertEquals (i, collector.order.get (i).intValue ());
+		}
+	}
+
+	@Test
+	public void testUnordered ()
+	{
+		byte[] bytes = createJson ().getBytes (BOM.utf8);
+		JsonArray expected = readArray (bytes);
+		ParallelArrayReader reader = new ParallelArrayReader (s_executor);
+		reader.setChunkSize (500);
+		reader.setOrdered (false);
+		Collector collector = new Collector ();
+		reader.read (new ByteArrayInputStream (bytes), collector);
+		Assert.assertEquals (new ArrayList<JsonValue> (expected).toString (), collector.getValues ().toString ());
+		Assert.assertEquals (collector.order.size (), collector.chunks.size ());
+	}
+
+	@Test
+	public void testFile () throws IOException
+	{
+		File file = new File ("../tests/data/large.json".replace ('/', File.separatorChar));
+		byte[] bytes = new byte[(int) file.length ()];
+		DataInputStream is = new DataInputStream (new FileInputStream (file));
+		is.readFully (bytes);
+		is.close ();
+		JsonArray expected = readArray (bytes);
+
+		ParallelArrayReader reader = new ParallelArrayReader (s_executor);
+		reader.setChunkSize (1000);
+		Collector collector = new Collector ();
+		FileChannel channel = new FileInputStream (file).getChannel ();
+		reader.read (channel, collector);
+		Assert.assertEquals (new ArrayList<JsonValue> (expected).toString (), collector.getValues ().toString ());
+		Assert.assertFalse (channel.isOpen ());
+	}
+
+	@Test
+	public void testEmpty ()
+	{
+		byte[] bytes = "[ ]".getBytes (BOM.utf8);
+		Collector collector = new Collector ();
+		new ParallelArrayReader (s_executor).read (bytes, 0, bytes.length, collector);
+		Assert.assertEquals (0, collector.getValues ().size ());
+	}
+
+	@Test
+	public void testErrors ()
+	{
+		ParallelArrayReader reader = new ParallelArrayReader (s_executor);
+		reader.setChunkSize (4);
+		String[] jsons = { "  {}", "[1, 2", "[1, 2, 3, 4, 5, 6, 7, x]", "[1}", "[1, 2, 3, 4, {}, 6}", "[1, 2, 3, 4, 5, 6, 7, [}]" };
+		long[] offsets = { 2, 5, 22, 2, 18, 23 };
+		for (int i = 0; i < jsons.length; ++i)
+		{
+			byte[] bytes = jsons[i].getBytes (BOM.utf8);
+			try
+			{
+				reader.read (bytes, 0, bytes.length, new Collector ());
+				Assert.fail ();
+			}
+			catch (JsonParsingException ex)
+			{
+				Assert.assertEquals (offsets[i], ex.getLocation ().getStreamOffset ());
+				// the message agrees with the location.
+				Assert.assertTrue (ex.getMessage (), ex.getMessage ().startsWith ("Parsing error at " + ex.getLocation () + ": "));
+				Assert.assertEquals (1, ex.getMessage ().split ("Parsing error at").length - 1);
+			}
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.HashMap;
+
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class ParserResetTest
+{
+	private static String toJson (JsonParser p)
+	{
+		StringWriter out = new StringWriter ();
+		TextJsonGenerator g = new TextJsonGenerator (out);
+		Utils.convert (p, g);
+		g.close ();
+		return out.toString ();
+	}
+
+	/**
+	 * Reads all the root values, each on its own line.
+	 */
+	private static String readRoots (CookJsonParser p)
+	{
+		StringBuilder builder = new StringBuilder ();
+		while (p.hasNext ())
+		{
+			p.next ();
+			StringWriter out = new StringWriter ();
+			TextJsonGenerator g = new TextJsonGenerator (out);
+			g.write (Utils.getStructure (p));
+			g.close ();
+			builder.append (out).append ('\n');
+		}
+		return builder.toString ();
+	}
+
+	@Test
+	public void testResetUTF8 ()
+	{
+		String json1 = "{\"a\":[1,2.5,\"abc\\ndef\"],\"b\":null}";
+		String json2 = "[true,false,{\"c\":\"\\u0041\"}]";
+		String expected1 = toJson (new UTF8TextJsonParser (json1.getBytes (BOM.utf8)));
+		String expected2 = toJson (new UTF8TextJsonParser (json2.getBytes (BOM.utf8)));
+
+		UTF8TextJsonParser p = new UTF8TextJsonParser (new ByteArrayInputStream (json1.getBytes (BOM.utf8)));
+		Assert.assertEquals (expected1, toJson (p));
+		p.reset (json2.getBytes (BOM.utf8));
+		Assert.assertEquals (expected2, toJson (p));
+		p.reset (new ByteArrayInputStream (json1.getBytes (BOM.utf8)));
+		Assert.assertEquals (expected1, toJson (p));
+		Assert.assertEquals (json1.length () - 1, p.getLocation ().getStreamOffset ());
+
+		// reset in the middle of a document.
+		p.reset (json1.getBytes (BOM.utf8));
+		p.next ();
+		p.next ();
+		p.next ();
+		p.reset (new ByteArrayInputStream (json2.getBytes (BOM.utf8)));
+		Assert.assertEquals (expected2, toJson (p));
+
+		// a long string grows the append buffer.
+		StringBuilder builder = new StringBuilder ();
+		builder.append ("[\"");
+		for (int i = 0; i < 100000; ++i)
+			builder.append ("\\n");
+		builder.append ("\"]");
+		String json3 = builder.toString ();
+		p.reset (new ByteArrayInputStream (json3.getBytes (BOM.utf8)));
+		Assert.assertEquals (toJson (new UTF8TextJsonParser (json3.getBytes (BOM.utf8))), toJson (p));
+		p.reset (new ByteArrayInputStream (json2.getBytes (BOM.utf8)));
+		Assert.assertEquals (expected2, toJson (p));
+
+		// the read buffer set up for a byte array is not reused for a stream.
+		p.reset (new byte[0]);
+		p.reset (new ByteArrayInputStream (json1.getBytes (BOM.utf8)));
+		Assert.assertEquals (expected1, toJson (p));
+		byte[] padded = (json2 + "\0").getBytes (BOM.utf8);
+		byte[] copy = padded.clone ();
+		p = new UTF8TextJsonParser (padded, 0, padded.length - 1);
+		p.reset (new ByteArrayInputStream (json1.getBytes (BOM.utf8)));
+		Assert.assertEquals (expected1, toJson (p));
+		Assert.assertArrayEquals (copy, padded);
+	}
+
+	@Test
+	public void testResetText ()
+	{
+		String json1 = "{\"a\":[1,2.5,\"abc\\ndef\"],\"b\":null}";
+		String json2 = "[true,false,{\"c\":\"\\u0041\"}]";
+		String expected1 = toJson (new TextJsonParser (json1));
+		String expected2 = toJson (new TextJsonParser (json2));
+
+		TextJsonParser p = new TextJsonParser (new StringReader (json1));
+		Assert.assertEquals (expected1, toJson (p));
+		p.reset (json2);
+		Assert.assertEquals (expected2, toJson (p));
+		p.reset (json1);
+		Assert.assertEquals (expected1, toJson (p));
+		char[] chars = json2.toCharArray ();
+		p.reset (chars, 0, chars.length);
+		Assert.assertEquals (expected2, toJson (p));
+		// the array supplied must not be modified afterward.
+		p.reset (json1);
+		Assert.assertEquals (expected1, toJson (p));
+		Assert.assertEquals (json2, new String (chars));
+		p.reset (new StringReader (json2));
+		Assert.assertEquals (expected2, toJson (p));
+	}
+
+	@Test
+	public void testMultipleRootsUTF8 ()
+	{
+		String json = " {\"a\":1}[1,2]\n\n{\"b\":[]}  \r\n[] ";
+		String expected = "{\"a\":1}\n[1,2]\n{\"b\":[]}\n[]\n";
+		byte[] bytes = json.getBytes (BOM.utf8);
+
+		UTF8TextJsonParser p = new UTF8TextJsonParser (bytes);
+		p.setMultipleRoots (true);
+		Assert.assertEquals (expected, readRoots (p));
+
+		p = new UTF8TextJsonParser (new ByteArrayInputStream (bytes), 4);
+		p.setMultipleRoots (true);
+		Assert.assertEquals (expected, readRoots (p));
+		Assert.assertEquals (4, p.getLocation ().getLineNumber ());
+
+		p.reset (new byte[0]);
+		Assert.assertFalse (p.hasNext ());
+
+		// comments between the roots.
+		p.reset ("[1] // a\n/* b */ [2] /* c */".getBytes (BOM.utf8));
+		p.setAllowComments (true);
+		Assert.assertEquals ("[1]\n[2]\n", readRoots (p));
+
+		// without the option, parsing stops after the first root.
+		p = new UTF8TextJsonParser (bytes);
+		Assert.assertEquals ("{\"a\":1}\n", readRoots (p));
+	}
+
+	@Test
+	public void testMultipleRootsText ()
+	{
+		String json = " {\"a\":1}[1,2]\n\n{\"b\":[]}  \r\n[] ";
+		String expected = "{\"a\":1}\n[1,2]\n{\"b\":[]}\n[]\n";
+
+		TextJsonParser p = new TextJsonParser (json);
+		p.setMultipleRoots (true);
+		Assert.assertEquals (expected, readRoots (p));
+
+		p = new TextJsonParser (new StringReader (json), 4);
+		p.setMultipleRoots (true);
+		Assert.assertEquals (expected, readRoots (p));
+
+		p.reset ("");
+		Assert.assertFalse (p.hasNext ());
+
+		p.reset ("[1] [2");
+		p.next ();
+		p.next ();
+		p.next ();
+		Assert.assertTrue (p.hasNext ());
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		try
+		{
+			p.next ();
+			Assert.fail ();
+		}
+		catch (JsonParsingException ex)
+		{
+		}
+	}
+
+	@Test
+	public void testMultipleRootsNonBlocking ()
+	{
+		byte[] bytes = "[1] {\"a\":2}  ".getBytes (BOM.utf8);
+		UTF8TextJsonParser p = new UTF8TextJsonParser ();
+		p.setMultipleRoots (true);
+		StringBuilder builder = new StringBuilder ();
+		for (int i = 0; i < bytes.length; ++i)
+		{
+			p.feedInput (bytes, i, 1);
+			Event e;
+			while (p.hasNext () && (e = p.next ()) != null)
+				builder.append (e).append (' ');
+		}
+		p.endOfInput ();
+		Assert.assertFalse (p.hasNext ());
+		Assert.assertEquals ("START_ARRAY VALUE_NUMBER END_ARRAY START_OBJECT KEY_NAME VALUE_NUMBER END_OBJECT ", builder.toString ());
+	}
+
+	@Test
+	public void testProvider ()
+	{
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		config.put (CookJsonProvider.MULTIPLE_ROOTS, "true");
+		CookJsonParserFactory factory = (CookJsonParserFactory) new CookJsonProvider ().createParserFactory (config);
+
+		String json = "[1]\n[2]\n";
+		byte[] bytes = json.getBytes (BOM.utf8);
+		Assert.assertEquals (json, readRoots ((CookJsonParser) factory.createParser (new ByteArrayInputStream (bytes))));
+		Assert.assertEquals (json, readRoots ((CookJsonParser) factory.createParser (new StringReader (json))));
+		Assert.assertEquals (json, readRoots (factory.createParser (bytes, 0, bytes.length)));
+	}
+}
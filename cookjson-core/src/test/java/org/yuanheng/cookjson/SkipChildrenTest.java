@@ -0,0 +1,222 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.ArrayList;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class SkipChildrenTest
+{
+	private static interface ParserCreator
+	{
+		public CookJsonParser create () throws IOException;
+	}
+
+	private static int getMatch (ArrayList<String> tokens, int start)
+	{
+		int depth = 0;
+		for (int i = start; i < tokens.size (); ++i)
+		{
+			String token = tokens.get (i);
+			if (token.startsWith ("START_"))
+				++depth;
+			else if (token.startsWith ("END_"))
+			{
+				if (--depth == 0)
+					return i;
+			}
+		}
+		throw new IllegalStateException ();
+	}
+
+	/**
+	 * For each START_ARRAY / START_OBJECT event, skip its children and
+	 * check that the remaining events are the same as the full parse.
+	 */
+	private void testSkip (ParserCreator creator) throws IOException
+	{
+		ArrayList<String> tokens = new ArrayList<String> ();
+		CookJsonParser p = creator.create ();
+		while (p.hasNext ())
+		{
+			p.next ();
+			tokens.add (TestUtils.getToken (p));
+		}
+		p.close ();
+
+		for (int i = 0; i < tokens.size (); ++i)
+		{
+			if (!tokens.get (i).startsWith ("START_"))
+				continue;
+			int match = getMatch (tokens, i);
+
+			p = creator.create ();
+			for (int j = 0; j <= i; ++j)
+				p.next ();
+			p.skipChildren ();
+			Assert.assertEquals (tokens.get (match), TestUtils.getToken (p));
+			for (int j = match + 1; j < tokens.size (); ++j)
+			{
+				Assert.assertTrue (p.hasNext ());
+				p.next ();
+				Assert.assertEquals (tokens.get (j), TestUtils.getToken (p));
+			}
+			Assert.assertFalse (p.hasNext ());
+			p.close ();
+		}
+	}
+
+	private void testText (final String json) throws IOException
+	{
+		testSkip (new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create () throws IOException
+			{
+				return new UTF8TextJsonParser (new ByteArrayInputStream (json.getBytes (BOM.utf8)));
+			}
+		});
+		testSkip (new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create () throws IOException
+			{
+				return new UTF8TextJsonParser (new ByteArrayInputStream (json.getBytes (BOM.utf8)), 3);
+			}
+		});
+		testSkip (new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create () throws IOException
+			{
+				return new TextJsonParser (json);
+			}
+		});
+		testSkip (new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create () throws IOException
+			{
+				return new TextJsonParser (new StringReader (json), 3);
+			}
+		});
+	}
+
+	@Test
+	public void testText () throws IOException
+	{
+		testText (new String (TestUtils.readFile ("../tests/data/complex1.json"), BOM.utf8));
+		testText (new String (TestUtils.readFile ("../tests/data/types.json"), BOM.utf8));
+		testText ("[{\"a\\\"]}\":[\"\\\\\",\"}}\",[[]],{}],\"b\":\"\\u005d\"},\n[1,\n2],\"x\"]");
+	}
+
+	@Test
+	public void testComment () throws IOException
+	{
+		final String json = new String (TestUtils.readFile ("../tests/data/comment.json"), BOM.utf8);
+		testSkip (new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create () throws IOException
+			{
+				UTF8TextJsonParser p = new UTF8TextJsonParser (new ByteArrayInputStream (json.getBytes (BOM.utf8)), 3);
+				p.setAllowComments (true);
+				return p;
+			}
+		});
+		testSkip (new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create () throws IOException
+			{
+				TextJsonParser p = new TextJsonParser (new StringReader (json), 3);
+				p.setAllowComments (true);
+				return p;
+			}
+		});
+	}
+
+	@Test
+	public void testLocation () throws IOException
+	{
+		String json = "[\n [1,\n  \"abc\"],\n 2]";
+		UTF8TextJsonParser p1 = new UTF8TextJsonParser (new ByteArrayInputStream (json.getBytes (BOM.utf8)));
+		p1.next ();
+		p1.next ();
+		p1.skipChildren ();
+		p1.next ();
+		UTF8TextJsonParser p2 = new UTF8TextJsonParser (new ByteArrayInputStream (json.getBytes (BOM.utf8)));
+		for (int i = 0; i < 6; ++i)
+			p2.next ();
+		Assert.assertEquals (p2.getLocation ().toString (), p1.getLocation ().toString ());
+		Assert.assertEquals (2, p1.getInt ());
+	}
+
+	@Test
+	public void testBson () throws IOException
+	{
+		File file = new File ("../tests/data/complex1.bson".replace ('/', File.separatorChar));
+		final byte[] bson = new byte[(int) file.length ()];
+		DataInputStream is = new DataInputStream (new FileInputStream (file));
+		is.readFully (bson);
+		is.close ();
+		testSkip (new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create () throws IOException
+			{
+				return new BsonParser (new ByteArrayInputStream (bson));
+			}
+		});
+
+		// BsonGenerator output has 0 for the document lengths.
+		ByteArrayOutputStream bos = new ByteArrayOutputStream ();
+		TextJsonParser p = new TextJsonParser (new String (TestUtils.readFile ("../tests/data/complex1.json"), BOM.utf8));
+		BsonGenerator g = new BsonGenerator (bos);
+		Utils.convert (p, g);
+		p.close ();
+		g.close ();
+		final byte[] bson2 = bos.toByteArray ();
+		testSkip (new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create () throws IOException
+			{
+				return new BsonParser (new ByteArrayInputStream (bson2));
+			}
+		});
+	}
+
+	@Test
+	public void testStructure () throws IOException
+	{
+		final javax.json.JsonStructure s = new CookJsonProvider ().createReader (new String (TestUtils.readFile ("../tests/data/complex1.json"), BOM.utf8)).read ();
+		testSkip (new ParserCreator ()
+		{
+			@Override
+			public CookJsonParser create () throws IOException
+			{
+				return new JsonStructureParser (s);
+			}
+		});
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.StringWriter;
+import java.util.List;
+
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser.Event;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class StreamingPathEvaluatorTest
+{
+	private final static String JSON =
+		"{\"store\":{\"book\":[" +
+		"{\"category\":\"reference\",\"author\":\"Nigel Rees\",\"title\":\"Sayings of the Century\",\"price\":8.95}," +
+		"{\"category\":\"fiction\",\"author\":\"Evelyn Waugh\",\"title\":\"Sword of Honour\",\"price\":12.99}," +
+		"{\"category\":\"fiction\",\"author\":\"Herman Melville\",\"title\":\"Moby Dick\",\"isbn\":\"0-553-21311-3\",\"price\":8.99}]," +
+		"\"bicycle\":{\"color\":\"red\",\"price\":19.95}}," +
+		"\"expensive\":10,\"a.b\":[1,[2,3]]}";
+
+	private static String toJson (List<JsonValue> values)
+	{
+		StringWriter out = new StringWriter ();
+		TextJsonGenerator g = new TextJsonGenerator (out);
+		g.writeStartArray ();
+		for (JsonValue v : values)
+			g.write (v);
+		g.writeEnd ();
+		g.close ();
+		return out.toString ();
+	}
+
+	private static String[] evaluate (CookJsonParser p, String... paths)
+	{
+		List<List<JsonValue>> results = new StreamingPathEvaluator (paths).evaluate (p);
+		String[] strs = new String[paths.length];
+		for (int i = 0; i < paths.length; ++i)
+			strs[i] = toJson (results.get (i));
+		return strs;
+	}
+
+	private void testParser (CookJsonParser p)
+	{
+		String[] results = evaluate (p,
+			"$.store.book[*].author",
+			"$.store.book[2].isbn",
+			"$.store.bicycle",
+			"$.store.bicycle.color",
+			"$['a.b'][1][0]",
+			"$.expensive",
+			"$.store.*.price",
+			"$.missing.x",
+			"$.store.book[1]['title']");
+		Assert.assertEquals ("[\"Nigel Rees\",\"Evelyn Waugh\",\"Herman Melville\"]", results[0]);
+		Assert.assertEquals ("[\"0-553-21311-3\"]", results[1]);
+		Assert.assertEquals ("[{\"color\":\"red\",\"price\":19.95}]", results[2].replace ("{\"price\":19.95,\"color\":\"red\"}", "{\"color\":\"red\",\"price\":19.95}"));
+		Assert.assertEquals ("[\"red\"]", results[3]);
+		Assert.assertEquals ("[2]", results[4]);
+		Assert.assertEquals ("[10]", results[5]);
+		Assert.assertEquals ("[19.95]", results[6]);
+		Assert.assertEquals ("[]", results[7]);
+		Assert.assertEquals ("[\"Sword of Honour\"]", results[8]);
+		// the whole root value is consumed.
+		Assert.assertEquals (Event.END_OBJECT, p.getEvent ());
+		Assert.assertFalse (p.hasNext ());
+		p.close ();
+	}
+
+	@Test
+	public void test ()
+	{
+		testParser (new TextJsonParser (JSON));
+		testParser (new UTF8TextJsonParser (JSON.getBytes (BOM.utf8)));
+		testParser (new IndexedJsonParser (JSON.getBytes (BOM.utf8)));
+	}
+
+	@Test
+	public void testRoot ()
+	{
+		String[] results = evaluate (new TextJsonParser ("[1,{\"a\":[2]},3]"), "$", "$[1].a[0]", "$[*]");
+		Assert.assertEquals ("[[1,{\"a\":[2]},3]]", results[0]);
+		Assert.assertEquals ("[2]", results[1]);
+		Assert.assertEquals ("[1,{\"a\":[2]},3]", results[2]);
+	}
+
+	@Test
+	public void testMultipleRoots ()
+	{
+		// definite paths stop matching once they are all found, but the
+		// rest of the root value is still skipped.
+		TextJsonParser p = new TextJsonParser ("{\"a\":1,\"b\":{\"c\":[2]}} {\"a\":3} []");
+		p.setMultipleRoots (true);
+		StreamingPathEvaluator evaluator = new StreamingPathEvaluator ("$.a");
+		Assert.assertEquals ("[1]", toJson (evaluator.evaluate (p).get (0)));
+		Assert.assertEquals ("[3]", toJson (evaluator.evaluate (p).get (0)));
+		Assert.assertEquals ("[]", toJson (evaluator.evaluate (p).get (0)));
+		Assert.assertFalse (p.hasNext ());
+	}
+
+	@Test
+	public void testPathPattern ()
+	{
+		PathPattern pattern = new PathPattern ("$.a['b.c'][3].*[*][\"d\\\"\"]");
+		Assert.assertEquals (6, pattern.size ());
+		Assert.assertFalse (pattern.isDefinite ());
+		Assert.assertTrue (pattern.matches (0, "a"));
+		Assert.assertTrue (pattern.matches (1, "b.c"));
+		Assert.assertTrue (pattern.matches (2, 3));
+		Assert.assertFalse (pattern.matches (2, 2));
+		Assert.assertFalse (pattern.matches (2, "3"));
+		Assert.assertTrue (pattern.matches (3, "x"));
+		Assert.assertTrue (pattern.matches (4, 7));
+		Assert.assertTrue (pattern.matches (5, "d\""));
+		Assert.assertTrue (new PathPattern ("$.a[0]").isDefinite ());
+		Assert.assertEquals (0, new PathPattern ("$").size ());
+
+		String[] invalid = { "a.b", "$..a", "$.a[?(@.b)]", "$.a[1:2]", "$.a[0,1]", "$.", "$[", "$['a" };
+		for (String path : invalid)
+		{
+			try
+			{
+				new PathPattern (path);
+				Assert.fail (path);
+			}
+			catch (IllegalArgumentException ex)
+			{
+			}
+		}
+	}
+}
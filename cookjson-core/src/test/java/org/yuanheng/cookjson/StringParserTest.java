@@ -0,0 +1,113 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.Arrays;
+
+import javax.json.JsonObject;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class StringParserTest
+{
+	private String toJson (JsonParser p)
+	{
+		StringWriter out = new StringWriter ();
+		TextJsonGenerator g = new TextJsonGenerator (out);
+		Utils.convert (p, g);
+		p.close ();
+		g.close ();
+		return out.toString ();
+	}
+
+	void testFile (String f) throws IOException
+	{
+		File file = new File (f.replace ('/', File.separatorChar));
+		StringWriter writer = new StringWriter ();
+		Reader r = new InputStreamReader (new FileInputStream (file), BOM.utf8);
+		char[] buf = new char[4096];
+		int n;
+		while ((n = r.read (buf)) > 0)
+			writer.write (buf, 0, n);
+		r.close ();
+		String json = writer.toString ();
+
+		String expected = toJson (new TextJsonParser (new StringReader (json)));
+		Assert.assertEquals (expected, toJson (new TextJsonParser (json)));
+		Assert.assertEquals (expected, toJson (new CookJsonProvider ().createParser (json)));
+
+		char[] chars = json.toCharArray ();
+		Assert.assertEquals (expected, toJson (new TextJsonParser (chars, 0, chars.length)));
+
+		// in place parsing with a 0 after the data.
+		char[] padded = new char[chars.length + 10];
+		Arrays.fill (padded, ']');
+		System.arraycopy (chars, 0, padded, 3, chars.length);
+		padded[chars.length + 3] = 0;
+		char[] copy = padded.clone ();
+		Assert.assertEquals (expected, toJson (new TextJsonParser (padded, 3, chars.length)));
+		Assert.assertArrayEquals (copy, padded);
+
+		// data followed by garbage.
+		padded[chars.length + 3] = ']';
+		Assert.assertEquals (expected, toJson (new TextJsonParser (padded, 3, chars.length)));
+	}
+
+	@Test
+	public void testFiles () throws IOException
+	{
+		testFile ("../tests/data/complex1.json");
+		testFile ("../tests/data/string.json");
+		testFile ("../tests/data/string3.json");
+		testFile ("../tests/data/number.json");
+		testFile ("../tests/data/types.json");
+	}
+
+	@Test
+	public void testString ()
+	{
+		StringBuilder builder = new StringBuilder ();
+		for (int i = 0; i < 500; ++i)
+			builder.append ("\\n").append (i);
+		String json = "[\"abc\",-12,\"" + builder + "\"]";
+		TextJsonParser p = new TextJsonParser (json);
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		Assert.assertEquals (Event.VALUE_STRING, p.next ());
+		Assert.assertEquals ("abc", p.getString ());
+		Assert.assertEquals (Event.VALUE_NUMBER, p.next ());
+		Assert.assertEquals (-12, p.getInt ());
+		Assert.assertEquals (Event.VALUE_STRING, p.next ());
+		Assert.assertEquals (builder.toString ().replace ("\\n", "\n"), p.getString ());
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		Assert.assertFalse (p.hasNext ());
+		p.close ();
+	}
+
+	@Test
+	public void testReader ()
+	{
+		JsonObject obj = new CookJsonProvider ().createReader ("{\"a\":[1,2,3],\"b\":\"c\"}").readObject ();
+		Assert.assertEquals (3, obj.getJsonArray ("a").size ());
+		Assert.assertEquals ("c", obj.getString ("b"));
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Random;
+
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParsingException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks string scanning at every alignment and buffer boundary.
+ *
+ * @author	Heng Yuan
+ */
+public class StringScanTest
+{
+	private final static String CHARS = "abcdefgh \"\\/\t\né中😀~!";
+
+	private static String randomString (Random r, int len)
+	{
+		StringBuilder builder = new StringBuilder ();
+		for (int i = 0; i < len; ++i)
+		{
+			// mostly plain chars, with the occasional special one.
+			if (r.nextInt (8) == 0)
+			{
+				char ch = CHARS.charAt (r.nextInt (CHARS.length ()));
+				if (Character.isHighSurrogate (ch))
+					builder.append ("😀");
+				else if (!Character.isLowSurrogate (ch))
+					builder.append (ch);
+			}
+			else
+				builder.append ((char) ('a' + r.nextInt (26)));
+		}
+		return builder.toString ();
+	}
+
+	private static String quote (String str)
+	{
+		StringBuilder builder = new StringBuilder ();
+		builder.append ('"');
+		for (int i = 0; i < str.length (); ++i)
+		{
+			char ch = str.charAt (i);
+			switch (ch)
+			{
+				case '"':
+					builder.append ("\\\"");
+					break;
+				case '\\':
+					builder.append ("\\\\");
+					break;
+				case '\t':
+					builder.append ("\\t");
+					break;
+				case '\n':
+					builder.append ("\\n");
+					break;
+				default:
+					builder.append (ch);
+			}
+		}
+		builder.append ('"');
+		return builder.toString ();
+	}
+
+	private static void check (JsonParser p, ArrayList<String> expected)
+	{
+		Assert.assertEquals (Event.START_ARRAY, p.next ());
+		for (String str : expected)
+		{
+			Assert.assertEquals (Event.VALUE_STRING, p.next ());
+			Assert.assertEquals (str, p.getString ());
+		}
+		Assert.assertEquals (Event.END_ARRAY, p.next ());
+		p.close ();
+	}
+
+	@Test
+	public void testStrings () throws Exception
+	{
+		Random r = new Random (1234);
+		ArrayList<String> expected = new ArrayList<String> ();
+		StringBuilder json = new StringBuilder ();
+		json.append ('[');
+		for (int i = 0; i < 300; ++i)
+		{
+			String str = randomString (r, i % 50);
+			expected.add (str);
+			if (i > 0)
+				json.append (',');
+			// vary the alignment of the strings.
+			for (int j = i % 7; j > 0; --j)
+				json.append (' ');
+			json.append (quote (str));
+		}
+		json.append (']');
+		String str = json.toString ();
+		byte[] bytes = str.getBytes (BOM.utf8);
+
+		check (new UTF8TextJsonParser (bytes), expected);
+		check (new TextJsonParser (str), expected);
+		for (int bufferSize = 2; bufferSize < 40; ++bufferSize)
+		{
+			check (new UTF8TextJsonParser (new ByteArrayInputStream (bytes), bufferSize), expected);
+			check (new TextJsonParser (new StringReader (str), bufferSize), expected);
+		}
+	}
+
+	@Test
+	public void testControlChar () throws Exception
+	{
+		for (int i = 0; i < 20; ++i)
+		{
+			StringBuilder builder = new StringBuilder ();
+			builder.append ("[\"");
+			for (int j = 0; j < i; ++j)
+				builder.append ('a');
+			builder.append ('\u0001');
+			builder.append ("abcdefghijklmnop\"]");
+			String str = builder.toString ();
+
+			JsonParser p = new UTF8TextJsonParser (str.getBytes (BOM.utf8));
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			try
+			{
+				p.next ();
+				Assert.fail ();
+			}
+			catch (JsonParsingException ex)
+			{
+				Assert.assertEquals (i + 2, p.getLocation ().getStreamOffset ());
+			}
+
+			p = new TextJsonParser (str);
+			Assert.assertEquals (Event.START_ARRAY, p.next ());
+			try
+			{
+				p.next ();
+				Assert.fail ();
+			}
+			catch (JsonParsingException ex)
+			{
+			}
+		}
+	}
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.HashMap;
+
+import javax.json.JsonArray;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonReaderFactory;
+import javax.json.JsonString;
+import javax.json.spi.JsonProvider;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.yuanheng.cookjson.value.CookJsonString;
+
+/**
+ * @author	Heng Yuan
+ */
+public class StringValueTableTest
+{
+	@Test
+	public void testBytes ()
+	{
+		StringValueTable table = new StringValueTable (4, 8);
+		byte[] bytes = "xabcx\u00e9t\u00e9".getBytes (BOM.utf8);
+
+		CookJsonString s1 = table.get (bytes, 1, 3);
+		Assert.assertEquals ("abc", s1.getString ());
+		Assert.assertSame (s1, table.get (bytes, 1, 3));
+		Assert.assertEquals ("\u00e9t\u00e9", table.get (bytes, 5, 5).getString ());
+
+		// the recently used entry of a set is kept.
+		for (int i = 0; i < 100; ++i)
+		{
+			byte[] key = ("v" + i).getBytes (BOM.utf8);
+			Assert.assertEquals ("v" + i, table.get (key, 0, key.length).getString ());
+			Assert.assertEquals ("abc", table.get (bytes, 1, 3).getString ());
+		}
+
+		// long values are not cached.
+		byte[] longValue = "123456789".getBytes (BOM.utf8);
+		CookJsonString s2 = table.get (longValue, 0, longValue.length);
+		Assert.assertEquals ("123456789", s2.getString ());
+		Assert.assertNotSame (s2, table.get (longValue, 0, longValue.length));
+	}
+
+	@Test
+	public void testChars ()
+	{
+		StringValueTable table = new StringValueTable (4, 8);
+		char[] chars = "xabcx\u00e9t\u00e9".toCharArray ();
+
+		CookJsonString s1 = table.get (chars, 1, 3);
+		Assert.assertEquals ("abc", s1.getString ());
+		Assert.assertSame (s1, table.get (chars, 1, 3));
+		Assert.assertEquals ("\u00e9t\u00e9", table.get (chars, 5, 3).getString ());
+
+		for (int i = 0; i < 100; ++i)
+		{
+			char[] key = ("v" + i).toCharArray ();
+			Assert.assertEquals ("v" + i, table.get (key, 0, key.length).getString ());
+		}
+		Assert.assertEquals ("abc", table.get (chars, 1, 3).getString ());
+	}
+
+	private static JsonArray read (JsonReaderFactory f, String json, boolean bytes)
+	{
+		JsonReader reader;
+		if (bytes)
+			reader = f.createReader (new ByteArrayInputStream (json.getBytes (BOM.utf8)));
+		else
+			reader = f.createReader (new StringReader (json));
+		JsonArray array = reader.readArray ();
+		reader.close ();
+		return array;
+	}
+
+	@Test
+	public void testFactory ()
+	{
+		String json = "[{\"status\":\"OK\"},{\"status\":\"OK\"},\"\\u004fK\",\"a very long string value\",\"a very long string value\"]";
+		JsonProvider provider = new CookJsonProvider ();
+
+		HashMap<String, Object> config = new HashMap<String, Object> ();
+		config.put (CookJsonProvider.STRING_VALUE_CACHE, "16");
+		JsonReaderFactory f = provider.createReaderFactory (config);
+		for (boolean bytes : new boolean[] { true, false })
+		{
+			JsonArray array = read (f, json, bytes);
+			JsonString ok = ((JsonObject) array.get (0)).getJsonString ("status");
+			Assert.assertEquals ("OK", ok.getString ());
+			Assert.assertSame (ok, ((JsonObject) array.get (1)).getJsonString ("status"));
+			Assert.assertSame (ok, array.get (2));
+			Assert.assertEquals (array.get (3).toString (), array.get (4).toString ());
+			Assert.assertNotSame (array.get (3), array.get (4));
+
+			// shared across the readers of the same factory.
+			Assert.assertSame (ok, read (f, json, bytes).get (2));
+		}
+
+		config.put (CookJsonProvider.STRING_VALUE_CACHE, "true");
+		JsonArray array = read (provider.createReaderFactory (config), json, true);
+		Assert.assertSame (array.get (2), ((JsonObject) array.get (0)).getJsonString ("status"));
+
+		// disabled by default.
+		array = read (provider.createReaderFactory (new HashMap<String, Object> ()), json, true);
+		Assert.assertEquals (array.get (2).toString (), ((JsonObject) array.get (0)).getJsonString ("status").toString ());
+		Assert.assertNotSame (array.get (2), ((JsonObject) array.get (0)).getJsonString ("status"));
+	}
+}
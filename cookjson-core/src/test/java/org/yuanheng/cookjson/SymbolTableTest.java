@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+import java.util.HashMap;
+
+import javax.json.spi.JsonProvider;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author	Heng Yuan
+ */
+public class SymbolTableTest
+{
+	private String getFirstKey (JsonParser p)
+	{
+		while (p.next () != Event.KEY_NAME)
+			;
+		String key = p.getString ();
+		p.close ();
+		return key;
+	}
+
+	@Test
+	public void testBytes ()
+	{
+		SymbolTable table = new SymbolTable (4);
+		byte[] bytes = "xabcx\u00e9t\u00e9".getBytes (BOM.utf8);
+
+		String s1 = table.get (bytes, 1, 3);
+		String s2 = table.get (bytes, 1, 3);
+		Assert.assertEquals ("abc", s1);
+		Assert.assertSame (s1, s2);
+
+		String s3 = table.get (bytes, 5, 5);
+		Assert.assertEquals ("\u00e9t\u00e9", s3);
+		Assert.assertSame (s3, table.get (bytes, 5, 5));
+
+		// fill up the table and make sure we still get correct results.
+		for (int i = 0; i < 100; ++i)
+		{
+			byte[] key = ("key" + i).getBytes (BOM.utf8);
+			Assert.assertEquals ("key" + i, table.get (key, 0, key.length));
+		}
+		Assert.assertEquals ("abc", table.get (bytes, 1, 3));
+
+		// long keys are not cached, but still decoded correctly.
+		StringBuilder builder = new StringBuilder ();
+		for (int i = 0; i < SymbolTable.MAX_KEY_LENGTH + 1; ++i)
+			builder.append ('a');
+		byte[] longKey = builder.toString ().getBytes (BOM.utf8);
+		Assert.assertEquals (builder.toString (), table.get (longKey, 0, longKey.length));
+	}
+
+	@Test
+	public void testChars ()
+	{
+		SymbolTable table = new SymbolTable (4);
+		char[] chars = "xabcx\u00e9t\u00e9".toCharArray ();
+
+		String s1 = table.get (chars, 1, 3);
+		String s2 = table.get (chars, 1, 3);
+		Assert.assertEquals ("abc", s1);
+		Assert.assertSame (s1, s2);
+		Assert.assertEquals ("\u00e9t\u00e9", table.get (chars, 5, 3));
+
+		for (int i = 0; i < 100; ++i)
+		{
+			char[] key = ("key" + i).toCharArray ();
+			Assert.assertEquals ("key" + i, table.get (key, 0, key.length));
+		}
+		Assert.assertEquals ("abc", table.get (chars, 1, 3));
+	}
+
+	@Test
+	public void testFactory () throws IOException
+	{
+		String json = "{\"\\u0041bc\":1, \"name\":2}";
+
+		JsonProvider provider = new CookJsonProvider ();
+		JsonParserFactory f = provider.createParserFactory (new HashMap<String, Object> ());
+
+		String k1 = getFirstKey (f.createParser (new ByteArrayInputStream (json.getBytes (BOM.utf8))));
+		String k2 = getFirstKey (f.createParser (new ByteArrayInputStream (json.getBytes (BOM.utf8))));
+		Assert.assertEquals ("Abc", k1);
+		Assert.assertSame (k1, k2);
+
+		String k3 = getFirstKey (f.createParser (new StringReader (json)));
+		String k4 = getFirstKey (f.createParser (new StringReader (json)));
+		Assert.assertEquals ("Abc", k3);
+		Assert.assertSame (k3, k4);
+
+		// parsers from a different factory do not share the table.
+		JsonParserFactory f2 = provider.createParserFactory (new HashMap<String, Object> ());
+		String k5 = getFirstKey (f2.createParser (new ByteArrayInputStream (json.getBytes (BOM.utf8))));
+		Assert.assertEquals ("Abc", k5);
+		Assert.assertNotSame (k1, k5);
+	}
+
+	@Test
+	public void testFile () throws IOException
+	{
+		File file = new File ("../tests/data/complex1.json".replace ('/', File.separatorChar));
+
+		JsonProvider provider = new CookJsonProvider ();
+		JsonParserFactory f = provider.createParserFactory (new HashMap<String, Object> ());
+
+		StringWriter out1 = new StringWriter ();
+		JsonParser p1 = f.createParser (new FileInputStream (file));
+		TextJsonGenerator g1 = new TextJsonGenerator (out1);
+		Utils.convert (p1, g1);
+		p1.close ();
+		g1.close ();
+
+		StringWriter out2 = new StringWriter ();
+		JsonParser p2 = new UTF8TextJsonParser (new FileInputStream (file));
+		TextJsonGenerator g2 = new TextJsonGenerator (out2);
+		Utils.convert (p2, g2);
+		p2.close ();
+		g2.close ();
+
+		Assert.assertEquals (out2.toString (), out1.toString ());
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson;
+
+import java.io.*;
+
+import javax.json.JsonValue;
+import javax.json.stream.JsonParser.Event;
+
+/**
+ * Helper functions shared by the test cases.
+ *
+ * @author	Heng Yuan
+ */
+public class TestUtils
+{
+	/**
+	 * Prints a JsonValue as compact JSON text.
+	 */
+	public static String toJson (JsonValue v)
+	{
+		StringWriter out = new StringWriter ();
+		TextJsonGenerator g = new TextJsonGenerator (out);
+		g.write (v);
+		g.close ();
+		return out.toString ();
+	}
+
+	/**
+	 * Reads the whole file.
+	 *
+	 * @param	f
+	 *			the file path, using '/' as the separator.
+	 */
+	public static byte[] readFile (String f) throws IOException
+	{
+		File file = new File (f.replace ('/', File.separatorChar));
+		byte[] bytes = new byte[(int) file.length ()];
+		DataInputStream is = new DataInputStream (new FileInputStream (file));
+		is.readFully (bytes);
+		is.close ();
+		return bytes;
+	}
+
+	/**
+	 * Gets the current event of the parser, along with the string for
+	 * key names, strings and numbers.
+	 */
+	public static String getToken (CookJsonParser p)
+	{
+		Event e = p.getEvent ();
+		switch (e)
+		{
+			case KEY_NAME:
+			case VALUE_STRING:
+			case VALUE_NUMBER:
+				return e + ":" + p.getString ();
+			default:
+				return e.toString ();
+		}
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.value;
+
+import java.io.StringReader;
+
+import javax.json.*;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.yuanheng.cookjson.CookJsonProvider;
+
+/**
+ * @author	Heng Yuan
+ */
+public class CookJsonCompactObjectTest
+{
+	private static JsonStructure read (String json)
+	{
+		JsonReader reader = new CookJsonProvider ().createReader (new StringReader (json));
+		JsonStructure v = reader.read ();
+		reader.close ();
+		return v;
+	}
+
+	@Test
+	public void testShape ()
+	{
+		JsonArray array = (JsonArray) read ("[{\"a\":1,\"b\":\"x\"},{\"a\":2,\"b\":\"y\"},{\"b\":3,\"a\":4},{}]");
+		CookJsonCompactObject o1 = (CookJsonCompactObject) array.getJsonObject (0);
+		CookJsonCompactObject o2 = (CookJsonCompactObject) array.getJsonObject (1);
+		CookJsonCompactObject o3 = (CookJsonCompactObject) array.getJsonObject (2);
+		Assert.assertSame (o1.getShape (), o2.getShape ());
+		Assert.assertNotSame (o1.getShape (), o3.getShape ());
+		Assert.assertSame (CookJsonCompactObject.EMPTY, array.getJsonObject (3));
+
+		Assert.assertEquals (2, o2.getInt ("a"));
+		Assert.assertEquals ("y", o2.getString ("b"));
+		Assert.assertEquals (4, o3.getInt ("a"));
+		Assert.assertEquals ("a", o3.getShape ().getKey (1));
+		Assert.assertNull (o1.get ("c"));
+		Assert.assertFalse (o1.containsKey ("c"));
+
+		// duplicate key names.
+		JsonObject obj = (JsonObject) read ("{\"a\":1,\"b\":2,\"a\":3}");
+		Assert.assertEquals (2, obj.size ());
+		Assert.assertEquals (3, obj.getInt ("a"));
+	}
+
+	@Test
+	public void testLarge ()
+	{
+		StringBuilder builder = new StringBuilder ("{");
+		for (int i = 0; i < 100; ++i)
+			builder.append (i == 0 ? "" : ",").append ("\"k").append (i).append ("\":").append (i);
+		builder.append ("}");
+		JsonObject obj = (JsonObject) read (builder.toString ());
+		Assert.assertEquals (100, obj.size ());
+		for (int i = 0; i < 100; ++i)
+			Assert.assertEquals (i, obj.getInt ("k" + i));
+		Assert.assertFalse (obj.containsKey ("k100"));
+	}
+
+	@Test
+	public void testDefault ()
+	{
+		JsonObject obj = (JsonObject) read ("{\"s\":\"a\",\"i\":1,\"t\":true,\"n\":null}");
+		Assert.assertEquals ("a", obj.getString ("s", "b"));
+		Assert.assertEquals ("b", obj.getString ("i", "b"));
+		Assert.assertEquals ("b", obj.getString ("x", "b"));
+		Assert.assertEquals (1, obj.getInt ("i", 2));
+		Assert.assertEquals (2, obj.getInt ("s", 2));
+		Assert.assertEquals (2, obj.getInt ("x", 2));
+		Assert.assertTrue (obj.getBoolean ("t", false));
+		Assert.assertFalse (obj.getBoolean ("n", false));
+		Assert.assertTrue (obj.getBoolean ("x", true));
+		Assert.assertTrue (obj.isNull ("n"));
+	}
+
+	@Test
+	public void testFreeze ()
+	{
+		CookJsonObject obj = new CookJsonObject ();
+		obj.put ("a", JsonValue.TRUE);
+		obj.put ("b", new CookJsonInt (5));
+		CookJsonCompactObject frozen = obj.freeze ();
+		Assert.assertEquals (obj, frozen);
+		Assert.assertEquals (frozen, obj);
+		Assert.assertEquals (obj.hashCode (), frozen.hashCode ());
+		try
+		{
+			frozen.put ("c", JsonValue.NULL);
+			Assert.fail ();
+		}
+		catch (UnsupportedOperationException ex)
+		{
+		}
+
+		JsonObject built = new CookJsonProvider ().createObjectBuilder ().add ("a", true).add ("b", 5).build ();
+		Assert.assertTrue (built instanceof CookJsonCompactObject);
+		Assert.assertSame (frozen.getShape (), ((CookJsonCompactObject) built).getShape ());
+		Assert.assertEquals (5, built.getInt ("b"));
+	}
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2016 Heng Yuan
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.yuanheng.cookjson.value;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.math.BigDecimal;
+
+import javax.json.*;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.yuanheng.cookjson.BOM;
+import org.yuanheng.cookjson.CookJsonProvider;
+import org.yuanheng.cookjson.TestUtils;
+
+/**
+ * @author	Heng Yuan
+ */
+public class CookJsonPackedArrayTest
+{
+	private static JsonArray read (String json)
+	{
+		JsonReader reader = new CookJsonProvider ().createReader (new StringReader (json));
+		JsonArray v = reader.readArray ();
+		reader.close ();
+		return v;
+	}
+
+	@Test
+	public void testTypes ()
+	{
+		JsonArray array = read ("[[1,2,-3],[1,2147483648,-9223372036854775808],[1.5,2,-0.25e1],[],[9223372036854775808],[1,[2]],[1,\"a\"]]");
+		Assert.assertTrue (array.get (0) instanceof CookJsonIntArray);
+		Assert.assertTrue (array.get (1) instanceof CookJsonLongArray);
+		Assert.assertTrue (array.get (2) instanceof CookJsonDoubleArray);
+		Assert.assertTrue (array.get (3) instanceof CookJsonArray);
+		// overflows long.
+		Assert.assertTrue (array.get (4) instanceof CookJsonArray);
+		Assert.assertTrue (array.get (5) instanceof CookJsonArray);
+		Assert.assertTrue (array.get (6) instanceof CookJsonArray);
+		Assert.assertFalse (array instanceof CookJsonPackedArray);
+
+		Assert.assertEquals ("[[1,2,-3],[1,2147483648,-9223372036854775808],[1.5,2,-2.5],[],[9223372036854775808],[1,[2]],[1,\"a\"]]", TestUtils.toJson (array));
+
+		CookJsonPackedArray ints = (CookJsonPackedArray) array.get (0);
+		Assert.assertEquals (3, ints.size ());
+		Assert.assertEquals (-3, ints.getInt (2));
+		Assert.assertEquals (-3, ints.getJsonNumber (2).intValue ());
+		Assert.assertArrayEquals (new int[] { 1, 2, -3 }, ((CookJsonIntArray) ints).toIntArray ());
+		Assert.assertArrayEquals (new double[] { 1, 2, -3 }, ints.toDoubleArray (), 0);
+		Assert.assertEquals (5, ints.getInt (5, 5));
+		Assert.assertEquals ("a", ints.getString (0, "a"));
+		Assert.assertFalse (ints.isNull (0));
+
+		CookJsonPackedArray longs = (CookJsonPackedArray) array.get (1);
+		Assert.assertArrayEquals (new long[] { 1, 2147483648L, Long.MIN_VALUE }, longs.toLongArray ());
+
+		CookJsonPackedArray doubles = (CookJsonPackedArray) array.get (2);
+		Assert.assertArrayEquals (new double[] { 1.5, 2, -2.5 }, doubles.toDoubleArray (), 0);
+		Assert.assertFalse (doubles.getJsonNumber (0).isIntegral ());
+		Assert.assertTrue (doubles.getJsonNumber (1).isIntegral ());
+		Assert.assertEquals (-2, doubles.getInt (2));
+
+		JsonArray mixed = (JsonArray) array.get (6);
+		Assert.assertEquals (1, mixed.getInt (0));
+		Assert.assertEquals ("a", mixed.getString (1));
+	}
+
+	@Test
+	public void testExactFractions ()
+	{
+		// a double cannot hold these digits.
+		String json = "[1.50,0.1000000000000000000001,3.14159265358979323846]";
+		JsonArray array = read (json);
+		Assert.assertFalse (array instanceof CookJsonPackedArray);
+		Assert.assertEquals (json, TestUtils.toJson (array));
+		Assert.assertEquals (new BigDecimal ("0.1000000000000000000001"), array.getJsonNumber (1).bigDecimalValue ());
+
+		// trailing zeros would be lost as well.
+		array = read ("[1.5,1.50]");
+		Assert.assertFalse (array instanceof CookJsonPackedArray);
+		Assert.assertEquals ("[1.5,1.50]", TestUtils.toJson (array));
+
+		array = read ("[1.5,2.25,3]");
+		Assert.assertTrue (array instanceof CookJsonDoubleArray);
+		Assert.assertEquals ("[1.5,2.25,3]", TestUtils.toJson (array));
+
+		// the quick text comparison agrees with the BigDecimal comparison.
+		String[] numbers =
+		{
+			"0.001", "0.0010", "0.002", "-0.5", "-0.0", "0.1", "100.0", "100.00",
+			"0.30000000000000004", "0.3000000000000000444", "9999999.5",
+			"12345678.5", "0.0005", "1.5e0", "1.0E7", "2.5E-4"
+		};
+		for (String number : numbers)
+		{
+			boolean exact = new BigDecimal (number).equals (BigDecimal.valueOf (Double.parseDouble (number)));
+			json = "[" + number + "]";
+			Assert.assertEquals (number, exact, read (json) instanceof CookJsonDoubleArray);
+			JsonReader reader = new CookJsonProvider ().createReader (new ByteArrayInputStream (json.getBytes (BOM.utf8)));
+			Assert.assertEquals (number, exact, reader.readArray () instanceof CookJsonDoubleArray);
+			reader.close ();
+		}
+	}
+
+	@Test
+	public void testLarge ()
+	{
+		StringBuilder builder = new StringBuilder ("[");
+		for (int i = 0; i < 10000; ++i)
+			builder.append (i == 0 ? "" : ",").append (i % 7 == 0 ? Integer.toString (i) : (i + 0.5) + "");
+		builder.append ("]");
+		JsonArray array = read (builder.toString ());
+		Assert.assertTrue (array instanceof CookJsonDoubleArray);
+		Assert.assertEquals (10000, array.size ());
+		Assert.assertEquals (builder.toString (), TestUtils.toJson (array));
+	}
+}
@@ -133,4 +133,36 @@ public class NumberTest
 		Assert.assertEquals (d.hashCode (), v.hashCode ());
 		Assert.assertEquals (d.toString (), v.toString ());
 	}
+
+	@Test
+	public void testTextNumber ()
+	{
+		BigDecimal d = new BigDecimal ("1.25e3");
+		CookJsonTextNumber v = new CookJsonTextNumber ("1.25e3");
+
+		Assert.assertEquals (ValueType.NUMBER, v.getValueType ());
+		Assert.assertEquals ("1.25e3", v.getText ());
+
+		Assert.assertEquals (1250, v.doubleValue (), 0);
+		Assert.assertEquals (d.scale () == 0, v.isIntegral ());
+		Assert.assertEquals (d.intValue (), v.intValue ());
+		Assert.assertEquals (d.intValueExact (), v.intValueExact ());
+		Assert.assertEquals (d.longValue (), v.longValue ());
+		Assert.assertEquals (d.longValueExact (), v.longValueExact ());
+		Assert.assertEquals (d.toBigInteger (), v.bigIntegerValue ());
+		Assert.assertEquals (d.toBigIntegerExact (), v.bigIntegerValueExact ());
+		Assert.assertEquals (d, v.bigDecimalValue ());
+		Assert.assertEquals (d.hashCode (), v.hashCode ());
+		Assert.assertEquals (d.toString (), v.toString ());
+	}
+
+	@Test
+	public void testIntCache ()
+	{
+		Assert.assertSame (CookJsonInt.valueOf (-128), CookJsonInt.valueOf (-128));
+		Assert.assertSame (CookJsonInt.valueOf (1023), CookJsonInt.valueOf (1023));
+		Assert.assertNotSame (CookJsonInt.valueOf (1024), CookJsonInt.valueOf (1024));
+		Assert.assertEquals (-129, CookJsonInt.valueOf (-129).intValue ());
+		Assert.assertEquals (0, CookJsonInt.valueOf (0).intValue ());
+	}
 }
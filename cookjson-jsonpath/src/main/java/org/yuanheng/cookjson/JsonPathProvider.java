@@ -16,8 +16,6 @@
 package org.yuanheng.cookjson;
 
 import java.io.InputStream;
-import java.io.Reader;
-import java.io.StringReader;
 import java.io.StringWriter;
 import java.nio.charset.Charset;
 import java.nio.charset.UnsupportedCharsetException;
@@ -33,6 +31,11 @@ import com.jayway.jsonpath.spi.json.AbstractJsonProvider;
 
 /**
  * This class is a very simple javax.json based Jayway {@link com.jayway.jsonpath.spi.json.JsonProvider}.
+ * <p>
+ * The whole document is materialized before a path is evaluated.  To
+ * extract a few values from large documents, consider
+ * {@link StreamingPathEvaluator}, which only materializes the matched
+ * values.
  *
  * @author	Heng Yuan
  */
@@ -55,10 +58,10 @@ public class JsonPathProvider extends AbstractJsonProvider
 	{
 		try
 		{
-			Reader r = new StringReader (jsonString);
-			TextJsonParser p = new TextJsonParser (r);
+			TextJsonParser p = new TextJsonParser (jsonString);
+			// the tree is mutable so that paths can modify it.
 			p.next ();	// read the very first token to get initiated.
-			JsonValue v = p.getValue ();
+			JsonValue v = Utils.getMutableStructure (p);
 			p.close ();
 			return v;
 		}
@@ -74,8 +77,9 @@ public class JsonPathProvider extends AbstractJsonProvider
 		try
 		{
 			CookJsonParser p = TextJsonConfigHandler.getJsonParser (is, Charset.forName (charset));
+			// the tree is mutable so that paths can modify it.
 			p.next ();	// read the very first token to get initiated.
-			JsonValue v = p.getValue ();
+			JsonValue v = Utils.getMutableStructure (p);
 			p.close ();
 			return v;
 		}